@@ -16,7 +16,17 @@ import com.google.common.base.Joiner;
 /**
  * Abstract implementation of a map backed by a pair of arrays, one for keys and one for values. Implementors need only
  * decide how to implement methods to pick an entry index or indicate where a new entry should be inserted. This map
- * implementation has an almost-minimal memory overhead of two array references and a modification counter.
+ * implementation has an almost-minimal memory overhead of two array references, a size and a modification counter.
+ * <p>
+ * By default the arrays are always exactly as long as the map is large, so every insertion and removal allocates and
+ * fills a new pair of arrays. This is the smallest representation for a map that is built once and then only read,
+ * but building a map of {@code n} entries this way copies {@code O(n^2)} references. A map constructed with an
+ * initial capacity, or switched with {@link #setAmortizedGrowth(boolean)}, instead keeps spare capacity at the end of
+ * the arrays, doubling them when they fill and shifting entries within them on insertion and removal, as
+ * {@link java.util.ArrayList} does. {@link #trimToSize()} returns it to the minimal footprint.
+ * <p>
+ * Scanning implementations in this package also keep a third, parallel array of the keys' hash codes, and compare hash
+ * codes before calling {@code equals}, so that a scan that misses compares little more than {@code int}s.
  * 
  * @author Joe Kearney
  * @param <K> type of the keys stored in the map
@@ -28,18 +38,58 @@ public abstract class AbstractArrayBackedMap<K, V> implements Map<K, V> {
 	 * keys != null
 	 * values != null
 	 * keys.length == values.length
-	 * For each i, keys[i] is associated with values[i]
+	 * 0 <= size <= keys.length, and size == keys.length unless amortizedGrowth
+	 * For each i < size, keys[i] is associated with values[i]
+	 * For each i >= size, keys[i] == null and values[i] == null
+	 * keyHashes == null unless cachesKeyHashes(), else keyHashes.length == keys.length
+	 * For each i < size, keyHashes[i] == keys[i].hashCode()
 	 */
 
+	/**
+	 * Smallest non-zero array length in amortized-growth mode.
+	 */
+	private static final int MIN_CAPACITY = 4;
+
 	K[] keys;
 	V[] values;
+	/**
+	 * Hash codes of the keys, parallel to the keys array, if {@link #cachesKeyHashes()}; else {@code null}.
+	 */
+	int[] keyHashes;
+	/**
+	 * Number of mappings, which are held at the start of the arrays.
+	 */
+	int size;
+	/**
+	 * Whether the arrays have spare capacity at the end, or are reallocated to fit exactly on every change.
+	 */
+	private boolean amortizedGrowth;
 
 	transient int modCount;
 
 	public AbstractArrayBackedMap() {
 		clear();
 	}
+	/**
+	 * Constructs an empty map in amortized-growth mode, with room for the specified number of entries before the arrays
+	 * need to grow.
+	 * 
+	 * @param initialCapacity initial length of the arrays
+	 * @throws IllegalArgumentException if the initial capacity is negative
+	 */
+	@SuppressWarnings("unchecked")
+	// we're only going to put objects of the right type in it
+	public AbstractArrayBackedMap(int initialCapacity) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("Negative capacity: " + initialCapacity);
+		}
+		amortizedGrowth = true;
+		keys = (K[]) new Object[initialCapacity];
+		values = (V[]) new Object[initialCapacity];
+		keyHashes = cachesKeyHashes() ? new int[initialCapacity] : null;
+	}
 	public AbstractArrayBackedMap(Map<? extends K, ? extends V> map) {
+		clear();
 		putAll(map);
 	}
 
@@ -67,12 +117,48 @@ public abstract class AbstractArrayBackedMap<K, V> implements Map<K, V> {
 	@Override
 	public final int size() {
 		assert keys.length == values.length;
-		return keys.length;
+		return size;
 	}
 	@Override
 	public boolean isEmpty() {
 		assert keys.length == values.length;
-		return keys.length == 0;
+		return size == 0;
+	}
+
+	/**
+	 * Sets whether this map keeps spare capacity in its arrays, so that insertions and removals shift entries in place
+	 * and the arrays are reallocated only when they fill. Turning this off trims the arrays to fit exactly, after
+	 * which every change reallocates them.
+	 * 
+	 * @param amortizedGrowth whether to grow the arrays geometrically
+	 */
+	public final void setAmortizedGrowth(boolean amortizedGrowth) {
+		this.amortizedGrowth = amortizedGrowth;
+		if (!amortizedGrowth) {
+			trimToSize();
+		}
+	}
+	/**
+	 * Gets whether this map keeps spare capacity in its arrays.
+	 * 
+	 * @return whether the arrays grow geometrically
+	 * @see #setAmortizedGrowth(boolean)
+	 */
+	public final boolean isAmortizedGrowth() {
+		return amortizedGrowth;
+	}
+	/**
+	 * Shrinks the arrays to hold exactly the current entries. In amortized-growth mode the next insertion will grow
+	 * them again.
+	 */
+	public final void trimToSize() {
+		if (keys.length != size) {
+			keys = Arrays.copyOf(keys, size);
+			values = Arrays.copyOf(values, size);
+			if (keyHashes != null) {
+				keyHashes = Arrays.copyOf(keyHashes, size);
+			}
+		}
 	}
 
 	@Override
@@ -174,13 +260,33 @@ public abstract class AbstractArrayBackedMap<K, V> implements Map<K, V> {
 	@SuppressWarnings("unchecked")
 	// we're only going to put objects of the right type in it
 	public final void clear() {
-		keys = (K[]) new Object[0];
-		values = (V[]) new Object[0];
+		if (amortizedGrowth) {
+			Arrays.fill(keys, 0, size, null);
+			Arrays.fill(values, 0, size, null);
+		} else {
+			keys = (K[]) new Object[0];
+			values = (V[]) new Object[0];
+			keyHashes = cachesKeyHashes() ? new int[0] : null;
+		}
+		size = 0;
+		entriesCleared();
 	}
 
+	/**
+	 * Gets the array of keys. Only the first {@link #size()} cells hold keys; in amortized-growth mode the rest are
+	 * {@code null}.
+	 * 
+	 * @return the keys array
+	 */
 	protected final K[] getKeysArray() {
 		return keys;
 	}
+	/**
+	 * Gets the array of values. Only the first {@link #size()} cells hold values; in amortized-growth mode the rest
+	 * are {@code null}.
+	 * 
+	 * @return the values array
+	 */
 	protected final V[] getValuesArray() {
 		return values;
 	}
@@ -230,24 +336,64 @@ public abstract class AbstractArrayBackedMap<K, V> implements Map<K, V> {
 
 		assert index >= 0 && index <= oldSize;
 
-		@SuppressWarnings("unchecked")
-		K[] newKeys = (K[]) new Object[newSize];
-		@SuppressWarnings("unchecked")
-		V[] newValues = (V[]) new Object[newSize];
+		if (amortizedGrowth) {
+			if (newSize > keys.length) {
+				grow(newSize);
+			}
+			System.arraycopy(keys, index, keys, index + 1, oldSize - index);
+			System.arraycopy(values, index, values, index + 1, oldSize - index);
+			keys[index] = key;
+			values[index] = value;
+			if (keyHashes != null) {
+				System.arraycopy(keyHashes, index, keyHashes, index + 1, oldSize - index);
+				keyHashes[index] = key.hashCode();
+			}
+		} else {
+			@SuppressWarnings("unchecked")
+			K[] newKeys = (K[]) new Object[newSize];
+			@SuppressWarnings("unchecked")
+			V[] newValues = (V[]) new Object[newSize];
 
-		System.arraycopy(keys, 0, newKeys, 0, index);
-		System.arraycopy(values, 0, newValues, 0, index);
-		if (index < oldSize) { // else inserting at end
-			System.arraycopy(keys, index, newKeys, index + 1, oldSize - index);
-			System.arraycopy(values, index, newValues, index + 1, oldSize - index);
-		}
+			System.arraycopy(keys, 0, newKeys, 0, index);
+			System.arraycopy(values, 0, newValues, 0, index);
+			if (index < oldSize) { // else inserting at end
+				System.arraycopy(keys, index, newKeys, index + 1, oldSize - index);
+				System.arraycopy(values, index, newValues, index + 1, oldSize - index);
+			}
 
-		newKeys[index] = key;
-		newValues[index] = value;
+			newKeys[index] = key;
+			newValues[index] = value;
+
+			if (keyHashes != null) {
+				int[] newKeyHashes = new int[newSize];
+				System.arraycopy(keyHashes, 0, newKeyHashes, 0, index);
+				System.arraycopy(keyHashes, index, newKeyHashes, index + 1, oldSize - index);
+				newKeyHashes[index] = key.hashCode();
+				this.keyHashes = newKeyHashes;
+			}
+			this.keys = newKeys;
+			this.values = newValues;
+		}
 
 		++modCount;
-		this.keys = newKeys;
-		this.values = newValues;
+		this.size = newSize;
+		entryInserted(index);
+	}
+	/**
+	 * Doubles the length of the arrays, or more if necessary to hold the specified number of entries.
+	 * 
+	 * @param minCapacity number of entries the arrays must be able to hold
+	 */
+	private void grow(int minCapacity) {
+		int newCapacity = Math.max(MIN_CAPACITY, keys.length << 1);
+		if (newCapacity < minCapacity) { // including overflow
+			newCapacity = minCapacity;
+		}
+		keys = Arrays.copyOf(keys, newCapacity);
+		values = Arrays.copyOf(values, newCapacity);
+		if (keyHashes != null) {
+			keyHashes = Arrays.copyOf(keyHashes, newCapacity);
+		}
 	}
 
 	/**
@@ -259,27 +405,111 @@ public abstract class AbstractArrayBackedMap<K, V> implements Map<K, V> {
 	final void removeIndex(int index) {
 		int priorSize = size();
 		int newSize = priorSize - 1;
-		@SuppressWarnings("unchecked")
-		K[] newKeys = (K[]) new Object[newSize];
-		@SuppressWarnings("unchecked")
-		V[] newValues = (V[]) new Object[newSize];
-
-		System.arraycopy(keys, 0, newKeys, 0, index);
-		System.arraycopy(keys, index + 1, newKeys, index, newSize - index);
-		System.arraycopy(values, 0, newValues, 0, index);
-		System.arraycopy(values, index + 1, newValues, index, newSize - index);
+		if (amortizedGrowth) {
+			System.arraycopy(keys, index + 1, keys, index, newSize - index);
+			System.arraycopy(values, index + 1, values, index, newSize - index);
+			keys[newSize] = null;
+			values[newSize] = null;
+			if (keyHashes != null) {
+				System.arraycopy(keyHashes, index + 1, keyHashes, index, newSize - index);
+			}
+		} else {
+			@SuppressWarnings("unchecked")
+			K[] newKeys = (K[]) new Object[newSize];
+			@SuppressWarnings("unchecked")
+			V[] newValues = (V[]) new Object[newSize];
+
+			System.arraycopy(keys, 0, newKeys, 0, index);
+			System.arraycopy(keys, index + 1, newKeys, index, newSize - index);
+			System.arraycopy(values, 0, newValues, 0, index);
+			System.arraycopy(values, index + 1, newValues, index, newSize - index);
+
+			if (keyHashes != null) {
+				int[] newKeyHashes = new int[newSize];
+				System.arraycopy(keyHashes, 0, newKeyHashes, 0, index);
+				System.arraycopy(keyHashes, index + 1, newKeyHashes, index, newSize - index);
+				this.keyHashes = newKeyHashes;
+			}
+			this.keys = newKeys;
+			this.values = newValues;
+		}
 
 		++modCount;
-		this.keys = newKeys;
-		this.values = newValues;
+		this.size = newSize;
+		entryRemoved(index);
 	}
 
+	/**
+	 * Whether this map keeps the {@link #keyHashes} array for {@link #findKeyByHash(Object)}. Called from the
+	 * constructor, so must not depend on subclass state. {@code false} by default.
+	 * 
+	 * @return whether to cache the hash codes of the keys
+	 */
+	boolean cachesKeyHashes() {
+		return false;
+	}
+	/**
+	 * Finds a key by scanning, comparing cached hash codes before calling {@code equals}. Falls back to
+	 * {@link #findByScan(Object, Object[], int)} if this map does not cache hash codes.
+	 * 
+	 * @param key key for which to search
+	 * @return index of the key, or {@code -1} if it is not present
+	 */
+	final int findKeyByHash(Object key) {
+		int[] keyHashes = this.keyHashes;
+		if (keyHashes == null) {
+			return findByScan(key, keys, size);
+		}
+		if (key == null) {
+			return -1;
+		}
+		int hash = key.hashCode();
+		K[] keys = this.keys;
+		for (int i = 0; i < size; i++) {
+			if (keyHashes[i] == hash && keys[i].equals(key)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Called after a new entry has been inserted at the specified index, shifting any later entries up by one. Does
+	 * nothing by default; subclasses that keep auxiliary structures over the arrays update them here.
+	 * 
+	 * @param index index of the new entry
+	 */
+	void entryInserted(int index) {}
+	/**
+	 * Called after the entry at the specified index has been removed, shifting any later entries down by one. Does
+	 * nothing by default.
+	 * 
+	 * @param index former index of the removed entry
+	 */
+	void entryRemoved(int index) {}
+	/**
+	 * Called after all entries have been removed. Does nothing by default. This is also called from the constructor,
+	 * before any subclass constructor has run.
+	 */
+	void entriesCleared() {}
+
 	protected static final int findByScan(Object value, Object[] array) {
+		return findByScan(value, array, array.length);
+	}
+	/**
+	 * Finds the first of the leading cells of the array equal to the value.
+	 * 
+	 * @param value value for which to search
+	 * @param array array to search
+	 * @param length number of leading cells to search, all of which must be non-null
+	 * @return index of the value, or {@code -1} if it is not found
+	 */
+	protected static final int findByScan(Object value, Object[] array, int length) {
 		if (value == null) {
 			return -1;
 		}
 
-		for (int i = 0; i < array.length; i++) {
+		for (int i = 0; i < length; i++) {
 			if (array[i].equals(value)) {
 				return i;
 			}
@@ -312,16 +542,16 @@ public abstract class AbstractArrayBackedMap<K, V> implements Map<K, V> {
 
 		@Override
 		public Object[] toArray() {
-			return keys.clone();
+			return Arrays.copyOf(keys, size);
 		}
 
 		@Override
 		public <T> T[] toArray(T[] a) {
 			K[] keys = AbstractArrayBackedMap.this.keys;
 			int incomingLength = a.length;
-			int outgoingLength = keys.length;
+			int outgoingLength = size;
 			if (incomingLength >= outgoingLength) {
-				System.arraycopy(keys, 0, a, 0, keys.length);
+				System.arraycopy(keys, 0, a, 0, outgoingLength);
 				if (outgoingLength < incomingLength) {
 					a[outgoingLength] = null;
 				}
@@ -329,7 +559,7 @@ public abstract class AbstractArrayBackedMap<K, V> implements Map<K, V> {
 			}
 			@SuppressWarnings("unchecked")
 			// type token is <? extends T>, so this is a fair warning
-			T[] ret = (T[]) Arrays.copyOf(keys, keys.length, a.getClass());
+			T[] ret = (T[]) Arrays.copyOf(keys, outgoingLength, a.getClass());
 			return ret;
 		}
 	}
@@ -364,16 +594,16 @@ public abstract class AbstractArrayBackedMap<K, V> implements Map<K, V> {
 
 		@Override
 		public Object[] toArray() {
-			return values.clone();
+			return Arrays.copyOf(values, size);
 		}
 
 		@Override
 		public <T> T[] toArray(T[] a) {
 			V[] values = AbstractArrayBackedMap.this.values;
 			int incomingLength = a.length;
-			int outgoingLength = values.length;
+			int outgoingLength = size;
 			if (incomingLength >= outgoingLength) {
-				System.arraycopy(values, 0, a, 0, values.length);
+				System.arraycopy(values, 0, a, 0, outgoingLength);
 				if (outgoingLength < incomingLength) {
 					a[outgoingLength] = null;
 				}
@@ -381,7 +611,7 @@ public abstract class AbstractArrayBackedMap<K, V> implements Map<K, V> {
 			}
 			@SuppressWarnings("unchecked")
 			// we want this to blow up if the client passed in a dodgy T[]
-			T[] ret = (T[]) Arrays.copyOf(values, values.length, a.getClass());
+			T[] ret = (T[]) Arrays.copyOf(values, outgoingLength, a.getClass());
 			return ret;
 		}
 	}
@@ -1,6 +1,7 @@
 package joe.collect;
 
 import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
@@ -10,7 +11,16 @@ import java.util.Set;
 /**
  * Abstract implementation of a set backed by a pair of arrays, one for elements and one for values. Implementors need only
  * decide how to implement methods to pick an entry index or indicate where a new entry should be inserted. This set
- * implementation has an almost-minimal memory overhead of two array references and a modification counter.
+ * implementation has an almost-minimal memory overhead of an array reference, a size and a modification counter.
+ * <p>
+ * As with {@link AbstractArrayBackedMap}, the array is by default exactly as long as the set is large and is
+ * reallocated on every change, which is the smallest representation for a set that is built once and then only read.
+ * A set constructed with an initial capacity, or switched with {@link #setAmortizedGrowth(boolean)}, instead keeps
+ * spare capacity at the end of the array, doubling it when it fills and shifting elements within it on insertion and
+ * removal. {@link #trimToSize()} returns it to the minimal footprint.
+ * <p>
+ * Scanning implementations in this package also keep a parallel array of the elements' hash codes, and compare hash
+ * codes before calling {@code equals}.
  * 
  * @author Joe Kearney
  * @param <E> type of the elements stored in the set
@@ -19,16 +29,55 @@ public abstract class AbstractArrayBackedSet<E> extends AbstractSet<E> {
 	/*
 	 * INVARIANTS:
 	 * elements != null
+	 * 0 <= size <= elements.length, and size == elements.length unless amortizedGrowth
+	 * For each i >= size, elements[i] == null
+	 * hashes == null unless cachesHashes(), else hashes.length == elements.length
+	 * For each i < size, hashes[i] == elements[i].hashCode()
 	 */
 
+	/**
+	 * Smallest non-zero array length in amortized-growth mode.
+	 */
+	private static final int MIN_CAPACITY = 4;
+
 	E[] elements;
+	/**
+	 * Hash codes of the elements, parallel to the elements array, if {@link #cachesHashes()}; else {@code null}.
+	 */
+	int[] hashes;
+	/**
+	 * Number of elements, which are held at the start of the array.
+	 */
+	int size;
+	/**
+	 * Whether the array has spare capacity at the end, or is reallocated to fit exactly on every change.
+	 */
+	private boolean amortizedGrowth;
 
 	transient int modCount;
 
 	public AbstractArrayBackedSet() {
 		clear();
 	}
+	/**
+	 * Constructs an empty set in amortized-growth mode, with room for the specified number of elements before the
+	 * array needs to grow.
+	 * 
+	 * @param initialCapacity initial length of the array
+	 * @throws IllegalArgumentException if the initial capacity is negative
+	 */
+	@SuppressWarnings("unchecked")
+	// we're only going to put objects of the right type in it
+	public AbstractArrayBackedSet(int initialCapacity) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("Negative capacity: " + initialCapacity);
+		}
+		amortizedGrowth = true;
+		elements = (E[]) new Object[initialCapacity];
+		hashes = cachesHashes() ? new int[initialCapacity] : null;
+	}
 	public AbstractArrayBackedSet(Set<? extends E> set) {
+		clear();
 		addAll(set);
 	}
 
@@ -38,11 +87,46 @@ public abstract class AbstractArrayBackedSet<E> extends AbstractSet<E> {
 	}
 	@Override
 	public final int size() {
-		return elements.length;
+		return size;
 	}
 	@Override
 	public boolean isEmpty() {
-		return elements.length == 0;
+		return size == 0;
+	}
+
+	/**
+	 * Sets whether this set keeps spare capacity in its array, so that insertions and removals shift elements in place
+	 * and the array is reallocated only when it fills. Turning this off trims the array to fit exactly, after which
+	 * every change reallocates it.
+	 * 
+	 * @param amortizedGrowth whether to grow the array geometrically
+	 */
+	public final void setAmortizedGrowth(boolean amortizedGrowth) {
+		this.amortizedGrowth = amortizedGrowth;
+		if (!amortizedGrowth) {
+			trimToSize();
+		}
+	}
+	/**
+	 * Gets whether this set keeps spare capacity in its array.
+	 * 
+	 * @return whether the array grows geometrically
+	 * @see #setAmortizedGrowth(boolean)
+	 */
+	public final boolean isAmortizedGrowth() {
+		return amortizedGrowth;
+	}
+	/**
+	 * Shrinks the array to hold exactly the current elements. In amortized-growth mode the next insertion will grow it
+	 * again.
+	 */
+	public final void trimToSize() {
+		if (elements.length != size) {
+			elements = Arrays.copyOf(elements, size);
+			if (hashes != null) {
+				hashes = Arrays.copyOf(hashes, size);
+			}
+		}
 	}
 
 	@Override
@@ -84,9 +168,21 @@ public abstract class AbstractArrayBackedSet<E> extends AbstractSet<E> {
 	@SuppressWarnings("unchecked")
 	// we're only going to put objects of the right type in it
 	public final void clear() {
-		elements = (E[]) new Object[0];
+		if (amortizedGrowth) {
+			Arrays.fill(elements, 0, size, null);
+		} else {
+			elements = (E[]) new Object[0];
+			hashes = cachesHashes() ? new int[0] : null;
+		}
+		size = 0;
 	}
 
+	/**
+	 * Gets the array of elements. Only the first {@link #size()} cells hold elements; in amortized-growth mode the rest
+	 * are {@code null}.
+	 * 
+	 * @return the elements array
+	 */
 	protected final E[] getElementsArray() {
 		return elements;
 	}
@@ -127,18 +223,54 @@ public abstract class AbstractArrayBackedSet<E> extends AbstractSet<E> {
 
 		assert index >= 0 && index <= oldSize;
 
-		@SuppressWarnings("unchecked")
-		E[] newelements = (E[]) new Object[newSize];
+		if (amortizedGrowth) {
+			if (newSize > elements.length) {
+				grow(newSize);
+			}
+			System.arraycopy(elements, index, elements, index + 1, oldSize - index);
+			elements[index] = element;
+			if (hashes != null) {
+				System.arraycopy(hashes, index, hashes, index + 1, oldSize - index);
+				hashes[index] = element.hashCode();
+			}
+		} else {
+			@SuppressWarnings("unchecked")
+			E[] newelements = (E[]) new Object[newSize];
+
+			System.arraycopy(elements, 0, newelements, 0, index);
+			if (index < oldSize) { // else inserting at end
+				System.arraycopy(elements, index, newelements, index + 1, oldSize - index);
+			}
 
-		System.arraycopy(elements, 0, newelements, 0, index);
-		if (index < oldSize) { // else inserting at end
-			System.arraycopy(elements, index, newelements, index + 1, oldSize - index);
-		}
+			newelements[index] = element;
 
-		newelements[index] = element;
+			if (hashes != null) {
+				int[] newHashes = new int[newSize];
+				System.arraycopy(hashes, 0, newHashes, 0, index);
+				System.arraycopy(hashes, index, newHashes, index + 1, oldSize - index);
+				newHashes[index] = element.hashCode();
+				this.hashes = newHashes;
+			}
+			this.elements = newelements;
+		}
 
 		++modCount;
-		this.elements = newelements;
+		this.size = newSize;
+	}
+	/**
+	 * Doubles the length of the array, or more if necessary to hold the specified number of elements.
+	 * 
+	 * @param minCapacity number of elements the array must be able to hold
+	 */
+	private void grow(int minCapacity) {
+		int newCapacity = Math.max(MIN_CAPACITY, elements.length << 1);
+		if (newCapacity < minCapacity) { // including overflow
+			newCapacity = minCapacity;
+		}
+		elements = Arrays.copyOf(elements, newCapacity);
+		if (hashes != null) {
+			hashes = Arrays.copyOf(hashes, newCapacity);
+		}
 	}
 
 	/**
@@ -150,22 +282,83 @@ public abstract class AbstractArrayBackedSet<E> extends AbstractSet<E> {
 	final void removeIndex(int index) {
 		int priorSize = size();
 		int newSize = priorSize - 1;
-		@SuppressWarnings("unchecked")
-		E[] newElements = (E[]) new Object[newSize];
+		if (amortizedGrowth) {
+			System.arraycopy(elements, index + 1, elements, index, newSize - index);
+			elements[newSize] = null;
+			if (hashes != null) {
+				System.arraycopy(hashes, index + 1, hashes, index, newSize - index);
+			}
+		} else {
+			@SuppressWarnings("unchecked")
+			E[] newElements = (E[]) new Object[newSize];
+
+			System.arraycopy(elements, 0, newElements, 0, index);
+			System.arraycopy(elements, index + 1, newElements, index, newSize - index);
 
-		System.arraycopy(elements, 0, newElements, 0, index);
-		System.arraycopy(elements, index + 1, newElements, index, newSize - index);
+			if (hashes != null) {
+				int[] newHashes = new int[newSize];
+				System.arraycopy(hashes, 0, newHashes, 0, index);
+				System.arraycopy(hashes, index + 1, newHashes, index, newSize - index);
+				this.hashes = newHashes;
+			}
+			this.elements = newElements;
+		}
 
 		++modCount;
-		this.elements = newElements;
+		this.size = newSize;
+	}
+
+	/**
+	 * Whether this set keeps the {@link #hashes} array for {@link #findByHash(Object)}. Called from the constructor, so
+	 * must not depend on subclass state. {@code false} by default.
+	 * 
+	 * @return whether to cache the hash codes of the elements
+	 */
+	boolean cachesHashes() {
+		return false;
+	}
+	/**
+	 * Finds an element by scanning, comparing cached hash codes before calling {@code equals}. Falls back to
+	 * {@link #findByScan(Object, Object[], int)} if this set does not cache hash codes.
+	 * 
+	 * @param element element for which to search
+	 * @return index of the element, or {@code -1} if it is not present
+	 */
+	final int findByHash(Object element) {
+		int[] hashes = this.hashes;
+		if (hashes == null) {
+			return findByScan(element, elements, size);
+		}
+		if (element == null) {
+			return -1;
+		}
+		int hash = element.hashCode();
+		E[] elements = this.elements;
+		for (int i = 0; i < size; i++) {
+			if (hashes[i] == hash && elements[i].equals(element)) {
+				return i;
+			}
+		}
+		return -1;
 	}
 
 	protected static final int findByScan(Object value, Object[] array) {
+		return findByScan(value, array, array.length);
+	}
+	/**
+	 * Finds the first of the leading cells of the array equal to the value.
+	 * 
+	 * @param value value for which to search
+	 * @param array array to search
+	 * @param length number of leading cells to search, all of which must be non-null
+	 * @return index of the value, or {@code -1} if it is not found
+	 */
+	protected static final int findByScan(Object value, Object[] array, int length) {
 		if (value == null) {
 			return -1;
 		}
 
-		for (int i = 0; i < array.length; i++) {
+		for (int i = 0; i < length; i++) {
 			if (array[i].equals(value)) {
 				return i;
 			}
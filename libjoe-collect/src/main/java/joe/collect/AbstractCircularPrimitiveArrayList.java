@@ -0,0 +1,251 @@
+package joe.collect;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Shared structure for the primitive-array specialisations of {@link CircularArrayList}. Subclasses own the backing
+ * array, of some primitive component type, and implement the hot paths (add/poll at either end, indexed get and set)
+ * directly against it so that nothing is boxed. This class holds the {@code head} and {@code tail} pointers and
+ * implements the colder structural operations (growth, opening and closing gaps for indexed inserts and removes) in
+ * terms of {@link System#arraycopy}, which doesn't care about the component type.
+ * <p>
+ * The array layout is exactly that of {@link CircularArrayList}: the capacity is always a power of two, list index
+ * {@code i} lives at array index {@code (head + i) & mask}, and the array is never allowed to become full except
+ * transiently within an add method, where it is doubled immediately. Since a primitive array has no {@code null} to
+ * mark an empty slot, emptiness is always tested as {@code head == tail}.
+ *
+ * @author Joe Kearney
+ * @param <E> the boxed type of the elements, used by the {@link java.util.List} view
+ */
+abstract class AbstractCircularPrimitiveArrayList<E> extends AbstractList<E> implements RandomAccess {
+	/**
+	 * The index of the element at the head of the deque, or an arbitrary number equal to tail if the deque is empty.
+	 */
+	transient int head;
+	/**
+	 * The index at which the next element would be added to the tail of the deque.
+	 */
+	transient int tail;
+
+	AbstractCircularPrimitiveArrayList() {}
+
+	/**
+	 * Gets the backing array.
+	 *
+	 * @return the backing array
+	 */
+	abstract Object array();
+	/**
+	 * Gets the length of the backing array, which is always a power of two.
+	 *
+	 * @return capacity of the backing array
+	 */
+	abstract int capacity();
+	/**
+	 * Allocates, but does not install, a new backing array.
+	 *
+	 * @param capacity length of the new array, a power of two
+	 * @return the new array
+	 */
+	abstract Object newArray(int capacity);
+	/**
+	 * Installs a new backing array. The caller is responsible for updating {@code head} and {@code tail}.
+	 *
+	 * @param array the new array
+	 */
+	abstract void setArray(Object array);
+
+	@Override
+	public final int size() {
+		return (tail - head) & (capacity() - 1);
+	}
+	@Override
+	public final boolean isEmpty() {
+		return head == tail;
+	}
+	/**
+	 * Removes all of the elements from this deque. The backing array is retained.
+	 */
+	@Override
+	public final void clear() {
+		head = tail = 0;
+		modCount++;
+	}
+
+	/**
+	 * Double the capacity of this deque. Call only when full, i.e., when head and tail have wrapped around to become
+	 * equal.
+	 */
+	final void doubleCapacity() {
+		assert head == tail;
+		int n = capacity();
+		int newCapacity = n << 1;
+		if (newCapacity < 0)
+			throw new IllegalStateException("Sorry, deque too big");
+		Object a = newArray(newCapacity);
+		copyOut(array(), n - 1, head, a, 0, n);
+		setArray(a);
+		head = 0;
+		tail = n;
+	}
+
+	/**
+	 * Opens a gap of {@code gapLength} slots at the specified list index, moving whichever of the prefix or suffix is
+	 * shorter, or reallocating if the array is not big enough. The contents of the gap are unspecified.
+	 *
+	 * @param index list index at which to open the gap, in {@code [0, size()]}
+	 * @param gapLength number of slots to open
+	 * @return array index of the first slot of the gap
+	 */
+	final int openGap(int index, int gapLength) {
+		modCount++;
+		int size = size();
+		int capacity = capacity();
+		if (size + gapLength < capacity) {
+			int mask = capacity - 1;
+			if (index < size - index) {
+				moveLeft(array(), mask, head, gapLength, index);
+				head = (head - gapLength) & mask;
+			} else {
+				moveRight(array(), mask, (head + index) & mask, gapLength, size - index);
+				tail = (tail + gapLength) & mask;
+			}
+		} else {
+			int newSize = size + gapLength;
+			if (newSize < 0)
+				throw new IllegalStateException("Sorry, deque too big");
+			Object old = array();
+			int oldMask = capacity - 1;
+			Object a = newArray(CircularArrayList.capacityFor(newSize));
+			copyOut(old, oldMask, head, a, 0, index);
+			copyOut(old, oldMask, (head + index) & oldMask, a, index + gapLength, size - index);
+			setArray(a);
+			head = 0;
+			tail = newSize;
+		}
+		return (head + index) & (capacity() - 1);
+	}
+	/**
+	 * Closes the range of {@code length} elements starting at the specified list index, moving whichever of the prefix
+	 * or suffix is shorter.
+	 *
+	 * @param index list index of the first element to remove
+	 * @param length number of elements to remove
+	 */
+	final void closeGap(int index, int length) {
+		modCount++;
+		int mask = capacity() - 1;
+		int after = size() - index - length;
+		if (index < after) {
+			moveRight(array(), mask, head, length, index);
+			head = (head + length) & mask;
+		} else {
+			moveLeft(array(), mask, (head + index + length) & mask, length, after);
+			tail = (tail - length) & mask;
+		}
+	}
+
+	/**
+	 * Removes from this list all of the elements whose index is between {@code fromIndex}, inclusive, and
+	 * {@code toIndex}, exclusive, with at most two moves of the shorter remaining side.
+	 */
+	@Override
+	protected final void removeRange(int fromIndex, int toIndex) {
+		if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+			throw new IndexOutOfBoundsException("Invalid range: [" + fromIndex + ", " + toIndex + ")");
+		}
+		if (fromIndex < toIndex) {
+			closeGap(fromIndex, toIndex - fromIndex);
+		}
+	}
+
+	/**
+	 * Tests that the specified index is a valid list index, that is, between zero (inclusive) and {@link #size()}
+	 * (exclusive).
+	 *
+	 * @param index index to test
+	 * @throws IndexOutOfBoundsException if the index is invalid
+	 */
+	final void checkListRange(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("No such element index: " + index);
+		}
+	}
+	/**
+	 * Tests that the specified index is a valid list index for element insertion, that is, between zero (inclusive) and
+	 * {@link #size()} (inclusive).
+	 *
+	 * @param index index to test
+	 * @throws IndexOutOfBoundsException if the index is invalid
+	 */
+	final void checkInsertListRange(int index) {
+		if (index < 0 || index > size()) { // not >=
+			throw new IndexOutOfBoundsException("Invalid element index: " + index);
+		}
+	}
+
+	/**
+	 * Copies {@code length} elements out of a circular array, starting at array index {@code from}, into a flat
+	 * destination array. Takes at most two copies.
+	 *
+	 * @param src circular source array
+	 * @param mask mask for the length of the source array
+	 * @param from array index of the first element to copy
+	 * @param dest destination array
+	 * @param destPos index in the destination of the first element
+	 * @param length number of elements to copy
+	 */
+	static void copyOut(Object src, int mask, int from, Object dest, int destPos, int length) {
+		int firstPortion = Math.min(length, mask + 1 - from);
+		System.arraycopy(src, from, dest, destPos, firstPortion);
+		System.arraycopy(src, 0, dest, destPos + firstPortion, length - firstPortion);
+	}
+	/**
+	 * Moves the circular interval {@code [from, from+length)} towards the head by {@code distance}. The source and
+	 * destination may overlap, provided that {@code length + distance} does not exceed the capacity.
+	 *
+	 * @param array circular array
+	 * @param mask mask for the length of the array
+	 * @param from array index of the first element to move
+	 * @param distance distance to move elements
+	 * @param length number of elements to move
+	 */
+	static void moveLeft(Object array, int mask, int from, int distance, int length) {
+		int capacity = mask + 1;
+		int to = (from - distance) & mask;
+		while (length > 0) {
+			// longest run that wraps in neither source nor destination; copy front to back
+			int chunk = Math.min(length, Math.min(capacity - from, capacity - to));
+			System.arraycopy(array, from, array, to, chunk);
+			from = (from + chunk) & mask;
+			to = (to + chunk) & mask;
+			length -= chunk;
+		}
+	}
+	/**
+	 * Moves the circular interval {@code [from, from+length)} towards the tail by {@code distance}. The source and
+	 * destination may overlap, provided that {@code length + distance} does not exceed the capacity.
+	 *
+	 * @param array circular array
+	 * @param mask mask for the length of the array
+	 * @param from array index of the first element to move
+	 * @param distance distance to move elements
+	 * @param length number of elements to move
+	 */
+	static void moveRight(Object array, int mask, int from, int distance, int length) {
+		int capacity = mask + 1;
+		int srcEnd = (from + length) & mask;
+		int destEnd = (srcEnd + distance) & mask;
+		while (length > 0) {
+			// longest run that wraps in neither source nor destination; copy back to front
+			int srcRun = srcEnd == 0 ? capacity : srcEnd;
+			int destRun = destEnd == 0 ? capacity : destEnd;
+			int chunk = Math.min(length, Math.min(srcRun, destRun));
+			srcEnd = (srcEnd - chunk) & mask;
+			destEnd = (destEnd - chunk) & mask;
+			System.arraycopy(array, srcEnd, array, destEnd, chunk);
+			length -= chunk;
+		}
+	}
+}
@@ -0,0 +1,304 @@
+package joe.collect;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Shared structure for the sorted array maps with primitive keys, {@link IntSortedArrayMap} and
+ * {@link LongSortedArrayMap}. Subclasses own the sorted array of keys, of some primitive component type, and implement
+ * the searches directly against it so that nothing is boxed. This class holds the parallel array of values, the size
+ * and the modification counter, and implements the structural operations (growth, and shifting entries up or down on
+ * insertion and removal) in terms of {@link System#arraycopy}, which doesn't care about the component type.
+ * <p>
+ * As in the amortized-growth mode of {@link AbstractArrayBackedMap}, the arrays have spare capacity at the end, are
+ * doubled when they fill, and can be trimmed with {@link #trimToSize()}. Adding keys in ascending order therefore
+ * costs a binary search and no shifting per entry.
+ * <p>
+ * The {@link java.util.Map Map} methods taking boxed keys are implemented in terms of the primitive ones and box or
+ * unbox at the boundary. Null values are prohibited.
+ *
+ * @author Joe Kearney
+ * @param <K> the boxed type of the keys, used by the {@link java.util.Map} view
+ * @param <V> type of the values stored in the map
+ */
+abstract class AbstractPrimitiveSortedArrayMap<K, V> extends AbstractMap<K, V> {
+	/*
+	 * INVARIANTS:
+	 * keyArray().length == values.length
+	 * The first size keys are strictly ascending, and keys[i] is associated with values[i]
+	 * For each i >= size, values[i] == null
+	 */
+
+	/**
+	 * Smallest non-zero array length.
+	 */
+	private static final int MIN_CAPACITY = 4;
+
+	V[] values;
+	/**
+	 * Number of mappings, which are held at the start of the arrays.
+	 */
+	int size;
+
+	transient int modCount;
+
+	@SuppressWarnings("unchecked")
+	// we're only going to put objects of the right type in it
+	AbstractPrimitiveSortedArrayMap(int initialCapacity) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("Negative capacity: " + initialCapacity);
+		}
+		values = (V[]) new Object[initialCapacity];
+	}
+
+	/**
+	 * Gets the array of keys.
+	 *
+	 * @return the keys array
+	 */
+	abstract Object keyArray();
+	/**
+	 * Allocates, but does not install, a new array of keys.
+	 *
+	 * @param capacity length of the new array
+	 * @return the new array
+	 */
+	abstract Object newKeyArray(int capacity);
+	/**
+	 * Installs a new array of keys.
+	 *
+	 * @param keys the new array
+	 */
+	abstract void setKeyArray(Object keys);
+	/**
+	 * Gets the index of the specified boxed key, or a negative value if it is absent or of the wrong type.
+	 *
+	 * @param key key for which to search
+	 * @return index of the key, or a negative value if it is not present in the map
+	 */
+	abstract int getIndexByBoxedKey(Object key);
+	/**
+	 * Gets the key at the specified index, boxed.
+	 *
+	 * @param index index of the key
+	 * @return the boxed key
+	 */
+	abstract K boxedKeyAt(int index);
+
+	@Override
+	public final int size() {
+		return size;
+	}
+	@Override
+	public final boolean isEmpty() {
+		return size == 0;
+	}
+	@Override
+	public final V get(Object key) {
+		int index = getIndexByBoxedKey(key);
+		return index < 0 ? null : values[index];
+	}
+	@Override
+	public final boolean containsKey(Object key) {
+		return getIndexByBoxedKey(key) >= 0;
+	}
+	@Override
+	public final boolean containsValue(Object value) {
+		return AbstractArrayBackedMap.findByScan(value, values, size) >= 0;
+	}
+	@Override
+	public final V remove(Object key) {
+		int index = getIndexByBoxedKey(key);
+		return index < 0 ? null : removeIndex(index);
+	}
+	/**
+	 * Removes all of the mappings from this map. The arrays are retained.
+	 */
+	@Override
+	public final void clear() {
+		Arrays.fill(values, 0, size, null);
+		size = 0;
+		++modCount;
+	}
+
+	/**
+	 * Gets the value at the specified index, in ascending order of the keys. Together with the primitive
+	 * {@code keyAt} method of the subclass, this iterates over the map without boxing.
+	 *
+	 * @param index index of the value, in {@code [0, size())}
+	 * @return the value
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 */
+	public final V valueAt(int index) {
+		checkIndex(index);
+		return values[index];
+	}
+	/**
+	 * Shrinks the arrays to hold exactly the current entries. The next insertion will grow them again.
+	 */
+	public final void trimToSize() {
+		if (values.length != size) {
+			setKeyArray(copyKeys(size));
+			values = Arrays.copyOf(values, size);
+		}
+	}
+
+	/**
+	 * Replaces the value at the specified index.
+	 *
+	 * @param index index of the entry
+	 * @param value the new value
+	 * @return the old value
+	 */
+	final V setValueAt(int index, V value) {
+		V oldValue = values[index];
+		values[index] = value;
+		return oldValue;
+	}
+	/**
+	 * Makes room for a new entry at the specified index, growing the arrays if they are full, and sets its value. The
+	 * caller must set the key.
+	 *
+	 * @param index index of the new entry, in {@code [0, size()]}
+	 * @param value value of the new entry
+	 */
+	final void openSlot(int index, V value) {
+		int oldSize = size;
+		assert index >= 0 && index <= oldSize;
+		if (oldSize == values.length) {
+			grow(oldSize + 1);
+		}
+		Object keys = keyArray();
+		System.arraycopy(keys, index, keys, index + 1, oldSize - index);
+		System.arraycopy(values, index, values, index + 1, oldSize - index);
+		values[index] = value;
+		++modCount;
+		size = oldSize + 1;
+	}
+	/**
+	 * Removes the key and value at the specified index, with no range check.
+	 *
+	 * @param index index at which to remove the mapping
+	 * @return the removed value
+	 */
+	final V removeIndex(int index) {
+		V oldValue = values[index];
+		int newSize = size - 1;
+		Object keys = keyArray();
+		System.arraycopy(keys, index + 1, keys, index, newSize - index);
+		System.arraycopy(values, index + 1, values, index, newSize - index);
+		values[newSize] = null;
+		++modCount;
+		size = newSize;
+		return oldValue;
+	}
+	/**
+	 * Doubles the length of the arrays, or more if necessary to hold the specified number of entries.
+	 *
+	 * @param minCapacity number of entries the arrays must be able to hold
+	 */
+	private void grow(int minCapacity) {
+		int newCapacity = Math.max(MIN_CAPACITY, values.length << 1);
+		if (newCapacity < minCapacity) { // including overflow
+			newCapacity = minCapacity;
+		}
+		setKeyArray(copyKeys(newCapacity));
+		values = Arrays.copyOf(values, newCapacity);
+	}
+	private Object copyKeys(int newCapacity) {
+		Object newKeys = newKeyArray(newCapacity);
+		System.arraycopy(keyArray(), 0, newKeys, 0, size);
+		return newKeys;
+	}
+	final void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("No such entry index: " + index);
+		}
+	}
+	static void checkNotNull(Object value) {
+		if (value == null) {
+			throw new NullPointerException("null value not permitted");
+		}
+	}
+
+	@Override
+	public final Set<Entry<K, V>> entrySet() {
+		return new AbstractSet<Entry<K, V>>() {
+			@Override
+			public Iterator<Entry<K, V>> iterator() {
+				return new EntryIterator();
+			}
+			@Override
+			public int size() {
+				return size;
+			}
+			@Override
+			public boolean contains(Object o) {
+				if (o instanceof Entry) {
+					Entry<?, ?> entry = (Entry<?, ?>) o;
+					V value = get(entry.getKey());
+					return value != null && value.equals(entry.getValue());
+				}
+				return false;
+			}
+			@Override
+			public boolean remove(Object o) {
+				if (contains(o)) {
+					AbstractPrimitiveSortedArrayMap.this.remove(((Entry<?, ?>) o).getKey());
+					return true;
+				}
+				return false;
+			}
+			@Override
+			public void clear() {
+				AbstractPrimitiveSortedArrayMap.this.clear();
+			}
+		};
+	}
+
+	private final class EntryIterator implements Iterator<Entry<K, V>> {
+		private int expectedModCount = modCount;
+		private int next = 0;
+		/** index of the entry last returned, or {@code -1} if none or removed */
+		private int lastReturned = -1;
+
+		EntryIterator() {}
+
+		@Override
+		public boolean hasNext() {
+			return next < size;
+		}
+		@Override
+		public Entry<K, V> next() {
+			checkForComodification();
+			if (next >= size) {
+				throw new NoSuchElementException();
+			}
+			lastReturned = next++;
+			return new SimpleImmutableEntry<K, V>(boxedKeyAt(lastReturned), values[lastReturned]);
+		}
+		@Override
+		public void remove() {
+			if (lastReturned < 0) {
+				throw new IllegalStateException("next() has not been called "
+						+ "or the current element has already been removed.");
+			}
+			checkForComodification();
+			removeIndex(lastReturned);
+			next = lastReturned;
+			lastReturned = -1;
+			expectedModCount = modCount;
+		}
+		private void checkForComodification() {
+			if (expectedModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package joe.collect;
+
+/**
+ * Insertion-ordered implementation of {@link AbstractArrayBackedMap} that looks keys up by scanning while it is small,
+ * like {@link ArrayBackedMap}, and through a hash index once it grows past a threshold. The index is an open-addressed
+ * {@code int[]} table with linear probing, each cell holding one more than the array index of a key, or zero if empty;
+ * it is never more than half full. It indexes the existing keys array rather than copying the keys, so the order of
+ * the entries and the array-backed views are exactly as for {@link ArrayBackedMap}. Both the scan and the index use
+ * the keys' cached hash codes, so neither calls {@code hashCode} on a stored key, and {@code equals} is called only on
+ * a hash match.
+ * <p>
+ * The index is built lazily, by the first lookup after the map reaches the threshold, and is kept up to date by
+ * insertions after that. It is discarded when the map shrinks below the threshold. Removing an entry shifts every
+ * later entry down the arrays, so it costs time linear in the size of the map whether or not the index exists. Lookups
+ * by value, such as {@link #containsValue}, always scan.
+ * 
+ * @author Joe Kearney
+ * @param <K> type of the keys stored in the map
+ * @param <V> type of the values stored in the map
+ */
+public final class AdaptiveArrayBackedMap<K, V> extends AbstractArrayBackedMap<K, V> {
+	/**
+	 * Default size at which a map switches from scanning to hashing.
+	 */
+	public static final int DEFAULT_THRESHOLD = 16;
+
+	/**
+	 * Size at and above which lookups use the index.
+	 */
+	private final int threshold;
+	/**
+	 * Open-addressed table of array index plus one, of power-of-two length at least twice the size; or {@code null}
+	 * if not built.
+	 */
+	private int[] index;
+
+	/**
+	 * Constructs an empty map that switches to hashing at {@link #DEFAULT_THRESHOLD} entries.
+	 */
+	public AdaptiveArrayBackedMap() {
+		this(DEFAULT_THRESHOLD);
+	}
+	/**
+	 * Constructs an empty map that switches to hashing at the specified number of entries.
+	 * 
+	 * @param threshold size at and above which keys are looked up by hash
+	 * @throws IllegalArgumentException if the threshold is not positive
+	 */
+	public AdaptiveArrayBackedMap(int threshold) {
+		if (threshold <= 0) {
+			throw new IllegalArgumentException("Threshold must be positive: " + threshold);
+		}
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Gets the size at and above which keys are looked up by hash.
+	 * 
+	 * @return the threshold
+	 */
+	public int getThreshold() {
+		return threshold;
+	}
+
+	@Override
+	protected int getIndexByKey(Object key) {
+		int size = size();
+		if (size < threshold) {
+			return findKeyByHash(key);
+		}
+		if (key == null) {
+			return -1;
+		}
+		int[] index = this.index;
+		if (index == null) {
+			index = buildIndex();
+		}
+		K[] keys = getKeysArray();
+		int[] keyHashes = this.keyHashes;
+		int hash = key.hashCode();
+		int mask = index.length - 1;
+		for (int slot = spread(hash) & mask;; slot = slot + 1 & mask) {
+			int p = index[slot] - 1;
+			if (p < 0) {
+				return -1;
+			}
+			if (keyHashes[p] == hash && keys[p].equals(key)) {
+				return p;
+			}
+		}
+	}
+	@Override
+	protected int getIndexByValue(Object value) {
+		return findByScan(value, getValuesArray(), size());
+	}
+	@Override
+	protected int getIndexForNewEntry(K key, V value) {
+		return size();
+	}
+	@Override
+	boolean cachesKeyHashes() {
+		return true;
+	}
+
+	@Override
+	void entryInserted(int position) {
+		int[] index = this.index;
+		if (index == null) {
+			return;
+		}
+		assert position == size() - 1 : "entries are only appended";
+		if (size() << 1 > index.length) {
+			buildIndex();
+		} else {
+			insert(index, keyHashes, position);
+		}
+	}
+	@Override
+	void entryRemoved(int position) {
+		int[] index = this.index;
+		if (index == null) {
+			return;
+		}
+		if (size() < threshold) {
+			this.index = null;
+			return;
+		}
+		/*
+		 * The arrays have already closed up, so first renumber the later entries, finding the removed one on the way,
+		 * and then delete it by moving back any entry that probed past it.
+		 */
+		int removedSlot = -1;
+		for (int slot = 0; slot < index.length; slot++) {
+			int p = index[slot] - 1;
+			if (p > position) {
+				index[slot] = p;
+			} else if (p == position) {
+				removedSlot = slot;
+			}
+		}
+		assert removedSlot >= 0;
+		deleteSlot(index, keyHashes, removedSlot);
+	}
+	@Override
+	void entriesCleared() {
+		index = null;
+	}
+
+	/**
+	 * Builds the index from scratch, sized for the current entries, and installs it.
+	 * 
+	 * @return the new index
+	 */
+	private int[] buildIndex() {
+		int size = size();
+		int length = Integer.highestOneBit(Math.max(size, 2) - 1) << 2; // power of two >= 2 * size
+		int[] newIndex = new int[length];
+		for (int p = 0; p < size; p++) {
+			insert(newIndex, keyHashes, p);
+		}
+		index = newIndex;
+		return newIndex;
+	}
+	/**
+	 * Adds the entry at the specified position to the index, which must have a free cell.
+	 */
+	private static void insert(int[] index, int[] keyHashes, int position) {
+		int mask = index.length - 1;
+		int slot = spread(keyHashes[position]) & mask;
+		while (index[slot] != 0) {
+			slot = slot + 1 & mask;
+		}
+		index[slot] = position + 1;
+	}
+	/**
+	 * Empties a cell of the index, moving back into it any later cell in the same run whose home cell is not between
+	 * the two, so that every remaining key can still be reached by probing from its home cell.
+	 */
+	private static void deleteSlot(int[] index, int[] keyHashes, int slot) {
+		int mask = index.length - 1;
+		int hole = slot;
+		for (int next = hole + 1 & mask; index[next] != 0; next = next + 1 & mask) {
+			int home = spread(keyHashes[index[next] - 1]) & mask;
+			// move next into the hole unless its home lies cyclically in (hole, next]
+			if ((next - home & mask) >= (next - hole & mask)) {
+				index[hole] = index[next];
+				hole = next;
+			}
+		}
+		index[hole] = 0;
+	}
+	/**
+	 * Spreads the higher bits of the hash code into the lower bits used to pick a cell.
+	 */
+	private static int spread(int h) {
+		return h ^ h >>> 16;
+	}
+}
@@ -2,24 +2,40 @@ package joe.collect;
 
 /**
  * Simple insertion-ordered implementation of {@link AbstractArrayBackedMap}. All lookups are done by scanning through
- * the keys array, with the performance characteristics you'd expect. Consider using {@link SortedArrayBackedMap} if
- * the type of the keys has an ordering.
+ * the keys array, with the performance characteristics you'd expect, though a key lookup compares cached hash codes
+ * before calling {@code equals}. Consider using {@link SortedArrayBackedMap} if the type of the keys has an ordering,
+ * or {@link AdaptiveArrayBackedMap} if the map may grow large.
  * 
  * @author Joe Kearney
  * @param <K> type of the keys stored in the map
  * @param <V> type of the values stored in the map
  */
 public final class ArrayBackedMap<K, V> extends AbstractArrayBackedMap<K, V> {
+	public ArrayBackedMap() {}
+	/**
+	 * Constructs an empty map in amortized-growth mode with the specified initial capacity.
+	 * 
+	 * @param initialCapacity initial length of the arrays
+	 * @see AbstractArrayBackedMap#setAmortizedGrowth(boolean)
+	 */
+	public ArrayBackedMap(int initialCapacity) {
+		super(initialCapacity);
+	}
+
 	@Override
 	protected int getIndexByKey(Object key) {
-		return findByScan(key, getKeysArray());
+		return findKeyByHash(key);
 	}
 	@Override
 	protected int getIndexByValue(Object value) {
-		return findByScan(value, getValuesArray());
+		return findByScan(value, getValuesArray(), size());
 	}
 	@Override
 	protected int getIndexForNewEntry(K key, V value) {
 		return size();
 	}
+	@Override
+	boolean cachesKeyHashes() {
+		return true;
+	}
 }
@@ -1,12 +1,27 @@
 package joe.collect;
 
 public final class ArrayBackedSet<E> extends AbstractArrayBackedSet<E> {
+	public ArrayBackedSet() {}
+	/**
+	 * Constructs an empty set in amortized-growth mode with the specified initial capacity.
+	 * 
+	 * @param initialCapacity initial length of the array
+	 * @see AbstractArrayBackedSet#setAmortizedGrowth(boolean)
+	 */
+	public ArrayBackedSet(int initialCapacity) {
+		super(initialCapacity);
+	}
+
 	@Override
 	protected int getIndex(Object element) {
-		return findByScan(element, getElementsArray());
+		return findByHash(element);
 	}
 	@Override
 	protected int getIndexForNewEntry(Object element) {
 		return size();
 	}
+	@Override
+	boolean cachesHashes() {
+		return true;
+	}
 }
@@ -0,0 +1,628 @@
+package joe.collect;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Segmented implementation of the {@link Deque} and {@link java.util.List List} interfaces, a sibling of
+ * {@link CircularArrayList} for very large deques. Elements are stored in fixed-size blocks, each a power of two long,
+ * referenced from a small circular index of blocks. Growing the deque at either end allocates at most one new block,
+ * so there is never a full copy of the elements and never a moment when two full-size arrays are live at once. The
+ * index itself doubles when it fills, but it holds one reference per block and so is tiny by comparison.
+ * <p>
+ * Indexed access remains constant time: list index {@code i} lives in block {@code (headOffset + i) >>> blockShift}
+ * (counting from the first block) at offset {@code (headOffset + i) & blockMask}. Since that arithmetic is unsigned,
+ * a chunked deque can hold up to {@link Integer#MAX_VALUE} elements, beyond the {@code 2^30} limit of a single
+ * power-of-two array.
+ * <p>
+ * Blocks emptied by removals at either end are released, keeping at most one spare for reuse so that a deque whose
+ * size hovers across a block boundary doesn't repeatedly allocate.
+ * <p>
+ * Indexed inserts and removes move whichever side of the list is shorter, one element at a time, so run in linear
+ * time. Null elements are prohibited. This class is not thread-safe. Its iterators are those of {@link AbstractList},
+ * and are fail-fast.
+ *
+ * @author Joe Kearney
+ * @param <E> the type of elements held in this collection
+ * @see CircularArrayList
+ */
+public class ChunkedCircularArrayList<E> extends AbstractList<E> implements Deque<E>, RandomAccess, Serializable {
+	/**
+	 * The default number of elements in each block.
+	 */
+	static final int DEFAULT_BLOCK_SIZE = 1 << 12;
+	/**
+	 * The length of a newly created block index. Must be a power of two.
+	 */
+	private static final int MIN_INDEX_LENGTH = 4;
+
+	/**
+	 * log2 of the number of elements in each block.
+	 */
+	private final int blockShift;
+	/**
+	 * Mask for the offset of an element within its block, one less than the block size.
+	 */
+	private final int blockMask;
+
+	/**
+	 * The circular index of blocks. Its length is always a power of two. Blocks in use are contiguous (mod
+	 * circularity) starting at {@link #firstBlock}, and all other entries are {@code null}, except that an empty deque
+	 * may keep its one block at {@code firstBlock}. Cells of a block not holding deque elements are always
+	 * {@code null}.
+	 */
+	transient E[][] blocks;
+	/**
+	 * The index into {@link #blocks} of the block holding the first element.
+	 */
+	transient int firstBlock;
+	/**
+	 * The offset within the first block of the first element.
+	 */
+	transient int headOffset;
+	/**
+	 * The number of elements in the deque.
+	 */
+	transient int size;
+	/**
+	 * An empty block released by a removal, kept for reuse by the next growth, or {@code null}.
+	 */
+	private transient E[] spareBlock;
+
+	/**
+	 * Constructs an empty deque with the default block size of {@value #DEFAULT_BLOCK_SIZE} elements.
+	 */
+	public ChunkedCircularArrayList() {
+		this(DEFAULT_BLOCK_SIZE);
+	}
+	/**
+	 * Constructs an empty deque whose blocks hold the specified number of elements, rounded up to a power of two.
+	 *
+	 * @param blockSize lower bound on the number of elements in each block
+	 * @throws IllegalArgumentException if {@code blockSize} is not positive or is greater than {@code 2^30}
+	 */
+	public ChunkedCircularArrayList(int blockSize) {
+		if (blockSize < 1 || blockSize > 1 << 30) {
+			throw new IllegalArgumentException("Block size must be in [1, 2^30]: " + blockSize);
+		}
+		blockShift = 32 - Integer.numberOfLeadingZeros(blockSize - 1);
+		blockMask = (1 << blockShift) - 1;
+		allocateIndex();
+	}
+	/**
+	 * Constructs a deque with the default block size containing the elements of the specified collection, in the order
+	 * they are returned by the collection's iterator.
+	 *
+	 * @param c the collection whose elements are to be placed into the deque
+	 * @throws NullPointerException if the specified collection is or contains null
+	 */
+	public ChunkedCircularArrayList(Collection<? extends E> c) {
+		this();
+		addAll(c);
+	}
+
+	/**
+	 * Gets the number of elements in each block.
+	 *
+	 * @return the block size, a power of two
+	 */
+	public int getBlockSize() {
+		return blockMask + 1;
+	}
+
+	// ****** Block allocation utilities ******
+
+	/**
+	 * Installs a new, empty block index.
+	 */
+	@SuppressWarnings("unchecked")
+	// cast of Object[][] to E[][] is safe as we only ever put Es in it
+	private void allocateIndex() {
+		blocks = (E[][]) new Object[MIN_INDEX_LENGTH][];
+		firstBlock = headOffset = size = 0;
+	}
+	/**
+	 * Gets an empty block, reusing the spare if there is one.
+	 *
+	 * @return an empty block
+	 */
+	@SuppressWarnings("unchecked")
+	// cast of Object[] to E[] is safe as we only ever put Es in it
+	private E[] newBlock() {
+		E[] block = spareBlock;
+		if (block == null) {
+			return (E[]) new Object[blockMask + 1];
+		}
+		spareBlock = null;
+		return block;
+	}
+	/**
+	 * Removes an empty block from the index, keeping it as the spare.
+	 *
+	 * @param index index into {@link #blocks} of the block to release
+	 */
+	private void releaseBlock(int index) {
+		spareBlock = blocks[index];
+		blocks[index] = null;
+	}
+	/**
+	 * Double the length of the block index. Call only when every entry is in use. Only the block references are copied.
+	 */
+	@SuppressWarnings("unchecked")
+	// cast of Object[][] to E[][] is safe as we only ever put Es in it
+	private void doubleIndex() {
+		int n = blocks.length;
+		int p = firstBlock;
+		int r = n - p; // number of blocks to the right of p
+		E[][] a = (E[][]) new Object[n << 1][];
+		System.arraycopy(blocks, p, a, 0, r);
+		System.arraycopy(blocks, 0, a, r, p);
+		blocks = a;
+		firstBlock = 0;
+	}
+	/**
+	 * Gets the number of blocks holding elements.
+	 *
+	 * @return number of blocks in use, zero if the deque is empty
+	 */
+	private int usedBlocks() {
+		// headOffset + size may overflow int; the shift treats it as unsigned
+		return size == 0 ? 0 : ((headOffset + size - 1) >>> blockShift) + 1;
+	}
+	/**
+	 * Makes sure that an empty deque has a block at {@link #firstBlock}, and positions the head within it.
+	 *
+	 * @param offset offset in the block of the next element to be added
+	 */
+	private void prepareEmpty(int offset) {
+		assert size == 0;
+		if (blocks[firstBlock] == null) {
+			blocks[firstBlock] = newBlock();
+		}
+		headOffset = offset;
+	}
+	/**
+	 * Gets the block holding the element at the specified list index. The element is at offset
+	 * {@code (headOffset + index) & blockMask} in that block.
+	 *
+	 * @param index list index, not range-checked
+	 * @return block containing that index
+	 */
+	private E[] blockFor(int index) {
+		return blocks[(firstBlock + ((headOffset + index) >>> blockShift)) & (blocks.length - 1)];
+	}
+	/**
+	 * Checks that there is room for another element.
+	 *
+	 * @throws IllegalStateException if the deque already holds {@link Integer#MAX_VALUE} elements
+	 */
+	private void checkRoomForInsert() {
+		if (size == Integer.MAX_VALUE) {
+			throw new IllegalStateException("Sorry, deque too big");
+		}
+	}
+	/**
+	 * Tests that the specified object is non-null.
+	 *
+	 * @param element object to check
+	 * @throws NullPointerException if the parameter is {@code null}
+	 */
+	private static void checkNotNull(Object element) {
+		if (element == null) {
+			throw new NullPointerException("Null elements not supported");
+		}
+	}
+	/**
+	 * Tests that the specified index is a valid list index, that is, between zero (inclusive) and {@link #size()}
+	 * (exclusive).
+	 *
+	 * @param index index to test
+	 * @throws IndexOutOfBoundsException if the index is invalid
+	 */
+	private void checkListRange(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("No such element index: " + index);
+		}
+	}
+
+	// *** Deque methods ***
+
+	@Override
+	public void addFirst(E e) {
+		checkNotNull(e);
+		checkRoomForInsert();
+		if (size == 0) {
+			prepareEmpty(blockMask);
+		} else if (headOffset == 0) {
+			if (usedBlocks() == blocks.length) {
+				doubleIndex();
+			}
+			firstBlock = (firstBlock - 1) & (blocks.length - 1);
+			blocks[firstBlock] = newBlock();
+			headOffset = blockMask;
+		} else {
+			headOffset--;
+		}
+		blocks[firstBlock][headOffset] = e;
+		size++;
+		modCount++;
+	}
+	@Override
+	public void addLast(E e) {
+		checkNotNull(e);
+		checkRoomForInsert();
+		if (size == 0) {
+			prepareEmpty(0);
+		}
+		int p = headOffset + size;
+		int n = p >>> blockShift; // block number counting from the first
+		if (n == blocks.length) {
+			doubleIndex();
+		}
+		int index = (firstBlock + n) & (blocks.length - 1);
+		E[] block = blocks[index];
+		if (block == null) {
+			block = blocks[index] = newBlock();
+		}
+		block[p & blockMask] = e;
+		size++;
+		modCount++;
+	}
+	@Override
+	public boolean offerFirst(E e) {
+		addFirst(e);
+		return true;
+	}
+	@Override
+	public boolean offerLast(E e) {
+		addLast(e);
+		return true;
+	}
+	@Override
+	public E removeFirst() {
+		E x = pollFirst();
+		if (x == null)
+			throw new NoSuchElementException();
+		return x;
+	}
+	@Override
+	public E removeLast() {
+		E x = pollLast();
+		if (x == null)
+			throw new NoSuchElementException();
+		return x;
+	}
+	@Override
+	public E pollFirst() {
+		if (size == 0) {
+			return null;
+		}
+		E[] block = blocks[firstBlock];
+		E result = block[headOffset];
+		block[headOffset] = null;
+		size--;
+		modCount++;
+		if (++headOffset > blockMask) { // off the end of the first block
+			headOffset = 0;
+			if (size > 0) {
+				releaseBlock(firstBlock);
+				firstBlock = (firstBlock + 1) & (blocks.length - 1);
+			}
+		}
+		return result;
+	}
+	@Override
+	public E pollLast() {
+		if (size == 0) {
+			return null;
+		}
+		int p = headOffset + size - 1;
+		int index = (firstBlock + (p >>> blockShift)) & (blocks.length - 1);
+		int offset = p & blockMask;
+		E[] block = blocks[index];
+		E result = block[offset];
+		block[offset] = null;
+		size--;
+		modCount++;
+		if (offset == 0 && size > 0) { // the last block is now empty, and isn't the first
+			releaseBlock(index);
+		}
+		return result;
+	}
+	@Override
+	public E getFirst() {
+		E x = peekFirst();
+		if (x == null)
+			throw new NoSuchElementException();
+		return x;
+	}
+	@Override
+	public E getLast() {
+		E x = peekLast();
+		if (x == null)
+			throw new NoSuchElementException();
+		return x;
+	}
+	@Override
+	public E peekFirst() {
+		return size == 0 ? null : blocks[firstBlock][headOffset];
+	}
+	@Override
+	public E peekLast() {
+		return size == 0 ? null : blockFor(size - 1)[(headOffset + size - 1) & blockMask];
+	}
+	@Override
+	public boolean removeFirstOccurrence(Object o) {
+		int i = indexOf(o);
+		if (i < 0) {
+			return false;
+		}
+		remove(i);
+		return true;
+	}
+	@Override
+	public boolean removeLastOccurrence(Object o) {
+		int i = lastIndexOf(o);
+		if (i < 0) {
+			return false;
+		}
+		remove(i);
+		return true;
+	}
+
+	// *** Queue and Stack methods ***
+
+	@Override
+	public boolean add(E e) {
+		addLast(e);
+		return true;
+	}
+	@Override
+	public boolean offer(E e) {
+		return offerLast(e);
+	}
+	@Override
+	public E remove() {
+		return removeFirst();
+	}
+	@Override
+	public E poll() {
+		return pollFirst();
+	}
+	@Override
+	public E element() {
+		return getFirst();
+	}
+	@Override
+	public E peek() {
+		return peekFirst();
+	}
+	@Override
+	public void push(E e) {
+		addFirst(e);
+	}
+	@Override
+	public E pop() {
+		return removeFirst();
+	}
+
+	// *** List methods ***
+
+	@Override
+	public E get(int index) {
+		checkListRange(index);
+		return blockFor(index)[(headOffset + index) & blockMask];
+	}
+	@Override
+	public E set(int index, E element) {
+		checkNotNull(element);
+		checkListRange(index);
+		E[] block = blockFor(index);
+		int offset = (headOffset + index) & blockMask;
+		E old = block[offset];
+		block[offset] = element;
+		return old;
+	}
+	/**
+	 * Copies the element at one list index to another, with no checks.
+	 *
+	 * @param from list index of the element to copy
+	 * @param to list index to overwrite
+	 */
+	private void copyElement(int from, int to) {
+		blockFor(to)[(headOffset + to) & blockMask] = blockFor(from)[(headOffset + from) & blockMask];
+	}
+	@Override
+	public void add(int index, E element) {
+		if (index < 0 || index > size) { // not >=
+			throw new IndexOutOfBoundsException("Invalid element index: " + index);
+		}
+		if (index < size >>> 1) {
+			// open a slot at the front, then move the prefix down into it
+			addFirst(element);
+			for (int i = 0; i < index; i++) {
+				copyElement(i + 1, i);
+			}
+		} else {
+			// open a slot at the back, then move the suffix up into it
+			addLast(element);
+			for (int i = size - 1; i > index; i--) {
+				copyElement(i - 1, i);
+			}
+		}
+		blockFor(index)[(headOffset + index) & blockMask] = element;
+	}
+	@Override
+	public E remove(int index) {
+		checkListRange(index);
+		E old = get(index);
+		if (index < size >>> 1) {
+			for (int i = index; i > 0; i--) {
+				copyElement(i - 1, i);
+			}
+			pollFirst();
+		} else {
+			for (int i = index; i < size - 1; i++) {
+				copyElement(i + 1, i);
+			}
+			pollLast();
+		}
+		return old;
+	}
+	@Override
+	public int indexOf(Object o) {
+		if (o == null) {
+			return -1;
+		}
+		for (int i = 0; i < size; i++) {
+			if (o.equals(blockFor(i)[(headOffset + i) & blockMask])) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	@Override
+	public int lastIndexOf(Object o) {
+		if (o == null) {
+			return -1;
+		}
+		for (int i = size - 1; i >= 0; i--) {
+			if (o.equals(blockFor(i)[(headOffset + i) & blockMask])) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	// *** Collection methods ***
+
+	@Override
+	public int size() {
+		return size;
+	}
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	@Override
+	public boolean contains(Object o) {
+		return indexOf(o) >= 0;
+	}
+	@Override
+	public boolean remove(Object o) {
+		return removeFirstOccurrence(o);
+	}
+	@Override
+	public Iterator<E> descendingIterator() {
+		return new Iterator<E>() {
+			private final ListIterator<E> delegate = listIterator(size);
+			@Override
+			public boolean hasNext() {
+				return delegate.hasPrevious();
+			}
+			@Override
+			public E next() {
+				return delegate.previous();
+			}
+			@Override
+			public void remove() {
+				delegate.remove();
+			}
+		};
+	}
+	/**
+	 * Removes all of the elements from this deque. The first block is kept, and all others are released.
+	 */
+	@Override
+	public void clear() {
+		if (size == 0) {
+			return;
+		}
+		int used = usedBlocks();
+		int mask = blocks.length - 1;
+		Arrays.fill(blocks[firstBlock], null);
+		for (int i = 1; i < used; i++) {
+			blocks[(firstBlock + i) & mask] = null;
+		}
+		headOffset = size = 0;
+		modCount++;
+	}
+	@Override
+	public Object[] toArray() {
+		return copyElements(new Object[size]);
+	}
+	@SuppressWarnings("unchecked")
+	// component type can only be T, so this is safe
+	@Override
+	public <T> T[] toArray(T[] a) {
+		if (a.length < size)
+			a = (T[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), size);
+		copyElements(a);
+		if (a.length > size)
+			a[size] = null;
+		return a;
+	}
+	/**
+	 * Copies the elements into the specified array, in order, with one copy per block. It is assumed that the array is
+	 * large enough to hold all elements in the deque.
+	 *
+	 * @param a target array
+	 * @param <T> type of elements in the target array
+	 * @return its argument
+	 */
+	private <T> T[] copyElements(T[] a) {
+		int copied = 0;
+		int offset = headOffset;
+		int index = firstBlock;
+		while (copied < size) {
+			int length = Math.min(size - copied, blockMask + 1 - offset);
+			System.arraycopy(blocks[index], offset, a, copied, length);
+			copied += length;
+			offset = 0;
+			index = (index + 1) & (blocks.length - 1);
+		}
+		return a;
+	}
+
+	/**
+	 * Appease the serialization gods.
+	 */
+	private static final long serialVersionUID = -2930394581349024658L;
+
+	/**
+	 * Serialize this deque.
+	 *
+	 * @serialData The block size is written by the default mechanism. It is followed by the current size
+	 *             ({@code int}) of the deque, then all of its elements (each an object reference) in first-to-last
+	 *             order.
+	 */
+	private void writeObject(ObjectOutputStream s) throws IOException {
+		s.defaultWriteObject();
+		s.writeInt(size);
+		for (int i = 0; i < size; i++)
+			s.writeObject(blockFor(i)[(headOffset + i) & blockMask]);
+	}
+
+	/**
+	 * Deserialize this deque.
+	 */
+	@SuppressWarnings("unchecked")
+	// read object is an E since we serialised it, else we want CCE to be thrown
+	private void readObject(ObjectInputStream s) throws IOException, ClassNotFoundException {
+		s.defaultReadObject();
+		allocateIndex();
+		int size = s.readInt();
+		for (int i = 0; i < size; i++)
+			addLast((E) s.readObject());
+	}
+}
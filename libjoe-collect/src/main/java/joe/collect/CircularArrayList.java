@@ -9,6 +9,7 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.ConcurrentModificationException;
 import java.util.Deque;
 import java.util.Iterator;
@@ -20,6 +21,8 @@ import java.util.Queue;
 import java.util.RandomAccess;
 import java.util.Stack;
 
+import com.google.common.base.Predicate;
+
 /**
  * Resizable-array implementation of the {@link Deque} and {@link List} interfaces, based on {@link ArrayDeque}. Array
  * deques have no capacity restrictions; they grow as necessary to support usage. They are not thread-safe; in the
@@ -31,7 +34,8 @@ import java.util.Stack;
  * Most operations run in amortized constant time. Exceptions include {@link #remove(Object) remove},
  * {@link #removeFirstOccurrence removeFirstOccurrence}, {@link #removeLastOccurrence removeLastOccurrence},
  * {@link #contains contains}, {@link #iterator iterator.remove()}, the indexed insert and remove operations and the
- * bulk operations, all of which run in linear time.
+ * bulk operations, all of which run in linear time. The iterator of {@link #editingListIterator} adds and removes
+ * elements at its cursor in amortized constant time.
  * <p>
  * The iterators returned by this class's {@code iterator} method are <i>fail-fast</i>: if the list is modified at any
  * time after the iterator is created, in any way except through the iterator's own {@code remove} method, the iterator
@@ -58,7 +62,7 @@ import java.util.Stack;
 public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, List<E>, RandomAccess, Cloneable,
 		Serializable {
 	/*
-	 * subList is the only thing we get from AbstractList that isn't easy to implement.
+	 * AbstractList now only provides equals, hashCode and the like.
 	 * TODO remove this superclass?
 	 */
 
@@ -71,10 +75,10 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 
 	/**
 	 * The array in which the elements of the deque are stored. The capacity of the deque is the length of this array,
-	 * which is always a power of two. The array is never allowed to become full, except transiently within an addX
-	 * method where it is resized (see doubleCapacity) immediately upon becoming full, thus avoiding head and tail
-	 * wrapping around to equal each other. We also guarantee that all array cells not holding deque elements are always
-	 * null.
+	 * which is always a power of two. The array of an unbounded deque is never allowed to become full, except
+	 * transiently within an addX method where it is resized (see doubleCapacity) immediately upon becoming full, thus
+	 * avoiding head and tail wrapping around to equal each other. A bounded deque may fill its array, which is then
+	 * marked by {@link #full}. We also guarantee that all array cells not holding deque elements are always null.
 	 */
 	transient E[] elements;
 
@@ -89,11 +93,63 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	 */
 	transient int tail;
 
+	/**
+	 * Whether head and tail are equal because the run from head to tail covers the whole array, rather than because the
+	 * deque is empty. Only a bounded deque, whose array is never resized, is ever full; the run may include the gap of
+	 * an open editing iterator.
+	 */
+	transient boolean full;
+
 	/**
 	 * The minimum capacity that we'll use for a newly created deque. Must be a power of 2.
 	 */
 	private static final int MIN_INITIAL_CAPACITY = 8;
 
+	/**
+	 * The maximum number of elements held in a bounded deque, or zero if this deque is unbounded. A bounded deque
+	 * allocates its array once, large enough for this many elements, and never resizes it.
+	 */
+	private final int maxSize;
+
+	/**
+	 * Listener notified of elements evicted to make room in a bounded deque, or {@code null}. Not serialized.
+	 */
+	private transient EvictionListener<? super E> evictionListener;
+
+	/**
+	 * Whether to halve the array when the deque falls below a quarter full. See {@link #setAutoShrink(boolean)}.
+	 */
+	private boolean autoShrink;
+
+	/**
+	 * The editing iterator whose gap is currently open in the array, or {@code null}. While a gap is open the elements
+	 * are not contiguous from head to tail, so every other access to the deque closes it first. See
+	 * {@link #editingListIterator(int)}.
+	 */
+	private transient EditingListItr editor;
+
+	/**
+	 * Whether {@link #elements} may be shared with a clone, so must be copied before it is written. See
+	 * {@link #clone()}.
+	 */
+	private transient boolean shared;
+
+	/**
+	 * Callback notified when a bounded {@link CircularArrayList} discards an element to make room for a new one.
+	 *
+	 * @param <E> the type of elements held in the deque
+	 * @see CircularArrayList#bounded(int, EvictionListener)
+	 */
+	public interface EvictionListener<E> {
+		/**
+		 * Called after an element has been evicted from the deque. The deque is in a consistent state when this is
+		 * called, and already contains the element whose insertion caused the eviction.
+		 *
+		 * @param element the evicted element
+		 */
+		void evicted(E element);
+	}
+
 	// ****** Array allocation and resizing utilities ******
 
 	/**
@@ -104,6 +160,18 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	@SuppressWarnings("unchecked")
 	// cast of Object[] to E[] is safe as we only ever put Es in it
 	private void allocateElements(int numElements) {
+		elements = (E[]) new Object[capacityFor(numElements)];
+	}
+
+	/**
+	 * Computes the array length to use to hold the given number of elements: the smallest power of two strictly
+	 * greater than {@code numElements}, and no less than the minimum capacity. This is shared with the
+	 * primitive-specialised siblings of this class.
+	 *
+	 * @param numElements the number of elements to hold
+	 * @return power of two array length
+	 */
+	static int capacityFor(int numElements) {
 		int initialCapacity = MIN_INITIAL_CAPACITY;
 		// Find the best power of two to hold elements.
 		// Tests "<=" because arrays aren't kept full.
@@ -119,7 +187,7 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 			if (initialCapacity < 0) // Too many elements, must back off
 				initialCapacity >>>= 1;// Good luck allocating 2 ^ 30 elements
 		}
-		elements = (E[]) new Object[initialCapacity];
+		return initialCapacity;
 	}
 
 	/**
@@ -144,6 +212,83 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 		tail = n;
 	}
 
+	/**
+	 * Reallocates the array at the specified capacity, which must be a power of two large enough to hold the current
+	 * elements, re-packing them to start at index zero with at most two copies.
+	 *
+	 * @param newCapacity new length of the array
+	 */
+	@SuppressWarnings("unchecked")
+	// cast of Object[] to E[] is safe as we only ever put Es in it
+	private void reallocate(int newCapacity) {
+		int size = size();
+		assert newCapacity > size && Integer.bitCount(newCapacity) == 1;
+		elements = copyElements((E[]) new Object[newCapacity]);
+		head = 0;
+		tail = size;
+		shared = false;
+	}
+
+	/**
+	 * Halves the capacity of this deque if auto-shrinking is enabled and the deque is less than a quarter full, never
+	 * going below the minimum capacity. Growth happens only when the array is full, so the gap between the two
+	 * thresholds prevents an add/remove sequence near either one from repeatedly resizing.
+	 * <p>
+	 * This must not be called from the iterators, which hold array indices.
+	 */
+	private void maybeShrink() {
+		if (autoShrink) {
+			int length = elements.length;
+			if (length > MIN_INITIAL_CAPACITY && size() < length >>> 2) {
+				reallocate(length >>> 1);
+			}
+		}
+	}
+
+	/**
+	 * Trims the capacity of this deque to the smallest power of two that holds its current elements, releasing the
+	 * rest of the array. The elements are re-packed with at most two copies. This has no effect on a
+	 * {@linkplain #bounded(int) bounded} deque, whose array is fixed.
+	 */
+	public void trimToSize() {
+		closeEditingGap();
+		if (maxSize == 0) {
+			int capacity = capacityFor(size());
+			if (capacity < elements.length) {
+				reallocate(capacity);
+			}
+		}
+	}
+
+	/**
+	 * Sets whether this deque gives memory back automatically as it empties. When enabled, the array is halved
+	 * whenever an element removal leaves it less than a quarter full, and {@link #clear()} returns it to the minimum
+	 * capacity. Since the array only grows when it is full, a deque whose size hovers around some value does not
+	 * repeatedly resize. Removals through an iterator do not shrink the array.
+	 * <p>
+	 * Auto-shrinking is disabled by default.
+	 *
+	 * @param autoShrink whether to shrink automatically
+	 * @throws IllegalStateException if this deque is {@linkplain #bounded(int) bounded}
+	 */
+	public void setAutoShrink(boolean autoShrink) {
+		if (maxSize != 0) {
+			throw new IllegalStateException("Bounded deques never resize");
+		}
+		this.autoShrink = autoShrink;
+		maybeShrink();
+	}
+
+	/**
+	 * Returns whether this deque shrinks automatically as it empties.
+	 *
+	 * @return {@code true} if auto-shrinking is enabled
+	 * @see #setAutoShrink(boolean)
+	 */
+	public boolean isAutoShrink() {
+		return autoShrink;
+	}
+
 	/**
 	 * Copies the elements from our element array into the specified array, in order (from first to last element in the
 	 * deque). It is assumed that the array is large enough to hold all elements in the deque.
@@ -153,13 +298,23 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	 * @return its argument
 	 */
 	private <T> T[] copyElements(T[] a) {
-		if (head < tail) {
-			System.arraycopy(elements, head, a, 0, size());
-		} else if (head > tail) {
-			int headPortionLen = elements.length - head;
-			System.arraycopy(elements, head, a, 0, headPortionLen);
-			System.arraycopy(elements, 0, a, headPortionLen, tail);
-		}
+		return copyRange(head, size(), a, 0);
+	}
+	/**
+	 * Copies a run of elements from our element array into the specified array, with at most two copies. It is assumed
+	 * that the array is large enough to hold the run.
+	 *
+	 * @param start array index of the first element to copy
+	 * @param length number of elements to copy
+	 * @param a target array
+	 * @param destPos index in the target array of the first copied element
+	 * @param <T> type of elements in the target array
+	 * @return its argument
+	 */
+	private <T> T[] copyRange(int start, int length, T[] a, int destPos) {
+		int firstPortionLen = Math.min(length, elements.length - start);
+		System.arraycopy(elements, start, a, destPos, firstPortionLen);
+		System.arraycopy(elements, 0, a, destPos + firstPortionLen, length - firstPortionLen);
 		return a;
 	}
 
@@ -170,6 +325,7 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	// cast of Object[] to E[] is safe as we only ever put Es in it
 	public CircularArrayList() {
 		elements = (E[]) new Object[MIN_INITIAL_CAPACITY];
+		maxSize = 0;
 	}
 
 	/**
@@ -179,6 +335,7 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	 */
 	public CircularArrayList(int numElements) {
 		allocateElements(numElements);
+		maxSize = 0;
 	}
 
 	/**
@@ -191,9 +348,120 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	 */
 	public CircularArrayList(Collection<? extends E> c) {
 		allocateElements(c.size());
+		maxSize = 0;
 		addAll(c);
 	}
 
+	/**
+	 * Constructs an empty bounded deque.
+	 *
+	 * @param maxSize maximum number of elements in the deque
+	 * @param evictionListener listener to be notified of evictions, or {@code null}
+	 */
+	private CircularArrayList(int maxSize, EvictionListener<? super E> evictionListener) {
+		if (maxSize <= 0 || maxSize > 1 << 30) {
+			throw new IllegalArgumentException("Maximum size must be in [1, 2^30]: " + maxSize);
+		}
+		allocateElements(maxSize - 1); // no cell need be left empty, see full
+		this.maxSize = maxSize;
+		this.evictionListener = evictionListener;
+	}
+
+	/**
+	 * Creates an empty bounded deque that holds at most {@code maxSize} elements, for use as a fixed-size ring buffer.
+	 * The backing array is allocated once, at the smallest power of two no less than {@code maxSize} (and no less than
+	 * the minimum capacity), and never resized. A power-of-two {@code maxSize} therefore uses every cell of the array.
+	 * <p>
+	 * Adding an element at either end of a full deque overwrites the element at the other end: {@link #addLast} (and
+	 * so {@link #add}, {@link #offer} and {@link #addAll(Collection)}) discards the first element, and
+	 * {@link #addFirst} (and so {@link #push}) discards the last. This takes constant time and neither allocates nor
+	 * copies. Inserting into the middle of a full deque, whether by index or through a list iterator, has no oldest
+	 * element to discard and throws {@link IllegalStateException}.
+	 * <p>
+	 * All other operations, including the {@link List} views and iterators, see only the retained window of elements.
+	 *
+	 * @param maxSize maximum number of elements in the deque
+	 * @param <E> the type of elements held in the deque
+	 * @return a new empty bounded deque
+	 * @throws IllegalArgumentException if {@code maxSize} is not positive or is greater than {@code 2^30}
+	 */
+	public static <E> CircularArrayList<E> bounded(int maxSize) {
+		return new CircularArrayList<E>(maxSize, null);
+	}
+
+	/**
+	 * Creates an empty bounded deque as {@link #bounded(int)}, notifying the specified listener of each element
+	 * discarded to make room for a new one. Elements removed explicitly, for example by {@link #pollFirst} or
+	 * {@link #clear}, are not reported.
+	 * <p>
+	 * The listener is not serialized; a deserialized deque is bounded but has no listener.
+	 *
+	 * @param maxSize maximum number of elements in the deque
+	 * @param evictionListener listener to be notified of evictions
+	 * @param <E> the type of elements held in the deque
+	 * @return a new empty bounded deque
+	 * @throws IllegalArgumentException if {@code maxSize} is not positive or is greater than {@code 2^30}
+	 * @throws NullPointerException if the listener is {@code null}
+	 */
+	public static <E> CircularArrayList<E> bounded(int maxSize, EvictionListener<? super E> evictionListener) {
+		if (evictionListener == null) {
+			throw new NullPointerException("Null eviction listener");
+		}
+		return new CircularArrayList<E>(maxSize, evictionListener);
+	}
+
+	/**
+	 * Returns {@code true} if this deque was created with a maximum size by {@link #bounded(int)}.
+	 *
+	 * @return whether this deque is bounded
+	 */
+	public boolean isBounded() {
+		return maxSize != 0;
+	}
+
+	/**
+	 * Returns the maximum number of elements this deque will hold, or {@link Integer#MAX_VALUE} if it is unbounded.
+	 *
+	 * @return the maximum size of this deque
+	 */
+	public int getMaxSize() {
+		return maxSize != 0 ? maxSize : Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Notifies the eviction listener, if any, that the specified element has been evicted.
+	 *
+	 * @param evicted the evicted element
+	 */
+	private void notifyEvicted(E evicted) {
+		if (evictionListener != null) {
+			evictionListener.evicted(evicted);
+		}
+	}
+
+	/**
+	 * Tests that there is room to insert the specified number of elements without evicting anything.
+	 *
+	 * @param count number of elements to be inserted
+	 * @throws IllegalStateException if this deque is bounded and there is not enough room
+	 */
+	private void checkRoomForInsert(int count) {
+		checkRoomForInsert(size(), count);
+	}
+	/**
+	 * Tests that there is room to insert the specified number of elements into a deque of the given size.
+	 *
+	 * @param size current number of elements
+	 * @param count number of elements to be inserted
+	 * @throws IllegalStateException if this deque is bounded and there is not enough room
+	 */
+	private void checkRoomForInsert(int size, int count) {
+		if (maxSize != 0 && size + count > maxSize) {
+			throw new IllegalStateException("Bounded deque of maximum size " + maxSize + " has no room for " + count
+					+ " more elements");
+		}
+	}
+
 	// The main insertion and extraction methods are addFirst,
 	// addLast, pollFirst, pollLast. The other methods are defined in
 	// terms of these.
@@ -206,11 +474,21 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	 */
 	@Override
 	public void addFirst(E e) {
+		closeEditingGap();
 		if (e == null)
 			throw new NullPointerException();
+		copyOnWrite();
+		if (maxSize != 0 && size() == maxSize) {
+			// full bounded deque: drop the last element to make room
+			E evicted = pollLast();
+			elements[head = (head - 1) & (elements.length - 1)] = e;
+			full = head == tail;
+			notifyEvicted(evicted);
+			return;
+		}
 		elements[head = (head - 1) & (elements.length - 1)] = e;
 		if (head == tail)
-			doubleCapacity();
+			fill();
 	}
 
 	/**
@@ -223,11 +501,34 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	 */
 	@Override
 	public void addLast(E e) {
+		closeEditingGap();
 		if (e == null)
 			throw new NullPointerException();
+		copyOnWrite();
+		if (maxSize != 0 && size() == maxSize) {
+			// full bounded deque: drop the first element to make room
+			E evicted = pollFirst();
+			elements[tail] = e;
+			tail = (tail + 1) & (elements.length - 1);
+			full = head == tail;
+			notifyEvicted(evicted);
+			return;
+		}
 		elements[tail] = e;
 		if ((tail = (tail + 1) & (elements.length - 1)) == head)
+			fill();
+	}
+
+	/**
+	 * Handles the array becoming full after an element is added at either end: a bounded deque is marked full, and an
+	 * unbounded one is resized.
+	 */
+	private void fill() {
+		if (maxSize != 0) {
+			full = true;
+		} else {
 			doubleCapacity();
+		}
 	}
 
 	/**
@@ -280,23 +581,31 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 
 	@Override
 	public E pollFirst() {
+		closeEditingGap();
 		int h = head;
 		E result = elements[h]; // Element is null if deque empty
 		if (result == null)
 			return null;
+		copyOnWrite();
 		elements[h] = null; // Must null out slot
 		head = (h + 1) & (elements.length - 1);
+		full = false;
+		maybeShrink();
 		return result;
 	}
 
 	@Override
 	public E pollLast() {
+		closeEditingGap();
 		int t = (tail - 1) & (elements.length - 1);
 		E result = elements[t];
 		if (result == null)
 			return null;
+		copyOnWrite();
 		elements[t] = null;
 		tail = t;
+		full = false;
+		maybeShrink();
 		return result;
 	}
 
@@ -305,6 +614,7 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	 */
 	@Override
 	public E getFirst() {
+		closeEditingGap();
 		E x = elements[head];
 		if (x == null)
 			throw new NoSuchElementException();
@@ -316,6 +626,7 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	 */
 	@Override
 	public E getLast() {
+		closeEditingGap();
 		E x = elements[(tail - 1) & (elements.length - 1)];
 		if (x == null)
 			throw new NoSuchElementException();
@@ -324,11 +635,13 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 
 	@Override
 	public E peekFirst() {
+		closeEditingGap();
 		return elements[head]; // elements[head] is null if deque empty
 	}
 
 	@Override
 	public E peekLast() {
+		closeEditingGap();
 		return elements[(tail - 1) & (elements.length - 1)];
 	}
 
@@ -343,14 +656,15 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	 */
 	@Override
 	public boolean removeFirstOccurrence(Object o) {
+		closeEditingGap();
 		if (o == null)
 			return false;
 		int mask = elements.length - 1;
 		int i = head;
-		E x;
-		while ((x = elements[i]) != null) {
-			if (o.equals(x)) {
+		for (int n = size(); n > 0; n--) { // a full array has no null to stop at
+			if (o.equals(elements[i])) {
 				delete(i);
+				maybeShrink();
 				return true;
 			}
 			i = (i + 1) & mask;
@@ -369,14 +683,15 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	 */
 	@Override
 	public boolean removeLastOccurrence(Object o) {
+		closeEditingGap();
 		if (o == null)
 			return false;
 		int mask = elements.length - 1;
 		int i = (tail - 1) & mask;
-		E x;
-		while ((x = elements[i]) != null) {
-			if (o.equals(x)) {
+		for (int n = size(); n > 0; n--) {
+			if (o.equals(elements[i])) {
 				delete(i);
+				maybeShrink();
 				return true;
 			}
 			i = (i - 1) & mask;
@@ -436,6 +751,7 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 		if (gapLength == 0) { // no change
 			return 0;
 		}
+		copyOnWrite();
 
 		/*
 		 * TODO add cleverness to add gap on left if index < size()/2, moving the minimum number of
@@ -447,18 +763,20 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 		final int oldHead = head;
 
 		if (isEmpty()) {
-			if (gapLength >= arrayLength) {
+			if (gapLength >= arrayLength && maxSize == 0) {
 				allocateElements(gapLength);
 			}
 			this.head = 0;
-			this.tail = gapLength;
+			this.tail = gapLength & getMask();
+			this.full = gapLength == elements.length;
 			return -oldHead;
 		}
 
 		int size = size();
 		int mask = getMask();
 
-		if (arrayLength > size + gapLength) { // array is big enough
+		// a bounded deque has already checked that the gap fits, and may fill its array
+		if (arrayLength > size + gapLength || maxSize != 0) { // array is big enough
 			int leftCount = index - head & mask;
 			int rightCount = tail - index & mask;
 
@@ -467,45 +785,21 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 			} else {
 				shiftSuffixRight(rightCount, gapLength);
 			}
+			full = head == tail;
 			return head - oldHead;
-		} else { // array is not big enough
-			E[] oldElements = elements;
-			allocateElements(size + gapLength);
-
-			if (head < tail) {
-				int newArrayInsertIndex = index - head;
-				System.arraycopy(oldElements, head, elements, 0, newArrayInsertIndex);
-				System.arraycopy(oldElements, head + newArrayInsertIndex, elements, newArrayInsertIndex + gapLength,
-						(tail - head) - newArrayInsertIndex);
-			} else {
-				if (index > head) {
-					// [ ===t h==i== ]
-
-					// number of elements logically before the insertion point
-					int listPrefixLength = index - head;
-					// number of elements explicitly after the insertion point in the old array
-					int arraySuffixLength = oldElements.length - index & mask;
-					// index into list of first element after inserted gap
-					int listSuffixIndex = listPrefixLength + gapLength;
-
-					System.arraycopy(oldElements, head, elements, 0, listPrefixLength);
-					System.arraycopy(oldElements, index, elements, listSuffixIndex, arraySuffixLength);
-					System.arraycopy(oldElements, 0, elements, listSuffixIndex + arraySuffixLength, tail);
-				} else {
-					// [ ==i==t h== ]
-
-					// number of elements explicitly after the head in the old array
-					int arraySuffixLength = oldElements.length - head & mask;
-
-					System.arraycopy(oldElements, head, elements, 0, arraySuffixLength);
-					System.arraycopy(oldElements, 0, elements, arraySuffixLength, index);
-					System.arraycopy(oldElements, index, elements, arraySuffixLength + index + gapLength, tail - index);
-				}
-			}
+		} else { // array is not big enough, copy prefix and suffix either side of the gap in a new array
+			int prefixLength = index - head & mask;
+			@SuppressWarnings("unchecked")
+			// cast of Object[] to E[] is safe as we only ever put Es in it
+			E[] newElements = (E[]) new Object[capacityFor(size + gapLength)];
+			copyRange(head, prefixLength, newElements, 0);
+			copyRange(index, size - prefixLength, newElements, prefixLength + gapLength);
 
+			this.elements = newElements;
 			this.head = 0;
 			this.tail = size + gapLength;
-			return -oldHead & mask; // old mask
+			// the gap now starts at its list index; callers add this to the old index and mask with the new mask
+			return prefixLength - index;
 		}
 
 	}
@@ -518,55 +812,8 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	 * @param displacement distance to move elements
 	 */
 	private void shiftPrefixLeft(int length, int displacement) {
-		int mask = getMask();
-
-		if (length == 0) {
-			head = head - displacement & mask;
-			return;
-		}
-
-		/*
-		 * In the below, a, b, c denote the components of the array to be moved, and ignore non-moving
-		 * components - there may be more AFTER c. Each letter must be moved separately.
-		 */
-
-		int oldHead = head;
-		int newHead = oldHead - displacement & mask;
-		if (newHead < oldHead) { // head doesn't cross edge
-			int oldLastElementIndex = oldHead + length & mask; // length of b+c
-			if (newHead < oldLastElementIndex) {
-				// [ . . a . ] => [ . a (a) . ]
-				System.arraycopy(elements, oldHead, elements, newHead, length);
-			} else {
-				int lengthOfA = elements.length - oldHead & mask; // |a|
-				if (oldLastElementIndex > displacement) {
-					// [ b c . . . . . a ] => [ c (c) . . . . a b ]
-
-					// move a left
-					System.arraycopy(elements, oldHead, elements, newHead, lengthOfA);
-
-					// move b to end of array
-					System.arraycopy(elements, 0, elements, newHead + lengthOfA, displacement); // disp = |b|
-
-					// move c to start of array
-					System.arraycopy(elements, displacement, elements, 0, length - lengthOfA - displacement);
-				} else {
-					// [ b . . . . . . a ] => [ (b) . . . . a b ]
-
-					// move a left
-					System.arraycopy(elements, oldHead, elements, newHead, lengthOfA);
-
-					// move b to fill array suffix
-					System.arraycopy(elements, 0, elements, newHead + lengthOfA, oldLastElementIndex);
-				}
-			}
-		} else { // head crosses edge
-			// [ . a b . . . ] => [ . b . . . a ]
-			int wrappedLength = elements.length - newHead; // length of a after move
-			System.arraycopy(elements, oldHead, elements, newHead, wrappedLength);
-			System.arraycopy(elements, oldHead + wrappedLength, elements, 0, length - wrappedLength);
-		}
-		assert head == oldHead;
+		int newHead = head - displacement & getMask();
+		moveLeft(head, newHead, length);
 		head = newHead;
 	}
 	/**
@@ -579,54 +826,9 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	 */
 	private void shiftSuffixRight(int length, int displacement) {
 		int mask = getMask();
-
-		if (length == 0) {
-			tail = tail + displacement & mask;
-			return;
-		}
-
-		/*
-		 * In the below, a, b, c denote the components of the array to be moved, and ignore non-moving
-		 * components - there may be more BEFORE a. Each letter must be moved separately.
-		 */
-
-		int oldTail = tail;
-		int newTail = oldTail + displacement & mask;
-
-		if (newTail > oldTail || newTail == 0) { // tail doesn't cross edge
-			int oldFirstElementIndex = oldTail - length & mask;
-			int newFirstElementIndex = oldFirstElementIndex + displacement & mask;
-			if (oldFirstElementIndex < newTail || newTail == 0) {
-				// [ . a . . ] => [ . (a) a . ]
-				System.arraycopy(elements, oldFirstElementIndex, elements, newFirstElementIndex, length);
-			} else {
-				// [ c . . . . . a b ] => [ b c . . . . (a) a ]
-
-				// move c right
-				System.arraycopy(elements, 0, elements, displacement, oldTail); // oldTail = |c|
-
-				// move b to start of array
-				System.arraycopy(elements, elements.length - displacement & mask, elements, 0, displacement); // disp =
-																												// |b|
-
-				// move a to end of array
-				int lengthOfA = length - displacement - oldTail; // |a| = |abc| - |b| - |c|
-				System.arraycopy(elements, oldFirstElementIndex, elements, newFirstElementIndex, lengthOfA);
-			}
-		} else { // tail crosses edge
-			// [ . . . a b .] => [ b . . . a ]
-
-			int lengthOfB = newTail;
-			int lengthOfA = length - lengthOfB;
-
-			// move b to start of array
-			System.arraycopy(elements, oldTail - lengthOfB, elements, 0, lengthOfB);
-
-			// move a to end of array
-			System.arraycopy(elements, oldTail - length, elements, elements.length - lengthOfA & mask, lengthOfA);
-		}
-		assert tail == oldTail;
-		tail = newTail;
+		int oldFirstElementIndex = tail - length & mask;
+		moveRight(oldFirstElementIndex, oldFirstElementIndex + displacement & mask, length);
+		tail = tail + displacement & mask;
 	}
 	/*
 	 * contracting operations
@@ -652,21 +854,28 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 		if (isEmpty()) {
 			return 0;
 		}
+		copyOnWrite();
 
 		int oldHead = head;
 		int size = size();
 
 		if (rangeLength == size) {
-			// remove everything, might as well resize
-			elements = (E[]) new Object[MIN_INITIAL_CAPACITY];
-			head = tail = 0;
+			if (maxSize != 0) {
+				// bounded deques keep their array
+				clear();
+			} else {
+				// remove everything, might as well resize
+				elements = (E[]) new Object[MIN_INITIAL_CAPACITY];
+				head = tail = 0;
+			}
 			return -oldHead;
 		}
 
 		int leftCount = index - head & mask;
 		int rightCount = tail - (index + rangeLength & mask) & mask;
+		full = false;
 
-		// TODO shrink array here if newSize = leftCount + rightCount < size/2
+		// callers that may shrink the array do so afterwards, see maybeShrink
 
 		if (leftCount < rightCount) {
 			shiftPrefixRight(index, rangeLength);
@@ -677,121 +886,92 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 		}
 	}
 	/**
-	 * Moves the interval {@code [head, index)} right by distance {@code displacement}. The head pointer is updated
-	 * appropriately.
+	 * Moves the interval {@code [head, index)} right by distance {@code displacement}, overwriting the interval
+	 * {@code [index, index+displacement)}. The head pointer is updated appropriately. The interval
+	 * {@code [oldHead, newHead)} is filled with {@code null}s.
 	 *
-	 * @param index destination index of first element to be overwritten by the moved range
+	 * @param index array index of the end of the interval to move, which is the start of the range it overwrites
 	 * @param displacement distance to move elements
 	 */
-	private void shiftPrefixRight(int index, int displacement) { // TODO generalise - this is rubbish
+	private void shiftPrefixRight(int index, int displacement) {
 		int mask = getMask();
-		int length = (index - head) & mask;
-		int newHead = head + displacement & mask;
-		int newIndex = index + displacement & mask;
-
-		boolean connectedNewPrefix = newIndex >= newHead;
-
-		if (index >= head) { // if old prefix is a connected interval
-			if (connectedNewPrefix) {
-				System.arraycopy(elements, head, elements, newHead, length);
-				if (newIndex > index) {
-					nullifyRange(head, newHead - head);
-				} else {
-					nullifyRange(head, elements.length - head & mask);
-					nullifyRange(0, newHead);
-				}
-			} else {
-				System.arraycopy(elements, index - newIndex, elements, 0, newIndex);
-				System.arraycopy(elements, head, elements, newHead, length - newIndex);
-				nullifyRange(head, newHead - head);
-			}
-		} else { // old suffix was disconnected
-			if (connectedNewPrefix) {
-				System.arraycopy(elements, 0, elements, newHead + index, index);
-				System.arraycopy(elements, head, elements, newHead, length - index);
-				nullifyRange(head, elements.length - newHead & mask);
-				nullifyRange(0, newHead);
-			} else {
-				// [ c . . . a b ] => [ b c . . . a ]
-
-				int lengthOfA = elements.length - newHead & mask;
-				int lengthOfC = index;
-				int lengthOfB = length - lengthOfA - lengthOfC;
+		int oldHead = head;
+		int newHead = oldHead + displacement & mask;
 
-				System.arraycopy(elements, 0, elements, lengthOfB, lengthOfC);
-				System.arraycopy(elements, head + lengthOfA, elements, 0, lengthOfB);
-				System.arraycopy(elements, head, elements, newHead, lengthOfA);
-				nullifyRange(head, lengthOfA);
-			}
-		}
+		moveRight(oldHead, newHead, index - oldHead & mask);
+		nullifyRange(oldHead, displacement);
 
 		head = newHead;
 	}
 	/**
-	 * Moves the interval {@code [index, tail)} left by distance {@code displacement}. The tail pointer is updated
-	 * appropriately. The interval {@code [newTail, oldTail)} is filled with {@code null}s.
+	 * Moves the interval {@code [index, tail)} left by distance {@code displacement}, overwriting the interval
+	 * {@code [index-displacement, index)}. The tail pointer is updated appropriately. The interval
+	 * {@code [newTail, oldTail)} is filled with {@code null}s.
 	 *
-	 * @param index destination index of first element to be overwritten by the moved range
+	 * @param index array index of the start of the interval to move
 	 * @param displacement distance to move elements
 	 */
 	private void shiftSuffixLeft(int index, int displacement) {
 		int mask = getMask();
-		int length = (tail - index) & mask;
 		int newTail = tail - displacement & mask;
-		int newIndex = index - displacement & mask;
-
-		boolean connectedNewSuffix = newIndex <= newTail;
-
-		if (index <= tail) { // if old suffix is a connected interval
-			if (connectedNewSuffix) {
-				System.arraycopy(elements, index, elements, newIndex, length);
-				if (newIndex < index) {
-					nullifyRange(newTail, tail - newTail);
-				} else {
-					nullifyRange(newTail, elements.length - newTail & mask);
-					nullifyRange(0, tail);
-				}
-			} else {
-				int wrapLength = elements.length - newIndex & mask;
-				System.arraycopy(elements, index, elements, newIndex, wrapLength);
-				System.arraycopy(elements, index + wrapLength, elements, 0, length - wrapLength);
-				nullifyRange(newTail, tail - newTail);
-			}
-		} else { // old suffix was disconnected
-			int wrapLength = elements.length - newIndex & mask;
-			if (connectedNewSuffix) {
-				System.arraycopy(elements, index, elements, newIndex, wrapLength);
-				System.arraycopy(elements, 0, elements, newIndex + wrapLength, length - wrapLength);
-				nullifyRange(newTail, wrapLength);
-				nullifyRange(0, tail);
-			} else {
-				// [ b c . . . a ] => [ c . . . a b ]
-
-				int lengthOfA = wrapLength;
-				int lengthOfC = newTail;
-				int lengthOfB = length - lengthOfA - lengthOfC;
 
-				System.arraycopy(elements, index, elements, newIndex, lengthOfA);
-				System.arraycopy(elements, 0, elements, wrapLength, lengthOfB);
-				System.arraycopy(elements, lengthOfB, elements, 0, lengthOfC);
-				nullifyRange(newTail, lengthOfA);
-			}
-		}
+		moveLeft(index, index - displacement & mask, tail - index & mask);
+		nullifyRange(newTail, displacement);
 
 		tail = newTail;
 	}
+	/**
+	 * Moves a run of elements to a lower position, both interpreted mod circularity. The run is copied front to back in
+	 * at most three pieces, split wherever the source or destination crosses the end of the array, so no element is
+	 * overwritten before it has been moved. The vacated cells are left as they are.
+	 *
+	 * @param src array index of the first element to move
+	 * @param dst array index to which the first element is moved
+	 * @param length number of elements to move
+	 */
+	private void moveLeft(int src, int dst, int length) {
+		int mask = getMask();
+		while (length > 0) {
+			int chunk = Math.min(length, Math.min(elements.length - src, elements.length - dst));
+			System.arraycopy(elements, src, elements, dst, chunk);
+			src = src + chunk & mask;
+			dst = dst + chunk & mask;
+			length -= chunk;
+		}
+	}
+	/**
+	 * Moves a run of elements to a higher position, both interpreted mod circularity. The run is copied back to front
+	 * in at most three pieces, split wherever the source or destination crosses the end of the array, so no element is
+	 * overwritten before it has been moved. The vacated cells are left as they are.
+	 *
+	 * @param src array index of the first element to move
+	 * @param dst array index to which the first element is moved
+	 * @param length number of elements to move
+	 */
+	private void moveRight(int src, int dst, int length) {
+		int mask = getMask();
+		// one past the last element of each run, in (0, elements.length]
+		int srcEnd = (src + length - 1 & mask) + 1;
+		int dstEnd = (dst + length - 1 & mask) + 1;
+		while (length > 0) {
+			int chunk = Math.min(length, Math.min(srcEnd, dstEnd));
+			System.arraycopy(elements, srcEnd - chunk, elements, dstEnd - chunk, chunk);
+			srcEnd = (srcEnd - chunk - 1 & mask) + 1;
+			dstEnd = (dstEnd - chunk - 1 & mask) + 1;
+			length -= chunk;
+		}
+	}
 
 	/**
-	 * Sets a range of elements to {@code null}, with no range check.
+	 * Sets a range of elements to {@code null}, wrapping at the end of the array, with no range check.
 	 *
 	 * @param start index of first {@code null}
-	 * @param length index of first element not to be {@code null}ed
+	 * @param length number of elements to be {@code null}ed
 	 */
 	private void nullifyRange(int start, int length) {
-		int end = start + length;
-		for (int i = start; i < end; i++) {
-			elements[i] = null;
-		}
+		int firstPortionLen = Math.min(length, elements.length - start);
+		Arrays.fill(elements, start, start + firstPortionLen, null);
+		Arrays.fill(elements, 0, length - firstPortionLen, null);
 	}
 
 	/**
@@ -852,11 +1032,141 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	public void add(int index, E element) {
 		checkInsertListRange(index);
 		checkNotNull(element);
+		checkRoomForInsert(1);
 		int arrayIndex = getArrayIndexFromListIndex(index, getMask());
-		elements[arrayIndex + insertGap(arrayIndex, 1) & getMask()] = element;
+		// insertGap may reallocate, so look up the array only afterwards
+		int insertIndex = arrayIndex + insertGap(arrayIndex, 1) & getMask();
+		elements[insertIndex] = element;
+	}
+	/**
+	 * Inserts the specified element into this deque, which must already be sorted by the comparator, at the position
+	 * that keeps it sorted. The element goes after any elements equal to it, so insertion is stable, and if all
+	 * elements are added this way then {@link #pollFirst} always returns a least element.
+	 * <p>
+	 * This suits elements that arrive nearly in order. The insertion point is found by a galloping search back from
+	 * the tail, so an element belonging {@code d} places from the end takes {@code O(log d)} comparisons, and an
+	 * in-order arrival takes one. Making room shifts whichever side of the insertion point is shorter, so a late
+	 * arrival costs the distance to its slot rather than a sort of the whole deque.
+	 *
+	 * @param element element to insert
+	 * @param comparator order of the deque, or {@code null} for the elements' natural ordering
+	 * @return the list index at which the element was inserted
+	 * @throws NullPointerException if the element is null
+	 * @throws ClassCastException if the comparator is {@code null} and the elements are not mutually comparable
+	 * @throws IllegalStateException if the deque is bounded and full
+	 */
+	public int addSorted(E element, Comparator<? super E> comparator) {
+		closeEditingGap();
+		checkNotNull(element);
+		int index = sortedInsertionPoint(element, comparator);
+		add(index, element);
+		return index;
+	}
+	/**
+	 * Finds the first list index whose element is greater than the specified element, assuming the deque is sorted.
+	 * The search gallops back from the tail, doubling its step, and then binary searches the bracketed range.
+	 *
+	 * @param element element to be inserted
+	 * @param comparator order of the deque, or {@code null} for natural ordering
+	 * @return the insertion point, in {@code [0, size()]}
+	 */
+	private int sortedInsertionPoint(E element, Comparator<? super E> comparator) {
+		int mask = getMask();
+		int lo = 0; // element is not less than anything before lo
+		int hi = size(); // element is less than everything from hi
+		for (int step = 1;; step <<= 1) {
+			int probe = hi - step;
+			if (probe < 0) {
+				break;
+			}
+			if (compare(element, elements[getArrayIndexFromListIndex(probe, mask)], comparator) >= 0) {
+				lo = probe + 1;
+				break;
+			}
+			hi = probe;
+		}
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (compare(element, elements[getArrayIndexFromListIndex(mid, mask)], comparator) < 0) {
+				hi = mid;
+			} else {
+				lo = mid + 1;
+			}
+		}
+		return lo;
+	}
+	@SuppressWarnings("unchecked")
+	// without a comparator the elements must be Comparable, else we want CCE to be thrown
+	private static <E> int compare(E a, E b, Comparator<? super E> comparator) {
+		return comparator == null ? ((Comparable<? super E>) a).compareTo(b) : comparator.compare(a, b);
+	}
+	/**
+	 * Rotates the elements of this deque by the specified distance, with the same result as
+	 * {@link java.util.Collections#rotate(List, int)}: the element at index {@code i} moves to index
+	 * {@code (i + distance) mod size()}. The distance may be negative or larger than the deque.
+	 * <p>
+	 * Rather than swapping elements in place, this moves elements from one end across the free cells of the array to
+	 * the other end, taking whichever of the two directions moves fewer elements. A rotation of {@code k} therefore
+	 * costs {@code min(k, size() - k)} element moves, so a round-robin step of one is constant time however long the
+	 * deque.
+	 *
+	 * @param distance distance by which to rotate, positive towards the tail
+	 */
+	public void rotate(int distance) {
+		closeEditingGap();
+		int size = size();
+		if (size == 0) {
+			return;
+		}
+		int right = distance % size;
+		if (right < 0) {
+			right += size;
+		}
+		if (right == 0) {
+			return;
+		}
+		int mask = getMask();
+		if (full) {
+			// no free cells to move elements across, and no need: turning the whole array moves head and tail alone
+			head = tail = head - right & mask;
+			return;
+		}
+		copyOnWrite();
+		int free = elements.length - size;
+		if (right <= size - right) {
+			// move the last elements, in batches that fit into the free cells, from the tail round to the head
+			while (right > 0) {
+				int batch = Math.min(right, free);
+				int src = tail - batch & mask;
+				int dst = head - batch & mask;
+				moveLeft(src, dst, batch);
+				nullifyRange(src, batch);
+				head = dst;
+				tail = src;
+				right -= batch;
+			}
+		} else {
+			int left = size - right;
+			while (left > 0) {
+				int batch = Math.min(left, free);
+				moveLeft(head, tail, batch);
+				nullifyRange(head, batch);
+				head = head + batch & mask;
+				tail = tail + batch & mask;
+				left -= batch;
+			}
+		}
 	}
 	@Override
 	public boolean addAll(Collection<? extends E> c) {
+		if (maxSize != 0) {
+			// appending to a bounded deque may evict, so add one at a time
+			E[] tmp = nullSafeToArray(c);
+			for (E e : tmp) {
+				addLast(e);
+			}
+			return tmp.length > 0;
+		}
 		return addAll(size(), c);
 	}
 	@Override
@@ -871,6 +1181,7 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 
 		int sizeToAdd = tmp.length;
 		assert sizeToAdd == c.size();
+		checkRoomForInsert(sizeToAdd);
 
 		int arrayIndex = getArrayIndexFromListIndex(index, getMask());
 		int insertIndex = (arrayIndex + insertGap(arrayIndex, sizeToAdd)) & getMask();
@@ -881,7 +1192,7 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 		} else { // yes
 			int suffixLength = elements.length - insertIndex & getMask();
 			System.arraycopy(tmp, 0, elements, insertIndex, suffixLength);
-			System.arraycopy(tmp, suffixLength, elements, insertIndex + suffixLength, sizeToAdd - suffixLength);
+			System.arraycopy(tmp, suffixLength, elements, 0, sizeToAdd - suffixLength);
 		}
 		return true;
 	}
@@ -892,31 +1203,28 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	}
 	@Override
 	public int indexOf(Object o) {
+		closeEditingGap();
 		if (o == null) {
 			return -1;
 		}
 		int mask = getMask();
-		int i = head;
-		E x;
-		while ((x = elements[i]) != null) {
-			if (o.equals(x))
-				return getListIndexFromArrayIndex(i, mask);
-			i = (i + 1) & mask;
+		int size = size();
+		for (int index = 0; index < size; index++) { // a full array has no null to stop at
+			if (o.equals(elements[getArrayIndexFromListIndex(index, mask)]))
+				return index;
 		}
 		return -1;
 	}
 	@Override
 	public int lastIndexOf(Object o) {
+		closeEditingGap();
 		if (o == null) {
 			return -1;
 		}
 		int mask = getMask();
-		int i = (tail - 1) & mask;
-		E x;
-		while ((x = elements[i]) != null) {
-			if (o.equals(x))
-				return getListIndexFromArrayIndex(i, mask);
-			i = (i - 1) & mask;
+		for (int index = size() - 1; index >= 0; index--) {
+			if (o.equals(elements[getArrayIndexFromListIndex(index, mask)]))
+				return index;
 		}
 		return -1;
 	}
@@ -926,13 +1234,51 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 		int arrayIndex = getArrayIndexFromListIndex(index, getMask());
 		E old = elements[arrayIndex];
 		delete(arrayIndex);
+		maybeShrink();
 		return old;
 	}
+	/**
+	 * Removes the elements with list indices in {@code [fromIndex, toIndex)}. The gap is closed by moving whichever of
+	 * the prefix or suffix is shorter, with at most two shifts, so this runs in time linear in the size of the deque
+	 * regardless of the length of the range.
+	 *
+	 * @param fromIndex index of the first element to remove
+	 * @param toIndex index after the last element to remove
+	 */
 	@Override
-	public E set(int index, E element) {
-		checkNotNull(element);
+	protected void removeRange(int fromIndex, int toIndex) {
+		checkRange(fromIndex, toIndex, size());
+		if (fromIndex < toIndex) {
+			deleteRange(getArrayIndexFromListIndex(fromIndex, getMask()), toIndex - fromIndex);
+			maybeShrink();
+		}
+	}
+	/**
+	 * Tests that the specified range is valid for a list of the given size.
+	 *
+	 * @param fromIndex low endpoint (inclusive) of the range
+	 * @param toIndex high endpoint (exclusive) of the range
+	 * @param size size of the list
+	 * @throws IndexOutOfBoundsException if either endpoint is out of range
+	 * @throws IllegalArgumentException if the endpoints are out of order
+	 */
+	private static void checkRange(int fromIndex, int toIndex, int size) {
+		if (fromIndex < 0) {
+			throw new IndexOutOfBoundsException("fromIndex = " + fromIndex);
+		}
+		if (toIndex > size) {
+			throw new IndexOutOfBoundsException("toIndex = " + toIndex);
+		}
+		if (fromIndex > toIndex) {
+			throw new IllegalArgumentException("fromIndex(" + fromIndex + ") > toIndex(" + toIndex + ")");
+		}
+	}
+	@Override
+	public E set(int index, E element) {
+		checkNotNull(element);
 		checkListRange(index);
 
+		copyOnWrite();
 		int arrayIndex = getArrayIndexFromListIndex(index, getMask());
 		E old = elements[arrayIndex];
 		elements[arrayIndex] = element;
@@ -941,12 +1287,97 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 
 	@Override
 	public ListIterator<E> listIterator() {
-		return new ListItr(head);
+		closeEditingGap();
+		return new ListItr(head, 0);
 	}
 	@Override
 	public ListIterator<E> listIterator(int index) {
 		checkInsertListRange(index); // allow zero on empty, for example
-		return new ListItr(getArrayIndexFromListIndex(index, getMask()));
+		return new ListItr(getArrayIndexFromListIndex(index, getMask()), index);
+	}
+	/**
+	 * Returns an editing list iterator over the elements in this deque, starting at the beginning.
+	 *
+	 * @return an editing list iterator
+	 * @see #editingListIterator(int)
+	 */
+	public ListIterator<E> editingListIterator() {
+		return editingListIterator(0);
+	}
+	/**
+	 * Returns a list iterator over the elements in this deque, starting at the specified position, that edits the
+	 * deque in the manner of a gap buffer. This suits merge-like passes that add or remove many elements as they go.
+	 * <p>
+	 * The iterator of {@link #listIterator(int)} shifts part of the array on every {@code add} and {@code remove}, so
+	 * costs up to linear time for each. This iterator instead keeps a gap of free cells open at its cursor: an
+	 * {@code add} fills a cell of the gap and a {@code remove} widens it, both in constant time, and {@code next} and
+	 * {@code previous} carry one element across the gap. When the gap is full it is reopened, at least as large as
+	 * half the deque, by moving the shorter side of the deque into the free part of the array or, if there is too
+	 * little of that, by growing the array, so that {@code add} runs in amortized constant time.
+	 * <p>
+	 * The gap is closed, moving the shorter side of the deque across it once, when the iterator runs off the end (when
+	 * {@code hasNext()} returns {@code false}) or as soon as the deque is accessed in any other way, including through
+	 * another iterator or a view. The iterator can then continue, unless that access modified the deque structurally,
+	 * in which case it fails fast as usual. Removals through this iterator do not shrink the array.
+	 *
+	 * @param index index of the first element to be returned from the list iterator (by a call to {@code next})
+	 * @return an editing list iterator
+	 * @throws IndexOutOfBoundsException if the index is out of range ({@code index < 0 || index > size()})
+	 */
+	public ListIterator<E> editingListIterator(int index) {
+		checkInsertListRange(index);
+		return new EditingListItr(getArrayIndexFromListIndex(index, getMask()), index);
+	}
+	/**
+	 * Closes the gap of an open editing iterator, restoring the elements to a contiguous run from head to tail.
+	 */
+	private void closeEditingGap() {
+		if (editor != null) {
+			editor.closeGap();
+		}
+	}
+	/**
+	 * Returns a view of the portion of this deque between {@code fromIndex} (inclusive) and {@code toIndex}
+	 * (exclusive). The view reads directly from the backing array, so {@code get}, {@code set}, iteration and
+	 * {@code toArray} cost the same as on the deque itself, and {@code clear()} on the view removes the whole range in
+	 * linear time.
+	 * <p>
+	 * The view becomes invalid if the deque is structurally modified other than through the view, and subsequent
+	 * operations on it will generally throw {@link ConcurrentModificationException}.
+	 */
+	@Override
+	public List<E> subList(int fromIndex, int toIndex) {
+		checkRange(fromIndex, toIndex, size());
+		return new SubList(null, fromIndex, toIndex - fromIndex);
+	}
+	/**
+	 * Splits this deque into contiguous {@linkplain #subList(int, int) sub-list views} for processing in parallel. The
+	 * views partition the deque by list index in order, and their sizes differ by at most one. Each view knows its
+	 * size, and its iterator and {@code toArray} read straight from the backing array, including any part that wraps
+	 * past the end of the array.
+	 * <p>
+	 * The views may be read concurrently by several threads provided that nothing modifies the deque meanwhile. Any
+	 * structural modification invalidates them, as for {@code subList}.
+	 *
+	 * @param parts maximum number of views to return
+	 * @return between one and {@code parts} non-empty views in list order, or no views if this deque is empty
+	 * @throws IllegalArgumentException if {@code parts} is not positive
+	 */
+	public List<List<E>> split(int parts) {
+		if (parts < 1) {
+			throw new IllegalArgumentException("Must split into at least one part: " + parts);
+		}
+		int size = size();
+		int count = Math.min(parts, size);
+		List<List<E>> views = new ArrayList<List<E>>(count);
+		int from = 0;
+		for (int i = 0; i < count; i++) {
+			// the first size % count views take one extra element
+			int to = from + size / count + (i < size % count ? 1 : 0);
+			views.add(new SubList(null, from, to - from));
+			from = to;
+		}
+		return views;
 	}
 
 	/**
@@ -960,6 +1391,10 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 		 * compute the next cursor.
 		 */
 		private int cursor;
+		/**
+		 * List index of the cursor. This tells the ends apart in a full array, where the cursor is at both head and tail.
+		 */
+		private int nextIndex;
 		/**
 		 * expected head pointer, updated when the iterator makes a structural change to the list
 		 */
@@ -979,9 +1414,11 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 		 * Creates a new list iterator with the specified start index.
 		 *
 		 * @param startArrayIndex start index into the array, an array index not a list index
+		 * @param startIndex the same start index as a list index
 		 */
-		ListItr(int startArrayIndex) {
+		ListItr(int startArrayIndex, int startIndex) {
 			cursor = startArrayIndex;
+			nextIndex = startIndex;
 			lastRet = -1;
 		}
 
@@ -993,64 +1430,59 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 			// return false;
 			// }
 
-			return cursor != -1 && cursor != tail;
+			return cursor != -1 && nextIndex != size();
 		}
 		@Override
 		public E next() {
 			checkCoMod();
 			int mask = getMask();
-			int index = cursor;
 
-			if (index == tail || index == -1) {
+			if (nextIndex == size() || cursor == -1) {
 				throw new NoSuchElementException();
 			} else {
 				lastRet = cursor;
 				cursor = (cursor + 1) & mask;
+				nextIndex++;
 				return elements[lastRet];
 			}
 		}
 		@Override
 		public int nextIndex() {
-			if (cursor == tail) {
-				return size();
-			}
-			return getListIndexFromArrayIndex(cursor, getMask());
+			return nextIndex;
 		}
 
 		@Override
 		public boolean hasPrevious() {
 			checkCoMod();
-			return cursor != head && cursor != -1;
+			return nextIndex != 0 && cursor != -1;
 		}
 		@Override
 		public E previous() {
 			checkCoMod();
 			// check next value to be computed, not current position
-			if (cursor == head || cursor == -1) {
+			if (nextIndex == 0 || cursor == -1) {
 				throw new NoSuchElementException();
 			}
 			lastRet = cursor = (cursor - 1) & getMask();
+			nextIndex--;
 			return elements[lastRet];
 		}
 		@Override
 		public int previousIndex() {
-			if (cursor == head) {
-				return -1;
-			}
-
-			int mask = getMask();
-			return getListIndexFromArrayIndex((cursor - 1) & mask, mask);
+			return nextIndex - 1;
 		}
 
 		@Override
 		public void add(E e) {
 			checkCoMod();
+			checkRoomForInsert(1);
 			// don't cache getMask across possible resizing
 			cursor = cursor + insertGap(cursor, 1) & getMask();
 			expectedHead = head;
 			expectedTail = tail;
 			elements[cursor] = e;
 			cursor = (cursor + 1) & getMask();
+			nextIndex++;
 			lastRet = -2; // prevent immediate remove, in line with spec
 		}
 		@Override
@@ -1060,6 +1492,9 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 				throw new IllegalStateException();
 			}
 
+			if (lastRet != cursor) { // returned by next
+				nextIndex--;
+			}
 			cursor = (lastRet + deleteRange(lastRet, 1)) & getMask();
 			expectedHead = head;
 			expectedTail = tail;
@@ -1072,6 +1507,7 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 			if (lastRet < 0) {
 				throw new IllegalStateException("Neither next() nor previous() have been called yet");
 			}
+			copyOnWrite();
 			CircularArrayList.this.elements[lastRet] = e;
 		}
 		/**
@@ -1080,12 +1516,475 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 		 * @throws ConcurrentModificationException if the expected head and tail do not match the actual values
 		 */
 		private void checkCoMod() {
+			closeEditingGap();
 			if (head != expectedHead && tail != expectedTail) {
 				throw new ConcurrentModificationException();
 			}
 		}
 	}
 
+	/**
+	 * List iterator that edits as a gap buffer, see {@link CircularArrayList#editingListIterator(int)}. The array holds
+	 * the elements before the cursor from {@code head}, then {@code gapLength} {@code null} cells starting at
+	 * {@code gapStart}, then the elements after the cursor up to {@code tail}. The gap is open only while this is the
+	 * deque's {@link CircularArrayList#editor editor}.
+	 */
+	private class EditingListItr implements ListIterator<E> {
+		/**
+		 * Array index of the cursor, which is where the gap starts.
+		 */
+		private int gapStart;
+		/**
+		 * Number of free cells at the cursor. Non-zero only while registered as the deque's editor.
+		 */
+		private int gapLength;
+		/**
+		 * List index of the cursor, not counting the gap. The gap alone can't place the cursor in a full array.
+		 */
+		private int nextIndex;
+		/**
+		 * Array index of the element returned by the most recent call to next or previous, or -1 if there is none or it
+		 * has since been removed, or another element added.
+		 */
+		private int lastRet = -1;
+		/**
+		 * expected head pointer, checked while the gap is closed
+		 */
+		private int expectedHead = head;
+		/**
+		 * expected tail pointer, checked while the gap is closed
+		 */
+		private int expectedTail = tail;
+
+		EditingListItr(int startArrayIndex, int startIndex) {
+			gapStart = startArrayIndex;
+			nextIndex = startIndex;
+		}
+
+		@Override
+		public boolean hasNext() {
+			checkCoMod();
+			if (nextIndex != elementCount()) {
+				return true;
+			}
+			if (gapLength > 0) {
+				closeGap(); // finished, and the gap is at the end so closing it costs nothing
+			}
+			return false;
+		}
+		@Override
+		public E next() {
+			checkCoMod();
+			if (nextIndex == elementCount()) {
+				throw new NoSuchElementException();
+			}
+			int mask = getMask();
+			int src = gapStart + gapLength & mask;
+			E e = elements[src];
+			if (gapLength > 0) { // carry the element across the gap
+				elements[gapStart] = e;
+				elements[src] = null;
+			}
+			lastRet = gapStart;
+			gapStart = (gapStart + 1) & mask;
+			nextIndex++;
+			return e;
+		}
+		@Override
+		public boolean hasPrevious() {
+			checkCoMod();
+			return nextIndex != 0;
+		}
+		@Override
+		public E previous() {
+			checkCoMod();
+			if (nextIndex == 0) {
+				throw new NoSuchElementException();
+			}
+			int mask = getMask();
+			gapStart = (gapStart - 1) & mask;
+			nextIndex--;
+			int dst = gapStart + gapLength & mask;
+			E e = elements[gapStart];
+			if (gapLength > 0) {
+				elements[dst] = e;
+				elements[gapStart] = null;
+			}
+			lastRet = dst;
+			return e;
+		}
+		@Override
+		public int nextIndex() {
+			return nextIndex;
+		}
+		@Override
+		public int previousIndex() {
+			return nextIndex() - 1;
+		}
+
+		@Override
+		public void add(E e) {
+			checkCoMod();
+			checkNotNull(e);
+			int size = elementCount();
+			checkRoomForInsert(size, 1);
+			copyOnWrite();
+			if (gapLength == 0) {
+				openGap(size);
+			}
+			elements[gapStart] = e;
+			gapStart = (gapStart + 1) & getMask();
+			gapLength--;
+			nextIndex++;
+			lastRet = -1;
+			registerGap();
+		}
+		@Override
+		public void remove() {
+			checkCoMod();
+			if (lastRet < 0) {
+				throw new IllegalStateException();
+			}
+			copyOnWrite();
+			elements[lastRet] = null;
+			if (lastRet != (gapStart + gapLength & getMask())) { // returned by next, so just before the gap
+				gapStart = lastRet;
+				nextIndex--;
+			}
+			gapLength++;
+			lastRet = -1;
+			registerGap();
+		}
+		@Override
+		public void set(E e) {
+			checkCoMod();
+			if (lastRet < 0) {
+				throw new IllegalStateException("Neither next() nor previous() have been called yet");
+			}
+			checkNotNull(e);
+			copyOnWrite();
+			elements[lastRet] = e;
+		}
+
+		/**
+		 * Returns the number of elements in the deque, not counting the gap.
+		 *
+		 * @return the number of elements
+		 */
+		private int elementCount() {
+			return (full ? elements.length : (tail - head) & getMask()) - gapLength;
+		}
+		/**
+		 * Opens a gap at the cursor when it has none. The gap is made of all the free cells of the array, which are
+		 * moved to the cursor by moving the shorter side of the deque. If the array is more than about two thirds full
+		 * it is first grown, so the new gap holds at least half as many cells as there are elements. A bounded deque
+		 * has no spare cell to keep, so its gap may take the rest of the array.
+		 *
+		 * @param size number of elements in the deque
+		 */
+		private void openGap(int size) {
+			int mask = getMask();
+			int prefixLength = (gapStart - head) & mask;
+			int suffixLength = size - prefixLength;
+			int free = maxSize != 0 ? elements.length - size : mask - size; // one cell is left empty unless bounded
+			if (maxSize == 0 && 2 * free < size + 2) {
+				int newCapacity = capacityFor(2 * size + 1);
+				if (newCapacity > elements.length) {
+					@SuppressWarnings("unchecked")
+					E[] a = (E[]) new Object[newCapacity];
+					copyRange(head, prefixLength, a, 0);
+					copyRange(gapStart, suffixLength, a, newCapacity - 1 - suffixLength);
+					elements = a;
+					head = 0;
+					tail = newCapacity - 1;
+					gapStart = prefixLength;
+					gapLength = newCapacity - 1 - size;
+					return;
+				}
+				if (free == 0)
+					throw new IllegalStateException("Sorry, deque too big");
+			}
+			if (suffixLength <= prefixLength) {
+				moveRight(gapStart, gapStart + free & mask, suffixLength);
+				nullifyRange(gapStart, Math.min(free, suffixLength));
+				tail = (tail + free) & mask;
+			} else {
+				moveLeft(head, head - free & mask, prefixLength);
+				nullifyRange(gapStart - Math.min(free, prefixLength) & mask, Math.min(free, prefixLength));
+				head = (head - free) & mask;
+				gapStart = (gapStart - free) & mask;
+			}
+			gapLength = free;
+			full = head == tail;
+		}
+		/**
+		 * Closes the gap by moving the shorter side of the deque across it, and unregisters this iterator as the
+		 * deque's editor. The vacated cells are cleared; the gap itself is already clear.
+		 */
+		void closeGap() {
+			int g = gapLength;
+			int mask = getMask();
+			int prefixLength = (gapStart - head) & mask;
+			int suffixLength = (tail - gapStart - g) & mask;
+			boolean lastRetInPrefix = lastRet >= 0 && lastRet == (gapStart - 1 & mask);
+			editor = null;
+			gapLength = 0;
+			if (suffixLength <= prefixLength) {
+				moveLeft(gapStart + g & mask, gapStart, suffixLength);
+				nullifyRange(tail - Math.min(g, suffixLength) & mask, Math.min(g, suffixLength));
+				tail = (tail - g) & mask;
+			} else {
+				moveRight(head, head + g & mask, prefixLength);
+				nullifyRange(head, Math.min(g, prefixLength));
+				head = (head + g) & mask;
+				gapStart = (gapStart + g) & mask;
+			}
+			full = false;
+			if (lastRet >= 0) {
+				lastRet = lastRetInPrefix ? (gapStart - 1 & mask) : gapStart;
+			}
+			expectedHead = head;
+			expectedTail = tail;
+		}
+		/**
+		 * Registers this iterator as the deque's editor if its gap is open, or otherwise records the head and tail.
+		 */
+		private void registerGap() {
+			if (gapLength > 0) {
+				editor = this;
+			} else {
+				if (editor == this) {
+					editor = null;
+				}
+				expectedHead = head;
+				expectedTail = tail;
+			}
+		}
+		private void checkCoMod() {
+			if (editor != this) {
+				closeEditingGap(); // another editor's
+				if (head != expectedHead || tail != expectedTail) {
+					throw new ConcurrentModificationException();
+				}
+			}
+		}
+	}
+
+	/**
+	 * View of a contiguous range of the deque. Structural changes are made through the deque's own range operations and
+	 * then propagated up the chain of enclosing views, each of which adjusts its size and remembers the new head and
+	 * tail pointers.
+	 */
+	private class SubList extends AbstractList<E> implements RandomAccess {
+		/**
+		 * the view from which this one was created, or {@code null} if it was created directly from the deque
+		 */
+		private final SubList parent;
+		/**
+		 * list index in the deque of the first element of this view
+		 */
+		private final int offset;
+		/**
+		 * number of elements in this view
+		 */
+		private int size;
+		/**
+		 * expected head pointer, updated when the view makes a structural change to the list
+		 */
+		private int expectedHead = head;
+		/**
+		 * expected tail pointer, updated when the view makes a structural change to the list
+		 */
+		private int expectedTail = tail;
+
+		SubList(SubList parent, int offset, int size) {
+			this.parent = parent;
+			this.offset = offset;
+			this.size = size;
+		}
+
+		@Override
+		public int size() {
+			checkCoMod();
+			return size;
+		}
+		@Override
+		public E get(int index) {
+			checkCoMod();
+			checkIndex(index, size);
+			return elements[getArrayIndexFromListIndex(offset + index, getMask())];
+		}
+		@Override
+		public E set(int index, E element) {
+			checkNotNull(element);
+			checkCoMod();
+			checkIndex(index, size);
+			copyOnWrite();
+			int arrayIndex = getArrayIndexFromListIndex(offset + index, getMask());
+			E old = elements[arrayIndex];
+			elements[arrayIndex] = element;
+			return old;
+		}
+		@Override
+		public void add(int index, E element) {
+			checkCoMod();
+			checkIndex(index, size + 1);
+			CircularArrayList.this.add(offset + index, element);
+			structurallyModified(1);
+		}
+		@Override
+		public boolean addAll(Collection<? extends E> c) {
+			return addAll(size, c);
+		}
+		@Override
+		public boolean addAll(int index, Collection<? extends E> c) {
+			checkCoMod();
+			checkIndex(index, size + 1);
+			int oldSize = CircularArrayList.this.size();
+			if (!CircularArrayList.this.addAll(offset + index, c)) {
+				return false;
+			}
+			structurallyModified(CircularArrayList.this.size() - oldSize);
+			return true;
+		}
+		@Override
+		public E remove(int index) {
+			checkCoMod();
+			checkIndex(index, size);
+			E old = CircularArrayList.this.remove(offset + index);
+			structurallyModified(-1);
+			return old;
+		}
+		@Override
+		protected void removeRange(int fromIndex, int toIndex) {
+			checkCoMod();
+			checkRange(fromIndex, toIndex, size);
+			CircularArrayList.this.removeRange(offset + fromIndex, offset + toIndex);
+			structurallyModified(fromIndex - toIndex);
+		}
+		@Override
+		public void clear() {
+			removeRange(0, size);
+		}
+		@Override
+		public Object[] toArray() {
+			checkCoMod();
+			return copyRange(getArrayIndexFromListIndex(offset, getMask()), size, new Object[size], 0);
+		}
+		@SuppressWarnings("unchecked")
+		// component type can only be T, so this is safe
+		@Override
+		public <T> T[] toArray(T[] a) {
+			checkCoMod();
+			if (a.length < size)
+				a = (T[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), size);
+			copyRange(getArrayIndexFromListIndex(offset, getMask()), size, a, 0);
+			if (a.length > size)
+				a[size] = null;
+			return a;
+		}
+		@Override
+		public List<E> subList(int fromIndex, int toIndex) {
+			checkCoMod();
+			checkRange(fromIndex, toIndex, size);
+			return new SubList(this, offset + fromIndex, toIndex - fromIndex);
+		}
+		/**
+		 * Returns an iterator that walks the backing array directly, wrapping at its end.
+		 */
+		@Override
+		public Iterator<E> iterator() {
+			checkCoMod();
+			return new Iterator<E>() {
+				/**
+				 * array index of the next element
+				 */
+				private int cursor = getArrayIndexFromListIndex(offset, getMask());
+				/**
+				 * index in this view of the next element
+				 */
+				private int nextIndex = 0;
+				/**
+				 * index in this view of the element last returned, or -1 if there is none to remove
+				 */
+				private int lastRet = -1;
+				private int expectedModCount = modCount;
+
+				@Override
+				public boolean hasNext() {
+					return nextIndex < size;
+				}
+				@Override
+				public E next() {
+					checkIteratorCoMod();
+					if (nextIndex >= size) {
+						throw new NoSuchElementException();
+					}
+					E e = elements[cursor];
+					cursor = (cursor + 1) & getMask();
+					lastRet = nextIndex++;
+					return e;
+				}
+				@Override
+				public void remove() {
+					if (lastRet < 0) {
+						throw new IllegalStateException();
+					}
+					checkIteratorCoMod();
+					SubList.this.remove(lastRet);
+					// the deque may have moved its prefix or resized, so recompute the cursor
+					nextIndex = lastRet;
+					cursor = getArrayIndexFromListIndex(offset + nextIndex, getMask());
+					lastRet = -1;
+					expectedModCount = modCount;
+				}
+				private void checkIteratorCoMod() {
+					checkCoMod();
+					if (modCount != expectedModCount) {
+						throw new ConcurrentModificationException();
+					}
+				}
+			};
+		}
+		/**
+		 * Records a structural change of {@code sizeDelta} elements made through this view, in this view and all
+		 * enclosing views.
+		 *
+		 * @param sizeDelta change in the number of elements
+		 */
+		private void structurallyModified(int sizeDelta) {
+			for (SubList view = this; view != null; view = view.parent) {
+				view.size += sizeDelta;
+				view.expectedHead = head;
+				view.expectedTail = tail;
+				view.modCount++;
+			}
+		}
+		/**
+		 * Checks that there have been no structural modifications to the list outside this view.
+		 *
+		 * @throws ConcurrentModificationException if the expected head and tail do not match the actual values
+		 */
+		private void checkCoMod() {
+			closeEditingGap();
+			if (head != expectedHead || tail != expectedTail) {
+				throw new ConcurrentModificationException();
+			}
+		}
+		/**
+		 * Tests that the specified index is in {@code [0, bound)}.
+		 *
+		 * @param index index to test
+		 * @param bound exclusive upper bound
+		 * @throws IndexOutOfBoundsException if the index is invalid
+		 */
+		private void checkIndex(int index, int bound) {
+			if (index < 0 || index >= bound) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+		}
+	}
+
 	// *** Queue methods ***
 
 	/**
@@ -1204,6 +2103,10 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	private void checkInvariants() {
 		// int mask = elements.length - 1;
 		
+		if (full) {
+			assert head == tail && elements[head] != null;
+			return;
+		}
 		assert elements[tail] == null;
 		assert head == tail ? elements[head] == null : (elements[head] != null && elements[(tail - 1)
 				& (elements.length - 1)] != null);
@@ -1220,7 +2123,11 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	 * @return true if elements moved backwards
 	 */
 	private boolean delete(int i) {
+		if (full) { // there is no null tail to copy down
+			return deleteRange(i, 1) == 0;
+		}
 		checkInvariants();
+		copyOnWrite();
 		final E[] elements = this.elements;
 		final int mask = elements.length - 1;
 		final int h = head;
@@ -1267,7 +2174,8 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	 */
 	@Override
 	public int size() {
-		return (tail - head) & (elements.length - 1);
+		closeEditingGap();
+		return full ? elements.length : (tail - head) & (elements.length - 1);
 	}
 
 	/**
@@ -1277,7 +2185,8 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	 */
 	@Override
 	public boolean isEmpty() {
-		return head == tail;
+		closeEditingGap();
+		return head == tail && !full;
 	}
 
 	/**
@@ -1320,13 +2229,13 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	 */
 	@Override
 	public boolean contains(Object o) {
+		closeEditingGap();
 		if (o == null)
 			return false;
 		int mask = elements.length - 1;
 		int i = head;
-		E x;
-		while ((x = elements[i]) != null) {
-			if (o.equals(x))
+		for (int n = size(); n > 0; n--) {
+			if (o.equals(elements[i]))
 				return true;
 			i = (i + 1) & mask;
 		}
@@ -1349,15 +2258,140 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 		return removeFirstOccurrence(o);
 	}
 
+	/**
+	 * Removes from this deque all of its elements that are contained in the specified collection. This runs in a single
+	 * pass over the deque; see {@link #removeMatching(Predicate)}.
+	 *
+	 * @param c collection containing elements to be removed from this deque
+	 * @return {@code true} if this deque changed as a result of the call
+	 * @throws NullPointerException if the specified collection is null
+	 */
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		if (c == null) {
+			throw new NullPointerException();
+		}
+		return removeMatching(containedIn(c, true));
+	}
+
+	/**
+	 * Retains only the elements in this deque that are contained in the specified collection. This runs in a single
+	 * pass over the deque; see {@link #removeMatching(Predicate)}.
+	 *
+	 * @param c collection containing elements to be retained in this deque
+	 * @return {@code true} if this deque changed as a result of the call
+	 * @throws NullPointerException if the specified collection is null
+	 */
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		if (c == null) {
+			throw new NullPointerException();
+		}
+		return removeMatching(containedIn(c, false));
+	}
+	/**
+	 * Returns a predicate testing whether elements are in the specified collection. Unlike {@code Predicates.in}, this
+	 * lets exceptions thrown by {@link Collection#contains} reach the caller, as {@link java.util.AbstractCollection}
+	 * does in {@code removeAll} and {@code retainAll}.
+	 *
+	 * @param c collection to test for elements
+	 * @param contained whether the predicate accepts the elements in {@code c}, rather than those not in it
+	 * @return the predicate
+	 */
+	static Predicate<Object> containedIn(final Collection<?> c, final boolean contained) {
+		return new Predicate<Object>() {
+			@Override
+			public boolean apply(Object e) {
+				return c.contains(e) == contained;
+			}
+		};
+	}
+
+	/**
+	 * Removes all of the elements of this deque that satisfy the given predicate. The deque is compacted in a single
+	 * pass from head to tail, sliding each kept element down over the gaps left by removed ones, so this runs in linear
+	 * time however many elements are removed. The predicate is applied once to each element, in order.
+	 * <p>
+	 * If the predicate throws, the elements it has already matched are removed and the rest are kept, in order.
+	 *
+	 * @param predicate predicate returning {@code true} for elements to be removed
+	 * @return {@code true} if any elements were removed
+	 * @throws NullPointerException if the specified predicate is null
+	 */
+	public boolean removeMatching(Predicate<? super E> predicate) {
+		closeEditingGap();
+		if (predicate == null) {
+			throw new NullPointerException();
+		}
+		E[] elements = this.elements;
+		final int mask = elements.length - 1;
+		final int t = tail;
+		final int size = size();
+
+		// skip the kept prefix, which doesn't move
+		int i = head;
+		int kept = 0;
+		while (kept < size && !predicate.apply(elements[i])) {
+			i = (i + 1) & mask;
+			kept++;
+		}
+		if (kept == size) {
+			return false;
+		}
+		copyOnWrite();
+		elements = this.elements;
+
+		int w = i; // next cell to fill with a kept element
+		i = (i + 1) & mask;
+		try {
+			for (; i != t; i = (i + 1) & mask) {
+				E e = elements[i];
+				if (!predicate.apply(e)) {
+					elements[w] = e;
+					w = (w + 1) & mask;
+				}
+			}
+		} finally {
+			// if the predicate threw, keep the elements it hasn't seen
+			int unseen = (t - i) & mask;
+			moveLeft(i, w, unseen);
+			w = (w + unseen) & mask;
+
+			// at least one element was removed, so the kept elements can't fill the array
+			nullifyRange(w, size - (w - head & mask));
+			tail = w;
+			full = false;
+		}
+		maybeShrink();
+		return true;
+	}
+
 	/**
 	 * Removes all of the elements from this deque. The deque will be empty after this call returns.
 	 */
 	@Override
+	@SuppressWarnings("unchecked")
+	// cast of Object[] to E[] is safe as we only ever put Es in it
 	public void clear() {
+		closeEditingGap();
+		if (autoShrink && elements.length > MIN_INITIAL_CAPACITY) {
+			elements = (E[]) new Object[MIN_INITIAL_CAPACITY];
+			head = tail = 0;
+			shared = false;
+			return;
+		}
+		if (shared) { // nothing to keep, so no need to copy
+			elements = (E[]) new Object[elements.length];
+			head = tail = 0;
+			full = false;
+			shared = false;
+			return;
+		}
 		int h = head;
 		int t = tail;
-		if (h != t) { // clear all cells
+		if (h != t || full) { // clear all cells
 			head = tail = 0;
+			full = false;
 			int i = h;
 			int mask = elements.length - 1;
 			do {
@@ -1427,23 +2461,37 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	// *** Object methods ***
 
 	/**
-	 * Returns a copy of this deque.
+	 * Returns a copy of this deque, in constant time. The copy shares this deque's array until either of them is next
+	 * modified, when the one being modified first takes its own copy of the array. A snapshot that is only read
+	 * therefore costs no copying at all, and is unaffected by later changes to this deque.
 	 *
 	 * @return a copy of this deque
 	 */
 	@Override
 	public CircularArrayList<E> clone() {
+		closeEditingGap();
 		try {
 			@SuppressWarnings("unchecked")
 			// this has the same type as me, so cast is safe
 			CircularArrayList<E> result = (CircularArrayList<E>) super.clone();
-			result.elements = Arrays.copyOf(elements, elements.length);
+			shared = true;
+			result.shared = true;
 			return result;
 		} catch (CloneNotSupportedException e) {
 			throw new AssertionError();
 		}
 	}
 
+	/**
+	 * Gives this deque its own copy of the array, if it may be shared with a clone, before the array is written.
+	 */
+	private void copyOnWrite() {
+		if (shared) {
+			elements = Arrays.copyOf(elements, elements.length);
+			shared = false;
+		}
+	}
+
 	/**
 	 * Appease the serialization gods.
 	 */
@@ -1456,15 +2504,17 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	 *             reference) in first-to-last order.
 	 */
 	private void writeObject(ObjectOutputStream s) throws IOException {
+		closeEditingGap();
 		s.defaultWriteObject();
 
 		// Write out size
-		s.writeInt(size());
+		int size = size();
+		s.writeInt(size);
 
 		// Write out elements in order.
 		int mask = elements.length - 1;
-		for (int i = head; i != tail; i = (i + 1) & mask)
-			s.writeObject(elements[i]);
+		for (int i = 0; i < size; i++)
+			s.writeObject(elements[getArrayIndexFromListIndex(i, mask)]);
 	}
 
 	/**
@@ -1475,11 +2525,12 @@ public class CircularArrayList<E> extends AbstractList<E> implements Deque<E>, L
 	private void readObject(ObjectInputStream s) throws IOException, ClassNotFoundException {
 		s.defaultReadObject();
 
-		// Read in size and allocate array
+		// Read in size and allocate array, at full size if bounded
 		int size = s.readInt();
-		allocateElements(size);
+		allocateElements(maxSize != 0 ? maxSize - 1 : size);
 		head = 0;
-		tail = size;
+		tail = size & (elements.length - 1);
+		full = size == elements.length;
 
 		// Read in all elements in the proper order.
 		for (int i = 0; i < size; i++)
@@ -0,0 +1,339 @@
+package joe.collect;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+
+/**
+ * Resizable {@code int[]} implementation of a circular array deque and list, the primitive sibling of
+ * {@link CircularArrayList}. The layout, growth policy and shifting behaviour are the same: the capacity is a power of
+ * two, elements are found by masking and indexed inserts and removes move whichever side of the list is shorter.
+ * <p>
+ * The primitive methods ({@link #addLastInt}, {@link #pollFirstInt}, {@link #getInt} and friends) never box. This
+ * class also implements {@link java.util.List List&lt;Integer&gt;} for interoperability; those methods box and unbox
+ * at the boundary as you'd expect, so should be kept off hot paths.
+ * <p>
+ * Since there is no {@code null} int, the poll and get methods for either end throw {@link NoSuchElementException}
+ * when the deque is empty rather than returning a sentinel. Test {@link #isEmpty()} first.
+ * <p>
+ * This class is not thread-safe. Its iterators are those of {@link java.util.AbstractList}.
+ *
+ * @author Joe Kearney
+ * @see CircularLongArrayList
+ */
+public class CircularIntArrayList extends AbstractCircularPrimitiveArrayList<Integer> implements Cloneable,
+		Serializable {
+	/**
+	 * The array in which the elements of the deque are stored. The capacity of the deque is the length of this array,
+	 * which is always a power of two.
+	 */
+	transient int[] elements;
+
+	/**
+	 * Constructs an empty deque with an initial capacity sufficient to hold 7 elements.
+	 */
+	public CircularIntArrayList() {
+		this(0);
+	}
+	/**
+	 * Constructs an empty deque with an initial capacity sufficient to hold the specified number of elements.
+	 *
+	 * @param numElements lower bound on initial capacity of the deque
+	 */
+	public CircularIntArrayList(int numElements) {
+		elements = new int[CircularArrayList.capacityFor(numElements)];
+	}
+	/**
+	 * Constructs a deque containing the elements of the specified collection, in the order they are returned by the
+	 * collection's iterator.
+	 *
+	 * @param c the collection whose elements are to be placed into the deque
+	 * @throws NullPointerException if the specified collection is or contains null
+	 */
+	public CircularIntArrayList(Collection<? extends Integer> c) {
+		this(c.size());
+		addAll(c);
+	}
+
+	@Override
+	final Object array() {
+		return elements;
+	}
+	@Override
+	final int capacity() {
+		return elements.length;
+	}
+	@Override
+	final Object newArray(int capacity) {
+		return new int[capacity];
+	}
+	@Override
+	final void setArray(Object array) {
+		elements = (int[]) array;
+	}
+
+	// *** primitive deque methods ***
+
+	/**
+	 * Inserts the specified element at the front of this deque.
+	 *
+	 * @param value the element to add
+	 */
+	public void addFirstInt(int value) {
+		modCount++;
+		elements[head = (head - 1) & (elements.length - 1)] = value;
+		if (head == tail)
+			doubleCapacity();
+	}
+	/**
+	 * Inserts the specified element at the end of this deque.
+	 *
+	 * @param value the element to add
+	 */
+	public void addLastInt(int value) {
+		modCount++;
+		elements[tail] = value;
+		if ((tail = (tail + 1) & (elements.length - 1)) == head)
+			doubleCapacity();
+	}
+	/**
+	 * Retrieves and removes the first element of this deque.
+	 *
+	 * @return the first element of this deque
+	 * @throws NoSuchElementException if this deque is empty
+	 */
+	public int pollFirstInt() {
+		int h = head;
+		if (h == tail)
+			throw new NoSuchElementException();
+		modCount++;
+		head = (h + 1) & (elements.length - 1);
+		return elements[h];
+	}
+	/**
+	 * Retrieves and removes the last element of this deque.
+	 *
+	 * @return the last element of this deque
+	 * @throws NoSuchElementException if this deque is empty
+	 */
+	public int pollLastInt() {
+		if (head == tail)
+			throw new NoSuchElementException();
+		modCount++;
+		return elements[tail = (tail - 1) & (elements.length - 1)];
+	}
+	/**
+	 * Retrieves, but does not remove, the first element of this deque.
+	 *
+	 * @return the first element of this deque
+	 * @throws NoSuchElementException if this deque is empty
+	 */
+	public int getFirstInt() {
+		if (head == tail)
+			throw new NoSuchElementException();
+		return elements[head];
+	}
+	/**
+	 * Retrieves, but does not remove, the last element of this deque.
+	 *
+	 * @return the last element of this deque
+	 * @throws NoSuchElementException if this deque is empty
+	 */
+	public int getLastInt() {
+		if (head == tail)
+			throw new NoSuchElementException();
+		return elements[(tail - 1) & (elements.length - 1)];
+	}
+
+	// *** primitive list methods ***
+
+	/**
+	 * Returns the element at the specified position in this list.
+	 *
+	 * @param index index of the element to return
+	 * @return the element at the specified position
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 */
+	public int getInt(int index) {
+		checkListRange(index);
+		return elements[(head + index) & (elements.length - 1)];
+	}
+	/**
+	 * Replaces the element at the specified position in this list.
+	 *
+	 * @param index index of the element to replace
+	 * @param value element to be stored at the specified position
+	 * @return the element previously at the specified position
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 */
+	public int setInt(int index, int value) {
+		checkListRange(index);
+		int arrayIndex = (head + index) & (elements.length - 1);
+		int old = elements[arrayIndex];
+		elements[arrayIndex] = value;
+		return old;
+	}
+	/**
+	 * Inserts the specified element at the specified position in this list, moving the shorter of the prefix and the
+	 * suffix.
+	 *
+	 * @param index index at which the element is to be inserted
+	 * @param value element to be inserted
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 */
+	public void addInt(int index, int value) {
+		checkInsertListRange(index);
+		int arrayIndex = openGap(index, 1); // may reallocate, so read elements afterwards
+		elements[arrayIndex] = value;
+	}
+	/**
+	 * Removes the element at the specified position in this list, moving the shorter of the prefix and the suffix.
+	 *
+	 * @param index index of the element to be removed
+	 * @return the element previously at the specified position
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 */
+	public int removeInt(int index) {
+		int old = getInt(index);
+		closeGap(index, 1);
+		return old;
+	}
+	/**
+	 * Returns the index of the first occurrence of the specified element in this list, or -1 if there is none.
+	 *
+	 * @param value element to search for
+	 * @return index of the first occurrence, or -1
+	 */
+	public int indexOfInt(int value) {
+		int mask = elements.length - 1;
+		for (int i = head; i != tail; i = (i + 1) & mask) {
+			if (elements[i] == value)
+				return (i - head) & mask;
+		}
+		return -1;
+	}
+	/**
+	 * Returns the index of the last occurrence of the specified element in this list, or -1 if there is none.
+	 *
+	 * @param value element to search for
+	 * @return index of the last occurrence, or -1
+	 */
+	public int lastIndexOfInt(int value) {
+		int mask = elements.length - 1;
+		for (int i = tail; i != head;) {
+			i = (i - 1) & mask;
+			if (elements[i] == value)
+				return (i - head) & mask;
+		}
+		return -1;
+	}
+	/**
+	 * Returns {@code true} if this deque contains the specified element.
+	 *
+	 * @param value element to search for
+	 * @return {@code true} if this deque contains the element
+	 */
+	public boolean containsInt(int value) {
+		return indexOfInt(value) >= 0;
+	}
+	/**
+	 * Returns an array containing all of the elements in this deque in order from first to last.
+	 *
+	 * @return a new array of the elements in this deque
+	 */
+	public int[] toIntArray() {
+		int[] a = new int[size()];
+		copyOut(elements, elements.length - 1, head, a, 0, a.length);
+		return a;
+	}
+
+	// *** boxing List methods ***
+
+	@Override
+	public Integer get(int index) {
+		return getInt(index);
+	}
+	@Override
+	public Integer set(int index, Integer element) {
+		return setInt(index, element);
+	}
+	@Override
+	public boolean add(Integer element) {
+		addLastInt(element);
+		return true;
+	}
+	@Override
+	public void add(int index, Integer element) {
+		addInt(index, element);
+	}
+	@Override
+	public Integer remove(int index) {
+		return removeInt(index);
+	}
+	@Override
+	public int indexOf(Object o) {
+		return o instanceof Integer ? indexOfInt((Integer) o) : -1;
+	}
+	@Override
+	public int lastIndexOf(Object o) {
+		return o instanceof Integer ? lastIndexOfInt((Integer) o) : -1;
+	}
+	@Override
+	public boolean contains(Object o) {
+		return indexOf(o) >= 0;
+	}
+
+	// *** Object methods ***
+
+	/**
+	 * Returns a copy of this deque.
+	 *
+	 * @return a copy of this deque
+	 */
+	@Override
+	public CircularIntArrayList clone() {
+		try {
+			CircularIntArrayList result = (CircularIntArrayList) super.clone();
+			result.elements = Arrays.copyOf(elements, elements.length);
+			return result;
+		} catch (CloneNotSupportedException e) {
+			throw new AssertionError();
+		}
+	}
+
+	/**
+	 * Appease the serialization gods.
+	 */
+	private static final long serialVersionUID = -4378734589872134502L;
+
+	/**
+	 * Serialize this deque.
+	 *
+	 * @serialData The current size ({@code int}) of the deque, followed by all of its elements (each an {@code int})
+	 *             in first-to-last order.
+	 */
+	private void writeObject(ObjectOutputStream s) throws IOException {
+		s.defaultWriteObject();
+		s.writeInt(size());
+		int mask = elements.length - 1;
+		for (int i = head; i != tail; i = (i + 1) & mask)
+			s.writeInt(elements[i]);
+	}
+
+	/**
+	 * Deserialize this deque.
+	 */
+	private void readObject(ObjectInputStream s) throws IOException, ClassNotFoundException {
+		s.defaultReadObject();
+		int size = s.readInt();
+		elements = new int[CircularArrayList.capacityFor(size)];
+		head = 0;
+		tail = size;
+		for (int i = 0; i < size; i++)
+			elements[i] = s.readInt();
+	}
+}
@@ -0,0 +1,433 @@
+package joe.collect;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ring of preallocated, mutable event slots through which producers pass events to one or more stages of consumers,
+ * in the style of the LMAX Disruptor. Every slot is created once, by an {@link EventFactory}, when the ring is
+ * constructed; thereafter producers fill slots in place and consumers read them in place, so that in the steady state
+ * passing an event allocates nothing. Slots are addressed by masking {@code long} sequences, as in
+ * {@link MpscArrayBlockingQueue}.
+ * <p>
+ * A producer {@linkplain #next() claims} a sequence, or a contiguous range of them, with a single compare-and-set,
+ * writes into the slot returned by {@link #get(long)}, and then {@linkplain #publish(long) publishes} it. Each slot is
+ * published individually, by recording in an availability array the round of the ring in which it was filled, so
+ * producers never wait for one another: a producer descheduled between claiming and publishing holds up only the
+ * stages, once they reach its slot, and not the producers that claimed after it. A stage with no dependencies sees
+ * events up to the first slot not yet published. Any number of threads may produce.
+ * <p>
+ * Consumers are organised in {@link Stage stages}, each of which has its own sequence, advanced by exactly one thread.
+ * A stage sees an event once it has been published and once every stage it {@linkplain #addStage(Stage...) depends
+ * on} has processed it, so a pipeline such as <i>journal and replicate, then apply</i> is two independent stages
+ * followed by a third depending on both. A stage hands every available event to an {@link EventHandler} in one batch,
+ * advancing its sequence once at the end. Producers do not overwrite a slot until every stage has processed it.
+ * <p>
+ * Threads waiting for space or for events yield for a while and then park for at most {@value
+ * SpscArrayBlockingQueue#MAX_PARK_MICROS}&micro;s at a time, checking the sequences whenever they wake; nobody
+ * signals them. That keeps signalling out of the fast path at the cost of bounded extra latency when the ring has
+ * been idle.
+ *
+ * @author Joe Kearney
+ * @param <T> the type of the event slots
+ */
+public class EventRing<T> {
+	/**
+	 * Creates the slots of an {@link EventRing}.
+	 *
+	 * @param <T> the type of the event slots
+	 */
+	public interface EventFactory<T> {
+		/**
+		 * Creates a new, empty event slot. Called once for each slot when the ring is constructed.
+		 *
+		 * @return a new slot, not {@code null}
+		 */
+		T newInstance();
+	}
+
+	/**
+	 * Callback through which a {@link Stage} processes events.
+	 *
+	 * @param <T> the type of the event slots
+	 */
+	public interface EventHandler<T> {
+		/**
+		 * Processes a published event. The slot belongs to the ring and is reused once every stage has processed it, so
+		 * the handler should copy out anything it needs to keep.
+		 *
+		 * @param event the event slot
+		 * @param sequence sequence of the event
+		 * @param endOfBatch {@code true} if this is the last event of the batch being processed, after which the stage's
+		 *            sequence is advanced; a handler may, for example, flush its output here
+		 */
+		void onEvent(T event, long sequence, boolean endOfBatch);
+	}
+
+	private static final long MAX_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(SpscArrayBlockingQueue.MAX_PARK_MICROS);
+	private static final int SPIN_TRIES = SpscArrayBlockingQueue.SPIN_TRIES;
+
+	/**
+	 * The preallocated slots, of power-of-two length.
+	 */
+	private final T[] slots;
+	/**
+	 * Mask for the length of the array.
+	 */
+	private final int mask;
+
+	/**
+	 * Sequence of the next slot to be claimed. Advanced by producers with compare-and-set.
+	 */
+	private final PaddedAtomicLong claimed = new PaddedAtomicLong();
+	/**
+	 * For each slot, the round of the ring ({@code sequence >>> indexShift}) in which it was last published, or
+	 * {@code -1} if never. A slot is published for a sequence exactly when its entry is that sequence's round.
+	 */
+	private final AtomicIntegerArray availability;
+	/**
+	 * Base-2 logarithm of the number of slots.
+	 */
+	private final int indexShift;
+	/**
+	 * All stages of consumers, which gate the producers. Replaced, never modified, when a stage is added.
+	 */
+	private volatile Stage<?>[] stages = new Stage<?>[0];
+	/**
+	 * A recent value of the least stage sequence, never more than the true value. Shared by the producers.
+	 */
+	private final PaddedAtomicLong gatingCache = new PaddedAtomicLong();
+
+	/**
+	 * Constructs a ring with at least the specified number of slots, rounded up to a power of two, each created by the
+	 * factory.
+	 *
+	 * @param capacity minimum number of slots
+	 * @param factory creates the slots
+	 * @throws IllegalArgumentException if the capacity is not positive or is greater than {@code 2^30}
+	 * @throws NullPointerException if the factory is null or creates a null slot
+	 */
+	@SuppressWarnings("unchecked")
+	// cast of Object[] to T[] is safe as we only ever put Ts in it
+	public EventRing(int capacity, EventFactory<? extends T> factory) {
+		slots = (T[]) new Object[SpscArrayBlockingQueue.ringCapacityFor(capacity)];
+		mask = slots.length - 1;
+		indexShift = Integer.numberOfTrailingZeros(slots.length);
+		availability = new AtomicIntegerArray(slots.length);
+		for (int i = 0; i < slots.length; i++) {
+			T slot = factory.newInstance();
+			if (slot == null) {
+				throw new NullPointerException("Factory created a null slot");
+			}
+			slots[i] = slot;
+			availability.set(i, -1);
+		}
+	}
+
+	/**
+	 * Returns the number of slots in this ring, which is fixed at construction.
+	 *
+	 * @return the number of slots
+	 */
+	public int capacity() {
+		return slots.length;
+	}
+	/**
+	 * Adds a stage of consumers that processes each event after all of the specified stages have done so, or as soon
+	 * as it is published if there are none. Stages must all be added before the first slot is claimed.
+	 *
+	 * @param dependencies stages of this ring that must process each event before the new stage sees it
+	 * @return the new stage
+	 * @throws IllegalStateException if a slot has already been claimed
+	 * @throws IllegalArgumentException if a dependency belongs to a different ring
+	 */
+	public synchronized Stage<T> addStage(Stage<?>... dependencies) {
+		if (claimed.get() != 0) {
+			throw new IllegalStateException("Stages must be added before the first slot is claimed");
+		}
+		for (Stage<?> dependency : dependencies) {
+			if (dependency.ring != this) {
+				throw new IllegalArgumentException("Dependency belongs to a different ring");
+			}
+		}
+		Stage<T> stage = new Stage<T>(this, dependencies.clone());
+		Stage<?>[] newStages = new Stage<?>[stages.length + 1];
+		System.arraycopy(stages, 0, newStages, 0, stages.length);
+		newStages[stages.length] = stage;
+		stages = newStages;
+		return stage;
+	}
+
+	// *** producer methods ***
+
+	/**
+	 * Returns the slot for the specified sequence. A producer may write to the slot between claiming and publishing
+	 * the sequence; a consumer may read it from within {@link EventHandler#onEvent}.
+	 *
+	 * @param sequence sequence of the slot
+	 * @return the slot
+	 */
+	public T get(long sequence) {
+		return slots[(int) sequence & mask];
+	}
+	/**
+	 * Claims the next slot, waiting until the slowest stage has processed the event last held in it.
+	 *
+	 * @return sequence of the claimed slot
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public long next() throws InterruptedException {
+		return next(1);
+	}
+	/**
+	 * Claims {@code n} contiguous slots with one atomic operation, waiting until there is room for all of them. Every
+	 * claimed slot must be published, with {@link #publish(long, int)}, else the ring stalls.
+	 *
+	 * @param n number of slots to claim
+	 * @return sequence of the first claimed slot
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws IllegalArgumentException if {@code n} is not positive or is greater than the capacity
+	 */
+	public long next(int n) throws InterruptedException {
+		checkClaimSize(n);
+		long start;
+		for (int spins = 0; (start = tryClaim(n)) < 0; spins++) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			if (spins < SPIN_TRIES) {
+				Thread.yield();
+			} else {
+				LockSupport.parkNanos(this, MAX_PARK_NANOS);
+			}
+		}
+		return start;
+	}
+	/**
+	 * Claims the next slot if there is room, without waiting.
+	 *
+	 * @return sequence of the claimed slot, or {@code -1} if the ring is full
+	 */
+	public long tryNext() {
+		return tryNext(1);
+	}
+	/**
+	 * Claims {@code n} contiguous slots if there is room for all of them, without waiting.
+	 *
+	 * @param n number of slots to claim
+	 * @return sequence of the first claimed slot, or {@code -1} if there is not room
+	 * @throws IllegalArgumentException if {@code n} is not positive or is greater than the capacity
+	 */
+	public long tryNext(int n) {
+		checkClaimSize(n);
+		return tryClaim(n);
+	}
+	/**
+	 * Publishes a claimed and filled slot to the stages. Earlier claims need not have been published, though stages
+	 * will not see this event until they have been.
+	 *
+	 * @param sequence sequence of the slot
+	 */
+	public void publish(long sequence) {
+		availability.lazySet((int) sequence & mask, (int) (sequence >>> indexShift));
+	}
+	/**
+	 * Publishes a range of claimed and filled slots to the stages, as {@link #publish(long)} for each of them.
+	 *
+	 * @param start sequence of the first slot, as returned by {@link #next(int)}
+	 * @param n number of slots
+	 */
+	public void publish(long start, int n) {
+		for (long s = start; s < start + n; s++) {
+			publish(s);
+		}
+	}
+
+	/**
+	 * Claims {@code n} contiguous slots if there is room, with a single successful compare-and-set.
+	 *
+	 * @param n number of slots to claim
+	 * @return sequence of the first claimed slot, or {@code -1} if there is not room
+	 */
+	private long tryClaim(int n) {
+		long t;
+		do {
+			t = claimed.get();
+			long wrapPoint = t + n - slots.length;
+			if (wrapPoint > gatingCache.get()) {
+				long gate = minimumSequence(stages, t);
+				gatingCache.lazySet(gate);
+				if (wrapPoint > gate) {
+					return -1;
+				}
+			}
+		} while (!claimed.compareAndSet(t, t + n));
+		return t;
+	}
+	/**
+	 * Finds the first sequence in a range whose slot has not been published.
+	 *
+	 * @param from first sequence to check
+	 * @param limit end of the range, exclusive
+	 * @return the first unpublished sequence, or {@code limit} if all are published
+	 */
+	private long firstUnpublished(long from, long limit) {
+		for (long s = from; s < limit; s++) {
+			if (availability.get((int) s & mask) != (int) (s >>> indexShift)) {
+				return s;
+			}
+		}
+		return limit;
+	}
+	private void checkClaimSize(int n) {
+		if (n <= 0 || n > slots.length) {
+			throw new IllegalArgumentException("Claim size must be in [1, " + slots.length + "]: " + n);
+		}
+	}
+	/**
+	 * Computes the least sequence of the specified stages.
+	 *
+	 * @param stages the stages
+	 * @param ifNone value to return if there are no stages
+	 * @return the least sequence
+	 */
+	private static long minimumSequence(Stage<?>[] stages, long ifNone) {
+		long min = ifNone;
+		for (Stage<?> stage : stages) {
+			min = Math.min(min, stage.sequence.get());
+		}
+		return min;
+	}
+
+	// *** methods callable from any thread ***
+
+	/**
+	 * Returns the sequence of the first slot not yet published, that is, the number of events published before the
+	 * earliest outstanding claim. This is exact only if no producer is active.
+	 *
+	 * @return the published cursor
+	 */
+	public long getPublishedSequence() {
+		Stage<?>[] stages = this.stages;
+		long t = claimed.get();
+		// every stage has processed only published events; with no stages, only the last lap of slots is meaningful
+		long from = stages.length == 0 ? Math.max(0, t - slots.length) : minimumSequence(stages, t);
+		return firstUnpublished(from, t);
+	}
+	/**
+	 * Returns the number of slots that could be claimed now without waiting. This is exact only if no producer or stage
+	 * is active.
+	 *
+	 * @return the remaining capacity
+	 */
+	public int remainingCapacity() {
+		long t = claimed.get();
+		return (int) (slots.length - (t - minimumSequence(stages, t)));
+	}
+
+	/**
+	 * A group of consumers of an {@link EventRing}, which sees each event after its dependencies, and processes it
+	 * before producers may reuse its slot. A stage's sequence is advanced only by its processing methods, and <b>at
+	 * most one thread may call them at any time</b>; this is not checked.
+	 *
+	 * @param <T> the type of the event slots
+	 */
+	public static final class Stage<T> {
+		/**
+		 * The ring whose events this stage processes.
+		 */
+		private final EventRing<T> ring;
+		/**
+		 * Sequence of the next event to be processed. Written only by the stage's consumer thread.
+		 */
+		final PaddedAtomicLong sequence = new PaddedAtomicLong();
+		/**
+		 * Stages that must process each event first.
+		 */
+		private final Stage<?>[] dependencies;
+		/**
+		 * The consumer's most recent read of the barrier. Accessed only by the consumer.
+		 */
+		private long availableCache;
+
+		Stage(EventRing<T> ring, Stage<?>[] dependencies) {
+			this.ring = ring;
+			this.dependencies = dependencies;
+		}
+
+		/**
+		 * Returns the sequence of the next event this stage will process, that is, the number of events it has
+		 * processed.
+		 *
+		 * @return this stage's sequence
+		 */
+		public long getSequence() {
+			return sequence.get();
+		}
+		/**
+		 * Processes every event now available to this stage, in one batch, without waiting. The stage's sequence is
+		 * advanced once, after the last event.
+		 * <p>
+		 * If the handler throws, the events before the one that failed count as processed and the exception
+		 * propagates; the failed event is presented again by the next call.
+		 *
+		 * @param handler the handler for the events
+		 * @return the number of events processed
+		 */
+		public int processAvailable(EventHandler<? super T> handler) {
+			long next = sequence.get();
+			if (next >= availableCache) {
+				availableCache = barrier(next);
+				if (next >= availableCache) {
+					return 0;
+				}
+			}
+			long available = availableCache;
+			long s = next;
+			try {
+				for (; s < available; s++) {
+					handler.onEvent(ring.get(s), s, s == available - 1);
+				}
+			} finally {
+				sequence.lazySet(s);
+			}
+			return (int) (available - next);
+		}
+		/**
+		 * Processes every event available to this stage, in one batch, waiting until there is at least one.
+		 *
+		 * @param handler the handler for the events
+		 * @return the number of events processed, which is positive
+		 * @throws InterruptedException if interrupted while waiting
+		 * @see #processAvailable(EventHandler)
+		 */
+		public int process(EventHandler<? super T> handler) throws InterruptedException {
+			int count;
+			for (int spins = 0; (count = processAvailable(handler)) == 0; spins++) {
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				if (spins < SPIN_TRIES) {
+					Thread.yield();
+				} else {
+					LockSupport.parkNanos(this, MAX_PARK_NANOS);
+				}
+			}
+			return count;
+		}
+		/**
+		 * Computes the sequence up to which events are available to this stage. That is the slowest dependency, which
+		 * has processed only published events, or with no dependencies the first slot from {@code next} not yet
+		 * published.
+		 *
+		 * @param next sequence of the next event this stage will process
+		 */
+		private long barrier(long next) {
+			if (dependencies.length > 0) {
+				return minimumSequence(dependencies, Long.MAX_VALUE);
+			}
+			return ring.firstUnpublished(next, ring.claimed.get());
+		}
+	}
+}
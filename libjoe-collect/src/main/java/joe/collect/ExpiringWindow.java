@@ -0,0 +1,210 @@
+package joe.collect;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Deque of timestamped elements, held in timestamp order, from which everything older than a cutoff can be expired in
+ * one step. Elements are held in a {@link CircularArrayList} and their timestamps in a parallel
+ * {@link CircularLongArrayList}, so the timestamps are never boxed.
+ * <p>
+ * Since timestamps never decrease from first to last, {@link #expire(long)} finds the first element to keep by binary
+ * search over the timestamps, and then drops the whole prefix from both rings with one
+ * {@link CircularArrayList#removeRange removeRange} each, which clears the expired cells and moves the head without
+ * touching the survivors. This replaces a loop of {@code peekFirst}/{@code pollFirst}.
+ * <p>
+ * Likewise {@link #range(long, long)} finds the elements in a time range by binary search and returns a read-only view
+ * of them directly over the backing array, copying nothing. A view is invalidated by any later structural
+ * modification of the window, after which it throws {@link java.util.ConcurrentModificationException}.
+ * <p>
+ * Null elements are prohibited. This class is not thread-safe.
+ *
+ * @author Joe Kearney
+ * @param <E> the type of elements held in this window
+ */
+public class ExpiringWindow<E> implements Iterable<E> {
+	/**
+	 * The elements, oldest first.
+	 */
+	private final CircularArrayList<E> elements;
+	/**
+	 * The timestamps of the elements, non-decreasing.
+	 */
+	private final CircularLongArrayList timestamps;
+
+	/**
+	 * Constructs an empty window.
+	 */
+	public ExpiringWindow() {
+		elements = new CircularArrayList<E>();
+		timestamps = new CircularLongArrayList();
+	}
+
+	/**
+	 * Adds an element to the end of the window.
+	 *
+	 * @param timestamp time of the element, no earlier than that of the last element
+	 * @param element the element to add
+	 * @throws IllegalArgumentException if the timestamp is earlier than that of the last element
+	 * @throws NullPointerException if the element is null
+	 */
+	public void addLast(long timestamp, E element) {
+		if (!timestamps.isEmpty() && timestamp < timestamps.getLastLong()) {
+			throw new IllegalArgumentException("Timestamp " + timestamp + " is earlier than the last, "
+					+ timestamps.getLastLong());
+		}
+		elements.addLast(element);
+		timestamps.addLastLong(timestamp);
+	}
+	/**
+	 * Removes all elements with timestamps earlier than the cutoff.
+	 *
+	 * @param cutoff earliest timestamp to keep
+	 * @return the number of elements removed
+	 */
+	public int expire(long cutoff) {
+		int count = firstIndexNotBefore(cutoff);
+		if (count == elements.size()) {
+			// removing everything through removeRange would give the array back, only to regrow it on the next tick
+			elements.clear();
+			timestamps.clear();
+		} else if (count > 0) {
+			elements.removeRange(0, count);
+			timestamps.removeRange(0, count);
+		}
+		return count;
+	}
+	/**
+	 * Returns a read-only view of the elements with timestamps in {@code [from, to)}, in order, over the backing array.
+	 *
+	 * @param from earliest timestamp to include
+	 * @param to timestamp after the last to include
+	 * @return a view of the elements in range, empty if {@code to <= from}
+	 */
+	public List<E> range(long from, long to) {
+		int fromIndex = firstIndexNotBefore(from);
+		int toIndex = Math.max(fromIndex, firstIndexNotBefore(to));
+		return Collections.unmodifiableList(elements.subList(fromIndex, toIndex));
+	}
+	/**
+	 * Finds the list index of the first element whose timestamp is not before the specified time, or the size of the
+	 * window if there is none.
+	 */
+	private int firstIndexNotBefore(long time) {
+		int lo = 0;
+		int hi = timestamps.size();
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (timestamps.getLong(mid) < time) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Retrieves and removes the oldest element, or returns {@code null} if the window is empty.
+	 *
+	 * @return the oldest element, or {@code null}
+	 */
+	public E pollFirst() {
+		if (elements.isEmpty()) {
+			return null;
+		}
+		timestamps.pollFirstLong();
+		return elements.pollFirst();
+	}
+	/**
+	 * Retrieves, but does not remove, the oldest element, or returns {@code null} if the window is empty.
+	 *
+	 * @return the oldest element, or {@code null}
+	 */
+	public E peekFirst() {
+		return elements.peekFirst();
+	}
+	/**
+	 * Retrieves, but does not remove, the newest element, or returns {@code null} if the window is empty.
+	 *
+	 * @return the newest element, or {@code null}
+	 */
+	public E peekLast() {
+		return elements.peekLast();
+	}
+	/**
+	 * Returns the timestamp of the oldest element.
+	 *
+	 * @return the earliest timestamp
+	 * @throws NoSuchElementException if the window is empty
+	 */
+	public long getFirstTimestamp() {
+		return timestamps.getFirstLong();
+	}
+	/**
+	 * Returns the timestamp of the newest element.
+	 *
+	 * @return the latest timestamp
+	 * @throws NoSuchElementException if the window is empty
+	 */
+	public long getLastTimestamp() {
+		return timestamps.getLastLong();
+	}
+	/**
+	 * Returns the element at the specified position, counting from the oldest.
+	 *
+	 * @param index index of the element
+	 * @return the element
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 */
+	public E get(int index) {
+		return elements.get(index);
+	}
+	/**
+	 * Returns the timestamp of the element at the specified position, counting from the oldest.
+	 *
+	 * @param index index of the element
+	 * @return its timestamp
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 */
+	public long getTimestamp(int index) {
+		return timestamps.getLong(index);
+	}
+	/**
+	 * Returns the number of elements in the window.
+	 *
+	 * @return the number of elements
+	 */
+	public int size() {
+		return elements.size();
+	}
+	/**
+	 * Returns {@code true} if the window holds no elements.
+	 *
+	 * @return whether the window is empty
+	 */
+	public boolean isEmpty() {
+		return elements.isEmpty();
+	}
+	/**
+	 * Removes all elements from the window.
+	 */
+	public void clear() {
+		elements.clear();
+		timestamps.clear();
+	}
+	/**
+	 * Returns a read-only iterator over the elements, oldest first.
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return Collections.unmodifiableList(elements).iterator();
+	}
+
+	@Override
+	public String toString() {
+		return elements.toString();
+	}
+}
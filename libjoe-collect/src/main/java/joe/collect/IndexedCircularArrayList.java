@@ -0,0 +1,512 @@
+package joe.collect;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.TreeSet;
+
+import com.google.common.base.Predicate;
+
+/**
+ * Variant of {@link CircularArrayList} that keeps a hash index from each element to its position, so that
+ * {@link #contains}, {@link #indexOf}, {@link #lastIndexOf}, {@link #remove(Object)} and the
+ * {@code remove*Occurrence} methods find their element in constant expected time rather than by a linear scan. This
+ * suits a deque used as a work list from which items are frequently cancelled.
+ * <p>
+ * The index does not record array slots, which are moved by every resize and shift, but <i>sequence numbers</i>: the
+ * element at list index {@code i} has sequence number {@code headSeq + i}, where {@code headSeq} is decremented by
+ * {@link #addFirst} and incremented by {@link #pollFirst}. Adding or removing at either end therefore changes no other
+ * entry. An indexed insert or remove changes the list index of every element on one side of it, and the index is
+ * updated for whichever side is shorter, so those operations cost {@code O(min(index, size - index))}, the same as the
+ * element shifts they accompany.
+ * <p>
+ * Elements are located by {@link Object#equals equals} and {@link Object#hashCode hashCode}, so an element must not
+ * be mutated in a way that changes its hash code while it is in the list. Duplicate elements are permitted. Null
+ * elements are prohibited. The index costs an entry per distinct element, in addition to the array. This class is not
+ * thread-safe. Its iterators are those of {@link AbstractList}, and are fail-fast.
+ *
+ * @author Joe Kearney
+ * @param <E> the type of elements held in this collection
+ * @see CircularArrayList
+ */
+public class IndexedCircularArrayList<E> extends AbstractList<E> implements Deque<E>, RandomAccess, Serializable {
+	/**
+	 * The elements, in order.
+	 */
+	private final CircularArrayList<E> elements;
+	/**
+	 * Maps each distinct element to its sequence number, a {@link Long}, or to a {@link TreeSet} of the sequence
+	 * numbers of all of its occurrences if there is more than one.
+	 */
+	private transient Map<Object, Object> positions;
+	/**
+	 * Sequence number of the first element.
+	 */
+	private transient long headSeq;
+
+	/**
+	 * Constructs an empty deque with an initial capacity sufficient to hold 16 elements.
+	 */
+	public IndexedCircularArrayList() {
+		this(16);
+	}
+	/**
+	 * Constructs an empty deque with an initial capacity sufficient to hold the specified number of elements.
+	 *
+	 * @param numElements lower bound on initial capacity of the deque
+	 */
+	public IndexedCircularArrayList(int numElements) {
+		elements = new CircularArrayList<E>(numElements);
+		positions = new HashMap<Object, Object>(numElements);
+	}
+	/**
+	 * Constructs a deque containing the elements of the specified collection, in the order they are returned by the
+	 * collection's iterator.
+	 *
+	 * @param c the collection whose elements are to be placed into the deque
+	 * @throws NullPointerException if the specified collection is or contains null
+	 */
+	public IndexedCircularArrayList(Collection<? extends E> c) {
+		this(c.size());
+		addAll(c);
+	}
+
+	// *** index maintenance ***
+
+	/**
+	 * Records an occurrence of an element at a sequence number.
+	 */
+	@SuppressWarnings("unchecked")
+	private void index(Object e, long seq) {
+		Object old = positions.put(e, seq);
+		if (old != null) {
+			TreeSet<Long> seqs;
+			if (old instanceof Long) {
+				seqs = new TreeSet<Long>();
+				seqs.add((Long) old);
+			} else {
+				seqs = (TreeSet<Long>) old;
+			}
+			seqs.add(seq);
+			positions.put(e, seqs);
+		}
+	}
+	/**
+	 * Forgets the occurrence of an element at a sequence number.
+	 */
+	@SuppressWarnings("unchecked")
+	private void unindex(Object e, long seq) {
+		Object old = positions.get(e);
+		if (old instanceof Long) {
+			positions.remove(e);
+		} else {
+			TreeSet<Long> seqs = (TreeSet<Long>) old;
+			seqs.remove(seq);
+			if (seqs.size() == 1) {
+				positions.put(e, seqs.first());
+			}
+		}
+	}
+	/**
+	 * Adds {@code delta} to the sequence numbers of the elements at list indices {@code [from, to)}. Elements are
+	 * visited starting from the end they are moving towards, so that an element never moves onto a sequence number
+	 * still held by another occurrence of it.
+	 */
+	@SuppressWarnings("unchecked")
+	private void renumber(int from, int to, int delta) {
+		int start = delta > 0 ? to - 1 : from;
+		int step = delta > 0 ? -1 : 1;
+		for (int n = to - from, i = start; n > 0; n--, i += step) {
+			E e = elements.get(i);
+			long seq = headSeq + i;
+			Object old = positions.get(e);
+			if (old instanceof Long) {
+				positions.put(e, seq + delta);
+			} else {
+				TreeSet<Long> seqs = (TreeSet<Long>) old;
+				seqs.remove(seq);
+				seqs.add(seq + delta);
+			}
+		}
+	}
+	/**
+	 * Makes room in the sequence numbers for {@code count} elements to be inserted at list index {@code index}, by
+	 * renumbering the shorter side.
+	 */
+	private void openSequence(int index, int count) {
+		if (index < elements.size() - index) {
+			renumber(0, index, -count);
+			headSeq -= count;
+		} else {
+			renumber(index, elements.size(), count);
+		}
+	}
+	/**
+	 * Closes the gap in the sequence numbers left by removing the elements at list indices {@code [from, to)}, by
+	 * renumbering the shorter side. Call before removing the elements.
+	 */
+	private void closeSequence(int from, int to) {
+		int count = to - from;
+		if (from < elements.size() - to) {
+			renumber(0, from, count);
+			headSeq += count;
+		} else {
+			renumber(to, elements.size(), -count);
+		}
+	}
+	/**
+	 * Rebuilds the index from scratch, after a bulk operation on the elements.
+	 */
+	private void reindex() {
+		positions.clear();
+		headSeq = 0;
+		for (int i = 0; i < elements.size(); i++) {
+			index(elements.get(i), i);
+		}
+	}
+	/**
+	 * Gets the sequence number of the first or last occurrence of an element, or {@code null} if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	private Long seqOf(Object o, boolean first) {
+		Object seqs = o == null ? null : positions.get(o);
+		if (seqs == null || seqs instanceof Long) {
+			return (Long) seqs;
+		}
+		return first ? ((TreeSet<Long>) seqs).first() : ((TreeSet<Long>) seqs).last();
+	}
+	private static void checkNotNull(Object o) {
+		if (o == null) {
+			throw new NullPointerException();
+		}
+	}
+
+	// *** Deque methods ***
+
+	@Override
+	public void addFirst(E e) {
+		elements.addFirst(e);
+		index(e, --headSeq);
+		modCount++;
+	}
+	@Override
+	public void addLast(E e) {
+		elements.addLast(e);
+		index(e, headSeq + elements.size() - 1);
+		modCount++;
+	}
+	@Override
+	public boolean offerFirst(E e) {
+		addFirst(e);
+		return true;
+	}
+	@Override
+	public boolean offerLast(E e) {
+		addLast(e);
+		return true;
+	}
+	@Override
+	public E removeFirst() {
+		E x = pollFirst();
+		if (x == null)
+			throw new NoSuchElementException();
+		return x;
+	}
+	@Override
+	public E removeLast() {
+		E x = pollLast();
+		if (x == null)
+			throw new NoSuchElementException();
+		return x;
+	}
+	@Override
+	public E pollFirst() {
+		E result = elements.pollFirst();
+		if (result != null) {
+			unindex(result, headSeq++);
+			modCount++;
+		}
+		return result;
+	}
+	@Override
+	public E pollLast() {
+		E result = elements.pollLast();
+		if (result != null) {
+			unindex(result, headSeq + elements.size());
+			modCount++;
+		}
+		return result;
+	}
+	@Override
+	public E getFirst() {
+		return elements.getFirst();
+	}
+	@Override
+	public E getLast() {
+		return elements.getLast();
+	}
+	@Override
+	public E peekFirst() {
+		return elements.peekFirst();
+	}
+	@Override
+	public E peekLast() {
+		return elements.peekLast();
+	}
+	@Override
+	public boolean removeFirstOccurrence(Object o) {
+		int i = indexOf(o);
+		if (i < 0) {
+			return false;
+		}
+		remove(i);
+		return true;
+	}
+	@Override
+	public boolean removeLastOccurrence(Object o) {
+		int i = lastIndexOf(o);
+		if (i < 0) {
+			return false;
+		}
+		remove(i);
+		return true;
+	}
+
+	// *** Queue and Stack methods ***
+
+	@Override
+	public boolean add(E e) {
+		addLast(e);
+		return true;
+	}
+	@Override
+	public boolean offer(E e) {
+		return offerLast(e);
+	}
+	@Override
+	public E remove() {
+		return removeFirst();
+	}
+	@Override
+	public E poll() {
+		return pollFirst();
+	}
+	@Override
+	public E element() {
+		return getFirst();
+	}
+	@Override
+	public E peek() {
+		return peekFirst();
+	}
+	@Override
+	public void push(E e) {
+		addFirst(e);
+	}
+	@Override
+	public E pop() {
+		return removeFirst();
+	}
+
+	// *** List methods ***
+
+	@Override
+	public E get(int index) {
+		return elements.get(index);
+	}
+	@Override
+	public E set(int index, E element) {
+		checkNotNull(element);
+		E old = elements.set(index, element);
+		unindex(old, headSeq + index);
+		index(element, headSeq + index);
+		return old;
+	}
+	@Override
+	public void add(int index, E element) {
+		checkNotNull(element);
+		if (index < 0 || index > elements.size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + elements.size());
+		}
+		openSequence(index, 1);
+		elements.add(index, element);
+		index(element, headSeq + index);
+		modCount++;
+	}
+	@Override
+	public boolean addAll(Collection<? extends E> c) {
+		return addAll(elements.size(), c);
+	}
+	@Override
+	public boolean addAll(int index, Collection<? extends E> c) {
+		if (index < 0 || index > elements.size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + elements.size());
+		}
+		Object[] a = c.toArray();
+		for (Object e : a) {
+			checkNotNull(e);
+		}
+		if (a.length == 0) {
+			return false;
+		}
+		openSequence(index, a.length);
+		@SuppressWarnings("unchecked")
+		// a holds the elements of a Collection<? extends E>
+		Collection<E> added = (Collection<E>) Arrays.asList(a);
+		elements.addAll(index, added);
+		for (int i = 0; i < a.length; i++) {
+			index(a[i], headSeq + index + i);
+		}
+		modCount++;
+		return true;
+	}
+	@Override
+	public E remove(int index) {
+		E result = elements.get(index);
+		unindex(result, headSeq + index);
+		closeSequence(index, index + 1);
+		elements.remove(index);
+		modCount++;
+		return result;
+	}
+	@Override
+	protected void removeRange(int fromIndex, int toIndex) {
+		if (fromIndex >= toIndex) {
+			return;
+		}
+		for (int i = fromIndex; i < toIndex; i++) {
+			unindex(elements.get(i), headSeq + i);
+		}
+		closeSequence(fromIndex, toIndex);
+		elements.subList(fromIndex, toIndex).clear();
+		modCount++;
+	}
+	/**
+	 * Returns the index of the first occurrence of the specified element, in constant expected time if the element
+	 * occurs once.
+	 */
+	@Override
+	public int indexOf(Object o) {
+		Long seq = seqOf(o, true);
+		return seq == null ? -1 : (int) (seq - headSeq);
+	}
+	/**
+	 * Returns the index of the last occurrence of the specified element, in constant expected time if the element
+	 * occurs once.
+	 */
+	@Override
+	public int lastIndexOf(Object o) {
+		Long seq = seqOf(o, false);
+		return seq == null ? -1 : (int) (seq - headSeq);
+	}
+
+	// *** Collection methods ***
+
+	@Override
+	public int size() {
+		return elements.size();
+	}
+	@Override
+	public boolean isEmpty() {
+		return elements.isEmpty();
+	}
+	/**
+	 * Returns {@code true} if this deque contains the specified element, in constant expected time.
+	 */
+	@Override
+	public boolean contains(Object o) {
+		return o != null && positions.containsKey(o);
+	}
+	@Override
+	public boolean remove(Object o) {
+		return removeFirstOccurrence(o);
+	}
+	/**
+	 * Removes all of the elements of this deque that satisfy the given predicate, in one pass over the elements
+	 * followed by a rebuild of the index.
+	 *
+	 * @param filter predicate returning {@code true} for elements to be removed
+	 * @return {@code true} if any elements were removed
+	 * @throws NullPointerException if the filter is null
+	 * @see CircularArrayList#removeMatching(Predicate)
+	 */
+	public boolean removeMatching(Predicate<? super E> filter) {
+		int sizeBefore = elements.size();
+		try {
+			elements.removeMatching(filter);
+		} finally {
+			if (elements.size() != sizeBefore) {
+				reindex();
+				modCount++;
+			}
+		}
+		return elements.size() != sizeBefore;
+	}
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		checkNotNull(c);
+		return removeMatching(CircularArrayList.containedIn(c, true));
+	}
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		checkNotNull(c);
+		return removeMatching(CircularArrayList.containedIn(c, false));
+	}
+	@Override
+	public Iterator<E> descendingIterator() {
+		return new Iterator<E>() {
+			private final ListIterator<E> delegate = listIterator(size());
+			@Override
+			public boolean hasNext() {
+				return delegate.hasPrevious();
+			}
+			@Override
+			public E next() {
+				return delegate.previous();
+			}
+			@Override
+			public void remove() {
+				delegate.remove();
+			}
+		};
+	}
+	@Override
+	public void clear() {
+		elements.clear();
+		positions.clear();
+		headSeq = 0;
+		modCount++;
+	}
+	@Override
+	public Object[] toArray() {
+		return elements.toArray();
+	}
+	@Override
+	public <T> T[] toArray(T[] a) {
+		return elements.toArray(a);
+	}
+
+	/**
+	 * Appease the serialization gods.
+	 */
+	private static final long serialVersionUID = 5520437410352817306L;
+
+	/**
+	 * Deserialize this deque, rebuilding the index.
+	 */
+	private void readObject(ObjectInputStream s) throws IOException, ClassNotFoundException {
+		s.defaultReadObject();
+		positions = new HashMap<Object, Object>(elements.size());
+		reindex();
+	}
+}
@@ -0,0 +1,165 @@
+package joe.collect;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Map from {@code int} keys to values, backed by a sorted {@code int[]} of keys and a parallel array of values. Lookup
+ * is by binary search on the unboxed keys, so an {@code int}-keyed table takes one {@code int} per key rather than an
+ * {@link Integer} and a reference, and {@link #get(int)} allocates nothing.
+ * <p>
+ * The primitive methods {@link #get(int)}, {@link #containsKey(int)}, {@link #put(int, Object)} and
+ * {@link #remove(int)} should be preferred; the {@link java.util.Map Map} methods box and unbox the keys. To iterate
+ * without boxing, loop over the indices {@code [0, size())} using {@link #keyAt(int)} and {@link #valueAt(int)};
+ * entries are in ascending order of key.
+ * <p>
+ * Insertion and removal shift the later entries, so building a large map is cheapest when the keys arrive in ascending
+ * order. Null values are prohibited.
+ *
+ * @author Joe Kearney
+ * @param <V> type of the values stored in the map
+ * @see LongSortedArrayMap
+ */
+public final class IntSortedArrayMap<V> extends AbstractPrimitiveSortedArrayMap<Integer, V> {
+	private static final int[] EMPTY_KEYS = new int[0];
+
+	private int[] keys;
+
+	/**
+	 * Creates a new empty map.
+	 */
+	public IntSortedArrayMap() {
+		this(0);
+	}
+	/**
+	 * Creates a new empty map with space for the specified number of entries.
+	 *
+	 * @param initialCapacity number of entries to be held before the arrays are grown
+	 * @throws IllegalArgumentException if the capacity is negative
+	 */
+	public IntSortedArrayMap(int initialCapacity) {
+		super(initialCapacity);
+		keys = initialCapacity == 0 ? EMPTY_KEYS : new int[initialCapacity];
+	}
+
+	/**
+	 * Gets the value to which the specified key is mapped, or {@code null} if there is no mapping for the key.
+	 *
+	 * @param key the key
+	 * @return the value, or {@code null} if the key is absent
+	 */
+	public V get(int key) {
+		int index = getIndexByKey(key);
+		return index < 0 ? null : values[index];
+	}
+	/**
+	 * Returns whether there is a mapping for the specified key.
+	 *
+	 * @param key the key
+	 * @return {@code true} if the key is present
+	 */
+	public boolean containsKey(int key) {
+		return getIndexByKey(key) >= 0;
+	}
+	/**
+	 * Associates the value with the key, replacing any previous value.
+	 *
+	 * @param key the key
+	 * @param value the new value
+	 * @return the previous value, or {@code null} if there was none
+	 * @throws NullPointerException if the value is {@code null}
+	 */
+	public V put(int key, V value) {
+		checkNotNull(value);
+		int index = getIndexByKey(key);
+		if (index >= 0) {
+			return setValueAt(index, value);
+		}
+		index = -(index + 1); // insertion point
+		openSlot(index, value);
+		keys[index] = key;
+		return null;
+	}
+	@Override
+	public V put(Integer key, V value) {
+		return put(key.intValue(), value);
+	}
+	/**
+	 * Removes the mapping for the specified key, if present.
+	 *
+	 * @param key the key
+	 * @return the removed value, or {@code null} if there was no mapping
+	 */
+	public V remove(int key) {
+		int index = getIndexByKey(key);
+		return index < 0 ? null : removeIndex(index);
+	}
+
+	/**
+	 * Gets the key at the specified index, in ascending order.
+	 *
+	 * @param index index of the key, in {@code [0, size())}
+	 * @return the key
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 */
+	public int keyAt(int index) {
+		checkIndex(index);
+		return keys[index];
+	}
+	/**
+	 * Gets the lowest key in the map.
+	 *
+	 * @return the first key
+	 * @throws NoSuchElementException if the map is empty
+	 */
+	public int firstKey() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return keys[0];
+	}
+	/**
+	 * Gets the highest key in the map.
+	 *
+	 * @return the last key
+	 * @throws NoSuchElementException if the map is empty
+	 */
+	public int lastKey() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return keys[size - 1];
+	}
+
+	/**
+	 * Gets the index of the specified key, as for {@link Arrays#binarySearch(int[], int, int, int)}. If the key is
+	 * absent the result is {@code -(insertion point) - 1}, which is always negative.
+	 *
+	 * @param key key for which to search
+	 * @return index of the key, or a negative value if it is not present in the map
+	 */
+	public int getIndexByKey(int key) {
+		return Arrays.binarySearch(keys, 0, size, key);
+	}
+
+	@Override
+	int getIndexByBoxedKey(Object key) {
+		return key instanceof Integer ? getIndexByKey(((Integer) key).intValue()) : -1;
+	}
+	@Override
+	Integer boxedKeyAt(int index) {
+		return keys[index];
+	}
+	@Override
+	Object keyArray() {
+		return keys;
+	}
+	@Override
+	Object newKeyArray(int capacity) {
+		return capacity == 0 ? EMPTY_KEYS : new int[capacity];
+	}
+	@Override
+	void setKeyArray(Object keys) {
+		this.keys = (int[]) keys;
+	}
+}
@@ -0,0 +1,439 @@
+package joe.collect;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.google.common.base.Joiner;
+
+/**
+ * Insertion-ordered map backed by a single array holding keys and values interleaved, {@code k0, v0, k1, v1, ...}.
+ * This is a more compact alternative to {@link ArrayBackedMap} for very many small maps: there is one array header
+ * instead of two, the array is always exactly as long as the map needs, and the only other state is a modification
+ * counter. A lookup scans the keys at stride two, and finds the value in the cell next to the key, so that a hit
+ * usually touches a single cache line where {@link ArrayBackedMap} touches one in each of its arrays.
+ * <p>
+ * Every insertion and removal reallocates the array, as in the default mode of {@link AbstractArrayBackedMap}, so this
+ * is intended for maps that are small or are built once and then read. The key set and values collection are strided
+ * views of the array. Entries returned by the entry set iterator are immutable snapshots. Null keys and values are
+ * prohibited.
+ * 
+ * @author Joe Kearney
+ * @param <K> type of the keys stored in the map
+ * @param <V> type of the values stored in the map
+ */
+public final class InterleavedArrayBackedMap<K, V> implements Map<K, V> {
+	/*
+	 * INVARIANTS:
+	 * table != null
+	 * table.length is even, and each cell is non-null
+	 * For each even i, table[i] is a key associated with the value table[i + 1]
+	 */
+
+	/**
+	 * Table of every empty map, so that empty maps need not allocate.
+	 */
+	private static final Object[] EMPTY_TABLE = {};
+
+	private Object[] table = EMPTY_TABLE;
+
+	transient int modCount;
+
+	public InterleavedArrayBackedMap() {}
+	/**
+	 * Constructs a map with the same mappings as the specified map, in its iteration order, in an array of exactly the
+	 * right length.
+	 * 
+	 * @param map the map whose mappings are to be copied
+	 * @throws NullPointerException if the map contains a null key or value
+	 */
+	public InterleavedArrayBackedMap(Map<? extends K, ? extends V> map) {
+		Object[] newTable = new Object[map.size() << 1];
+		int length = 0;
+		for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
+			K key = entry.getKey();
+			V value = entry.getValue();
+			checkNotNull(key, value);
+			// the source map's idea of key equality need not be ours
+			int index = findKey(key, newTable, length);
+			if (index < 0) {
+				newTable[length++] = key;
+				newTable[length++] = value;
+			} else {
+				newTable[index] = key;
+				newTable[index + 1] = value;
+			}
+		}
+		if (length < newTable.length) {
+			Object[] trimmed = new Object[length];
+			System.arraycopy(newTable, 0, trimmed, 0, length);
+			newTable = trimmed;
+		}
+		table = newTable.length == 0 ? EMPTY_TABLE : newTable;
+	}
+
+	@Override
+	public V get(Object key) {
+		int index = findKey(key, table, table.length);
+		return index < 0 ? null : valueAt(index);
+	}
+	@Override
+	public boolean containsKey(Object key) {
+		return findKey(key, table, table.length) >= 0;
+	}
+	@Override
+	public boolean containsValue(Object value) {
+		return findValue(value) >= 0;
+	}
+	@Override
+	public int size() {
+		return table.length >> 1;
+	}
+	@Override
+	public boolean isEmpty() {
+		return table.length == 0;
+	}
+
+	@Override
+	public V put(K key, V value) {
+		checkNotNull(key, value);
+		int index = findKey(key, table, table.length);
+		if (index >= 0) {
+			V oldValue = valueAt(index);
+			table[index] = key;
+			table[index + 1] = value;
+			return oldValue;
+		}
+		int oldLength = table.length;
+		Object[] newTable = new Object[oldLength + 2];
+		System.arraycopy(table, 0, newTable, 0, oldLength);
+		newTable[oldLength] = key;
+		newTable[oldLength + 1] = value;
+		++modCount;
+		table = newTable;
+		return null;
+	}
+	@Override
+	public void putAll(Map<? extends K, ? extends V> m) {
+		for (Entry<? extends K, ? extends V> entry : m.entrySet()) {
+			put(entry.getKey(), entry.getValue());
+		}
+	}
+	@Override
+	public V remove(Object key) {
+		int index = findKey(key, table, table.length);
+		if (index < 0) {
+			return null;
+		}
+		V oldValue = valueAt(index);
+		removeAt(index);
+		return oldValue;
+	}
+	@Override
+	public void clear() {
+		++modCount;
+		table = EMPTY_TABLE;
+	}
+
+	@Override
+	public Set<K> keySet() {
+		return new KeySet();
+	}
+	@Override
+	public Collection<V> values() {
+		return new ValuesCollection();
+	}
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		return new EntrySet();
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		if (this == object) {
+			return true;
+		}
+		if (object instanceof Map) {
+			Map<?, ?> o = (Map<?, ?>) object;
+			if (o.size() != size()) {
+				return false;
+			}
+			Object[] table = this.table;
+			for (int i = 0; i < table.length; i += 2) {
+				if (!table[i + 1].equals(o.get(table[i]))) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+	@Override
+	public int hashCode() {
+		Object[] table = this.table;
+		int hash = 0;
+		for (int i = 0; i < table.length; i += 2) {
+			hash += table[i].hashCode() ^ table[i + 1].hashCode();
+		}
+		return hash;
+	}
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		Joiner.on(", ").withKeyValueSeparator("=").appendTo(sb, this);
+		sb.append('}');
+		return sb.toString();
+	}
+
+	/**
+	 * Finds the key among the first {@code length} cells of the table, looking only at the even cells.
+	 * 
+	 * @param key key for which to search
+	 * @param table the table to search
+	 * @param length number of leading cells to search
+	 * @return table index of the key, or {@code -1} if it is not present
+	 */
+	private static int findKey(Object key, Object[] table, int length) {
+		if (key == null) {
+			return -1;
+		}
+		for (int i = 0; i < length; i += 2) {
+			if (table[i].equals(key)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	/**
+	 * Finds the first key associated with the value, looking only at the odd cells.
+	 * 
+	 * @param value value for which to search
+	 * @return table index of the key of the value, or {@code -1} if it is not present
+	 */
+	private int findValue(Object value) {
+		if (value == null) {
+			return -1;
+		}
+		Object[] table = this.table;
+		for (int i = 1; i < table.length; i += 2) {
+			if (table[i].equals(value)) {
+				return i - 1;
+			}
+		}
+		return -1;
+	}
+	@SuppressWarnings("unchecked")
+	// only Ks are put in even cells
+	K keyAt(int index) {
+		return (K) table[index];
+	}
+	@SuppressWarnings("unchecked")
+	// only Vs are put in odd cells
+	V valueAt(int index) {
+		return (V) table[index + 1];
+	}
+	/**
+	 * Removes the key at the specified table index and its value, with no range check.
+	 * 
+	 * @param index table index of the key
+	 */
+	void removeAt(int index) {
+		int newLength = table.length - 2;
+		Object[] newTable = newLength == 0 ? EMPTY_TABLE : new Object[newLength];
+		System.arraycopy(table, 0, newTable, 0, index);
+		System.arraycopy(table, index + 2, newTable, index, newLength - index);
+		++modCount;
+		table = newTable;
+	}
+	/**
+	 * Copies every other cell of the table, starting at the specified offset, into a new array.
+	 * 
+	 * @param offset zero for the keys, one for the values
+	 * @return the keys or values, in order
+	 */
+	Object[] strideToArray(int offset) {
+		Object[] table = this.table;
+		Object[] result = new Object[table.length >> 1];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = table[(i << 1) + offset];
+		}
+		return result;
+	}
+
+	private static void checkNotNull(Object key, Object value) {
+		if (key == null) {
+			throw new NullPointerException("null key not permitted");
+		}
+		if (value == null) {
+			throw new NullPointerException("null value not permitted");
+		}
+	}
+
+	private final class KeySet extends AbstractSet<K> {
+		KeySet() {}
+
+		@Override
+		public Iterator<K> iterator() {
+			return new StrideIterator<K>() {
+				@Override
+				K get(int index) {
+					return keyAt(index);
+				}
+			};
+		}
+		@Override
+		public int size() {
+			return InterleavedArrayBackedMap.this.size();
+		}
+		@Override
+		public boolean contains(Object o) {
+			return containsKey(o);
+		}
+		@Override
+		public boolean remove(Object o) {
+			return InterleavedArrayBackedMap.this.remove(o) != null;
+		}
+		@Override
+		public void clear() {
+			InterleavedArrayBackedMap.this.clear();
+		}
+		@Override
+		public Object[] toArray() {
+			return strideToArray(0);
+		}
+	}
+	private final class ValuesCollection extends AbstractCollection<V> {
+		ValuesCollection() {}
+
+		@Override
+		public Iterator<V> iterator() {
+			return new StrideIterator<V>() {
+				@Override
+				V get(int index) {
+					return valueAt(index);
+				}
+			};
+		}
+		@Override
+		public int size() {
+			return InterleavedArrayBackedMap.this.size();
+		}
+		@Override
+		public boolean contains(Object o) {
+			return containsValue(o);
+		}
+		@Override
+		public boolean remove(Object o) {
+			int index = findValue(o);
+			if (index < 0) {
+				return false;
+			}
+			removeAt(index);
+			return true;
+		}
+		@Override
+		public void clear() {
+			InterleavedArrayBackedMap.this.clear();
+		}
+		@Override
+		public Object[] toArray() {
+			return strideToArray(1);
+		}
+	}
+	private final class EntrySet extends AbstractSet<Entry<K, V>> {
+		EntrySet() {}
+
+		@Override
+		public Iterator<Entry<K, V>> iterator() {
+			return new StrideIterator<Entry<K, V>>() {
+				@Override
+				Entry<K, V> get(int index) {
+					return new SimpleImmutableEntry<K, V>(keyAt(index), valueAt(index));
+				}
+			};
+		}
+		@Override
+		public int size() {
+			return InterleavedArrayBackedMap.this.size();
+		}
+		@Override
+		public boolean contains(Object o) {
+			if (o instanceof Entry) {
+				Entry<?, ?> entry = (Entry<?, ?>) o;
+				V value = InterleavedArrayBackedMap.this.get(entry.getKey());
+				return value != null && value.equals(entry.getValue());
+			}
+			return false;
+		}
+		@Override
+		public boolean remove(Object o) {
+			if (contains(o)) {
+				InterleavedArrayBackedMap.this.remove(((Entry<?, ?>) o).getKey());
+				return true;
+			}
+			return false;
+		}
+		@Override
+		public void clear() {
+			InterleavedArrayBackedMap.this.clear();
+		}
+	}
+
+	/**
+	 * Iterator over the entries of the table, two cells at a time.
+	 * 
+	 * @param <T> type of the objects derived from each entry
+	 */
+	private abstract class StrideIterator<T> implements Iterator<T> {
+		private int expectedModCount = modCount;
+		/** table index of the key of the next entry */
+		private int next = 0;
+		/** table index of the key of the entry last returned, or {@code -1} if none or removed */
+		private int lastReturned = -1;
+
+		StrideIterator() {}
+
+		/**
+		 * Derives the object to return from the entry at the specified table index.
+		 */
+		abstract T get(int index);
+
+		@Override
+		public final boolean hasNext() {
+			return next < table.length;
+		}
+		@Override
+		public final T next() {
+			checkForComodification();
+			if (next >= table.length) {
+				throw new NoSuchElementException();
+			}
+			lastReturned = next;
+			next += 2;
+			return get(lastReturned);
+		}
+		@Override
+		public final void remove() {
+			if (lastReturned < 0) {
+				throw new IllegalStateException("next() has not been called "
+						+ "or the current element has already been removed.");
+			}
+			checkForComodification();
+			removeAt(lastReturned);
+			next = lastReturned;
+			lastReturned = -1;
+			expectedModCount = modCount;
+		}
+		private void checkForComodification() {
+			if (expectedModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+}
@@ -0,0 +1,592 @@
+package joe.collect;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * File-backed ring buffer of byte records, with the semantics of a {@linkplain CircularArrayList#bounded(int) bounded}
+ * {@link CircularArrayList}. The file is memory-mapped, and reads return read-only {@link ByteBuffer} slices of the
+ * mapping, so nothing is copied on the way out.
+ * <p>
+ * The file is divided into fixed-width slots, each a power of two bytes long, holding one length-prefixed record of at
+ * most {@link #getMaxRecordLength()} bytes. The number of slots is a power of two, and the {@code head} and
+ * {@code tail} slot indices follow exactly the arithmetic of {@code CircularArrayList}: slot {@code i} of the log is at
+ * {@code (head + i) & mask}, and one slot is always kept free so that a full log is distinguishable from an empty one.
+ * Adding a record at either end of a full log discards the record at the other end, so the log always holds the most
+ * recent records.
+ * <p>
+ * The head and tail are written together, in one aligned eight-byte write, to a header at the start of the file after
+ * each record has been written, so re-opening a log after a crash takes constant time and sees a consistent set of
+ * records. When those writes reach the disk is decided by the {@link ForcePolicy}.
+ * <p>
+ * A buffer returned by a read is a view of the slot. It remains valid after the record is removed, until that slot is
+ * reused by a later add. Callers who need to keep a record longer should copy it.
+ * <p>
+ * Large logs are mapped in several segments of at most a gigabyte each, since a single mapping is limited to
+ * {@code 2^31} bytes. This class is not thread-safe. Its iterator is fail-fast in the same way as those of
+ * {@link CircularArrayList}.
+ *
+ * @author Joe Kearney
+ */
+public class MappedRingLog implements Iterable<ByteBuffer>, Closeable {
+	/**
+	 * When modifications are forced to the storage device.
+	 */
+	public enum ForcePolicy {
+		/**
+		 * Never force. Written records survive a crash of this process, since they are in the operating system's page
+		 * cache, but may be lost if the machine fails before the operating system writes them back.
+		 */
+		NONE,
+		/**
+		 * Force on {@link MappedRingLog#close()}, as well as on any explicit call to {@link MappedRingLog#force()}.
+		 */
+		ON_CLOSE,
+		/**
+		 * Force after every modification, first the record and then the header. This is durable but slow.
+		 */
+		EVERY_WRITE;
+	}
+
+	/**
+	 * Identifies a ring log file.
+	 */
+	static final int MAGIC = 0x52494e47; // "RING"
+	/**
+	 * Version of the file format.
+	 */
+	static final int VERSION = 1;
+	/**
+	 * Length of the header, a page, so that slots are page-aligned.
+	 */
+	static final int HEADER_SIZE = 4096;
+	/**
+	 * Maximum length of a single mapped segment of the file.
+	 */
+	static final int MAX_SEGMENT_BYTES = 1 << 30;
+
+	private static final int MAGIC_OFFSET = 0;
+	private static final int VERSION_OFFSET = 4;
+	private static final int SLOT_COUNT_OFFSET = 8;
+	private static final int SLOT_SHIFT_OFFSET = 12;
+	/**
+	 * Offset of the head and tail, packed into one long with the head in the high half.
+	 */
+	private static final int POINTERS_OFFSET = 16;
+	/**
+	 * Length of the length prefix of each record.
+	 */
+	private static final int LENGTH_PREFIX = 4;
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer header;
+	/**
+	 * The data part of the file, mapped in equal segments, each holding a power of two number of slots.
+	 */
+	private final MappedByteBuffer[] segments;
+	/**
+	 * Mask for slot indices, one less than the number of slots.
+	 */
+	private final int mask;
+	/**
+	 * log2 of the slot length in bytes.
+	 */
+	private final int slotShift;
+	/**
+	 * log2 of the number of slots in each segment.
+	 */
+	private final int segmentShift;
+	private final ForcePolicy forcePolicy;
+
+	/**
+	 * The slot index of the first record, or an arbitrary index equal to tail if the log is empty.
+	 */
+	private int head;
+	/**
+	 * The slot index at which the next record would be added to the end of the log.
+	 */
+	private int tail;
+	private boolean closed;
+
+	private MappedRingLog(RandomAccessFile file, int slotCount, int slotShift, int maxSegmentBytes,
+			ForcePolicy forcePolicy) throws IOException {
+		this.file = file;
+		this.mask = slotCount - 1;
+		this.slotShift = slotShift;
+		this.forcePolicy = forcePolicy;
+
+		long dataBytes = (long) slotCount << slotShift;
+		int segmentBytes = (int) Math.min(dataBytes, maxSegmentBytes);
+		this.segmentShift = Integer.numberOfTrailingZeros(segmentBytes) - slotShift;
+		this.segments = new MappedByteBuffer[(int) (dataBytes / segmentBytes)];
+
+		FileChannel channel = file.getChannel();
+		this.header = channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE);
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = channel.map(MapMode.READ_WRITE, HEADER_SIZE + (long) i * segmentBytes, segmentBytes);
+		}
+	}
+
+	/**
+	 * Opens the ring log in the specified file, creating it if it doesn't exist or is empty. An existing log must have
+	 * been created with the same geometry.
+	 *
+	 * @param file the file holding the log
+	 * @param maxRecords maximum number of records in the log; best chosen as one less than a power of two, since the
+	 *            number of slots is the smallest power of two strictly greater than this
+	 * @param maxRecordLength maximum length in bytes of a record
+	 * @param forcePolicy when to force modifications to the storage device
+	 * @return the open log
+	 * @throws IOException if the file cannot be opened or mapped, or holds a log of a different geometry
+	 * @throws IllegalArgumentException if {@code maxRecords} or {@code maxRecordLength} is not positive, if
+	 *             {@code maxRecords} is {@code 2^30} or more, or if a slot would be longer than a segment
+	 */
+	public static MappedRingLog open(File file, int maxRecords, int maxRecordLength, ForcePolicy forcePolicy)
+			throws IOException {
+		return open(file, maxRecords, maxRecordLength, forcePolicy, MAX_SEGMENT_BYTES);
+	}
+	/**
+	 * As {@link #open(File, int, int, ForcePolicy)}, with the maximum segment length specified for testing.
+	 */
+	static MappedRingLog open(File file, int maxRecords, int maxRecordLength, ForcePolicy forcePolicy,
+			int maxSegmentBytes) throws IOException {
+		if (maxRecords <= 0 || maxRecords >= 1 << 30) {
+			// capacityFor would cap the slots at 2^30, holding fewer records than asked for
+			throw new IllegalArgumentException("Maximum number of records must be in [1, 2^30): " + maxRecords);
+		}
+		if (maxRecordLength <= 0 || maxRecordLength > maxSegmentBytes - LENGTH_PREFIX) {
+			throw new IllegalArgumentException("Maximum record length must be in [1, " + (maxSegmentBytes - LENGTH_PREFIX)
+					+ "]: " + maxRecordLength);
+		}
+		checkNotNull(forcePolicy);
+		int slotCount = CircularArrayList.capacityFor(maxRecords);
+		int slotShift = 32 - Integer.numberOfLeadingZeros(maxRecordLength + LENGTH_PREFIX - 1);
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		boolean success = false;
+		try {
+			MappedRingLog log;
+			if (raf.length() == 0) {
+				raf.setLength(HEADER_SIZE + ((long) slotCount << slotShift));
+				log = new MappedRingLog(raf, slotCount, slotShift, maxSegmentBytes, forcePolicy);
+				log.writeHeader();
+			} else {
+				log = openExisting(raf, file, maxSegmentBytes, forcePolicy);
+				if (log.mask + 1 != slotCount || log.slotShift != slotShift) {
+					throw new IOException("Log in " + file + " has " + (log.mask + 1) + " slots of " + (1 << log.slotShift)
+							+ " bytes, not " + slotCount + " of " + (1 << slotShift));
+				}
+			}
+			success = true;
+			return log;
+		} finally {
+			if (!success) {
+				raf.close();
+			}
+		}
+	}
+	/**
+	 * Re-opens an existing ring log with the geometry recorded in its header. This reads only the header, so takes
+	 * constant time however many records the log holds.
+	 *
+	 * @param file the file holding the log
+	 * @param forcePolicy when to force modifications to the storage device
+	 * @return the open log
+	 * @throws FileNotFoundException if the file doesn't exist
+	 * @throws IOException if the file cannot be opened or mapped, or doesn't hold a valid log
+	 */
+	public static MappedRingLog open(File file, ForcePolicy forcePolicy) throws IOException {
+		checkNotNull(forcePolicy);
+		if (!file.isFile()) {
+			throw new FileNotFoundException(file.toString());
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		boolean success = false;
+		try {
+			MappedRingLog log = openExisting(raf, file, MAX_SEGMENT_BYTES, forcePolicy);
+			success = true;
+			return log;
+		} finally {
+			if (!success) {
+				raf.close();
+			}
+		}
+	}
+	/**
+	 * Reads and validates the header of an existing log, and maps it.
+	 */
+	private static MappedRingLog openExisting(RandomAccessFile raf, File file, int maxSegmentBytes,
+			ForcePolicy forcePolicy) throws IOException {
+		if (raf.length() < HEADER_SIZE) {
+			throw new IOException("Not a ring log, too short: " + file);
+		}
+		raf.seek(MAGIC_OFFSET);
+		int magic = raf.readInt();
+		int version = raf.readInt();
+		int slotCount = raf.readInt();
+		int slotShift = raf.readInt();
+		if (magic != MAGIC || version != VERSION) {
+			throw new IOException("Not a version " + VERSION + " ring log: " + file);
+		}
+		if (slotCount <= 0 || Integer.bitCount(slotCount) != 1 || slotShift < 0 || slotShift > 30
+				|| raf.length() != HEADER_SIZE + ((long) slotCount << slotShift)) {
+			throw new IOException("Corrupt ring log header in " + file);
+		}
+
+		MappedRingLog log = new MappedRingLog(raf, slotCount, slotShift, Math.max(maxSegmentBytes, 1 << slotShift),
+				forcePolicy);
+		long pointers = log.header.getLong(POINTERS_OFFSET);
+		log.head = (int) (pointers >>> 32);
+		log.tail = (int) pointers;
+		if ((log.head & log.mask) != log.head || (log.tail & log.mask) != log.tail) {
+			throw new IOException("Corrupt ring log pointers in " + file);
+		}
+		return log;
+	}
+
+	/**
+	 * Writes the whole header of a new log.
+	 */
+	private void writeHeader() {
+		header.putInt(MAGIC_OFFSET, MAGIC);
+		header.putInt(VERSION_OFFSET, VERSION);
+		header.putInt(SLOT_COUNT_OFFSET, mask + 1);
+		header.putInt(SLOT_SHIFT_OFFSET, slotShift);
+		commit(-1);
+	}
+	/**
+	 * Publishes the head and tail to the header, in one write, and forces if required by the policy.
+	 *
+	 * @param writtenSlot slot written by this modification, to be forced before the header, or -1 if none
+	 */
+	private void commit(int writtenSlot) {
+		header.putLong(POINTERS_OFFSET, (long) head << 32 | tail & 0xFFFFFFFFL);
+		if (forcePolicy == ForcePolicy.EVERY_WRITE) {
+			if (writtenSlot >= 0) {
+				segments[writtenSlot >>> segmentShift].force();
+			}
+			header.force();
+		}
+	}
+
+	// *** slot access ***
+
+	/**
+	 * Copies a record into a slot. The record's position is not changed.
+	 */
+	private void write(int slot, ByteBuffer record) {
+		ByteBuffer segment = segments[slot >>> segmentShift].duplicate();
+		int offset = (slot & ((1 << segmentShift) - 1)) << slotShift;
+		segment.putInt(offset, record.remaining());
+		segment.position(offset + LENGTH_PREFIX);
+		segment.put(record.duplicate());
+	}
+	/**
+	 * Gets a read-only view of the record in a slot.
+	 */
+	private ByteBuffer read(int slot) {
+		ByteBuffer segment = segments[slot >>> segmentShift].duplicate();
+		int offset = (slot & ((1 << segmentShift) - 1)) << slotShift;
+		int length = segment.getInt(offset);
+		segment.limit(offset + LENGTH_PREFIX + length);
+		segment.position(offset + LENGTH_PREFIX);
+		return segment.slice().asReadOnlyBuffer();
+	}
+	/**
+	 * Checks that a record can be added to this log.
+	 *
+	 * @throws IllegalStateException if the log is closed
+	 * @throws NullPointerException if the record is {@code null}
+	 * @throws IllegalArgumentException if the record is too long
+	 */
+	private void checkRecord(ByteBuffer record) {
+		checkOpen();
+		checkNotNull(record);
+		if (record.remaining() > getMaxRecordLength()) {
+			throw new IllegalArgumentException("Record of " + record.remaining() + " bytes is longer than the maximum "
+					+ getMaxRecordLength());
+		}
+	}
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("Ring log is closed");
+		}
+	}
+	private static void checkNotNull(Object o) {
+		if (o == null) {
+			throw new NullPointerException();
+		}
+	}
+
+	// *** deque methods ***
+
+	/**
+	 * Inserts a record at the end of the log, discarding the first record if the log is full. The bytes between the
+	 * record's position and limit are copied; its position is not changed.
+	 *
+	 * @param record the record to add
+	 * @throws IllegalArgumentException if the record is longer than {@link #getMaxRecordLength()}
+	 * @throws IllegalStateException if the log is closed
+	 */
+	public void addLast(ByteBuffer record) {
+		checkRecord(record);
+		int t = tail;
+		write(t, record);
+		tail = (t + 1) & mask;
+		if (tail == head) { // was full, drop the first record
+			head = (head + 1) & mask;
+		}
+		commit(t);
+	}
+	/**
+	 * Inserts a record at the front of the log, discarding the last record if the log is full. The bytes between the
+	 * record's position and limit are copied; its position is not changed.
+	 *
+	 * @param record the record to add
+	 * @throws IllegalArgumentException if the record is longer than {@link #getMaxRecordLength()}
+	 * @throws IllegalStateException if the log is closed
+	 */
+	public void addFirst(ByteBuffer record) {
+		checkRecord(record);
+		int h = (head - 1) & mask;
+		write(h, record);
+		head = h;
+		if (head == tail) { // was full, drop the last record
+			tail = (tail - 1) & mask;
+		}
+		commit(h);
+	}
+	/**
+	 * Inserts a record at the end of the log if there is room.
+	 *
+	 * @param record the record to add
+	 * @return {@code true} if the record was added, {@code false} if the log is full
+	 * @throws IllegalArgumentException if the record is longer than {@link #getMaxRecordLength()}
+	 * @throws IllegalStateException if the log is closed
+	 */
+	public boolean offerLast(ByteBuffer record) {
+		checkRecord(record);
+		if (size() == mask) {
+			return false;
+		}
+		addLast(record);
+		return true;
+	}
+	/**
+	 * Inserts a record at the front of the log if there is room.
+	 *
+	 * @param record the record to add
+	 * @return {@code true} if the record was added, {@code false} if the log is full
+	 * @throws IllegalArgumentException if the record is longer than {@link #getMaxRecordLength()}
+	 * @throws IllegalStateException if the log is closed
+	 */
+	public boolean offerFirst(ByteBuffer record) {
+		checkRecord(record);
+		if (size() == mask) {
+			return false;
+		}
+		addFirst(record);
+		return true;
+	}
+	/**
+	 * Retrieves and removes the first record of the log.
+	 *
+	 * @return a read-only view of the first record, or {@code null} if the log is empty
+	 * @throws IllegalStateException if the log is closed
+	 */
+	public ByteBuffer pollFirst() {
+		checkOpen();
+		if (head == tail) {
+			return null;
+		}
+		ByteBuffer result = read(head);
+		head = (head + 1) & mask;
+		commit(-1);
+		return result;
+	}
+	/**
+	 * Retrieves and removes the last record of the log.
+	 *
+	 * @return a read-only view of the last record, or {@code null} if the log is empty
+	 * @throws IllegalStateException if the log is closed
+	 */
+	public ByteBuffer pollLast() {
+		checkOpen();
+		if (head == tail) {
+			return null;
+		}
+		tail = (tail - 1) & mask;
+		ByteBuffer result = read(tail);
+		commit(-1);
+		return result;
+	}
+	/**
+	 * Retrieves, but does not remove, the first record of the log.
+	 *
+	 * @return a read-only view of the first record, or {@code null} if the log is empty
+	 * @throws IllegalStateException if the log is closed
+	 */
+	public ByteBuffer peekFirst() {
+		checkOpen();
+		return head == tail ? null : read(head);
+	}
+	/**
+	 * Retrieves, but does not remove, the last record of the log.
+	 *
+	 * @return a read-only view of the last record, or {@code null} if the log is empty
+	 * @throws IllegalStateException if the log is closed
+	 */
+	public ByteBuffer peekLast() {
+		checkOpen();
+		return head == tail ? null : read((tail - 1) & mask);
+	}
+	/**
+	 * Retrieves the record at the specified position in the log, counting from the first.
+	 *
+	 * @param index index of the record
+	 * @return a read-only view of the record
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 * @throws IllegalStateException if the log is closed
+	 */
+	public ByteBuffer get(int index) {
+		checkOpen();
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("No such record index: " + index);
+		}
+		return read((head + index) & mask);
+	}
+	/**
+	 * Removes all records from the log.
+	 *
+	 * @throws IllegalStateException if the log is closed
+	 */
+	public void clear() {
+		checkOpen();
+		head = tail = 0;
+		commit(-1);
+	}
+
+	/**
+	 * Returns the number of records in the log.
+	 *
+	 * @return the number of records
+	 */
+	public int size() {
+		return (tail - head) & mask;
+	}
+	/**
+	 * Returns {@code true} if the log holds no records.
+	 *
+	 * @return whether the log is empty
+	 */
+	public boolean isEmpty() {
+		return head == tail;
+	}
+	/**
+	 * Returns the maximum number of records the log holds, one less than the number of slots.
+	 *
+	 * @return the maximum size of the log
+	 */
+	public int getMaxSize() {
+		return mask;
+	}
+	/**
+	 * Returns the maximum length of a record in bytes. This may be more than was requested when the log was created,
+	 * since slots are a power of two bytes long.
+	 *
+	 * @return the maximum record length
+	 */
+	public int getMaxRecordLength() {
+		return (1 << slotShift) - LENGTH_PREFIX;
+	}
+	/**
+	 * Returns the policy for forcing modifications to the storage device.
+	 *
+	 * @return the force policy
+	 */
+	public ForcePolicy getForcePolicy() {
+		return forcePolicy;
+	}
+
+	/**
+	 * Returns an iterator over read-only views of the records, from first to last. The iterator is fail-fast, and
+	 * doesn't support removal.
+	 */
+	@Override
+	public Iterator<ByteBuffer> iterator() {
+		checkOpen();
+		return new Iterator<ByteBuffer>() {
+			private int cursor = head;
+			private final int expectedHead = head;
+			private final int expectedTail = tail;
+
+			@Override
+			public boolean hasNext() {
+				return cursor != tail;
+			}
+			@Override
+			public ByteBuffer next() {
+				if (head != expectedHead || tail != expectedTail) {
+					throw new ConcurrentModificationException();
+				}
+				if (cursor == tail) {
+					throw new NoSuchElementException();
+				}
+				ByteBuffer result = read(cursor);
+				cursor = (cursor + 1) & mask;
+				return result;
+			}
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Forces all records and the header to the storage device, whatever the force policy.
+	 *
+	 * @throws IllegalStateException if the log is closed
+	 */
+	public void force() {
+		checkOpen();
+		for (MappedByteBuffer segment : segments) {
+			segment.force();
+		}
+		header.force();
+	}
+	/**
+	 * Closes the log, forcing it first unless the policy is {@link ForcePolicy#NONE}. The mappings are released when
+	 * they are garbage collected, so buffers previously returned by reads remain readable. Closing a closed log has no
+	 * effect.
+	 *
+	 * @throws IOException if the file cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		if (forcePolicy != ForcePolicy.NONE) {
+			force();
+		}
+		closed = true;
+		file.close();
+	}
+
+	@Override
+	public String toString() {
+		return "MappedRingLog[size=" + size() + ", maxSize=" + getMaxSize() + ", maxRecordLength="
+				+ getMaxRecordLength() + "]";
+	}
+}
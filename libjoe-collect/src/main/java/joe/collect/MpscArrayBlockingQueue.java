@@ -0,0 +1,737 @@
+package joe.collect;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.collect.Iterators;
+
+/**
+ * Bounded lock-free {@link BlockingQueue} for fanning elements in from many producer threads to exactly one consumer
+ * thread. Elements live in a power-of-two array addressed by masking {@code long} sequences, as in
+ * {@link SpscArrayBlockingQueue}.
+ * <p>
+ * A producer claims a contiguous range of slots with a single compare-and-set on the shared {@code tail} sequence, so
+ * that adding a batch with {@link #offerAll} or {@link #putAll} costs one atomic operation however large the batch.
+ * It then fills its slots and publishes each of them individually, as {@link EventRing} does, by recording in an
+ * availability array the round of the ring in which it was filled. Producers therefore never wait for one another: a
+ * producer descheduled between claiming and filling its slots holds up only the consumer, once it reaches those slots,
+ * and not the producers that claimed after it. The elements themselves stay in a plain array, so the consumer can take
+ * the run of published elements at the head with at most two {@link System#arraycopy} calls, splitting at the end of
+ * the array just as {@link CircularArrayList#addAll(int, Collection)} does; see {@link #drainTo(Object[], int, int)}.
+ * <p>
+ * Producers also share a cached copy of the consumer's {@code head}, and re-read the real one only when the cached
+ * value says the queue is full, so that claiming does not miss on the cache line the consumer writes on every poll.
+ * <p>
+ * The {@link BackPressure} policy chosen at construction determines what {@link #put} and {@link #putAll} do when the
+ * queue is full. The non-blocking {@link #offer(Object) offer} methods always return {@code false} when full; the timed
+ * {@link #offer(Object, long, TimeUnit) offer} waits according to the policy.
+ * <p>
+ * <b>The single-consumer contract is not checked.</b> The consumer-side methods are {@link #poll() poll},
+ * {@link #take}, {@link #peek}, {@link #remove()}, the {@code drainTo} methods and {@link #clear}; at most one thread
+ * may be calling these at any time. Any number of threads may call the producer-side methods. The remaining methods,
+ * such as {@link #size} and {@link #iterator}, may be called from any thread and give approximate answers while the
+ * queue is in use.
+ * <p>
+ * The iterator is a snapshot of the queue and does not support {@link Iterator#remove() remove}, so neither does
+ * {@link #remove(Object)}. Null elements are prohibited.
+ *
+ * @author Joe Kearney
+ * @param <E> the type of elements held in this queue
+ */
+public class MpscArrayBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+	/**
+	 * Policy for a producer that finds the queue full.
+	 */
+	public enum BackPressure {
+		/**
+		 * Wait, without spinning, until the consumer makes room.
+		 */
+		BLOCK,
+		/**
+		 * Spin, yielding, for a short while in the expectation that the consumer will make room soon, and then wait as
+		 * {@link #BLOCK}. This trades CPU for latency when the queue is only momentarily full.
+		 */
+		SPIN_THEN_PARK,
+		/**
+		 * Discard the element or batch being added, and count it in {@link MpscArrayBlockingQueue#droppedCount()}.
+		 * Neither {@code put} nor {@code putAll} ever waits.
+		 */
+		DROP_NEWEST;
+	}
+
+	/**
+	 * Maximum time in microseconds for which a blocked thread waits before checking the queue again.
+	 */
+	static final long MAX_PARK_MICROS = SpscArrayBlockingQueue.MAX_PARK_MICROS;
+	private static final long MAX_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(MAX_PARK_MICROS);
+	/**
+	 * Number of times a thread yields before it starts to park.
+	 */
+	static final int SPIN_TRIES = SpscArrayBlockingQueue.SPIN_TRIES;
+
+	/**
+	 * The array in which elements are stored, of power-of-two length. A slot holds an element for the consumer only once
+	 * it has been published in {@link #availability}; slots the consumer has taken are {@code null}.
+	 */
+	private final E[] elements;
+	/**
+	 * For each slot, the round of the ring ({@code sequence >>> indexShift}) in which it was last published, or
+	 * {@code -1} if never. The element for a sequence is ready exactly when its slot's entry is that sequence's round.
+	 */
+	private final AtomicIntegerArray availability;
+	/**
+	 * Length of the array.
+	 */
+	private final int capacity;
+	/**
+	 * Mask for the length of the array.
+	 */
+	private final int mask;
+	/**
+	 * Base-2 logarithm of the length of the array.
+	 */
+	private final int indexShift;
+	/**
+	 * What producers do when the queue is full.
+	 */
+	private final BackPressure backPressure;
+
+	/**
+	 * Sequence of the next element to be taken. Written only by the consumer.
+	 */
+	private final PaddedAtomicLong head = new PaddedAtomicLong();
+	/**
+	 * Sequence of the next slot to be claimed. Advanced by producers with compare-and-set.
+	 */
+	private final PaddedAtomicLong tail = new PaddedAtomicLong();
+	/**
+	 * The producers' most recent read of {@code head}, which is never ahead of it. Accessed only by producers, which
+	 * re-read {@code head} only when this says the queue is full.
+	 */
+	private final PaddedAtomicLong headCache = new PaddedAtomicLong();
+
+	/**
+	 * The consumer thread if it is parked waiting for an element, else {@code null}.
+	 */
+	private volatile Thread waitingConsumer;
+	/**
+	 * Number of producers waiting for space. The consumer signals {@link #notFull} only if this is non-zero.
+	 */
+	private final AtomicInteger waitingProducers = new AtomicInteger();
+	private final ReentrantLock spaceLock = new ReentrantLock();
+	private final Condition notFull = spaceLock.newCondition();
+
+	/**
+	 * Number of elements discarded under {@link BackPressure#DROP_NEWEST}.
+	 */
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	/**
+	 * Constructs an empty queue with room for at least the specified number of elements, whose producers block when
+	 * it is full. The capacity is rounded up to a power of two.
+	 *
+	 * @param capacity minimum capacity of the queue
+	 * @throws IllegalArgumentException if the capacity is not positive or is greater than {@code 2^30}
+	 */
+	public MpscArrayBlockingQueue(int capacity) {
+		this(capacity, BackPressure.BLOCK);
+	}
+	/**
+	 * Constructs an empty queue with room for at least the specified number of elements and the specified policy for
+	 * when it is full. The capacity is rounded up to a power of two.
+	 *
+	 * @param capacity minimum capacity of the queue
+	 * @param backPressure what {@link #put} and {@link #putAll} do when the queue is full
+	 * @throws IllegalArgumentException if the capacity is not positive or is greater than {@code 2^30}
+	 * @throws NullPointerException if the policy is null
+	 */
+	@SuppressWarnings("unchecked")
+	// cast of Object[] to E[] is safe as we only ever put Es in it
+	public MpscArrayBlockingQueue(int capacity, BackPressure backPressure) {
+		if (backPressure == null) {
+			throw new NullPointerException("Null back-pressure policy");
+		}
+		this.capacity = SpscArrayBlockingQueue.ringCapacityFor(capacity);
+		elements = (E[]) new Object[this.capacity];
+		mask = this.capacity - 1;
+		indexShift = Integer.numberOfTrailingZeros(this.capacity);
+		availability = new AtomicIntegerArray(this.capacity);
+		for (int i = 0; i < this.capacity; i++) {
+			availability.set(i, -1);
+		}
+		this.backPressure = backPressure;
+	}
+
+	/**
+	 * Returns the capacity of this queue, which is fixed at construction.
+	 *
+	 * @return the maximum number of elements this queue can hold
+	 */
+	public int capacity() {
+		return capacity;
+	}
+	/**
+	 * Returns the policy applied by producers when this queue is full.
+	 *
+	 * @return the back-pressure policy
+	 */
+	public BackPressure getBackPressure() {
+		return backPressure;
+	}
+	/**
+	 * Returns the number of elements discarded because the queue was full under {@link BackPressure#DROP_NEWEST}.
+	 *
+	 * @return the number of dropped elements
+	 */
+	public long droppedCount() {
+		return droppedCount.get();
+	}
+
+	// *** producer methods ***
+
+	/**
+	 * Inserts the specified element at the tail of this queue if there is space, without waiting.
+	 *
+	 * @param e the element to add
+	 * @return {@code true} if the element was added, {@code false} if the queue is full
+	 * @throws NullPointerException if the specified element is null
+	 */
+	@Override
+	public boolean offer(E e) {
+		checkNotNull(e);
+		long start = tryClaim(1);
+		if (start < 0) {
+			return false;
+		}
+		publish(start, e);
+		return true;
+	}
+	/**
+	 * Inserts all of the specified elements, contiguously and in order, at the tail of this queue if there is space for
+	 * all of them, without waiting. The slots are claimed with one atomic operation.
+	 *
+	 * @param batch the elements to add
+	 * @return {@code true} if the elements were added, {@code false} if there was not room for all of them, in which
+	 *         case none was added
+	 * @throws NullPointerException if the batch is or contains null
+	 * @throws IllegalArgumentException if the batch is larger than the capacity of this queue
+	 */
+	public boolean offerAll(Collection<? extends E> batch) {
+		Object[] array = toBatchArray(batch);
+		if (array.length == 0) {
+			return true;
+		}
+		long start = tryClaim(array.length);
+		if (start < 0) {
+			return false;
+		}
+		fillAndPublish(start, array);
+		return true;
+	}
+	/**
+	 * Inserts the specified element at the tail of this queue, applying the back-pressure policy if it is full. Under
+	 * {@link BackPressure#DROP_NEWEST} the element is discarded if the queue is full.
+	 *
+	 * @param e the element to add
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws NullPointerException if the specified element is null
+	 */
+	@Override
+	public void put(E e) throws InterruptedException {
+		checkNotNull(e);
+		long start = claim(1, Long.MAX_VALUE);
+		if (start >= 0) {
+			publish(start, e);
+		}
+	}
+	/**
+	 * Inserts all of the specified elements, contiguously and in order, at the tail of this queue, applying the
+	 * back-pressure policy if there is not room for all of them. The slots are claimed with one atomic operation. Under
+	 * {@link BackPressure#DROP_NEWEST} the whole batch is discarded if there is not room for it.
+	 *
+	 * @param batch the elements to add
+	 * @return {@code true} if the elements were added, {@code false} if they were dropped
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws NullPointerException if the batch is or contains null
+	 * @throws IllegalArgumentException if the batch is larger than the capacity of this queue
+	 */
+	public boolean putAll(Collection<? extends E> batch) throws InterruptedException {
+		Object[] array = toBatchArray(batch);
+		if (array.length == 0) {
+			return true;
+		}
+		long start = claim(array.length, Long.MAX_VALUE);
+		if (start < 0) {
+			return false;
+		}
+		fillAndPublish(start, array);
+		return true;
+	}
+	/**
+	 * Inserts the specified element at the tail of this queue, waiting according to the back-pressure policy, but for
+	 * no longer than the specified time, for space to become available. Under {@link BackPressure#DROP_NEWEST} this
+	 * does not wait, and the element is not counted as dropped.
+	 *
+	 * @param e the element to add
+	 * @param timeout how long to wait before giving up
+	 * @param unit unit of {@code timeout}
+	 * @return {@code true} if the element was added, {@code false} if the specified time elapsed first
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws NullPointerException if the specified element is null
+	 */
+	@Override
+	public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+		checkNotNull(e);
+		if (backPressure == BackPressure.DROP_NEWEST) {
+			return offer(e);
+		}
+		long start = claim(1, unit.toNanos(timeout));
+		if (start < 0) {
+			return false;
+		}
+		publish(start, e);
+		return true;
+	}
+
+	/**
+	 * Claims {@code n} contiguous slots if there is room, with a single successful compare-and-set.
+	 *
+	 * @param n number of slots to claim
+	 * @return sequence of the first claimed slot, or {@code -1} if there is not room
+	 */
+	private long tryClaim(int n) {
+		long t;
+		do {
+			t = tail.get();
+			if (t + n - headCache.get() > capacity) {
+				long h = head.get();
+				if (t + n - h > capacity) {
+					return -1;
+				}
+				// racing producers may store an older head; that only costs another re-read
+				headCache.lazySet(h);
+			}
+		} while (!tail.compareAndSet(t, t + n));
+		return t;
+	}
+	/**
+	 * Claims {@code n} contiguous slots, applying the back-pressure policy while there is not room.
+	 *
+	 * @param n number of slots to claim
+	 * @param timeoutNanos maximum time to wait, or {@link Long#MAX_VALUE} to wait indefinitely
+	 * @return sequence of the first claimed slot, or {@code -1} if the slots were not claimed
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	private long claim(int n, long timeoutNanos) throws InterruptedException {
+		long start = tryClaim(n);
+		if (start >= 0) {
+			return start;
+		}
+		if (backPressure == BackPressure.DROP_NEWEST) {
+			droppedCount.addAndGet(n);
+			return -1;
+		}
+		long deadline = System.nanoTime() + timeoutNanos;
+		int spins = backPressure == BackPressure.SPIN_THEN_PARK ? 0 : SPIN_TRIES;
+		while ((start = tryClaim(n)) < 0) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			long remaining = timeoutNanos == Long.MAX_VALUE ? MAX_PARK_NANOS : deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return -1;
+			}
+			if (spins++ < SPIN_TRIES) {
+				Thread.yield();
+			} else {
+				awaitSpace(n, Math.min(remaining, MAX_PARK_NANOS));
+			}
+		}
+		return start;
+	}
+	/**
+	 * Waits up to the specified time to be signalled by the consumer, if there is still not room for {@code n}
+	 * elements after advertising that this producer is waiting.
+	 *
+	 * @param n number of slots wanted
+	 * @param nanos maximum time to wait
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	private void awaitSpace(int n, long nanos) throws InterruptedException {
+		waitingProducers.incrementAndGet();
+		try {
+			spaceLock.lockInterruptibly();
+			try {
+				if (tail.get() + n - head.get() > capacity) {
+					notFull.awaitNanos(nanos);
+				}
+			} finally {
+				spaceLock.unlock();
+			}
+		} finally {
+			waitingProducers.decrementAndGet();
+		}
+	}
+	/**
+	 * Publishes a batch into claimed slots, in order, and wakes the consumer if it is waiting.
+	 *
+	 * @param start sequence of the first claimed slot
+	 * @param batch elements to publish
+	 */
+	private void fillAndPublish(long start, Object[] batch) {
+		int from = (int) start & mask;
+		int firstPortion = Math.min(batch.length, capacity - from);
+		System.arraycopy(batch, 0, elements, from, firstPortion);
+		System.arraycopy(batch, firstPortion, elements, 0, batch.length - firstPortion);
+		for (long s = start; s < start + batch.length; s++) {
+			availability.lazySet((int) s & mask, (int) (s >>> indexShift));
+		}
+		signalConsumer();
+	}
+	/**
+	 * Publishes an element into its claimed slot, and wakes the consumer if it is waiting. Earlier claims need not have
+	 * been published.
+	 *
+	 * @param seq sequence of the claimed slot
+	 * @param e the element
+	 */
+	private void publish(long seq, E e) {
+		int i = (int) seq & mask;
+		elements[i] = e;
+		availability.lazySet(i, (int) (seq >>> indexShift)); // orders the element before it
+		signalConsumer();
+	}
+	/**
+	 * Tests whether the element for the specified sequence has been published.
+	 *
+	 * @param seq sequence of the slot
+	 * @return {@code true} if the slot holds the element for {@code seq}
+	 */
+	private boolean isPublished(long seq) {
+		return availability.get((int) seq & mask) == (int) (seq >>> indexShift);
+	}
+	/**
+	 * Finds the first sequence in a range whose slot has not been published.
+	 *
+	 * @param from first sequence to check
+	 * @param limit end of the range, exclusive
+	 * @return the first unpublished sequence, or {@code limit} if all are published
+	 */
+	private long firstUnpublished(long from, long limit) {
+		for (long s = from; s < limit; s++) {
+			if (!isPublished(s)) {
+				return s;
+			}
+		}
+		return limit;
+	}
+	/**
+	 * Wakes the consumer if it is waiting.
+	 */
+	private void signalConsumer() {
+		Thread waiter = waitingConsumer;
+		if (waiter != null) {
+			LockSupport.unpark(waiter);
+		}
+	}
+	/**
+	 * Copies a batch to an array before any slots are claimed, so that nothing can fail between claiming and
+	 * publishing, which would stall the queue.
+	 */
+	private Object[] toBatchArray(Collection<? extends E> batch) {
+		Object[] array = batch.toArray();
+		if (array.length > capacity) {
+			throw new IllegalArgumentException("Batch of " + array.length + " is larger than the capacity "
+					+ capacity);
+		}
+		for (Object e : array) {
+			checkNotNull(e);
+		}
+		return array;
+	}
+
+	// *** consumer methods ***
+
+	/**
+	 * Retrieves and removes the head of this queue, or returns {@code null} if it is empty. Call only from the consumer
+	 * thread.
+	 *
+	 * @return the head of this queue, or {@code null} if it is empty
+	 */
+	@Override
+	public E poll() {
+		long h = head.get();
+		if (!isPublished(h)) {
+			return null;
+		}
+		int i = (int) h & mask;
+		E e = elements[i];
+		elements[i] = null;
+		head.lazySet(h + 1);
+		signalProducers();
+		return e;
+	}
+	/**
+	 * Retrieves and removes the head of this queue, waiting if necessary until an element becomes available. Call only
+	 * from the consumer thread.
+	 *
+	 * @return the head of this queue
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	@Override
+	public E take() throws InterruptedException {
+		E e;
+		for (int spins = 0; (e = poll()) == null; spins++) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			if (spins < SPIN_TRIES) {
+				Thread.yield();
+			} else {
+				awaitElement(MAX_PARK_NANOS);
+			}
+		}
+		return e;
+	}
+	/**
+	 * Retrieves and removes the head of this queue, waiting up to the specified time for an element to become
+	 * available. Call only from the consumer thread.
+	 *
+	 * @param timeout how long to wait before giving up
+	 * @param unit unit of {@code timeout}
+	 * @return the head of this queue, or {@code null} if the specified time elapsed first
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		E e;
+		for (int spins = 0; (e = poll()) == null; spins++) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return null;
+			}
+			if (spins < SPIN_TRIES) {
+				Thread.yield();
+			} else {
+				awaitElement(Math.min(remaining, MAX_PARK_NANOS));
+			}
+		}
+		return e;
+	}
+	/**
+	 * Parks the consumer for up to the specified time if the queue is still empty after advertising that it is waiting.
+	 *
+	 * @param nanos maximum time to park
+	 */
+	private void awaitElement(long nanos) {
+		waitingConsumer = Thread.currentThread();
+		try {
+			if (!isPublished(head.get())) {
+				LockSupport.parkNanos(this, nanos);
+			}
+		} finally {
+			waitingConsumer = null;
+		}
+	}
+	/**
+	 * Wakes any producers waiting for space.
+	 */
+	private void signalProducers() {
+		if (waitingProducers.get() > 0) {
+			spaceLock.lock();
+			try {
+				notFull.signalAll();
+			} finally {
+				spaceLock.unlock();
+			}
+		}
+	}
+	/**
+	 * Retrieves, but does not remove, the head of this queue, or returns {@code null} if it is empty. Call only from the
+	 * consumer thread.
+	 *
+	 * @return the head of this queue, or {@code null} if it is empty
+	 */
+	@Override
+	public E peek() {
+		long h = head.get();
+		return isPublished(h) ? elements[(int) h & mask] : null;
+	}
+	/**
+	 * Removes at most the specified number of available elements from this queue and copies them into the specified
+	 * array, starting at the specified offset. Call only from the consumer thread.
+	 * <p>
+	 * Elements are taken in order up to the first slot that has been claimed but not yet published. This takes at most
+	 * two {@link System#arraycopy} calls, one either side of the end of the ring, and releases all of the slots to
+	 * producers with a single store. It does not allocate.
+	 *
+	 * @param target the array into which to copy elements
+	 * @param offset index in {@code target} of the first element
+	 * @param maxElements the maximum number of elements to transfer
+	 * @return the number of elements transferred
+	 * @throws IndexOutOfBoundsException if the offset is outside the bounds of the array
+	 * @throws ArrayStoreException if an element is not of the component type of the array
+	 */
+	public int drainTo(E[] target, int offset, int maxElements) {
+		if (offset < 0 || offset > target.length) {
+			throw new IndexOutOfBoundsException("Invalid offset: " + offset);
+		}
+		long h = head.get();
+		long limit = Math.min(tail.get() - h, Math.min(maxElements, target.length - offset));
+		int count = (int) (firstUnpublished(h, h + limit) - h);
+		if (count <= 0) {
+			return 0;
+		}
+		int from = (int) h & mask;
+		int firstPortion = Math.min(count, capacity - from);
+		System.arraycopy(elements, from, target, offset, firstPortion);
+		System.arraycopy(elements, 0, target, offset + firstPortion, count - firstPortion);
+		Arrays.fill(elements, from, from + firstPortion, null);
+		Arrays.fill(elements, 0, count - firstPortion, null);
+		head.lazySet(h + count);
+		signalProducers();
+		return count;
+	}
+	/**
+	 * Removes all available elements from this queue and adds them to the specified collection. Call only from the
+	 * consumer thread.
+	 *
+	 * @see #drainTo(Collection, int)
+	 */
+	@Override
+	public int drainTo(Collection<? super E> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+	/**
+	 * Removes at most the specified number of available elements from this queue and adds them to the specified
+	 * collection. Call only from the consumer thread.
+	 * <p>
+	 * The elements are removed in one batch as {@link #drainTo(Object[], int, int)} and then added to {@code c} with
+	 * {@link Collection#addAll}. If that throws, the elements have nevertheless been removed from this queue.
+	 *
+	 * @param c the collection to which to transfer elements
+	 * @param maxElements the maximum number of elements to transfer
+	 * @return the number of elements transferred
+	 * @throws NullPointerException if the specified collection is null
+	 * @throws IllegalArgumentException if the specified collection is this queue
+	 */
+	@Override
+	public int drainTo(Collection<? super E> c, int maxElements) {
+		if (c == null) {
+			throw new NullPointerException();
+		}
+		if (c == this) {
+			throw new IllegalArgumentException("Cannot drain a queue to itself");
+		}
+		long available = tail.get() - head.get();
+		if (maxElements <= 0 || available <= 0) {
+			return 0;
+		}
+		@SuppressWarnings("unchecked")
+		// only ever holds Es
+		E[] batch = (E[]) new Object[(int) Math.min(available, maxElements)];
+		int count = drainTo(batch, 0, batch.length);
+		c.addAll(Arrays.asList(batch).subList(0, count));
+		return count;
+	}
+
+	// *** methods callable from any thread ***
+
+	/**
+	 * Returns the number of elements in this queue, counting slots that have been claimed but not yet published. This
+	 * is exact only if neither the producers nor the consumer is active.
+	 *
+	 * @return the number of elements in this queue
+	 */
+	@Override
+	public int size() {
+		long h;
+		long t;
+		do {
+			h = head.get();
+			t = tail.get();
+		} while (h != head.get()); // consistent snapshot of head
+		return (int) (t - h);
+	}
+	/**
+	 * Returns whether the consumer would currently find no element to take.
+	 *
+	 * @return {@code true} if the head slot has not been published
+	 */
+	@Override
+	public boolean isEmpty() {
+		return peek() == null;
+	}
+	/**
+	 * Returns the number of slots not yet claimed by producers.
+	 *
+	 * @return the remaining capacity
+	 */
+	@Override
+	public int remainingCapacity() {
+		long h;
+		long t;
+		do {
+			h = head.get();
+			t = tail.get();
+		} while (h != head.get());
+		return (int) (capacity - (t - h));
+	}
+	/**
+	 * Returns a snapshot of the elements in this queue, from head up to the first slot not yet published. Elements taken
+	 * or added concurrently with this call may or may not be included.
+	 *
+	 * @return an array containing the elements in this queue
+	 */
+	@Override
+	public Object[] toArray() {
+		long h = head.get();
+		int length = (int) (firstUnpublished(h, h + Math.min(tail.get() - h, capacity)) - h);
+		Object[] a = new Object[Math.max(length, 0)];
+		int n = 0;
+		// the consumer may take elements meanwhile, leaving null
+		for (Object e; n < length && (e = elements[(int) (h + n) & mask]) != null; n++) {
+			a[n] = e;
+		}
+		return n == a.length ? a : Arrays.copyOf(a, n);
+	}
+	/**
+	 * Returns an iterator over a snapshot of the elements in this queue, as {@link #toArray()}. The iterator does not
+	 * support {@link Iterator#remove() remove}.
+	 *
+	 * @return a snapshot iterator
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		@SuppressWarnings("unchecked")
+		// only Es are put in the array
+		E[] snapshot = (E[]) toArray();
+		return Iterators.forArray(snapshot);
+	}
+
+	/**
+	 * Tests that the specified object is non-null.
+	 *
+	 * @param o object to check
+	 * @throws NullPointerException if the parameter is {@code null}
+	 */
+	private static void checkNotNull(Object o) {
+		if (o == null) {
+			throw new NullPointerException("Null elements not supported");
+		}
+	}
+}
@@ -0,0 +1,407 @@
+package joe.collect;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Double-ended queue of fixed-length records held off the Java heap, in a direct {@link ByteBuffer}, with the deque
+ * semantics of {@link CircularArrayList}. Records are not objects: they are read and written through a reusable
+ * {@link Cursor}, a flyweight that is positioned on one record at a time. Since no per-record objects exist, the cost
+ * to the garbage collector of a ring does not grow with the number of records it holds, which makes this suited to
+ * holding very many small records of a fixed layout.
+ * <p>
+ * The buffer is treated as an array of slots of {@link #getRecordSize()} bytes, and the slot arithmetic is that of
+ * {@code CircularArrayList}: the number of slots is a power of two, the record at index {@code i} is in slot
+ * {@code (head + i) & mask}, and one slot is always kept free. An unbounded ring doubles its buffer when it fills; a
+ * ring created by {@link #bounded(int, int)} instead discards a record from the other end, just as a bounded
+ * {@code CircularArrayList} does.
+ * <p>
+ * A cursor is positioned by {@link #addFirst}, {@link #addLast}, {@link #get}, the {@code peek} and the {@code poll}
+ * methods. A cursor positioned on a polled record may still be read until the slot is reused by a later add. Any
+ * reallocation of the buffer invalidates all cursors, in the way that a structural modification invalidates an
+ * iterator, although this is not detected. Multi-byte values are in the platform's native byte order.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author Joe Kearney
+ */
+public class OffHeapRecordRing {
+	/**
+	 * The minimum number of slots in the buffer. Must be a power of 2.
+	 */
+	private static final int MIN_INITIAL_CAPACITY = 8;
+
+	/**
+	 * The length in bytes of each record.
+	 */
+	private final int recordSize;
+	/**
+	 * Maximum number of records, or zero if unbounded.
+	 */
+	private final int maxSize;
+	/**
+	 * The records, in slots of {@code recordSize} bytes. The number of slots is a power of two, and never all used.
+	 */
+	private ByteBuffer buffer;
+	/**
+	 * Mask for slot indices, one less than the number of slots.
+	 */
+	private int mask;
+	/**
+	 * The slot of the first record, or an arbitrary slot equal to tail if the ring is empty.
+	 */
+	private int head;
+	/**
+	 * The slot at which the next record would be added to the end of the ring.
+	 */
+	private int tail;
+
+	/**
+	 * Constructs an empty ring of records of the specified size, with room for at least the specified number of
+	 * records before it must grow.
+	 *
+	 * @param recordSize the length in bytes of each record
+	 * @param numRecords the initial number of records to allow for
+	 * @throws IllegalArgumentException if {@code recordSize} is not positive or {@code numRecords} is negative
+	 */
+	public OffHeapRecordRing(int recordSize, int numRecords) {
+		this(recordSize, numRecords, 0);
+	}
+	private OffHeapRecordRing(int recordSize, int numRecords, int maxSize) {
+		if (recordSize <= 0) {
+			throw new IllegalArgumentException("Record size must be positive: " + recordSize);
+		}
+		if (numRecords < 0) {
+			throw new IllegalArgumentException("Number of records must not be negative: " + numRecords);
+		}
+		this.recordSize = recordSize;
+		this.maxSize = maxSize;
+		allocate(CircularArrayList.capacityFor(numRecords));
+	}
+	/**
+	 * Creates an empty ring that holds at most {@code maxSize} records. Adding a record to a full ring discards one
+	 * from the other end: {@link #addLast} discards the first record and {@link #addFirst} the last. The buffer is
+	 * allocated once, and never reallocated, so cursors stay valid.
+	 *
+	 * @param recordSize the length in bytes of each record
+	 * @param maxSize maximum number of records in the ring
+	 * @return a new bounded ring
+	 * @throws IllegalArgumentException if {@code recordSize} or {@code maxSize} is not positive
+	 */
+	public static OffHeapRecordRing bounded(int recordSize, int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Maximum size must be positive: " + maxSize);
+		}
+		return new OffHeapRecordRing(recordSize, maxSize, maxSize);
+	}
+
+	/**
+	 * Allocates an empty buffer with the specified number of slots.
+	 */
+	private void allocate(int slots) {
+		long bytes = (long) slots * recordSize;
+		if (bytes > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Sorry, ring too big");
+		}
+		buffer = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+		mask = slots - 1;
+	}
+	/**
+	 * Doubles the capacity of this ring. Call only when full, i.e., when head and tail have wrapped around to become
+	 * equal.
+	 */
+	private void doubleCapacity() {
+		assert head == tail;
+		ByteBuffer old = buffer;
+		int slots = mask + 1;
+		int r = slots - head; // number of records to the right of head
+		allocate(slots << 1);
+		copySlots(old, head, r, 0);
+		copySlots(old, 0, head, r);
+		head = 0;
+		tail = slots;
+	}
+	/**
+	 * Copies a run of slots from another buffer into this ring's buffer.
+	 */
+	private void copySlots(ByteBuffer src, int srcSlot, int length, int destSlot) {
+		ByteBuffer from = src.duplicate();
+		from.limit((srcSlot + length) * recordSize);
+		from.position(srcSlot * recordSize);
+		ByteBuffer to = buffer.duplicate();
+		to.position(destSlot * recordSize);
+		to.put(from);
+	}
+	/**
+	 * Zeroes the record in a slot.
+	 */
+	private void zero(int slot) {
+		int offset = slot * recordSize;
+		int end = offset + recordSize;
+		for (; offset + 8 <= end; offset += 8) {
+			buffer.putLong(offset, 0L);
+		}
+		for (; offset < end; offset++) {
+			buffer.put(offset, (byte) 0);
+		}
+	}
+
+	// *** deque methods ***
+
+	/**
+	 * Inserts a zeroed record at the front of this ring and positions the cursor on it. If the ring is bounded and
+	 * full, the last record is discarded.
+	 *
+	 * @param cursor cursor to position on the new record
+	 * @return the cursor
+	 * @throws IllegalArgumentException if the cursor belongs to another ring
+	 */
+	public Cursor addFirst(Cursor cursor) {
+		checkCursor(cursor);
+		if (maxSize != 0 && size() == maxSize) {
+			tail = (tail - 1) & mask;
+		}
+		head = (head - 1) & mask;
+		if (head == tail) {
+			doubleCapacity(); // the new record's slot moves to the new head
+		}
+		zero(head);
+		return cursor.at(head);
+	}
+	/**
+	 * Inserts a zeroed record at the end of this ring and positions the cursor on it. If the ring is bounded and full,
+	 * the first record is discarded.
+	 *
+	 * @param cursor cursor to position on the new record
+	 * @return the cursor
+	 * @throws IllegalArgumentException if the cursor belongs to another ring
+	 */
+	public Cursor addLast(Cursor cursor) {
+		checkCursor(cursor);
+		if (maxSize != 0 && size() == maxSize) {
+			head = (head + 1) & mask;
+		}
+		int slot = tail;
+		tail = (tail + 1) & mask;
+		if (tail == head) {
+			doubleCapacity(); // the new record's slot moves to just before the new tail
+			slot = tail - 1;
+		}
+		zero(slot);
+		return cursor.at(slot);
+	}
+	/**
+	 * Removes the first record of this ring, positioning the cursor on it.
+	 *
+	 * @param cursor cursor to position on the removed record
+	 * @return {@code true} if a record was removed, {@code false} if the ring is empty
+	 * @throws IllegalArgumentException if the cursor belongs to another ring
+	 */
+	public boolean pollFirst(Cursor cursor) {
+		checkCursor(cursor);
+		if (head == tail) {
+			return false;
+		}
+		cursor.at(head);
+		head = (head + 1) & mask;
+		return true;
+	}
+	/**
+	 * Removes the last record of this ring, positioning the cursor on it.
+	 *
+	 * @param cursor cursor to position on the removed record
+	 * @return {@code true} if a record was removed, {@code false} if the ring is empty
+	 * @throws IllegalArgumentException if the cursor belongs to another ring
+	 */
+	public boolean pollLast(Cursor cursor) {
+		checkCursor(cursor);
+		if (head == tail) {
+			return false;
+		}
+		tail = (tail - 1) & mask;
+		cursor.at(tail);
+		return true;
+	}
+	/**
+	 * Positions the cursor on the first record of this ring, without removing it.
+	 *
+	 * @param cursor cursor to position
+	 * @return {@code true} if the cursor was positioned, {@code false} if the ring is empty
+	 * @throws IllegalArgumentException if the cursor belongs to another ring
+	 */
+	public boolean peekFirst(Cursor cursor) {
+		checkCursor(cursor);
+		if (head == tail) {
+			return false;
+		}
+		cursor.at(head);
+		return true;
+	}
+	/**
+	 * Positions the cursor on the last record of this ring, without removing it.
+	 *
+	 * @param cursor cursor to position
+	 * @return {@code true} if the cursor was positioned, {@code false} if the ring is empty
+	 * @throws IllegalArgumentException if the cursor belongs to another ring
+	 */
+	public boolean peekLast(Cursor cursor) {
+		checkCursor(cursor);
+		if (head == tail) {
+			return false;
+		}
+		cursor.at((tail - 1) & mask);
+		return true;
+	}
+	/**
+	 * Positions the cursor on the record at the specified index.
+	 *
+	 * @param index index of the record
+	 * @param cursor cursor to position
+	 * @return the cursor
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 * @throws IllegalArgumentException if the cursor belongs to another ring
+	 */
+	public Cursor get(int index, Cursor cursor) {
+		checkCursor(cursor);
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		return cursor.at((head + index) & mask);
+	}
+	/**
+	 * Removes all records from this ring. The buffer is kept.
+	 */
+	public void clear() {
+		head = tail = 0;
+	}
+
+	/**
+	 * Returns the number of records in this ring.
+	 *
+	 * @return the number of records
+	 */
+	public int size() {
+		return (tail - head) & mask;
+	}
+	/**
+	 * Returns {@code true} if this ring holds no records.
+	 *
+	 * @return whether the ring is empty
+	 */
+	public boolean isEmpty() {
+		return head == tail;
+	}
+	/**
+	 * Returns the length in bytes of each record.
+	 *
+	 * @return the record size
+	 */
+	public int getRecordSize() {
+		return recordSize;
+	}
+	/**
+	 * Returns {@code true} if this ring was created with a maximum size by {@link #bounded(int, int)}.
+	 *
+	 * @return whether this ring is bounded
+	 */
+	public boolean isBounded() {
+		return maxSize != 0;
+	}
+
+	/**
+	 * Creates a new cursor over this ring, initially positioned on no record. Cursors are intended to be created once
+	 * and reused.
+	 *
+	 * @return a new cursor
+	 */
+	public Cursor newCursor() {
+		return new Cursor(this);
+	}
+	private void checkCursor(Cursor cursor) {
+		if (cursor.ring != this) {
+			throw new IllegalArgumentException("Cursor belongs to another ring");
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "OffHeapRecordRing[size=" + size() + ", recordSize=" + recordSize + "]";
+	}
+
+	/**
+	 * Flyweight accessor for one record of a ring. Field offsets are relative to the start of the record, and must lie
+	 * within it. Accessing a cursor that has not been positioned fails with {@link IllegalStateException}.
+	 */
+	public static final class Cursor {
+		private final OffHeapRecordRing ring;
+		/**
+		 * Byte offset in the ring's buffer of the start of the record, or -1 if not positioned.
+		 */
+		private int base = -1;
+
+		Cursor(OffHeapRecordRing ring) {
+			this.ring = ring;
+		}
+
+		Cursor at(int slot) {
+			base = slot * ring.recordSize;
+			return this;
+		}
+		/**
+		 * Gets the absolute buffer offset of a field, checking that it lies within the record.
+		 */
+		private int offset(int fieldOffset, int fieldLength) {
+			if (base < 0) {
+				throw new IllegalStateException("Cursor is not positioned on a record");
+			}
+			if (fieldOffset < 0 || fieldOffset > ring.recordSize - fieldLength) {
+				throw new IndexOutOfBoundsException("Field of " + fieldLength + " bytes at offset " + fieldOffset
+						+ " is outside a record of " + ring.recordSize + " bytes");
+			}
+			return base + fieldOffset;
+		}
+
+		public byte getByte(int offset) {
+			return ring.buffer.get(offset(offset, 1));
+		}
+		public Cursor putByte(int offset, byte value) {
+			ring.buffer.put(offset(offset, 1), value);
+			return this;
+		}
+		public short getShort(int offset) {
+			return ring.buffer.getShort(offset(offset, 2));
+		}
+		public Cursor putShort(int offset, short value) {
+			ring.buffer.putShort(offset(offset, 2), value);
+			return this;
+		}
+		public int getInt(int offset) {
+			return ring.buffer.getInt(offset(offset, 4));
+		}
+		public Cursor putInt(int offset, int value) {
+			ring.buffer.putInt(offset(offset, 4), value);
+			return this;
+		}
+		public long getLong(int offset) {
+			return ring.buffer.getLong(offset(offset, 8));
+		}
+		public Cursor putLong(int offset, long value) {
+			ring.buffer.putLong(offset(offset, 8), value);
+			return this;
+		}
+		public float getFloat(int offset) {
+			return ring.buffer.getFloat(offset(offset, 4));
+		}
+		public Cursor putFloat(int offset, float value) {
+			ring.buffer.putFloat(offset(offset, 4), value);
+			return this;
+		}
+		public double getDouble(int offset) {
+			return ring.buffer.getDouble(offset(offset, 8));
+		}
+		public Cursor putDouble(int offset, double value) {
+			ring.buffer.putDouble(offset(offset, 8), value);
+			return this;
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package joe.collect;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link AtomicLong} padded out to fill a cache line, for sequence counters written by one thread and read by another.
+ * Without the padding, two counters allocated together may share a cache line, so that each write by one thread
+ * invalidates the line the other thread is spinning on ("false sharing").
+ * <p>
+ * The padding fields are public and summed in {@link #sumPaddingToPreventOptimisation()} only so that neither the
+ * compiler nor the JIT can prove them unused and remove them.
+ *
+ * @author Joe Kearney
+ */
+@SuppressWarnings("serial")
+class PaddedAtomicLong extends AtomicLong {
+	public volatile long p1, p2, p3, p4, p5, p6 = 7L;
+
+	PaddedAtomicLong() {}
+	PaddedAtomicLong(long initialValue) {
+		super(initialValue);
+	}
+
+	/**
+	 * Never called in anger; exists so that the padding fields are reachable.
+	 *
+	 * @return the sum of the padding fields
+	 */
+	public long sumPaddingToPreventOptimisation() {
+		return p1 + p2 + p3 + p4 + p5 + p6;
+	}
+}
@@ -0,0 +1,224 @@
+package joe.collect;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Window over the most recent {@code double} samples, maintaining their sum, mean, minimum and maximum incrementally
+ * so that each is available in constant time however large the window. Samples are added at the end by
+ * {@link #addLast} and leave from the front, either by {@link #pollFirst} or by being evicted when a full window
+ * receives a new sample, just as in a {@linkplain CircularArrayList#bounded(int) bounded} {@link CircularArrayList}.
+ * <p>
+ * Storage is primitive throughout, so nothing is boxed per sample. The samples are held in a
+ * {@link CircularLongArrayList} as their raw bits. The minimum and maximum are each tracked by a monotonic deque: a
+ * {@code CircularLongArrayList} of the sequence numbers of those samples that could yet become the extreme, that is,
+ * those with no later sample at least as extreme. A new sample pops the entries it supersedes from the back of each
+ * deque, and a departing sample leaves the front of a deque if it was its extreme, so every operation runs in
+ * amortized constant time.
+ * <p>
+ * The sum is kept with compensated (Kahan) summation, since adding and later subtracting each sample would otherwise
+ * accumulate rounding error over a long-lived window. It is reset exactly whenever the window empties. Samples must
+ * be finite.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author Joe Kearney
+ */
+public class SlidingWindowAggregator {
+	/**
+	 * Maximum number of samples in the window.
+	 */
+	private final int maxSize;
+	/**
+	 * The samples, as raw {@code long} bits, first to last.
+	 */
+	private final CircularLongArrayList samples;
+	/**
+	 * Sequence numbers of the candidates for the minimum, in increasing order of both sequence number and value. The
+	 * first is the minimum.
+	 */
+	private final CircularLongArrayList minCandidates;
+	/**
+	 * Sequence numbers of the candidates for the maximum, in increasing order of sequence number and decreasing order
+	 * of value. The first is the maximum.
+	 */
+	private final CircularLongArrayList maxCandidates;
+	/**
+	 * Sequence number of the first sample in the window. The sample at list index {@code i} has sequence number
+	 * {@code firstSeq + i}.
+	 */
+	private long firstSeq;
+	/**
+	 * Running sum of the samples.
+	 */
+	private double sum;
+	/**
+	 * Low-order error of {@link #sum}, to be subtracted from the next addend.
+	 */
+	private double compensation;
+
+	/**
+	 * Creates an empty window of the specified maximum size.
+	 *
+	 * @param maxSize maximum number of samples in the window
+	 * @throws IllegalArgumentException if {@code maxSize} is not positive
+	 */
+	public SlidingWindowAggregator(int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Maximum size must be positive: " + maxSize);
+		}
+		this.maxSize = maxSize;
+		int initialCapacity = Math.min(maxSize, 1 << 10);
+		this.samples = new CircularLongArrayList(initialCapacity);
+		this.minCandidates = new CircularLongArrayList(initialCapacity);
+		this.maxCandidates = new CircularLongArrayList(initialCapacity);
+	}
+
+	/**
+	 * Adds a sample to the end of the window, evicting the first sample if the window is full.
+	 *
+	 * @param sample the sample to add
+	 * @throws IllegalArgumentException if the sample is infinite or NaN
+	 */
+	public void addLast(double sample) {
+		if (Double.isNaN(sample) || Double.isInfinite(sample)) {
+			throw new IllegalArgumentException("Samples must be finite: " + sample);
+		}
+		if (samples.size() == maxSize) {
+			pollFirst();
+		}
+		long seq = firstSeq + samples.size();
+		samples.addLastLong(Double.doubleToRawLongBits(sample));
+		accumulate(sample);
+
+		while (!minCandidates.isEmpty() && valueOf(minCandidates.getLastLong()) >= sample) {
+			minCandidates.pollLastLong();
+		}
+		minCandidates.addLastLong(seq);
+		while (!maxCandidates.isEmpty() && valueOf(maxCandidates.getLastLong()) <= sample) {
+			maxCandidates.pollLastLong();
+		}
+		maxCandidates.addLastLong(seq);
+	}
+	/**
+	 * Removes and returns the first sample in the window.
+	 *
+	 * @return the first sample
+	 * @throws NoSuchElementException if the window is empty
+	 */
+	public double pollFirst() {
+		double sample = Double.longBitsToDouble(samples.pollFirstLong());
+		if (minCandidates.getFirstLong() == firstSeq) {
+			minCandidates.pollFirstLong();
+		}
+		if (maxCandidates.getFirstLong() == firstSeq) {
+			maxCandidates.pollFirstLong();
+		}
+		firstSeq++;
+		if (samples.isEmpty()) {
+			sum = compensation = 0;
+		} else {
+			accumulate(-sample);
+		}
+		return sample;
+	}
+	/**
+	 * Removes all samples from the window.
+	 */
+	public void clear() {
+		samples.clear();
+		minCandidates.clear();
+		maxCandidates.clear();
+		firstSeq = 0;
+		sum = compensation = 0;
+	}
+
+	/**
+	 * Adds to the running sum by Kahan summation.
+	 */
+	private void accumulate(double x) {
+		double y = x - compensation;
+		double t = sum + y;
+		compensation = (t - sum) - y;
+		sum = t;
+	}
+	/**
+	 * Gets the sample with the specified sequence number, which must be in the window.
+	 */
+	private double valueOf(long seq) {
+		return Double.longBitsToDouble(samples.getLong((int) (seq - firstSeq)));
+	}
+
+	/**
+	 * Returns the sample at the specified position in the window, counting from the first.
+	 *
+	 * @param index index of the sample
+	 * @return the sample
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 */
+	public double get(int index) {
+		return Double.longBitsToDouble(samples.getLong(index));
+	}
+	/**
+	 * Returns the number of samples in the window.
+	 *
+	 * @return the number of samples
+	 */
+	public int size() {
+		return samples.size();
+	}
+	/**
+	 * Returns {@code true} if the window holds no samples.
+	 *
+	 * @return whether the window is empty
+	 */
+	public boolean isEmpty() {
+		return samples.isEmpty();
+	}
+	/**
+	 * Returns the maximum number of samples in the window.
+	 *
+	 * @return the maximum size
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+	/**
+	 * Returns the sum of the samples in the window, or zero if it is empty.
+	 *
+	 * @return the sum
+	 */
+	public double getSum() {
+		return sum;
+	}
+	/**
+	 * Returns the mean of the samples in the window, or {@link Double#NaN} if it is empty.
+	 *
+	 * @return the mean
+	 */
+	public double getMean() {
+		return samples.isEmpty() ? Double.NaN : sum / samples.size();
+	}
+	/**
+	 * Returns the least sample in the window.
+	 *
+	 * @return the minimum
+	 * @throws NoSuchElementException if the window is empty
+	 */
+	public double getMin() {
+		return valueOf(minCandidates.getFirstLong());
+	}
+	/**
+	 * Returns the greatest sample in the window.
+	 *
+	 * @return the maximum
+	 * @throws NoSuchElementException if the window is empty
+	 */
+	public double getMax() {
+		return valueOf(maxCandidates.getFirstLong());
+	}
+
+	@Override
+	public String toString() {
+		return "SlidingWindowAggregator[size=" + size() + ", maxSize=" + maxSize + "]";
+	}
+}
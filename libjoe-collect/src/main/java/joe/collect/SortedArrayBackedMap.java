@@ -38,6 +38,31 @@ public final class SortedArrayBackedMap<K, V> extends
 		this.comparator = comparator;
 	}
 
+	/**
+	 * Constructs an empty map in amortized-growth mode with the specified
+	 * initial capacity, ordered naturally.
+	 * 
+	 * @param initialCapacity initial length of the arrays
+	 * @see AbstractArrayBackedMap#setAmortizedGrowth(boolean)
+	 */
+	public SortedArrayBackedMap(int initialCapacity) {
+		this(initialCapacity, null);
+	}
+
+	/**
+	 * Constructs an empty map in amortized-growth mode with the specified
+	 * initial capacity, ordered by the comparator.
+	 * 
+	 * @param initialCapacity initial length of the arrays
+	 * @param comparator order of the keys, or {@code null} for natural ordering
+	 * @see AbstractArrayBackedMap#setAmortizedGrowth(boolean)
+	 */
+	public SortedArrayBackedMap(int initialCapacity,
+			Comparator<? super K> comparator) {
+		super(initialCapacity);
+		this.comparator = comparator;
+	}
+
 	public SortedArrayBackedMap(Map<? extends K, ? extends V> map) {
 		this(map, null);
 	}
@@ -51,6 +76,7 @@ public final class SortedArrayBackedMap<K, V> extends
 		int size = map.size();
 		this.keys = (K[]) new Object[size];
 		this.values = (V[]) new Object[map.size()];
+		this.size = size;
 
 		if (map instanceof SortedMap<?, ?>) {
 			SortedMap<K, V> sorted = (SortedMap<K, V>) map;
@@ -102,7 +128,8 @@ public final class SortedArrayBackedMap<K, V> extends
 		try {
 			@SuppressWarnings("unchecked")
 			K kkey = (K) key;
-			return Arrays.binarySearch(getKeysArray(), kkey, comparator);
+			return Arrays.binarySearch(getKeysArray(), 0, size(), kkey,
+					comparator);
 		} catch (ClassCastException e) {
 			return -1;
 		}
@@ -110,12 +137,13 @@ public final class SortedArrayBackedMap<K, V> extends
 
 	@Override
 	protected int getIndexByValue(Object value) {
-		return findByScan(value, getValuesArray());
+		return findByScan(value, getValuesArray(), size());
 	}
 
 	@Override
 	protected int getIndexForNewEntry(K key, V value) {
-		int index = Arrays.binarySearch(getKeysArray(), key, comparator);
+		int index = Arrays.binarySearch(getKeysArray(), 0, size(), key,
+				comparator);
 		assert index < 0;
 		return -(index + 1);
 	}
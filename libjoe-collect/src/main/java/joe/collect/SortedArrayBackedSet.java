@@ -21,6 +21,26 @@ public final class SortedArrayBackedSet<E> extends AbstractArrayBackedSet<E> imp
 	public SortedArrayBackedSet(Comparator<? super E> comparator) {
 		this.comparator = comparator;
 	}
+	/**
+	 * Constructs an empty set in amortized-growth mode with the specified initial capacity, ordered naturally.
+	 * 
+	 * @param initialCapacity initial length of the array
+	 * @see AbstractArrayBackedSet#setAmortizedGrowth(boolean)
+	 */
+	public SortedArrayBackedSet(int initialCapacity) {
+		this(initialCapacity, null);
+	}
+	/**
+	 * Constructs an empty set in amortized-growth mode with the specified initial capacity, ordered by the comparator.
+	 * 
+	 * @param initialCapacity initial length of the array
+	 * @param comparator order of the elements, or {@code null} for natural ordering
+	 * @see AbstractArrayBackedSet#setAmortizedGrowth(boolean)
+	 */
+	public SortedArrayBackedSet(int initialCapacity, Comparator<? super E> comparator) {
+		super(initialCapacity);
+		this.comparator = comparator;
+	}
 	public SortedArrayBackedSet(Set<? extends E> set) {
 		this(set, null);
 	}
@@ -34,14 +54,14 @@ public final class SortedArrayBackedSet<E> extends AbstractArrayBackedSet<E> imp
 		try {
 			@SuppressWarnings("unchecked")
 			E kElement = (E) element;
-			return Arrays.binarySearch(getElementsArray(), kElement, comparator);
+			return Arrays.binarySearch(getElementsArray(), 0, size(), kElement, comparator);
 		} catch (ClassCastException e) {
 			return -1;
 		}
 	}
 	@Override
 	protected int getIndexForNewEntry(E element) {
-		int index = Arrays.binarySearch(getElementsArray(), element, comparator);
+		int index = Arrays.binarySearch(getElementsArray(), 0, size(), element, comparator);
 		assert index < 0;
 		return -(index + 1);
 	}
@@ -64,11 +84,17 @@ public final class SortedArrayBackedSet<E> extends AbstractArrayBackedSet<E> imp
 	}
 	@Override
 	public E first() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
 		return elements[0];
 	}
 	@Override
 	public E last() {
-		return elements[elements.length - 1];
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return elements[size - 1];
 	}
 	
 	private final class SubSet extends AbstractSet<E> implements SortedSet<E> {
@@ -0,0 +1,482 @@
+package joe.collect;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.google.common.collect.Iterators;
+
+/**
+ * Bounded lock-free {@link BlockingQueue} for handing elements from exactly one producer thread to exactly one
+ * consumer thread. Elements live in a power-of-two array addressed in the same way as in {@link CircularArrayList}, by
+ * masking a position with {@code capacity - 1}; here the positions are ever-increasing {@code long} sequences rather
+ * than wrapped indices, so that a full queue can use every slot.
+ * <p>
+ * The producer owns the {@code tail} sequence and the consumer owns the {@code head} sequence. Each publishes its
+ * progress to the other with {@link java.util.concurrent.atomic.AtomicLong#lazySet lazySet}, an ordered store that is
+ * much cheaper than a volatile write, and each caches the last value it read of the other's sequence so that the
+ * shared sequence is read only when the queue appears full (to the producer) or empty (to the consumer). The two
+ * sequences are padded onto separate cache lines, each together with its owner's cache of the other. No locks are taken
+ * on any path.
+ * <p>
+ * <b>The single-producer, single-consumer contract is not checked.</b> The producer-side methods are {@link #add},
+ * {@link #offer(Object) offer} and {@link #put}; the consumer-side methods are {@link #poll() poll}, {@link #take},
+ * {@link #peek}, {@link #remove()}, {@link #drainTo(Collection) drainTo} and {@link #clear}. At most one thread may be
+ * calling producer-side methods at any time, and likewise for the consumer side; otherwise elements may be lost or
+ * duplicated. The remaining methods, such as {@link #size} and {@link #iterator}, may be called from any thread and
+ * give approximate answers while the queue is in use.
+ * <p>
+ * Blocking methods spin briefly, yielding, and then park. A parked thread is unparked by the other side when it makes
+ * progress, but since the publishing stores are lazy a wake-up can occasionally be missed; parking is therefore
+ * bounded at {@value #MAX_PARK_MICROS}&micro;s, which bounds the extra latency in that rare case.
+ * <p>
+ * The iterator is a snapshot of the queue and does not support {@link Iterator#remove() remove}, so neither does
+ * {@link #remove(Object)}. Null elements are prohibited.
+ *
+ * @author Joe Kearney
+ * @param <E> the type of elements held in this queue
+ */
+public class SpscArrayBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+	/**
+	 * Maximum time in microseconds for which a blocked thread parks before checking the queue again.
+	 */
+	static final long MAX_PARK_MICROS = 1000;
+	private static final long MAX_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(MAX_PARK_MICROS);
+	/**
+	 * Number of times a blocked thread yields before it starts to park.
+	 */
+	static final int SPIN_TRIES = 100;
+
+	/**
+	 * The array in which elements are stored, of power-of-two length. Slots not holding elements are {@code null}.
+	 */
+	private final E[] elements;
+	/**
+	 * Mask for the length of the array.
+	 */
+	private final int mask;
+
+	/**
+	 * Sequence of the next element to be taken. Written only by the consumer, which also keeps its cached read of
+	 * {@code tail} here.
+	 */
+	private final SideSequence head = new SideSequence();
+	/**
+	 * Sequence of the next slot to be filled. Written only by the producer, which also keeps its cached read of
+	 * {@code head} here.
+	 */
+	private final SideSequence tail = new SideSequence();
+
+	/**
+	 * The consumer thread if it is parked waiting for an element, else {@code null}.
+	 */
+	private volatile Thread waitingConsumer;
+	/**
+	 * The producer thread if it is parked waiting for space, else {@code null}.
+	 */
+	private volatile Thread waitingProducer;
+
+	/**
+	 * Constructs an empty queue with room for at least the specified number of elements. The capacity is rounded up to
+	 * a power of two.
+	 *
+	 * @param capacity minimum capacity of the queue
+	 * @throws IllegalArgumentException if the capacity is not positive or is greater than {@code 2^30}
+	 */
+	@SuppressWarnings("unchecked")
+	// cast of Object[] to E[] is safe as we only ever put Es in it
+	public SpscArrayBlockingQueue(int capacity) {
+		elements = (E[]) new Object[ringCapacityFor(capacity)];
+		mask = elements.length - 1;
+	}
+
+	/**
+	 * Computes the smallest power of two no less than the specified capacity, for queues whose array may fill
+	 * completely.
+	 *
+	 * @param capacity requested capacity
+	 * @return power of two array length
+	 * @throws IllegalArgumentException if the capacity is not positive or is greater than {@code 2^30}
+	 */
+	static int ringCapacityFor(int capacity) {
+		if (capacity <= 0 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("Capacity must be in [1, 2^30]: " + capacity);
+		}
+		return capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+	}
+
+	/**
+	 * Returns the capacity of this queue, which is fixed at construction.
+	 *
+	 * @return the maximum number of elements this queue can hold
+	 */
+	public int capacity() {
+		return elements.length;
+	}
+
+	// *** producer methods ***
+
+	/**
+	 * Inserts the specified element at the tail of this queue if there is space, without waiting. Call only from the
+	 * producer thread.
+	 *
+	 * @param e the element to add
+	 * @return {@code true} if the element was added, {@code false} if the queue is full
+	 * @throws NullPointerException if the specified element is null
+	 */
+	@Override
+	public boolean offer(E e) {
+		checkNotNull(e);
+		long t = tail.get();
+		if (t - tail.otherCache >= elements.length) {
+			tail.otherCache = head.get();
+			if (t - tail.otherCache >= elements.length) {
+				return false;
+			}
+		}
+		elements[(int) t & mask] = e;
+		tail.lazySet(t + 1);
+		Thread waiter = waitingConsumer;
+		if (waiter != null) {
+			LockSupport.unpark(waiter);
+		}
+		return true;
+	}
+	/**
+	 * Inserts the specified element at the tail of this queue, waiting if necessary for space to become available. Call
+	 * only from the producer thread.
+	 *
+	 * @param e the element to add
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws NullPointerException if the specified element is null
+	 */
+	@Override
+	public void put(E e) throws InterruptedException {
+		checkNotNull(e);
+		for (int spins = 0; !offer(e); spins++) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			if (spins < SPIN_TRIES) {
+				Thread.yield();
+			} else {
+				awaitSpace(MAX_PARK_NANOS);
+			}
+		}
+	}
+	/**
+	 * Inserts the specified element at the tail of this queue, waiting up to the specified time for space to become
+	 * available. Call only from the producer thread.
+	 *
+	 * @param e the element to add
+	 * @param timeout how long to wait before giving up
+	 * @param unit unit of {@code timeout}
+	 * @return {@code true} if the element was added, {@code false} if the specified time elapsed first
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws NullPointerException if the specified element is null
+	 */
+	@Override
+	public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+		checkNotNull(e);
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (int spins = 0; !offer(e); spins++) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return false;
+			}
+			if (spins < SPIN_TRIES) {
+				Thread.yield();
+			} else {
+				awaitSpace(Math.min(remaining, MAX_PARK_NANOS));
+			}
+		}
+		return true;
+	}
+	/**
+	 * Parks the producer for up to the specified time if the queue is still full after advertising that it is waiting.
+	 *
+	 * @param nanos maximum time to park
+	 */
+	private void awaitSpace(long nanos) {
+		waitingProducer = Thread.currentThread();
+		try {
+			if (tail.get() - head.get() >= elements.length) {
+				LockSupport.parkNanos(this, nanos);
+			}
+		} finally {
+			waitingProducer = null;
+		}
+	}
+
+	// *** consumer methods ***
+
+	/**
+	 * Retrieves and removes the head of this queue, or returns {@code null} if it is empty. Call only from the consumer
+	 * thread.
+	 *
+	 * @return the head of this queue, or {@code null} if it is empty
+	 */
+	@Override
+	public E poll() {
+		long h = head.get();
+		if (h >= head.otherCache) {
+			head.otherCache = tail.get();
+			if (h >= head.otherCache) {
+				return null;
+			}
+		}
+		int i = (int) h & mask;
+		E e = elements[i];
+		elements[i] = null;
+		head.lazySet(h + 1);
+		Thread waiter = waitingProducer;
+		if (waiter != null) {
+			LockSupport.unpark(waiter);
+		}
+		return e;
+	}
+	/**
+	 * Retrieves and removes the head of this queue, waiting if necessary until an element becomes available. Call only
+	 * from the consumer thread.
+	 *
+	 * @return the head of this queue
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	@Override
+	public E take() throws InterruptedException {
+		E e;
+		for (int spins = 0; (e = poll()) == null; spins++) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			if (spins < SPIN_TRIES) {
+				Thread.yield();
+			} else {
+				awaitElement(MAX_PARK_NANOS);
+			}
+		}
+		return e;
+	}
+	/**
+	 * Retrieves and removes the head of this queue, waiting up to the specified time for an element to become
+	 * available. Call only from the consumer thread.
+	 *
+	 * @param timeout how long to wait before giving up
+	 * @param unit unit of {@code timeout}
+	 * @return the head of this queue, or {@code null} if the specified time elapsed first
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		E e;
+		for (int spins = 0; (e = poll()) == null; spins++) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return null;
+			}
+			if (spins < SPIN_TRIES) {
+				Thread.yield();
+			} else {
+				awaitElement(Math.min(remaining, MAX_PARK_NANOS));
+			}
+		}
+		return e;
+	}
+	/**
+	 * Parks the consumer for up to the specified time if the queue is still empty after advertising that it is waiting.
+	 *
+	 * @param nanos maximum time to park
+	 */
+	private void awaitElement(long nanos) {
+		waitingConsumer = Thread.currentThread();
+		try {
+			if (head.get() >= tail.get()) {
+				LockSupport.parkNanos(this, nanos);
+			}
+		} finally {
+			waitingConsumer = null;
+		}
+	}
+	/**
+	 * Retrieves, but does not remove, the head of this queue, or returns {@code null} if it is empty. Call only from the
+	 * consumer thread.
+	 *
+	 * @return the head of this queue, or {@code null} if it is empty
+	 */
+	@Override
+	public E peek() {
+		long h = head.get();
+		if (h >= head.otherCache) {
+			head.otherCache = tail.get();
+			if (h >= head.otherCache) {
+				return null;
+			}
+		}
+		return elements[(int) h & mask];
+	}
+	/**
+	 * Removes all available elements from this queue and adds them to the specified collection. Call only from the
+	 * consumer thread.
+	 *
+	 * @see #drainTo(Collection, int)
+	 */
+	@Override
+	public int drainTo(Collection<? super E> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+	/**
+	 * Removes at most the specified number of available elements from this queue and adds them to the specified
+	 * collection. Call only from the consumer thread.
+	 * <p>
+	 * The whole batch is claimed with a single read of the producer's sequence and released with a single store of the
+	 * consumer's, so this is considerably cheaper per element than repeated calls to {@link #poll()}. If adding an
+	 * element to {@code c} throws, that element and those before it have been removed from this queue and the rest
+	 * remain.
+	 *
+	 * @param c the collection to which to transfer elements
+	 * @param maxElements the maximum number of elements to transfer
+	 * @return the number of elements transferred
+	 * @throws NullPointerException if the specified collection is null
+	 * @throws IllegalArgumentException if the specified collection is this queue
+	 */
+	@Override
+	public int drainTo(Collection<? super E> c, int maxElements) {
+		if (c == null) {
+			throw new NullPointerException();
+		}
+		if (c == this) {
+			throw new IllegalArgumentException("Cannot drain a queue to itself");
+		}
+		if (maxElements <= 0) {
+			return 0;
+		}
+		long h = head.get();
+		head.otherCache = tail.get();
+		int count = (int) Math.min(head.otherCache - h, maxElements);
+		if (count == 0) {
+			return 0;
+		}
+		int drained = 0;
+		try {
+			while (drained < count) {
+				int i = (int) (h + drained) & mask;
+				E e = elements[i];
+				elements[i] = null;
+				drained++;
+				c.add(e);
+			}
+		} finally {
+			head.lazySet(h + drained);
+			Thread waiter = waitingProducer;
+			if (waiter != null) {
+				LockSupport.unpark(waiter);
+			}
+		}
+		return count;
+	}
+
+	// *** methods callable from any thread ***
+
+	/**
+	 * Returns the number of elements in this queue. This is exact only if neither the producer nor the consumer is
+	 * active.
+	 *
+	 * @return the number of elements in this queue
+	 */
+	@Override
+	public int size() {
+		long h;
+		long t;
+		do {
+			h = head.get();
+			t = tail.get();
+		} while (h != head.get()); // consistent snapshot of head
+		return (int) (t - h);
+	}
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+	@Override
+	public int remainingCapacity() {
+		return elements.length - size();
+	}
+	/**
+	 * Returns a snapshot of the elements in this queue, from head to tail. Elements taken or added concurrently with
+	 * this call may or may not be included.
+	 *
+	 * @return an array containing the elements in this queue
+	 */
+	@Override
+	public Object[] toArray() {
+		long h = head.get();
+		long t = tail.get();
+		int length = (int) Math.min(t - h, elements.length);
+		Object[] a = new Object[length];
+		int n = 0;
+		for (int k = 0; k < length; k++) {
+			Object e = elements[(int) (h + k) & mask];
+			if (e != null) { // taken concurrently
+				a[n++] = e;
+			}
+		}
+		return n == length ? a : Arrays.copyOf(a, n);
+	}
+	/**
+	 * Returns an iterator over a snapshot of the elements in this queue, as {@link #toArray()}. The iterator does not
+	 * support {@link Iterator#remove() remove}.
+	 *
+	 * @return a snapshot iterator
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		@SuppressWarnings("unchecked")
+		// only Es are put in the array
+		E[] snapshot = (E[]) toArray();
+		return Iterators.forArray(snapshot);
+	}
+
+	/**
+	 * Tests that the specified object is non-null.
+	 *
+	 * @param o object to check
+	 * @throws NullPointerException if the parameter is {@code null}
+	 */
+	private static void checkNotNull(Object o) {
+		if (o == null) {
+			throw new NullPointerException("Null elements not supported");
+		}
+	}
+
+	/**
+	 * The sequence owned by one side of the queue, together with that side's most recent read of the other side's
+	 * sequence. Keeping the cache here, padded on both sides, means that it shares a cache line only with data written
+	 * by the same thread, and not with the other side's cache or with the fields of the queue read on every call.
+	 */
+	@SuppressWarnings("serial")
+	private static final class SideSequence extends PaddedAtomicLong {
+		/**
+		 * The owning side's most recent read of the other side's sequence. Accessed only by the owning thread.
+		 */
+		long otherCache;
+		public volatile long q1, q2, q3, q4, q5, q6 = 7L;
+
+		SideSequence() {}
+
+		@Override
+		public long sumPaddingToPreventOptimisation() {
+			return super.sumPaddingToPreventOptimisation() + q1 + q2 + q3 + q4 + q5 + q6;
+		}
+	}
+}
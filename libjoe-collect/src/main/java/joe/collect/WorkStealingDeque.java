@@ -0,0 +1,233 @@
+package joe.collect;
+
+import java.util.Arrays;
+
+/**
+ * Unbounded work-stealing deque after Chase and Lev, for the per-worker task queues of a fork/join-style scheduler.
+ * One thread, the <i>owner</i>, pushes and pops elements at the tail, last in first out; any number of other threads,
+ * the <i>thieves</i>, take elements from the head, first in first out, with {@link #steal()}. Elements live in a
+ * power-of-two array addressed by masking {@code long} sequences, as in {@link CircularArrayList}, except that the
+ * head and tail are sequences rather than array indices, so that a thief can tell from a compare-and-set on the head
+ * alone whether it won the element.
+ * <p>
+ * In the common case the owner uses no atomic read-modify-write instructions. A {@link #push} is a plain store of the
+ * element and an ordered store of the tail. A {@link #pop} stores the tail with a full fence and then reads the head,
+ * and falls back to a compare-and-set on the head only when it is about to take the last element, which is the one
+ * case in which it can race with a thief. A thief claims the element at the head with a single compare-and-set.
+ * <p>
+ * When the array is full the owner copies the elements into one of twice the length and publishes it; thieves
+ * already reading the old array carry on, since the owner never writes to an array once it has been replaced. The
+ * array never shrinks.
+ * <p>
+ * <b>The single-owner contract is not checked.</b> The owner-side methods are {@link #push} and {@link #pop}; at most
+ * one thread may call these over the life of the deque, or else callers must arrange a happens-before relationship
+ * between successive owners. {@link #steal()}, {@link #size} and {@link #isEmpty} may be called from any thread; the
+ * last two give approximate answers while the deque is in use.
+ * <p>
+ * A slot from which an element was stolen is not cleared, since the owner may already have reused it, so the array
+ * may refer to up to its length of stolen elements until they are overwritten. Null elements are prohibited.
+ *
+ * @author Joe Kearney
+ * @param <E> the type of elements held in this deque
+ */
+public class WorkStealingDeque<E> {
+	/**
+	 * Largest array length, beyond which the deque cannot grow.
+	 */
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	/**
+	 * The array in which elements are stored, of power-of-two length. Replaced, never modified again, when the owner
+	 * grows the deque.
+	 */
+	private volatile Object[] elements;
+
+	/**
+	 * Sequence of the element at the head, the next to be stolen. Advanced by thieves, and by the owner taking the last
+	 * element, with compare-and-set.
+	 */
+	private final PaddedAtomicLong head = new PaddedAtomicLong();
+	/**
+	 * Sequence of the next slot to be filled by the owner. Written only by the owner.
+	 */
+	private final PaddedAtomicLong tail = new PaddedAtomicLong();
+	/**
+	 * The owner's most recent read of {@code head}. Since the head only advances, this is never more than the true
+	 * head, so the owner can use it to prove there is room without reading the shared head. Accessed only by the
+	 * owner.
+	 */
+	private long headCache;
+
+	/**
+	 * Constructs an empty deque with an initial capacity sufficient to hold 16 elements.
+	 */
+	public WorkStealingDeque() {
+		this(16);
+	}
+	/**
+	 * Constructs an empty deque with an initial capacity sufficient to hold the specified number of elements. The
+	 * deque grows as needed.
+	 *
+	 * @param numElements lower bound on initial capacity of the deque
+	 */
+	public WorkStealingDeque(int numElements) {
+		elements = new Object[CircularArrayList.capacityFor(numElements)];
+	}
+
+	// *** owner methods ***
+
+	/**
+	 * Inserts the specified element at the tail of this deque, growing it if necessary. Call only from the owner
+	 * thread.
+	 *
+	 * @param e the element to add
+	 * @throws NullPointerException if the specified element is null
+	 * @throws IllegalStateException if the deque cannot grow any further
+	 */
+	public void push(E e) {
+		if (e == null) {
+			throw new NullPointerException("Null elements not supported");
+		}
+		long t = tail.get();
+		Object[] a = elements;
+		if (t - headCache >= a.length - 1) {
+			headCache = head.get();
+			if (t - headCache >= a.length - 1) {
+				a = grow(a, headCache, t);
+			}
+		}
+		a[(int) t & a.length - 1] = e;
+		tail.lazySet(t + 1);
+	}
+	/**
+	 * Retrieves and removes the tail of this deque, the element most recently pushed, or returns {@code null} if it is
+	 * empty. Call only from the owner thread.
+	 *
+	 * @return the tail of this deque, or {@code null} if it is empty
+	 */
+	public E pop() {
+		long t = tail.get() - 1;
+		Object[] a = elements;
+		tail.set(t); // the fence orders this store before the read of the head, so thieves see it or we see them
+		long h = head.get();
+		headCache = h;
+		if (h > t) {
+			tail.lazySet(t + 1); // was already empty
+			return null;
+		}
+		int i = (int) t & a.length - 1;
+		@SuppressWarnings("unchecked")
+		// only Es are put in the array
+		E e = (E) a[i];
+		if (h == t) {
+			// last element, so a thief may be after it too
+			if (!head.compareAndSet(h, h + 1)) {
+				e = null;
+			} else {
+				a[i] = null;
+				headCache = h + 1;
+			}
+			tail.lazySet(t + 1);
+		} else {
+			a[i] = null;
+		}
+		return e;
+	}
+	/**
+	 * Copies the elements into an array of twice the length and publishes it.
+	 *
+	 * @param a the current array, which is full
+	 * @param h the head sequence
+	 * @param t the tail sequence
+	 * @return the new array
+	 * @throws IllegalStateException if the array is already as large as it can be
+	 */
+	private Object[] grow(Object[] a, long h, long t) {
+		if (a.length >= MAX_CAPACITY) {
+			throw new IllegalStateException("Sorry, deque too big");
+		}
+		Object[] b = new Object[a.length << 1];
+		int oldMask = a.length - 1;
+		int newMask = b.length - 1;
+		for (long k = h; k < t; k++) {
+			b[(int) k & newMask] = a[(int) k & oldMask];
+		}
+		elements = b;
+		return b;
+	}
+
+	// *** methods callable from any thread ***
+
+	/**
+	 * Retrieves and removes the head of this deque, the element least recently pushed, or returns {@code null} if it
+	 * is empty. May be called from any thread, though a worker stealing from its own deque would normally call
+	 * {@link #pop} instead.
+	 * <p>
+	 * A thief that loses a race for the head to another thief tries again, so this returns {@code null} only if the
+	 * deque was seen to be empty.
+	 *
+	 * @return the head of this deque, or {@code null} if it is empty
+	 */
+	public E steal() {
+		while (true) {
+			long h = head.get();
+			long t = tail.get();
+			if (h >= t) {
+				return null;
+			}
+			Object[] a = elements; // read after the tail, so at least as new as the array holding the element at h
+			@SuppressWarnings("unchecked")
+			// only Es are put in the array
+			E e = (E) a[(int) h & a.length - 1];
+			if (head.compareAndSet(h, h + 1)) {
+				return e;
+			}
+		}
+	}
+	/**
+	 * Returns the number of elements in this deque. This is exact only if neither the owner nor any thief is active.
+	 *
+	 * @return the number of elements in this deque
+	 */
+	public int size() {
+		long h;
+		long t;
+		do {
+			h = head.get();
+			t = tail.get();
+		} while (h != head.get()); // consistent snapshot of head
+		return (int) Math.max(t - h, 0); // pop briefly takes the tail below the head
+	}
+	/**
+	 * Returns {@code true} if this deque contains no elements, with the same caveat as {@link #size()}.
+	 *
+	 * @return {@code true} if this deque is empty
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+	/**
+	 * Returns the length of the array currently holding the elements. The deque can hold one fewer element than this
+	 * before it next grows.
+	 *
+	 * @return the current capacity
+	 */
+	int capacity() {
+		return elements.length;
+	}
+	/**
+	 * Returns a string representation of a snapshot of the elements, from head to tail.
+	 */
+	@Override
+	public String toString() {
+		long h = head.get();
+		long t = tail.get();
+		Object[] a = elements;
+		int length = (int) Math.max(Math.min(t - h, a.length), 0);
+		Object[] snapshot = new Object[length];
+		for (int k = 0; k < length; k++) {
+			snapshot[k] = a[(int) (h + k) & a.length - 1];
+		}
+		return Arrays.toString(snapshot);
+	}
+}
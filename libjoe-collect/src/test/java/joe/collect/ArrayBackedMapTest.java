@@ -1,12 +1,22 @@
 package joe.collect;
 
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Random;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import org.powermock.reflect.Whitebox;
+
 import com.google.common.collect.Ordering;
 import com.google.common.collect.testing.MapTestSuiteBuilder;
 import com.google.common.collect.testing.TestStringMapGenerator;
@@ -24,6 +34,17 @@ public class ArrayBackedMapTest extends TestCase {
 		suite.addTest(testsForArrayBackedMap());
 		suite.addTest(testsForSortedArrayBackedMap());
 		suite.addTest(testsForSortedArrayBackedMapWithComparator());
+		suite.addTest(testsForArrayBackedMapWithAmortizedGrowth());
+		suite.addTest(testsForSortedArrayBackedMapWithAmortizedGrowth());
+		suite.addTest(new TestSuite(AmortizedGrowthTests.class, "Amortized growth tests"));
+		suite.addTest(testsForInterleavedArrayBackedMap());
+		suite.addTest(testsForInterleavedArrayBackedMapCopy());
+		suite.addTest(new TestSuite(InterleavedLayoutTests.class, "Interleaved layout tests"));
+		for (int threshold : new int[] { 1, 3, AdaptiveArrayBackedMap.DEFAULT_THRESHOLD }) {
+			suite.addTest(testsForAdaptiveArrayBackedMap(threshold));
+		}
+		suite.addTest(new TestSuite(AdaptiveIndexTests.class, "Adaptive index tests"));
+		suite.addTest(new TestSuite(HashPrefilterTests.class, "Hash prefilter tests"));
 		return suite;
 	}
 
@@ -54,6 +75,320 @@ public class ArrayBackedMapTest extends TestCase {
 				CollectionSize.ANY).createTestSuite();
 	}
 
+	public Test testsForArrayBackedMapWithAmortizedGrowth() {
+		return MapTestSuiteBuilder.using(new TestStringMapGenerator() {
+			@Override
+			protected Map<String, String> create(Entry<String, String>[] entries) {
+				return populate(new ArrayBackedMap<String, String>(1), entries);
+			}
+		}).named("ArrayBackedMap with amortized growth").withFeatures(MapFeature.GENERAL_PURPOSE, CollectionSize.ANY)
+				.createTestSuite();
+	}
+	public Test testsForSortedArrayBackedMapWithAmortizedGrowth() {
+		return MapTestSuiteBuilder.using(new TestStringMapGenerator() {
+			@Override
+			protected Map<String, String> create(Entry<String, String>[] entries) {
+				return populate(new SortedArrayBackedMap<String, String>(0), entries);
+			}
+		}).named("SortedArrayBackedMap with amortized growth").withFeatures(MapFeature.GENERAL_PURPOSE,
+				CollectionFeature.KNOWN_ORDER, CollectionSize.ANY).createTestSuite();
+	}
+
+	public Test testsForInterleavedArrayBackedMap() {
+		return MapTestSuiteBuilder.using(new TestStringMapGenerator() {
+			@Override
+			protected Map<String, String> create(Entry<String, String>[] entries) {
+				return populate(new InterleavedArrayBackedMap<String, String>(), entries);
+			}
+		}).named("InterleavedArrayBackedMap").withFeatures(MapFeature.GENERAL_PURPOSE, CollectionFeature.KNOWN_ORDER,
+				CollectionSize.ANY).createTestSuite();
+	}
+	public Test testsForInterleavedArrayBackedMapCopy() {
+		return MapTestSuiteBuilder.using(new TestStringMapGenerator() {
+			@Override
+			protected Map<String, String> create(Entry<String, String>[] entries) {
+				return new InterleavedArrayBackedMap<String, String>(populate(new LinkedHashMap<String, String>(),
+						entries));
+			}
+		}).named("InterleavedArrayBackedMap copy").withFeatures(MapFeature.GENERAL_PURPOSE,
+				CollectionFeature.KNOWN_ORDER, CollectionSize.ANY).createTestSuite();
+	}
+
+	public Test testsForAdaptiveArrayBackedMap(final int threshold) {
+		return MapTestSuiteBuilder.using(new TestStringMapGenerator() {
+			@Override
+			protected Map<String, String> create(Entry<String, String>[] entries) {
+				return populate(new AdaptiveArrayBackedMap<String, String>(threshold), entries);
+			}
+		}).named("AdaptiveArrayBackedMap threshold[" + threshold + "]").withFeatures(MapFeature.GENERAL_PURPOSE,
+				CollectionFeature.KNOWN_ORDER, CollectionSize.ANY).createTestSuite();
+	}
+
+	public static class HashPrefilterTests extends TestCase {
+		/**
+		 * Key that counts the calls to its {@code equals} method.
+		 */
+		static final class CountingKey {
+			static int equalsCalls;
+			final String name;
+			final int hash;
+
+			CountingKey(String name, int hash) {
+				this.name = name;
+				this.hash = hash;
+			}
+			@Override
+			public int hashCode() {
+				return hash;
+			}
+			@Override
+			public boolean equals(Object obj) {
+				equalsCalls++;
+				return obj instanceof CountingKey && ((CountingKey) obj).name.equals(name);
+			}
+		}
+
+		public void testMissComparesOnlyHashes() {
+			for (ArrayBackedMap<CountingKey, Integer> map : asList(new ArrayBackedMap<CountingKey, Integer>(),
+					new ArrayBackedMap<CountingKey, Integer>(0))) {
+				for (int i = 0; i < 32; i++) {
+					map.put(new CountingKey("k" + i, i), i);
+				}
+				CountingKey.equalsCalls = 0;
+				assertNull(map.get(new CountingKey("missing", 100)));
+				assertThat(CountingKey.equalsCalls, is(0));
+				assertThat(map.get(new CountingKey("k20", 20)), is(20));
+				assertThat(CountingKey.equalsCalls, is(1));
+				assertNull(map.get(new CountingKey("k20 impostor", 20)));
+				assertThat(CountingKey.equalsCalls, is(2));
+			}
+		}
+		public void testHashesFollowEntries() {
+			for (ArrayBackedMap<String, Integer> map : asList(new ArrayBackedMap<String, Integer>(),
+					new ArrayBackedMap<String, Integer>(2))) {
+				for (int i = 0; i < 10; i++) {
+					map.put("k" + i, i);
+				}
+				map.remove("k3");
+				map.remove("k0");
+				map.put("k0", 0);
+				map.trimToSize();
+				int[] hashes = map.keyHashes;
+				Object[] keys = keysArray(map);
+				assertThat(hashes.length, is(keys.length));
+				for (int i = 0; i < map.size(); i++) {
+					assertThat(hashes[i], is(keys[i].hashCode()));
+				}
+				assertThat(map.get("k9"), is(9));
+				map.clear();
+				assertNull(map.get("k9"));
+			}
+		}
+		public void testSortedMapDoesNotCacheHashes() {
+			assertNull(new SortedArrayBackedMap<String, String>().keyHashes);
+			assertNull(new SortedArrayBackedMap<String, String>(4).keyHashes);
+		}
+	}
+
+	public static class AdaptiveIndexTests extends TestCase {
+		/**
+		 * Key whose hash code is shared by many others, so that probe runs are long and deletions have to move
+		 * entries.
+		 */
+		static final class CollidingKey {
+			final int id;
+
+			CollidingKey(int id) {
+				this.id = id;
+			}
+			@Override
+			public int hashCode() {
+				return id / 5;
+			}
+			@Override
+			public boolean equals(Object obj) {
+				return obj instanceof CollidingKey && ((CollidingKey) obj).id == id;
+			}
+			@Override
+			public String toString() {
+				return "k" + id;
+			}
+		}
+
+		public void testIndexBuiltLazilyAndDropped() {
+			AdaptiveArrayBackedMap<Integer, String> map = new AdaptiveArrayBackedMap<Integer, String>(4);
+			for (int i = 0; i < 4; i++) {
+				map.put(i, "v" + i);
+			}
+			assertNull(index(map)); // reached the threshold, but not yet looked up since
+			assertThat(map.get(2), is("v2"));
+			assertThat(index(map).length, is(8));
+			map.put(4, "v4");
+			assertThat(index(map).length, is(16)); // more than half full, so rebuilt
+			map.remove(0);
+			assertNotNull(index(map));
+			map.remove(1);
+			assertNull(index(map));
+			assertThat(map.get(4), is("v4"));
+			map.clear();
+			assertTrue(map.isEmpty());
+		}
+		public void testMatchesLinkedHashMapUnderChurn() {
+			Random random = new Random(23);
+			for (int threshold : new int[] { 1, 4, 16 }) {
+				AdaptiveArrayBackedMap<CollidingKey, Integer> map = new AdaptiveArrayBackedMap<CollidingKey, Integer>(
+						threshold);
+				map.setAmortizedGrowth(random.nextBoolean());
+				Map<CollidingKey, Integer> expected = new LinkedHashMap<CollidingKey, Integer>();
+				for (int op = 0; op < 5000; op++) {
+					CollidingKey key = new CollidingKey(random.nextInt(60));
+					int choice = random.nextInt(10);
+					if (choice < 5) {
+						assertEquals(expected.put(key, op), map.put(key, op));
+					} else if (choice < 8) {
+						assertEquals(expected.remove(key), map.remove(key));
+					} else if (choice < 9 && !map.isEmpty()) {
+						Iterator<CollidingKey> it = map.keySet().iterator();
+						CollidingKey first = it.next();
+						it.remove();
+						expected.remove(first);
+					} else {
+						assertEquals(expected.get(key), map.get(key));
+					}
+					assertEquals(expected.containsKey(key), map.containsKey(key));
+				}
+				assertThat(new ArrayList<CollidingKey>(map.keySet()), is(new ArrayList<CollidingKey>(
+						expected.keySet())));
+				for (int id = 0; id < 60; id++) {
+					CollidingKey key = new CollidingKey(id);
+					assertEquals(expected.get(key), map.get(key));
+				}
+			}
+		}
+		public void testThresholdMustBePositive() {
+			try {
+				new AdaptiveArrayBackedMap<String, String>(0);
+				fail();
+			} catch (IllegalArgumentException expected) {}
+		}
+
+		private static int[] index(AdaptiveArrayBackedMap<?, ?> map) {
+			return Whitebox.getInternalState(map, "index");
+		}
+	}
+
+	public static class InterleavedLayoutTests extends TestCase {
+		public void testKeysAndValuesAlternate() {
+			InterleavedArrayBackedMap<String, Integer> map = new InterleavedArrayBackedMap<String, Integer>();
+			map.put("a", 1);
+			map.put("b", 2);
+			map.put("c", 3);
+			assertThat(asList(table(map)), is(asList((Object) "a", 1, "b", 2, "c", 3)));
+			map.remove("b");
+			assertThat(asList(table(map)), is(asList((Object) "a", 1, "c", 3)));
+			assertThat(asList(map.keySet().toArray()), is(asList((Object) "a", "c")));
+			assertThat(asList(map.values().toArray()), is(asList((Object) 1, 3)));
+			map.put("a", 4);
+			assertThat(asList(table(map)), is(asList((Object) "a", 4, "c", 3)));
+		}
+		public void testValueIsNotMistakenForKey() {
+			InterleavedArrayBackedMap<String, String> map = new InterleavedArrayBackedMap<String, String>();
+			map.put("k", "v");
+			assertFalse(map.containsKey("v"));
+			assertFalse(map.containsValue("k"));
+			assertTrue(map.values().remove("v"));
+			assertTrue(map.isEmpty());
+		}
+		public void testEmptyMapsShareTable() {
+			InterleavedArrayBackedMap<String, String> map = new InterleavedArrayBackedMap<String, String>();
+			map.put("k", "v");
+			map.remove("k");
+			assertSame(table(new InterleavedArrayBackedMap<String, String>()), table(map));
+			assertSame(table(map), table(new InterleavedArrayBackedMap<String, String>(new LinkedHashMap<String, String>())));
+		}
+		public void testCopyIsExactFit() {
+			Map<String, Integer> source = new LinkedHashMap<String, Integer>();
+			source.put("x", 1);
+			source.put("y", 2);
+			assertThat(table(new InterleavedArrayBackedMap<String, Integer>(source)).length, is(4));
+			source.put("z", null);
+			try {
+				new InterleavedArrayBackedMap<String, Integer>(source);
+				fail();
+			} catch (NullPointerException expected) {}
+		}
+
+		private static Object[] table(InterleavedArrayBackedMap<?, ?> map) {
+			return Whitebox.getInternalState(map, "table");
+		}
+	}
+
+	public static class AmortizedGrowthTests extends TestCase {
+		public void testGrowsGeometricallyAndShiftsInPlace() {
+			SortedArrayBackedMap<Integer, String> map = new SortedArrayBackedMap<Integer, String>(0);
+			assertTrue(map.isAmortizedGrowth());
+			int reallocations = 0;
+			Object[] keys = keysArray(map);
+			for (int i = 1000; i > 0; i--) { // each insertion is at the front
+				map.put(i, "v" + i);
+				if (keysArray(map) != keys) {
+					reallocations++;
+					keys = keysArray(map);
+				}
+			}
+			assertThat(reallocations, is(9)); // 4, 8, ..., 1024
+			assertThat(map.size(), is(1000));
+			assertThat(keysArray(map).length, is(1024));
+			assertThat(map.get(500), is("v500"));
+
+			map.remove(1);
+			map.remove(1000);
+			assertSame(keys, keysArray(map));
+			assertNull(keys[998]);
+			assertNull(valuesArray(map)[998]);
+			assertThat(map.keySet().toArray().length, is(998));
+			assertThat(map.keySet().iterator().next(), is(2));
+		}
+		public void testTrimAndSwitchModes() {
+			ArrayBackedMap<String, String> map = new ArrayBackedMap<String, String>(10);
+			map.put("a", "1");
+			map.put("b", "2");
+			map.trimToSize();
+			assertThat(keysArray(map).length, is(2));
+			map.put("c", "3");
+			assertThat(keysArray(map).length, is(4));
+
+			map.setAmortizedGrowth(false);
+			assertThat(keysArray(map).length, is(3));
+			map.remove("b");
+			assertThat(keysArray(map).length, is(2));
+			assertThat(asList(map.values().toArray(new String[0])), is(asList("1", "3")));
+
+			map.setAmortizedGrowth(true);
+			map.clear();
+			assertThat(keysArray(map).length, is(2)); // capacity kept
+			assertTrue(map.isEmpty());
+			assertFalse(map.containsValue("1"));
+		}
+		public void testExactFitByDefault() {
+			SortedArrayBackedMap<Integer, String> map = new SortedArrayBackedMap<Integer, String>();
+			assertFalse(map.isAmortizedGrowth());
+			map.put(2, "b");
+			map.put(1, "a");
+			assertThat(keysArray(map).length, is(2));
+			map.remove(2);
+			assertThat(keysArray(map).length, is(1));
+		}
+	}
+
+	// wildcard types, so that the K[] and V[], which are really Object[], are not cast
+	static Object[] keysArray(AbstractArrayBackedMap<?, ?> map) {
+		return map.getKeysArray();
+	}
+	static Object[] valuesArray(AbstractArrayBackedMap<?, ?> map) {
+		return map.getValuesArray();
+	}
+
 	static <K, V> Map<K, V> populate(Map<K, V> map, Entry<K, V>[] entries) {
 		for (Entry<K, V> entry : entries) {
 			map.put(entry.getKey(), entry.getValue());
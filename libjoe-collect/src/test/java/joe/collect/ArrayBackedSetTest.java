@@ -1,8 +1,13 @@
 package joe.collect;
 
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.SortedSet;
 
+import joe.collect.ArrayBackedMapTest.HashPrefilterTests.CountingKey;
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
@@ -28,6 +33,10 @@ public class ArrayBackedSetTest extends TestCase {
 		suite.addTest(testsForSortedArrayBackedSetWithComparator());
 		suite.addTest(testsForSortedArrayBackedSetHeadSet());
 		suite.addTest(testsForSortedArrayBackedSetTailSet());
+		suite.addTest(testsForArrayBackedSetWithAmortizedGrowth());
+		suite.addTest(testsForSortedArrayBackedSetWithAmortizedGrowth());
+		suite.addTest(new TestSuite(AmortizedGrowthTests.class, "Amortized growth tests"));
+		suite.addTest(new TestSuite(HashPrefilterTests.class, "Hash prefilter tests"));
 		return suite;
 	}
 	
@@ -75,6 +84,107 @@ public class ArrayBackedSetTest extends TestCase {
 				CollectionSize.ANY).createTestSuite();
 	}
 	
+	public Test testsForArrayBackedSetWithAmortizedGrowth() {
+		return SetTestSuiteBuilder.using(new TestStringSetGenerator() {
+			@Override
+			protected Set<String> create(String[] elements) {
+				return populate(new ArrayBackedSet<String>(1), elements);
+			}
+		}).named("ArrayBackedSet with amortized growth").withFeatures(SetFeature.GENERAL_PURPOSE, CollectionSize.ANY)
+				.createTestSuite();
+	}
+	public Test testsForSortedArrayBackedSetWithAmortizedGrowth() {
+		return SetTestSuiteBuilder.using(new TestStringSortedSetGenerator() {
+			@Override
+			protected SortedSet<String> create(String[] elements) {
+				return populate(new SortedArrayBackedSet<String>(0), elements);
+			}
+		}).named("SortedArrayBackedSet with amortized growth").withFeatures(SetFeature.GENERAL_PURPOSE,
+				CollectionFeature.KNOWN_ORDER, CollectionSize.ANY).createTestSuite();
+	}
+
+	public static class HashPrefilterTests extends TestCase {
+		public void testMissComparesOnlyHashes() {
+			ArrayBackedSet<CountingKey> set = new ArrayBackedSet<CountingKey>();
+			for (int i = 0; i < 32; i++) {
+				set.add(new CountingKey("e" + i, i));
+			}
+			CountingKey.equalsCalls = 0;
+			assertFalse(set.contains(new CountingKey("missing", 100)));
+			assertThat(CountingKey.equalsCalls, is(0));
+			assertTrue(set.remove(new CountingKey("e7", 7)));
+			assertThat(CountingKey.equalsCalls, is(1));
+			assertFalse(set.contains(new CountingKey("e7", 7)));
+			assertTrue(set.contains(new CountingKey("e8", 8)));
+		}
+		public void testHashesFollowElements() {
+			ArrayBackedSet<String> set = new ArrayBackedSet<String>(1);
+			for (int i = 0; i < 10; i++) {
+				set.add("e" + i);
+			}
+			set.remove("e4");
+			set.setAmortizedGrowth(false);
+			set.add("e4");
+			set.remove("e0");
+			Object[] elements = elementsArray(set);
+			assertThat(set.hashes.length, is(elements.length));
+			for (int i = 0; i < set.size(); i++) {
+				assertThat(set.hashes[i], is(elements[i].hashCode()));
+			}
+			assertNull(new SortedArrayBackedSet<String>().hashes);
+		}
+	}
+
+	public static class AmortizedGrowthTests extends TestCase {
+		public void testGrowsGeometricallyAndShiftsInPlace() {
+			SortedArrayBackedSet<Integer> set = new SortedArrayBackedSet<Integer>(0);
+			int reallocations = 0;
+			Object[] elements = elementsArray(set);
+			for (int i = 100; i > 0; i--) {
+				set.add(i);
+				if (elementsArray(set) != elements) {
+					reallocations++;
+					elements = elementsArray(set);
+				}
+			}
+			assertThat(reallocations, is(6)); // 4, 8, ..., 128
+			assertThat(set.first(), is(1));
+			assertThat(set.last(), is(100));
+			set.remove(100);
+			assertSame(elements, elementsArray(set));
+			assertThat(set.last(), is(99));
+			assertNull(elements[99]);
+			set.trimToSize();
+			assertThat(elementsArray(set).length, is(99));
+		}
+		public void testEmptySortedSetHasNoEnds() {
+			SortedArrayBackedSet<Integer> set = new SortedArrayBackedSet<Integer>(8);
+			try {
+				set.first();
+				fail();
+			} catch (NoSuchElementException expected) {}
+			try {
+				set.last();
+				fail();
+			} catch (NoSuchElementException expected) {}
+		}
+		public void testSwitchingOffTrims() {
+			ArrayBackedSet<String> set = new ArrayBackedSet<String>(16);
+			set.add("a");
+			assertTrue(set.isAmortizedGrowth());
+			set.setAmortizedGrowth(false);
+			assertThat(elementsArray(set).length, is(1));
+			set.add("b");
+			assertThat(elementsArray(set).length, is(2));
+			assertTrue(set.contains("b"));
+		}
+	}
+
+	// wildcard type, so that the E[], which is really an Object[], is not cast
+	static Object[] elementsArray(AbstractArrayBackedSet<?> set) {
+		return set.getElementsArray();
+	}
+
 	static <K, S extends Set<K>> S populate(S set, K[] entries) {
 		for (K entry : entries) {
 			set.add(entry);
@@ -0,0 +1,176 @@
+package joe.collect;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.powermock.reflect.Whitebox;
+
+import com.google.common.collect.testing.ListTestSuiteBuilder;
+import com.google.common.collect.testing.MinimalCollection;
+import com.google.common.collect.testing.TestStringListGenerator;
+import com.google.common.collect.testing.features.CollectionFeature;
+import com.google.common.collect.testing.features.CollectionSize;
+import com.google.common.collect.testing.features.ListFeature;
+import com.google.common.testing.SerializableTester;
+
+/**
+ * Class under test: {@link ChunkedCircularArrayList}
+ *
+ * @author Joe Kearney
+ */
+public class ChunkedCircularArrayListTest extends TestCase {
+	public static Test suite() {
+		TestSuite testSuite = new TestSuite("ChunkedCircularArrayList tests");
+		testSuite.addTest(new TestSuite(CustomTests.class, "Custom tests"));
+		for (int blockSize : new int[] { 1, 2, 4, ChunkedCircularArrayList.DEFAULT_BLOCK_SIZE }) {
+			for (int offset : new int[] { 0, 1, 3 }) {
+				testSuite.addTest(createListTestSuite(blockSize, offset));
+			}
+		}
+		return testSuite;
+	}
+
+	private static Test createListTestSuite(final int blockSize, final int offset) {
+		return ListTestSuiteBuilder.using(new TestStringListGenerator() {
+			@Override
+			protected List<String> create(String[] elements) {
+				ChunkedCircularArrayList<String> list = new ChunkedCircularArrayList<String>(blockSize);
+				for (int i = 0; i < offset; i++) {
+					list.addFirst("x");
+				}
+				list.addAll(MinimalCollection.of(elements));
+				for (int i = 0; i < offset; i++) {
+					list.removeFirst();
+				}
+				return list;
+			}
+		}).named("ChunkedCircularArrayList block[" + blockSize + "] offset[" + offset + "]").withFeatures(
+				ListFeature.GENERAL_PURPOSE, CollectionFeature.KNOWN_ORDER, CollectionSize.ANY).createTestSuite();
+	}
+
+	public static class CustomTests extends TestCase {
+		public void testGrowthKeepsExistingBlocks() {
+			ChunkedCircularArrayList<Integer> list = new ChunkedCircularArrayList<Integer>(4);
+			for (int i = 0; i < 16; i++) {
+				list.addLast(i);
+			}
+			Object[][] before = getBlocks(list);
+			Object firstBlock = before[0];
+			assertThat(before.length, is(4)); // index is full
+
+			list.addLast(16);
+			Object[][] after = getBlocks(list);
+			assertThat(after.length, is(8));
+			assertThat(after[0], sameInstance(firstBlock));
+			assertThat(after[4], is((Object) new Object[] { 16, null, null, null }));
+			for (int i = 0; i <= 16; i++) {
+				assertThat(list.get(i), is(i));
+			}
+		}
+		public void testDequeAtBothEndsAcrossBlocks() {
+			ChunkedCircularArrayList<Integer> list = new ChunkedCircularArrayList<Integer>(4);
+			List<Integer> ref = new ArrayList<Integer>();
+			for (int i = 0; i < 20; i++) {
+				list.addFirst(-i);
+				ref.add(0, -i);
+				list.addLast(i);
+				ref.add(i);
+			}
+			assertThat(list, is(ref));
+			assertThat(list.getFirst(), is(-19));
+			assertThat(list.getLast(), is(19));
+			for (int i = 0; i < 15; i++) {
+				assertThat(list.pollFirst(), is(ref.remove(0)));
+				assertThat(list.pollLast(), is(ref.remove(ref.size() - 1)));
+			}
+			assertThat(list, is(ref));
+			assertThat(asList(list.toArray()), is((List<Object>) new ArrayList<Object>(ref)));
+		}
+		public void testQueueReusesSpareBlock() {
+			ChunkedCircularArrayList<Integer> list = new ChunkedCircularArrayList<Integer>(4);
+			for (int i = 0; i < 6; i++) {
+				list.addLast(i);
+			}
+			for (int i = 0; i < 4; i++) {
+				list.removeFirst(); // empties and releases the first block
+			}
+			Object spare = Whitebox.getInternalState(list, "spareBlock");
+			list.addLast(6);
+			list.addLast(7);
+			list.addLast(8); // needs a new block
+			assertThat(Whitebox.getInternalState(list, "spareBlock"), nullValue());
+			assertThat(getBlocks(list)[2], sameInstance(spare));
+			assertThat(list, is(asList(4, 5, 6, 7, 8)));
+		}
+		public void testIndexedInsertAndRemove() {
+			ChunkedCircularArrayList<Integer> list = new ChunkedCircularArrayList<Integer>(2);
+			List<Integer> ref = new ArrayList<Integer>();
+			for (int i = 0; i < 10; i++) {
+				list.add(i);
+				ref.add(i);
+			}
+			list.add(2, 100);
+			ref.add(2, 100);
+			list.add(8, 101);
+			ref.add(8, 101);
+			assertThat(list, is(ref));
+			assertThat(list.remove(1), is(ref.remove(1)));
+			assertThat(list.remove(9), is(ref.remove(9)));
+			assertThat(list, is(ref));
+		}
+		public void testClearKeepsOneBlock() {
+			ChunkedCircularArrayList<Integer> list = new ChunkedCircularArrayList<Integer>(4);
+			for (int i = 0; i < 10; i++) {
+				list.add(i);
+			}
+			list.clear();
+			assertTrue(list.isEmpty());
+			int nonNull = 0;
+			for (Object[] block : getBlocks(list)) {
+				if (block != null) {
+					nonNull++;
+					assertThat(block, is(new Object[4]));
+				}
+			}
+			assertThat(nonNull, is(1));
+			list.addFirst(1);
+			assertThat(list, is(asList(1)));
+		}
+		public void testBlockSizeRoundsUp() {
+			assertThat(new ChunkedCircularArrayList<Integer>(5).getBlockSize(), is(8));
+			assertThat(new ChunkedCircularArrayList<Integer>(1).getBlockSize(), is(1));
+			try {
+				new ChunkedCircularArrayList<Integer>(0);
+				fail();
+			} catch (IllegalArgumentException expected) {}
+		}
+		public void testSerializedFormKeepsBlockSize() {
+			ChunkedCircularArrayList<Integer> list = new ChunkedCircularArrayList<Integer>(4);
+			list.addAll(asList(1, 2, 3, 4, 5));
+			ChunkedCircularArrayList<Integer> copy = SerializableTester.reserializeAndAssert(list);
+			assertThat(copy.getBlockSize(), is(4));
+		}
+		public void testNullsRejected() {
+			ChunkedCircularArrayList<Integer> list = new ChunkedCircularArrayList<Integer>();
+			try {
+				list.addLast(null);
+				fail();
+			} catch (NullPointerException expected) {}
+			assertTrue(list.isEmpty());
+		}
+	}
+
+	static Object[][] getBlocks(ChunkedCircularArrayList<?> list) {
+		return Whitebox.getInternalState(list, "blocks");
+	}
+}
@@ -6,9 +6,18 @@ import static org.junit.Assert.assertThat;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
@@ -19,11 +28,16 @@ import org.hamcrest.Matcher;
 import org.hamcrest.TypeSafeMatcher;
 import org.powermock.reflect.Whitebox;
 
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.testing.IteratorFeature;
+import com.google.common.collect.testing.ListIteratorTester;
 import com.google.common.collect.testing.ListTestSuiteBuilder;
 import com.google.common.collect.testing.MinimalCollection;
 import com.google.common.collect.testing.TestStringListGenerator;
 import com.google.common.collect.testing.features.CollectionSize;
 import com.google.common.collect.testing.features.ListFeature;
+import com.google.common.testing.SerializableTester;
 
 /**
  * Class under test: {@link CircularArrayList}
@@ -37,13 +51,21 @@ public class CircularArrayListTest extends TestCase {
 		testSuite.addTest(new TestSuite(ListIteratorTests.class, "ListIterator tests"));
 		testSuite.addTest(new TestSuite(InsertGapTests.class, "InsertGap tests"));
 		testSuite.addTest(new TestSuite(DeleteRangeTests.class, "DeleteRange tests"));
+		testSuite.addTest(new TestSuite(BoundedTests.class, "Bounded tests"));
+		testSuite.addTest(new TestSuite(ShrinkTests.class, "Shrink tests"));
+		testSuite.addTest(new TestSuite(SubListTests.class, "SubList tests"));
+		testSuite.addTest(new TestSuite(RemoveMatchingTests.class, "RemoveMatching tests"));
+		testSuite.addTest(new TestSuite(SplitTests.class, "Split tests"));
+		testSuite.addTest(new TestSuite(AddSortedTests.class, "AddSorted tests"));
+		testSuite.addTest(new TestSuite(EditingIteratorTests.class, "Editing iterator tests"));
+		testSuite.addTest(new TestSuite(CloneTests.class, "Clone tests"));
+		testSuite.addTest(new TestSuite(RotateTests.class, "Rotate tests"));
 		
-		// TODO fix offset tests
-		// testSuite.addTest(createCircularArrayListTestCase(0));
-		// testSuite.addTest(createCircularArrayListTestCase(1));
-		// testSuite.addTest(createCircularArrayListTestCase(7));
-		// testSuite.addTest(createCircularArrayListTestCase(12));
-		// testSuite.addTest(createCircularArrayListTestCase(15));
+		testSuite.addTest(createCircularArrayListTestCase(0));
+		testSuite.addTest(createCircularArrayListTestCase(1));
+		testSuite.addTest(createCircularArrayListTestCase(7));
+		testSuite.addTest(createCircularArrayListTestCase(12));
+		testSuite.addTest(createCircularArrayListTestCase(15));
 		return testSuite;
 	}
 	/**
@@ -916,6 +938,953 @@ public class CircularArrayListTest extends TestCase {
 		}
 	}
 
+	public static class BoundedTests extends TestCase {
+		public void testAddLastOverwritesOldestWithoutResizing() throws Exception {
+			CircularArrayList<Integer> list = CircularArrayList.bounded(7);
+			Object[] array = getArray(list);
+			assertThat(array.length, is(8));
+			for (int i = 0; i < 20; i++) {
+				list.addLast(i);
+			}
+			assertThat(getArray(list), is(array));
+			assertThat(list, is(asList(13, 14, 15, 16, 17, 18, 19)));
+			assertThat(list.get(0), is(13));
+			assertThat(list.peekLast(), is(19));
+
+			Whitebox.invokeMethod(list, "checkInvariants");
+		}
+		public void testEvictionListenerSeesOldestElements() {
+			final List<Integer> evicted = new ArrayList<Integer>();
+			CircularArrayList<Integer> list = CircularArrayList.bounded(3,
+					new CircularArrayList.EvictionListener<Integer>() {
+						@Override
+						public void evicted(Integer element) {
+							evicted.add(element);
+						}
+					});
+			list.addAll(new CountingArrayList(5));
+			list.add(5);
+			assertThat(list, is(asList(3, 4, 5)));
+			assertThat(evicted, is(asList(0, 1, 2)));
+
+			list.addFirst(9);
+			assertThat(list, is(asList(9, 3, 4)));
+			assertThat(evicted, is(asList(0, 1, 2, 5)));
+
+			list.pollFirst();
+			list.clear();
+			assertThat(evicted, hasSize(4));
+		}
+		public void testIteratorSeesWindow() {
+			CircularArrayList<Integer> list = CircularArrayList.bounded(4);
+			list.addAll(new CountingArrayList(10));
+			List<Integer> iterated = new ArrayList<Integer>();
+			for (Integer i : list) {
+				iterated.add(i);
+			}
+			assertThat(iterated, is(asList(6, 7, 8, 9)));
+			assertThat(list.indexOf(8), is(2));
+		}
+		public void testInsertIntoFullDequeThrows() {
+			CircularArrayList<Integer> list = CircularArrayList.bounded(3);
+			list.addAll(new CountingArrayList(3));
+			try {
+				list.add(1, 47);
+				fail();
+			} catch (IllegalStateException expected) {}
+			try {
+				list.listIterator(1).add(47);
+				fail();
+			} catch (IllegalStateException expected) {}
+			try {
+				list.addAll(0, asList(47));
+				fail();
+			} catch (IllegalStateException expected) {}
+			assertThat(list, is(asList(0, 1, 2)));
+
+			list.remove(1);
+			list.add(1, 47);
+			assertThat(list, is(asList(0, 47, 2)));
+		}
+		public void testRemovingEverythingKeepsArray() {
+			CircularArrayList<Integer> list = CircularArrayList.bounded(15);
+			list.addAll(new CountingArrayList(15));
+			Object[] array = getArray(list);
+			list.subList(0, 15).clear();
+			assertTrue(list.isEmpty());
+			assertThat(getArray(list), is(array));
+		}
+		public void testSerializedFormKeepsBound() {
+			CircularArrayList<Integer> list = CircularArrayList.bounded(3);
+			list.addAll(new CountingArrayList(5));
+			CircularArrayList<Integer> copy = SerializableTester.reserialize(list);
+			assertTrue(copy.isBounded());
+			assertThat(copy.getMaxSize(), is(3));
+			copy.add(5);
+			assertThat(copy, is(asList(3, 4, 5)));
+		}
+		public void testMaxSizeMustBeInRange() {
+			try {
+				CircularArrayList.bounded(0);
+				fail();
+			} catch (IllegalArgumentException expected) {}
+			try {
+				CircularArrayList.bounded((1 << 30) + 1);
+				fail();
+			} catch (IllegalArgumentException expected) {}
+			assertFalse(new CircularArrayList<Integer>().isBounded());
+		}
+		public void testPowerOfTwoMaxSizeFillsArrayExactly() throws Exception {
+			CircularArrayList<Integer> list = CircularArrayList.bounded(1024);
+			Object[] array = getArray(list);
+			assertThat(array.length, is(1024));
+			list.addAll(new CountingArrayList(1030));
+			assertThat(getArray(list), is(array));
+			assertThat(list.size(), is(1024));
+			assertFalse(list.isEmpty());
+			assertThat(list.getFirst(), is(6));
+			assertThat(list.getLast(), is(1029));
+			Whitebox.invokeMethod(list, "checkInvariants");
+
+			list.addFirst(5);
+			assertThat(list.getFirst(), is(5));
+			assertThat(list.getLast(), is(1028));
+			assertThat(getArray(list), is(array));
+		}
+		public void testFullDequeReads() {
+			CircularArrayList<Integer> list = createFull(16, 3);
+			assertThat(list, is(asList(3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18)));
+			assertThat(list.indexOf(3), is(0));
+			assertThat(list.lastIndexOf(18), is(15));
+			assertThat(list.indexOf(47), is(-1));
+			assertThat(list.lastIndexOf(47), is(-1));
+			assertFalse(list.contains(47));
+			assertFalse(list.remove(Integer.valueOf(47)));
+			assertFalse(list.removeLastOccurrence(47));
+
+			ListIterator<Integer> it = list.listIterator(16);
+			assertThat(it.nextIndex(), is(16));
+			assertFalse(it.hasNext());
+			List<Integer> reversed = new ArrayList<Integer>();
+			while (it.hasPrevious()) {
+				reversed.add(it.previous());
+			}
+			Collections.reverse(reversed);
+			assertThat(reversed, is((List<Integer>) list));
+			assertThat(list.subList(14, 16), is(asList(17, 18)));
+			assertThat(SerializableTester.reserialize(list), is(list));
+		}
+		public void testFullDequeRemovals() throws Exception {
+			CircularArrayList<Integer> list = createFull(16, 5);
+			assertTrue(list.remove(Integer.valueOf(5)));
+			assertThat(list.size(), is(15));
+			list.add(21);
+			assertTrue(list.removeLastOccurrence(20));
+			list.add(22);
+			assertThat(list.remove(7), is(13));
+			list.add(23);
+			assertThat(list, is(asList(6, 7, 8, 9, 10, 11, 12, 14, 15, 16, 17, 18, 19, 21, 22, 23)));
+
+			ListIterator<Integer> it = list.listIterator();
+			it.next();
+			it.remove();
+			assertThat(it.nextIndex(), is(0));
+			it.add(24);
+			assertThat(list.getFirst(), is(24));
+			assertFalse(list.removeMatching(Predicates.equalTo(47)));
+			assertTrue(list.removeMatching(Predicates.alwaysTrue()));
+			assertTrue(list.isEmpty());
+			Whitebox.invokeMethod(list, "checkInvariants");
+
+			list = createFull(16, 0);
+			list.clear();
+			assertTrue(list.isEmpty());
+			assertThat(getArray(list), is(new Object[16]));
+		}
+		public void testRotateFullDeque() throws Exception {
+			CircularArrayList<Integer> list = createFull(8, 0);
+			Object[] array = getArray(list).clone();
+			list.rotate(3);
+			assertThat(list, is(asList(5, 6, 7, 0, 1, 2, 3, 4)));
+			list.rotate(-4);
+			assertThat(list, is(asList(1, 2, 3, 4, 5, 6, 7, 0)));
+			assertThat(getArray(list), is(array)); // only head and tail moved
+			Whitebox.invokeMethod(list, "checkInvariants");
+		}
+		public void testInsertingFillsArray() throws Exception {
+			CircularArrayList<Integer> list = CircularArrayList.bounded(8);
+			list.addAll(0, new CountingArrayList(8));
+			assertThat(list, is((List<Integer>) new CountingArrayList(8)));
+			Whitebox.invokeMethod(list, "checkInvariants");
+
+			list.remove(3);
+			list.add(3, 3);
+			assertThat(list, is((List<Integer>) new CountingArrayList(8)));
+			assertThat(getArray(list).length, is(8));
+			try {
+				list.add(3, 47);
+				fail();
+			} catch (IllegalStateException expected) {}
+		}
+		public void testEditingIteratorFillsArray() {
+			CircularArrayList<Integer> list = CircularArrayList.bounded(8);
+			list.addAll(asList(0, 1, 2, 4, 5, 6, 7));
+			ListIterator<Integer> it = list.editingListIterator(3);
+			it.add(3);
+			assertThat(it.nextIndex(), is(4));
+			try {
+				it.add(47);
+				fail();
+			} catch (IllegalStateException expected) {}
+			List<Integer> rest = new ArrayList<Integer>();
+			while (it.hasNext()) {
+				rest.add(it.next());
+			}
+			assertThat(rest, is(asList(4, 5, 6, 7)));
+			assertThat(list, is((List<Integer>) new CountingArrayList(8)));
+
+			it = list.editingListIterator();
+			assertTrue(it.hasNext());
+			while (it.hasNext()) {
+				if (it.next() % 2 == 0) {
+					it.remove();
+				}
+			}
+			assertThat(list, is(asList(1, 3, 5, 7)));
+			assertThat(getArray(list).length, is(8));
+		}
+
+		/**
+		 * Creates a full bounded deque of {@code first..first+maxSize-1}, whose head has wrapped past the start of its
+		 * array.
+		 */
+		private static CircularArrayList<Integer> createFull(int maxSize, int first) {
+			CircularArrayList<Integer> list = CircularArrayList.bounded(maxSize);
+			for (int i = first - maxSize / 2; i < first + maxSize; i++) {
+				list.add(i);
+			}
+			assertThat(getArray(list).length, is(maxSize));
+			return list;
+		}
+	}
+
+	public static class ShrinkTests extends TestCase {
+		public void testTrimToSizeRepacksWrappedContents() throws Exception {
+			CircularArrayList<Integer> list = new CircularArrayList<Integer>(1000);
+			assertThat(getArray(list).length, is(1024));
+			for (int i = 0; i < 1000; i++) {
+				list.add(i);
+			}
+			for (int i = 0; i < 995; i++) {
+				list.removeFirst();
+			}
+			for (int i = 1000; i < 1030; i++) {
+				list.add(i); // wraps
+			}
+			list.trimToSize();
+			assertThat(getArray(list).length, is(64));
+			assertHeadTail(list, 0, 35);
+			for (int i = 0; i < 35; i++) {
+				assertThat(list.get(i), is(995 + i));
+			}
+			Whitebox.invokeMethod(list, "checkInvariants");
+		}
+		public void testTrimToSizeNeverGoesBelowMinimum() {
+			CircularArrayList<Integer> list = new CircularArrayList<Integer>(100);
+			list.trimToSize();
+			assertThat(getArray(list).length, is(8));
+		}
+		public void testAutoShrinkHalvesBelowAQuarter() throws Exception {
+			CircularArrayList<Integer> list = new CircularArrayList<Integer>(new CountingArrayList(100));
+			list.setAutoShrink(true);
+			assertThat(getArray(list).length, is(128));
+			while (list.size() > 32) {
+				list.pollFirst();
+			}
+			assertThat(getArray(list).length, is(128)); // not below a quarter yet
+			list.pollLast();
+			assertThat(getArray(list).length, is(64));
+			assertThat(list.getFirst(), is(68));
+			assertThat(list.getLast(), is(98));
+
+			// hysteresis: adding back up to half full does not grow, removing again does not shrink
+			for (int i = 0; i < 20; i++) {
+				list.addLast(i);
+				list.removeFirst();
+			}
+			assertThat(getArray(list).length, is(64));
+
+			list.remove(Integer.valueOf(85));
+			list.remove(0);
+			while (list.size() > 3) {
+				list.removeLast();
+			}
+			assertThat(getArray(list).length, is(8));
+			Whitebox.invokeMethod(list, "checkInvariants");
+		}
+		public void testAutoShrinkClearReleasesArray() {
+			CircularArrayList<Integer> list = new CircularArrayList<Integer>(new CountingArrayList(100));
+			list.clear();
+			assertThat(getArray(list).length, is(128));
+			list.addAll(new CountingArrayList(100));
+			list.setAutoShrink(true);
+			list.clear();
+			assertThat(getArray(list).length, is(8));
+			assertTrue(list.isEmpty());
+		}
+		public void testNoShrinkWithoutPolicy() {
+			CircularArrayList<Integer> list = new CircularArrayList<Integer>(new CountingArrayList(100));
+			removeFirstToDrain(list);
+			assertThat(getArray(list).length, is(128));
+		}
+		public void testBoundedNeverShrinks() {
+			CircularArrayList<Integer> list = CircularArrayList.bounded(100);
+			list.trimToSize();
+			assertThat(getArray(list).length, is(128));
+			try {
+				list.setAutoShrink(true);
+				fail();
+			} catch (IllegalStateException expected) {}
+		}
+	}
+
+	public static class SubListTests extends TestCase {
+		/**
+		 * Creates a list of {@code 0..size-1} whose head sits {@code offset} cells into its array.
+		 */
+		static CircularArrayList<Integer> createWrapped(int capacity, int offset, int size) {
+			CircularArrayList<Integer> list = new CircularArrayList<Integer>(capacity - 1);
+			for (int i = 0; i < offset; i++) {
+				list.add(-1);
+			}
+			for (int i = 0; i < offset; i++) {
+				list.removeFirst();
+			}
+			for (int i = 0; i < size; i++) {
+				list.add(i);
+			}
+			assertHead(list, offset);
+			assertThat(getArray(list).length, is(capacity));
+			return list;
+		}
+
+		public void testClearRemovesRangeAcrossEdge() throws Exception {
+			CircularArrayList<Integer> list = createWrapped(16, 12, 14);
+			List<Integer> ref = new ArrayList<Integer>(list);
+			list.subList(2, 9).clear();
+			ref.subList(2, 9).clear();
+			assertThat(list, is(ref));
+			assertHeadTail(list, 3, 10); // shorter prefix moved right across the edge
+			assertCALMatches(list, asList(null, null, null, 0, 1, 9, 10, 11, 12, 13, null, null, null, null, null,
+					null));
+			Whitebox.invokeMethod(list, "checkInvariants");
+		}
+		public void testClearFrontOfLargeList() {
+			CircularArrayList<Integer> list = createWrapped(1024, 1000, 1000);
+			list.subList(0, 900).clear();
+			assertThat(list.size(), is(100));
+			for (int i = 0; i < 100; i++) {
+				assertThat(list.get(i), is(900 + i));
+			}
+		}
+		public void testToArrayAndIterationWrap() {
+			CircularArrayList<Integer> list = createWrapped(16, 10, 12);
+			List<Integer> subList = list.subList(3, 10);
+			List<Integer> expected = asList(3, 4, 5, 6, 7, 8, 9);
+			assertThat(asList(subList.toArray()), is((List<Object>) new ArrayList<Object>(expected)));
+			assertThat(asList(subList.toArray(new Integer[0])), is(expected));
+			assertThat(new ArrayList<Integer>(subList), is(expected));
+		}
+		public void testIteratorRemove() {
+			CircularArrayList<Integer> list = createWrapped(16, 10, 12);
+			List<Integer> subList = list.subList(3, 10);
+			for (Iterator<Integer> it = subList.iterator(); it.hasNext();) {
+				if (it.next() % 2 == 0) {
+					it.remove();
+				}
+			}
+			assertThat(subList, is(asList(3, 5, 7, 9)));
+			assertThat(list, is(asList(0, 1, 2, 3, 5, 7, 9, 10, 11)));
+		}
+		public void testNestedSubListChangesPropagate() {
+			CircularArrayList<Integer> list = createWrapped(16, 10, 12);
+			List<Integer> subList = list.subList(2, 10);
+			List<Integer> subSubList = subList.subList(1, 4);
+			subSubList.clear();
+			subSubList.add(99);
+			assertThat(subList, is(asList(2, 99, 6, 7, 8, 9)));
+			assertThat(list, is(asList(0, 1, 2, 99, 6, 7, 8, 9, 10, 11)));
+		}
+		public void testExternalModificationInvalidatesView() {
+			CircularArrayList<Integer> list = new CircularArrayList<Integer>(new CountingArrayList(5));
+			List<Integer> subList = list.subList(1, 3);
+			list.addFirst(-1);
+			try {
+				subList.get(0);
+				fail();
+			} catch (ConcurrentModificationException expected) {}
+		}
+		public void testRemoveRangeShrinks() {
+			CircularArrayList<Integer> list = new CircularArrayList<Integer>(new CountingArrayList(100));
+			list.setAutoShrink(true);
+			list.subList(10, 90).clear();
+			assertThat(getArray(list).length, is(64));
+			assertThat(list.size(), is(20));
+		}
+	}
+
+	public static class RemoveMatchingTests extends TestCase {
+		private static final Predicate<Integer> EVEN = new Predicate<Integer>() {
+			@Override
+			public boolean apply(Integer input) {
+				return input % 2 == 0;
+			}
+		};
+
+		public void testRemoveMatchingCompactsAcrossEdge() throws Exception {
+			CircularArrayList<Integer> list = SubListTests.createWrapped(16, 10, 12);
+			assertTrue(list.removeMatching(EVEN));
+			assertThat(list, is(asList(1, 3, 5, 7, 9, 11)));
+			assertHeadTail(list, 10, 0);
+			assertCALMatches(list, asList(null, null, null, null, null, null, null, null, null, null, 1, 3, 5, 7, 9,
+					11));
+			Whitebox.invokeMethod(list, "checkInvariants");
+		}
+		public void testRetainAllPropagatesContainsExceptions() {
+			CircularArrayList<Integer> list = new CircularArrayList<Integer>(asList(1, 2, 3));
+			try {
+				list.retainAll(new TreeSet<String>(asList("a")));
+				fail();
+			} catch (ClassCastException expected) {}
+			assertThat(list, is(asList(1, 2, 3)));
+		}
+		public void testRemoveMatchingNoMatch() {
+			CircularArrayList<Integer> list = new CircularArrayList<Integer>(asList(1, 3, 5));
+			assertFalse(list.removeMatching(EVEN));
+			assertThat(list, is(asList(1, 3, 5)));
+		}
+		public void testRemoveMatchingEverything() throws Exception {
+			CircularArrayList<Integer> list = SubListTests.createWrapped(16, 10, 12);
+			assertTrue(list.removeMatching(Predicates.alwaysTrue()));
+			assertTrue(list.isEmpty());
+			assertThat(asList(getArray(list)), is((List<Object>) asList(new Object[16])));
+			Whitebox.invokeMethod(list, "checkInvariants");
+		}
+		public void testRemoveAllAndRetainAll() {
+			CircularArrayList<Integer> list = SubListTests.createWrapped(16, 10, 12);
+			assertTrue(list.removeAll(asList(0, 4, 11, 42)));
+			assertThat(list, is(asList(1, 2, 3, 5, 6, 7, 8, 9, 10)));
+			assertTrue(list.retainAll(asList(2, 3, 10)));
+			assertThat(list, is(asList(2, 3, 10)));
+			assertFalse(list.retainAll(asList(2, 3, 10)));
+		}
+		public void testThrowingPredicateKeepsUnseenElements() throws Exception {
+			CircularArrayList<Integer> list = SubListTests.createWrapped(16, 10, 12);
+			try {
+				list.removeMatching(new Predicate<Integer>() {
+					@Override
+					public boolean apply(Integer input) {
+						if (input == 7) {
+							throw new IllegalStateException();
+						}
+						return input % 2 == 0;
+					}
+				});
+				fail();
+			} catch (IllegalStateException expected) {}
+			assertThat(list, is(asList(1, 3, 5, 7, 8, 9, 10, 11)));
+			Whitebox.invokeMethod(list, "checkInvariants");
+		}
+		public void testLargeFilterIsLinear() {
+			CircularArrayList<Integer> list = new CircularArrayList<Integer>(new CountingArrayList(1000000));
+			list.removeMatching(EVEN);
+			assertThat(list.size(), is(500000));
+			assertThat(list.get(0), is(1));
+			assertThat(list.getLast(), is(999999));
+		}
+	}
+
+	public static class SplitTests extends TestCase {
+		public void testSplitPartitionsWrappedListInOrder() {
+			CircularArrayList<Integer> list = SubListTests.createWrapped(16, 10, 12);
+			List<List<Integer>> views = list.split(5);
+			assertThat(views.size(), is(5));
+			List<Integer> joined = new ArrayList<Integer>();
+			for (List<Integer> view : views) {
+				assertTrue(view.size() == 2 || view.size() == 3);
+				joined.addAll(view);
+			}
+			assertThat(joined, is((List<Integer>) list));
+			assertThat(views.get(0), is(asList(0, 1, 2)));
+			assertThat(asList(views.get(2).toArray()), is(asList((Object) 6, 7)));
+		}
+		public void testSplitSmallList() {
+			CircularArrayList<Integer> list = new CircularArrayList<Integer>(asList(1, 2));
+			assertThat(list.split(4), is(asList(asList(1), asList(2))));
+			assertTrue(new CircularArrayList<Integer>().split(4).isEmpty());
+			try {
+				list.split(0);
+				fail();
+			} catch (IllegalArgumentException expected) {}
+		}
+		public void testViewsReadInParallel() throws Exception {
+			final CircularArrayList<Integer> list = new CircularArrayList<Integer>(1 << 16);
+			for (int i = 0; i < 40000; i++) {
+				list.add(-1);
+				list.removeFirst();
+			}
+			for (int i = 0; i < 60000; i++) {
+				list.add(i); // wraps
+			}
+			ExecutorService executor = Executors.newFixedThreadPool(4);
+			try {
+				List<Future<Long>> sums = new ArrayList<Future<Long>>();
+				for (final List<Integer> view : list.split(8)) {
+					sums.add(executor.submit(new Callable<Long>() {
+						@Override
+						public Long call() {
+							long sum = 0;
+							for (int e : view) {
+								sum += e;
+							}
+							return sum;
+						}
+					}));
+				}
+				long total = 0;
+				for (Future<Long> sum : sums) {
+					total += sum.get();
+				}
+				assertThat(total, is(59999L * 60000 / 2));
+			} finally {
+				executor.shutdown();
+			}
+		}
+	}
+
+	public static class AddSortedTests extends TestCase {
+		public void testNearlyOrderedArrivalsStaySorted() {
+			Random random = new Random(0);
+			CircularArrayList<Integer> list = new CircularArrayList<Integer>();
+			List<Integer> ref = new ArrayList<Integer>();
+			for (int i = 0; i < 2000; i++) {
+				int value = random.nextInt(20) == 0 ? i - random.nextInt(100) : i; // a few late arrivals
+				list.addSorted(value, null);
+				ref.add(value);
+				if (random.nextInt(10) == 0) {
+					Collections.sort(ref);
+					assertThat(list.pollFirst(), is(ref.remove(0)));
+				}
+			}
+			Collections.sort(ref);
+			assertThat(list, is(ref));
+		}
+		public void testInsertsAfterEqualElements() {
+			Comparator<String> byLength = new Comparator<String>() {
+				@Override
+				public int compare(String o1, String o2) {
+					return o1.length() - o2.length();
+				}
+			};
+			CircularArrayList<String> list = new CircularArrayList<String>();
+			assertThat(list.addSorted("bb", byLength), is(0));
+			assertThat(list.addSorted("a", byLength), is(0));
+			assertThat(list.addSorted("cc", byLength), is(2));
+			assertThat(list.addSorted("d", byLength), is(1));
+			assertThat(list.addSorted("eee", byLength), is(4));
+			assertThat(list, is(asList("a", "d", "bb", "cc", "eee")));
+		}
+		public void testLateArrivalShiftsShorterSide() throws Exception {
+			CircularArrayList<Integer> list = SubListTests.createWrapped(16, 12, 10);
+			list.addSorted(-1, null); // near the front: only the prefix moves
+			assertThat((Integer) Whitebox.getInternalState(list, "head"), is(11));
+			assertThat((Integer) Whitebox.getInternalState(list, "tail"), is(6));
+			list.addSorted(8, null); // near the back: only the suffix moves
+			assertThat((Integer) Whitebox.getInternalState(list, "head"), is(11));
+			assertThat((Integer) Whitebox.getInternalState(list, "tail"), is(7));
+			assertThat(list, is(asList(-1, 0, 1, 2, 3, 4, 5, 6, 7, 8, 8, 9)));
+		}
+		public void testNullRejected() {
+			CircularArrayList<Integer> list = new CircularArrayList<Integer>(asList(1));
+			try {
+				list.addSorted(null, null);
+				fail();
+			} catch (NullPointerException expected) {}
+			assertThat(list, is(asList(1)));
+		}
+	}
+
+	public static class EditingIteratorTests extends TestCase {
+		public void testListIteratorContract() {
+			for (final int offset : new int[] { 0, 5, 14 }) {
+				for (final int startIndex : new int[] { 0, 2, 5 }) {
+					new ListIteratorTester<Integer>(4, asList(10, 11), IteratorFeature.MODIFIABLE, asList(0, 1, 2, 3, 4),
+							startIndex) {
+						private CircularArrayList<Integer> list;
+						@Override
+						protected ListIterator<Integer> newTargetIterator() {
+							list = SubListTests.createWrapped(16, offset, 5);
+							return list.editingListIterator(startIndex);
+						}
+						@Override
+						protected void verify(List<Integer> elements) {
+							assertThat(list, is(elements));
+						}
+					}.test();
+				}
+			}
+		}
+		public void testRandomEditsAgainstReference() {
+			Random random = new Random(0);
+			for (int round = 0; round < 50; round++) {
+				CircularArrayList<Integer> list = SubListTests.createWrapped(16, random.nextInt(16), random.nextInt(12));
+				List<Integer> ref = new ArrayList<Integer>(list);
+				int start = random.nextInt(ref.size() + 1);
+				ListIterator<Integer> it = list.editingListIterator(start);
+				ListIterator<Integer> refIt = ref.listIterator(start);
+				boolean canRemove = false;
+				for (int step = 0; step < 200; step++) {
+					switch (random.nextInt(6)) {
+					case 0:
+					case 1:
+						int value = random.nextInt(1000);
+						it.add(value);
+						refIt.add(value);
+						canRemove = false;
+						break;
+					case 2:
+						assertThat(it.hasNext(), is(refIt.hasNext()));
+						if (refIt.hasNext()) {
+							assertThat(it.next(), is(refIt.next()));
+							canRemove = true;
+						}
+						break;
+					case 3:
+						assertThat(it.hasPrevious(), is(refIt.hasPrevious()));
+						if (refIt.hasPrevious()) {
+							assertThat(it.previous(), is(refIt.previous()));
+							canRemove = true;
+						}
+						break;
+					case 4:
+						if (canRemove) {
+							if (random.nextBoolean()) {
+								it.remove();
+								refIt.remove();
+								canRemove = false;
+							} else {
+								it.set(-step);
+								refIt.set(-step);
+							}
+						}
+						break;
+					default:
+						if (random.nextInt(10) == 0) { // a read through the deque closes the gap
+							assertThat(list.size(), is(ref.size()));
+						}
+					}
+					assertThat(it.nextIndex(), is(refIt.nextIndex()));
+				}
+				assertThat(list, is(ref));
+				assertTrue(list.containsAll(ref));
+			}
+		}
+		public void testAddsFillGapWithoutMoving() {
+			CircularArrayList<Integer> list = new CircularArrayList<Integer>();
+			for (int i = 0; i < 100; i++) {
+				list.add(i);
+			}
+			ListIterator<Integer> it = list.editingListIterator(40);
+			it.add(-1); // opens a gap
+			Object[] array = getArray(list);
+			int head = (Integer) Whitebox.getInternalState(list, "head");
+			int tail = (Integer) Whitebox.getInternalState(list, "tail");
+			for (int i = 0; i < 50; i++) {
+				it.add(-1);
+				assertTrue(getArray(list) == array);
+				assertThat((Integer) Whitebox.getInternalState(list, "head"), is(head));
+				assertThat((Integer) Whitebox.getInternalState(list, "tail"), is(tail));
+			}
+			List<Integer> ref = new ArrayList<Integer>();
+			for (int i = 0; i < 100; i++) {
+				ref.add(i);
+			}
+			ref.addAll(40, Collections.nCopies(51, -1));
+			assertThat(list, is(ref));
+		}
+		public void testExhaustingClosesGap() {
+			CircularArrayList<Integer> list = new CircularArrayList<Integer>(asList(1, 2, 3));
+			ListIterator<Integer> it = list.editingListIterator();
+			while (it.hasNext()) {
+				int e = it.next();
+				it.add(e * 10);
+			}
+			assertThat(Whitebox.getInternalState(list, "editor"), is((Object) null));
+			assertThat(list, is(asList(1, 10, 2, 20, 3, 30)));
+			checkNullsOutsideElements(list);
+		}
+		public void testOtherAccessClosesGapAndIteratorContinues() {
+			CircularArrayList<Integer> list = new CircularArrayList<Integer>(asList(1, 2, 3, 4));
+			ListIterator<Integer> it = list.editingListIterator(2);
+			it.add(7);
+			assertThat(list.get(2), is(7));
+			checkNullsOutsideElements(list);
+			assertThat(it.next(), is(3));
+			it.remove();
+			assertThat(list, is(asList(1, 2, 7, 4)));
+			it.add(8);
+			assertThat(list.indexOf(8), is(3));
+		}
+		public void testExternalModificationFailsFast() {
+			CircularArrayList<Integer> list = new CircularArrayList<Integer>(asList(1, 2, 3));
+			ListIterator<Integer> it = list.editingListIterator(1);
+			it.add(7);
+			list.addLast(4);
+			assertThat(list, is(asList(1, 7, 2, 3, 4)));
+			try {
+				it.next();
+				fail();
+			} catch (ConcurrentModificationException expected) {}
+		}
+		public void testTwoEditors() {
+			CircularArrayList<Integer> list = new CircularArrayList<Integer>(asList(1, 2, 3));
+			ListIterator<Integer> first = list.editingListIterator(1);
+			ListIterator<Integer> second = list.editingListIterator(2);
+			first.add(7);
+			try {
+				second.add(8);
+				fail();
+			} catch (ConcurrentModificationException expected) {}
+			assertThat(list, is(asList(1, 7, 2, 3)));
+		}
+		public void testBoundedDequeNeverGrows() {
+			CircularArrayList<Integer> list = CircularArrayList.bounded(7);
+			list.addAll(asList(1, 2, 3, 4, 5, 6));
+			ListIterator<Integer> it = list.editingListIterator(3);
+			it.add(0);
+			try {
+				it.add(0);
+				fail();
+			} catch (IllegalStateException expected) {}
+			assertThat(list, is(asList(1, 2, 3, 0, 4, 5, 6)));
+			assertThat(getArray(list).length, is(8));
+		}
+
+		private static void checkNullsOutsideElements(CircularArrayList<?> list) {
+			Object[] array = getArray(list);
+			int head = (Integer) Whitebox.getInternalState(list, "head");
+			int tail = (Integer) Whitebox.getInternalState(list, "tail");
+			for (int i = tail; i != head; i = (i + 1) & (array.length - 1)) {
+				assertThat(array[i], is((Object) null));
+			}
+		}
+	}
+
+	public static class CloneTests extends TestCase {
+		interface Mutation {
+			void apply(CircularArrayList<Integer> list);
+		}
+
+		private static final List<Mutation> MUTATIONS = asList(new Mutation() {
+			@Override
+			public void apply(CircularArrayList<Integer> list) {
+				list.addFirst(-1);
+			}
+		}, new Mutation() {
+			@Override
+			public void apply(CircularArrayList<Integer> list) {
+				list.addLast(-1);
+			}
+		}, new Mutation() {
+			@Override
+			public void apply(CircularArrayList<Integer> list) {
+				list.pollFirst();
+			}
+		}, new Mutation() {
+			@Override
+			public void apply(CircularArrayList<Integer> list) {
+				list.pollLast();
+			}
+		}, new Mutation() {
+			@Override
+			public void apply(CircularArrayList<Integer> list) {
+				list.add(3, -1);
+			}
+		}, new Mutation() {
+			@Override
+			public void apply(CircularArrayList<Integer> list) {
+				list.addAll(6, asList(-1, -2));
+			}
+		}, new Mutation() {
+			@Override
+			public void apply(CircularArrayList<Integer> list) {
+				list.remove(2);
+			}
+		}, new Mutation() {
+			@Override
+			public void apply(CircularArrayList<Integer> list) {
+				list.removeFirstOccurrence(5);
+			}
+		}, new Mutation() {
+			@Override
+			public void apply(CircularArrayList<Integer> list) {
+				list.set(4, -1);
+			}
+		}, new Mutation() {
+			@Override
+			public void apply(CircularArrayList<Integer> list) {
+				list.subList(1, 4).clear();
+			}
+		}, new Mutation() {
+			@Override
+			public void apply(CircularArrayList<Integer> list) {
+				list.subList(1, 4).set(0, -1);
+			}
+		}, new Mutation() {
+			@Override
+			public void apply(CircularArrayList<Integer> list) {
+				list.removeMatching(Predicates.equalTo(7));
+			}
+		}, new Mutation() {
+			@Override
+			public void apply(CircularArrayList<Integer> list) {
+				list.clear();
+			}
+		}, new Mutation() {
+			@Override
+			public void apply(CircularArrayList<Integer> list) {
+				list.addSorted(-1, null);
+			}
+		}, new Mutation() {
+			@Override
+			public void apply(CircularArrayList<Integer> list) {
+				ListIterator<Integer> it = list.listIterator(2);
+				it.next();
+				it.set(-1);
+				it.next();
+				it.remove();
+				it.add(-2);
+			}
+		}, new Mutation() {
+			@Override
+			public void apply(CircularArrayList<Integer> list) {
+				ListIterator<Integer> it = list.editingListIterator(2);
+				it.next();
+				it.set(-1);
+				it.next();
+				it.remove();
+				it.add(-2);
+			}
+		});
+
+		public void testCloneSharesArrayUntilWritten() {
+			CircularArrayList<Integer> list = SubListTests.createWrapped(16, 12, 10);
+			CircularArrayList<Integer> clone = list.clone();
+			Object[] array = getArray(list);
+			assertTrue(getArray(clone) == array);
+			assertThat(clone, is((List<Integer>) list));
+			clone.get(3);
+			clone.toArray();
+			assertTrue(getArray(list) == array);
+
+			list.addLast(10);
+			assertTrue(getArray(list) != array);
+			assertTrue(getArray(clone) == array);
+			assertThat(clone.size(), is(10));
+			clone.addLast(11);
+			assertTrue(getArray(clone) != array);
+		}
+		public void testSnapshotUnaffectedByEachMutator() {
+			for (Mutation mutation : MUTATIONS) {
+				for (boolean mutateOriginal : new boolean[] { true, false }) {
+					CircularArrayList<Integer> list = SubListTests.createWrapped(16, 12, 10);
+					CircularArrayList<Integer> clone = list.clone();
+					List<Integer> expectedUnchanged = new ArrayList<Integer>(list);
+					CircularArrayList<Integer> reference = new CircularArrayList<Integer>(list);
+					mutation.apply(reference);
+					List<Integer> expectedChanged = new ArrayList<Integer>(reference);
+
+					mutation.apply(mutateOriginal ? list : clone);
+					assertThat(mutateOriginal ? clone : list, is(expectedUnchanged));
+					assertThat(mutateOriginal ? list : clone, is(expectedChanged));
+				}
+			}
+		}
+		public void testCloneOfCloneAndTrim() {
+			CircularArrayList<Integer> list = new CircularArrayList<Integer>(100);
+			list.addAll(asList(1, 2, 3));
+			CircularArrayList<Integer> clone = list.clone();
+			CircularArrayList<Integer> cloneOfClone = clone.clone();
+			list.trimToSize(); // reallocates, so no longer shares
+			assertThat(getArray(list).length, is(8));
+			assertThat(Whitebox.getInternalState(list, "shared"), is((Object) false));
+			clone.addFirst(0);
+			assertThat(list, is(asList(1, 2, 3)));
+			assertThat(clone, is(asList(0, 1, 2, 3)));
+			assertThat(cloneOfClone, is(asList(1, 2, 3)));
+		}
+	}
+
+	public static class RotateTests extends TestCase {
+		public void testMatchesCollectionsRotate() {
+			for (int size : new int[] { 1, 2, 7, 8, 14, 15 }) {
+				for (int offset : new int[] { 0, 5, 13 }) {
+					for (int distance = -2 * size - 1; distance <= 2 * size + 1; distance++) {
+						CircularArrayList<Integer> list = SubListTests.createWrapped(16, offset, size);
+						List<Integer> expected = new ArrayList<Integer>(list);
+						Collections.rotate(expected, distance);
+						list.rotate(distance);
+						String message = "size " + size + ", offset " + offset + ", distance " + distance;
+						assertEquals(message, expected, list);
+						assertEquals(message, 16, getArray(list).length);
+						assertNullsOutside(message, list);
+					}
+				}
+			}
+		}
+		public void testRoundRobinMovesOneElement() {
+			CircularArrayList<Integer> list = SubListTests.createWrapped(16, 3, 10);
+			list.rotate(-1);
+			assertThat(list, is(asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 0)));
+			assertHead(list, 4);
+			list.rotate(1);
+			assertThat(list, is(asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9)));
+			assertHead(list, 3);
+		}
+		public void testEmptyAndWholeTurns() {
+			CircularArrayList<Integer> list = new CircularArrayList<Integer>();
+			list.rotate(5);
+			assertTrue(list.isEmpty());
+			list.addAll(asList(1, 2, 3));
+			list.rotate(Integer.MIN_VALUE + 2); // a multiple of three
+			assertThat(list, is(asList(1, 2, 3)));
+		}
+		public void testRotateBreaksIterators() {
+			CircularArrayList<Integer> list = SubListTests.createWrapped(16, 3, 10);
+			Iterator<Integer> it = list.iterator();
+			it.next();
+			list.rotate(2);
+			try {
+				it.next();
+				fail();
+			} catch (ConcurrentModificationException expected) {}
+		}
+		public void testRotateLeavesCloneAlone() {
+			CircularArrayList<Integer> list = SubListTests.createWrapped(16, 3, 10);
+			CircularArrayList<Integer> clone = list.clone();
+			list.rotate(4);
+			assertThat(clone, is(asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9)));
+			assertThat(list, is(asList(6, 7, 8, 9, 0, 1, 2, 3, 4, 5)));
+		}
+		private static void assertNullsOutside(String message, CircularArrayList<Integer> list) {
+			Object[] array = getArray(list);
+			int head = (Integer) Whitebox.getInternalState(list, "head");
+			for (int i = list.size(); i < array.length; i++) {
+				assertNull(message, array[head + i & array.length - 1]);
+			}
+		}
+	}
+
 	static void removeFirstToDrain(CircularArrayList<Integer> list) {
 		while (list.size() > 0) {
 			list.removeFirst();
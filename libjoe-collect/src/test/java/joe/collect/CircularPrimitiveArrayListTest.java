@@ -0,0 +1,281 @@
+package joe.collect;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import com.google.common.collect.testing.ListTestSuiteBuilder;
+import com.google.common.collect.testing.SampleElements;
+import com.google.common.collect.testing.TestListGenerator;
+import com.google.common.collect.testing.features.CollectionFeature;
+import com.google.common.collect.testing.features.CollectionSize;
+import com.google.common.collect.testing.features.ListFeature;
+
+/**
+ * Classes under test: {@link CircularIntArrayList} and {@link CircularLongArrayList}
+ *
+ * @author Joe Kearney
+ */
+public class CircularPrimitiveArrayListTest extends TestCase {
+	public static Test suite() {
+		TestSuite testSuite = new TestSuite("Circular primitive array list tests");
+		testSuite.addTest(new TestSuite(IntTests.class, "CircularIntArrayList custom tests"));
+		testSuite.addTest(new TestSuite(LongTests.class, "CircularLongArrayList custom tests"));
+		for (int offset : new int[] { 0, 1, 5, 7 }) {
+			testSuite.addTest(createIntListTestSuite(offset));
+			testSuite.addTest(createLongListTestSuite(offset));
+		}
+		return testSuite;
+	}
+
+	private static Test createIntListTestSuite(final int offset) {
+		return ListTestSuiteBuilder.using(new TestIntegerListGenerator() {
+			@Override
+			public List<Integer> create(Object... elements) {
+				CircularIntArrayList list = new CircularIntArrayList();
+				for (int i = 0; i < offset; i++) {
+					list.addLastInt(-1);
+					list.pollFirstInt();
+				}
+				for (Object e : elements) {
+					list.add((Integer) e);
+				}
+				return list;
+			}
+		}).named("CircularIntArrayList offset[" + offset + "]").withFeatures(ListFeature.GENERAL_PURPOSE,
+				CollectionFeature.KNOWN_ORDER, CollectionSize.ANY).createTestSuite();
+	}
+	private static Test createLongListTestSuite(final int offset) {
+		return ListTestSuiteBuilder.using(new TestLongListGenerator() {
+			@Override
+			public List<Long> create(Object... elements) {
+				CircularLongArrayList list = new CircularLongArrayList();
+				for (int i = 0; i < offset; i++) {
+					list.addLastLong(-1);
+					list.pollFirstLong();
+				}
+				for (Object e : elements) {
+					list.add((Long) e);
+				}
+				return list;
+			}
+		}).named("CircularLongArrayList offset[" + offset + "]").withFeatures(ListFeature.GENERAL_PURPOSE,
+				CollectionFeature.KNOWN_ORDER, CollectionSize.ANY).createTestSuite();
+	}
+
+	public static class IntTests extends TestCase {
+		public void testDequeOperations() {
+			CircularIntArrayList list = new CircularIntArrayList();
+			list.addLastInt(2);
+			list.addLastInt(3);
+			list.addFirstInt(1);
+			assertThat(list.getFirstInt(), is(1));
+			assertThat(list.getLastInt(), is(3));
+			assertThat(list.pollFirstInt(), is(1));
+			assertThat(list.pollLastInt(), is(3));
+			assertThat(list.pollLastInt(), is(2));
+			assertTrue(list.isEmpty());
+		}
+		public void testPollEmptyThrows() {
+			CircularIntArrayList list = new CircularIntArrayList();
+			try {
+				list.pollFirstInt();
+				fail();
+			} catch (NoSuchElementException expected) {}
+			try {
+				list.pollLastInt();
+				fail();
+			} catch (NoSuchElementException expected) {}
+			try {
+				list.getFirstInt();
+				fail();
+			} catch (NoSuchElementException expected) {}
+		}
+		public void testGrowthPreservesOrderWhenWrapped() {
+			CircularIntArrayList list = new CircularIntArrayList();
+			for (int i = 0; i < 5; i++) {
+				list.addLastInt(-1);
+				list.pollFirstInt();
+			}
+			for (int i = 0; i < 100; i++) {
+				list.addLastInt(i);
+			}
+			assertThat(list.size(), is(100));
+			for (int i = 0; i < 100; i++) {
+				assertThat(list.getInt(i), is(i));
+			}
+		}
+		public void testIndexedInsertAndRemoveAcrossWrap() {
+			List<Integer> reference = new ArrayList<Integer>();
+			CircularIntArrayList list = new CircularIntArrayList();
+			for (int i = 0; i < 6; i++) {
+				list.addLastInt(-1);
+				list.pollFirstInt();
+			}
+			for (int i = 0; i < 12; i++) {
+				list.addLastInt(i);
+				reference.add(i);
+			}
+			for (int index : new int[] { 0, 3, 7, 12, 14, 1 }) {
+				list.addInt(index, 100 + index);
+				reference.add(index, 100 + index);
+				assertThat(list, is(reference));
+			}
+			for (int index : new int[] { 0, 16, 5, 9, 2 }) {
+				assertThat(list.removeInt(index), is(reference.remove(index)));
+				assertThat(list, is(reference));
+			}
+		}
+		public void testSubListClearUsesRemoveRange() {
+			CircularIntArrayList list = new CircularIntArrayList();
+			for (int i = 0; i < 10; i++) {
+				list.addLastInt(i);
+			}
+			list.subList(2, 8).clear();
+			assertThat(list, is(asList(0, 1, 8, 9)));
+			list.subList(0, 3).clear();
+			assertThat(list, is(asList(9)));
+		}
+		public void testPrimitiveQueries() {
+			CircularIntArrayList list = new CircularIntArrayList();
+			for (int i = 0; i < 10; i++) {
+				list.addFirstInt(i % 3);
+			}
+			assertThat(list.indexOfInt(2), is(1));
+			assertThat(list.lastIndexOfInt(2), is(7));
+			assertFalse(list.containsInt(3));
+			assertTrue(Arrays.equals(list.toIntArray(), new int[] { 0, 2, 1, 0, 2, 1, 0, 2, 1, 0 }));
+		}
+		public void testCloneIsIndependent() {
+			CircularIntArrayList list = new CircularIntArrayList();
+			list.addLastInt(1);
+			CircularIntArrayList clone = list.clone();
+			clone.addLastInt(2);
+			assertThat(list.size(), is(1));
+			assertThat(clone, is(asList(1, 2)));
+		}
+		public void testIteratorsFailFastOnStructuralChange() {
+			CircularIntArrayList list = new CircularIntArrayList();
+			for (int i = 0; i < 4; i++) {
+				list.addLastInt(i);
+			}
+			Iterator<Integer> iterator = list.iterator();
+			iterator.next();
+			list.addFirstInt(-1);
+			try {
+				iterator.next();
+				fail();
+			} catch (ConcurrentModificationException expected) {}
+
+			List<Integer> subList = list.subList(1, 3);
+			list.pollFirstInt();
+			try {
+				subList.get(0);
+				fail();
+			} catch (ConcurrentModificationException expected) {}
+
+			iterator = list.iterator();
+			list.addInt(2, 7);
+			try {
+				iterator.next();
+				fail();
+			} catch (ConcurrentModificationException expected) {}
+		}
+	}
+
+	public static class LongTests extends TestCase {
+		public void testDequeOperations() {
+			CircularLongArrayList list = new CircularLongArrayList();
+			list.addLastLong(2);
+			list.addLastLong(Long.MAX_VALUE);
+			list.addFirstLong(1);
+			assertThat(list.getFirstLong(), is(1L));
+			assertThat(list.getLastLong(), is(Long.MAX_VALUE));
+			assertThat(list.pollFirstLong(), is(1L));
+			assertThat(list.pollLastLong(), is(Long.MAX_VALUE));
+			assertThat(list.pollLastLong(), is(2L));
+			assertTrue(list.isEmpty());
+		}
+		public void testIndexedInsertAndRemoveAcrossWrap() {
+			List<Long> reference = new ArrayList<Long>();
+			CircularLongArrayList list = new CircularLongArrayList();
+			for (int i = 0; i < 6; i++) {
+				list.addLastLong(-1);
+				list.pollFirstLong();
+			}
+			for (long i = 0; i < 12; i++) {
+				list.addLastLong(i);
+				reference.add(i);
+			}
+			for (int index : new int[] { 0, 3, 7, 12, 14, 1 }) {
+				list.addLong(index, 100L + index);
+				reference.add(index, 100L + index);
+				assertThat(list, is(reference));
+			}
+			for (int index : new int[] { 0, 16, 5, 9, 2 }) {
+				assertThat(list.removeLong(index), is(reference.remove(index)));
+				assertThat(list, is(reference));
+			}
+		}
+		public void testIteratorsFailFastOnStructuralChange() {
+			CircularLongArrayList list = new CircularLongArrayList();
+			for (long i = 0; i < 4; i++) {
+				list.addLastLong(i);
+			}
+			Iterator<Long> iterator = list.iterator();
+			iterator.next();
+			list.pollLastLong();
+			try {
+				iterator.next();
+				fail();
+			} catch (ConcurrentModificationException expected) {}
+
+			List<Long> subList = list.subList(0, 2);
+			list.removeLong(2);
+			try {
+				subList.size();
+				fail();
+			} catch (ConcurrentModificationException expected) {}
+		}
+	}
+
+	static abstract class TestIntegerListGenerator implements TestListGenerator<Integer> {
+		@Override
+		public SampleElements<Integer> samples() {
+			return new SampleElements<Integer>(1, 2, 3, 4, 5);
+		}
+		@Override
+		public Integer[] createArray(int length) {
+			return new Integer[length];
+		}
+		@Override
+		public Iterable<Integer> order(List<Integer> insertionOrder) {
+			return insertionOrder;
+		}
+	}
+	static abstract class TestLongListGenerator implements TestListGenerator<Long> {
+		@Override
+		public SampleElements<Long> samples() {
+			return new SampleElements<Long>(1L, 2L, 3L, 4L, 5L);
+		}
+		@Override
+		public Long[] createArray(int length) {
+			return new Long[length];
+		}
+		@Override
+		public Iterable<Long> order(List<Long> insertionOrder) {
+			return insertionOrder;
+		}
+	}
+}
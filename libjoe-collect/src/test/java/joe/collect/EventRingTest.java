@@ -0,0 +1,244 @@
+package joe.collect;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import joe.collect.EventRing.EventFactory;
+import joe.collect.EventRing.EventHandler;
+import joe.collect.EventRing.Stage;
+import junit.framework.TestCase;
+
+/**
+ * Class under test: {@link EventRing}
+ *
+ * @author Joe Kearney
+ */
+public class EventRingTest extends TestCase {
+	static final class Event {
+		long value;
+		long doubled;
+	}
+
+	static final EventFactory<Event> FACTORY = new EventFactory<Event>() {
+		@Override
+		public Event newInstance() {
+			return new Event();
+		}
+	};
+
+	/**
+	 * Records the values and batch boundaries it sees.
+	 */
+	static final class RecordingHandler implements EventHandler<Event> {
+		final List<Long> values = new ArrayList<Long>();
+		final List<Long> batchEnds = new ArrayList<Long>();
+
+		@Override
+		public void onEvent(Event event, long sequence, boolean endOfBatch) {
+			values.add(event.value);
+			if (endOfBatch) {
+				batchEnds.add(sequence);
+			}
+		}
+	}
+
+	public void testSlotsAreReusedInPlace() throws InterruptedException {
+		EventRing<Event> ring = new EventRing<Event>(3, FACTORY);
+		assertThat(ring.capacity(), is(4));
+		Stage<Event> stage = ring.addStage();
+		Event first = ring.get(0);
+		RecordingHandler handler = new RecordingHandler();
+		for (int i = 0; i < 10; i++) {
+			long sequence = ring.next();
+			assertThat(sequence, is((long) i));
+			ring.get(sequence).value = i * 10;
+			ring.publish(sequence);
+			assertThat(stage.processAvailable(handler), is(1));
+		}
+		assertSame(first, ring.get(8));
+		assertThat(handler.values, is(asList(0L, 10L, 20L, 30L, 40L, 50L, 60L, 70L, 80L, 90L)));
+		assertThat(stage.getSequence(), is(10L));
+		assertThat(ring.getPublishedSequence(), is(10L));
+	}
+	public void testStagesSeeEventsInDependencyOrder() {
+		EventRing<Event> ring = new EventRing<Event>(8, FACTORY);
+		Stage<Event> first = ring.addStage();
+		Stage<Event> second = ring.addStage(first);
+		publish(ring, 1, 2, 3);
+		RecordingHandler secondHandler = new RecordingHandler();
+		assertThat(second.processAvailable(secondHandler), is(0));
+
+		RecordingHandler firstHandler = new RecordingHandler();
+		assertThat(first.processAvailable(firstHandler), is(3));
+		assertThat(firstHandler.batchEnds, is(asList(2L)));
+		publish(ring, 4);
+		assertThat(second.processAvailable(secondHandler), is(3));
+		assertThat(secondHandler.values, is(asList(1L, 2L, 3L)));
+		assertThat(first.processAvailable(firstHandler), is(1));
+		assertThat(second.processAvailable(secondHandler), is(1));
+		assertThat(secondHandler.batchEnds, is(asList(2L, 3L)));
+	}
+	public void testProducersGatedBySlowestStage() {
+		EventRing<Event> ring = new EventRing<Event>(4, FACTORY);
+		Stage<Event> first = ring.addStage();
+		Stage<Event> second = ring.addStage(first);
+		long start = ring.tryNext(4);
+		assertThat(start, is(0L));
+		ring.publish(start, 4);
+		assertThat(ring.tryNext(), is(-1L));
+		assertThat(ring.remainingCapacity(), is(0));
+
+		first.processAvailable(new RecordingHandler());
+		assertThat(ring.tryNext(), is(-1L)); // second still needs every slot
+		second.processAvailable(new RecordingHandler());
+		assertThat(ring.remainingCapacity(), is(4));
+		assertThat(ring.tryNext(3), is(4L));
+		assertThat(ring.tryNext(2), is(-1L));
+	}
+	public void testUnpublishedClaimDoesNotBlockLaterProducers() {
+		EventRing<Event> ring = new EventRing<Event>(8, FACTORY);
+		Stage<Event> stage = ring.addStage();
+		long slow = ring.tryNext(); // claimed, but its producer is descheduled before publishing
+		long fast = ring.tryNext(2);
+		ring.get(fast).value = 2;
+		ring.get(fast + 1).value = 3;
+		ring.publish(fast, 2); // would previously spin until the earlier claim was published
+		RecordingHandler handler = new RecordingHandler();
+		assertThat(stage.processAvailable(handler), is(0));
+		assertThat(ring.getPublishedSequence(), is(0L));
+
+		ring.get(slow).value = 1;
+		ring.publish(slow);
+		assertThat(ring.getPublishedSequence(), is(3L));
+		assertThat(stage.processAvailable(handler), is(3));
+		assertThat(handler.values, is(asList(1L, 2L, 3L)));
+	}
+	public void testFailedEventIsRetried() {
+		EventRing<Event> ring = new EventRing<Event>(8, FACTORY);
+		Stage<Event> stage = ring.addStage();
+		publish(ring, 1, 2, 3);
+		final List<Long> seen = new ArrayList<Long>();
+		EventHandler<Event> failOnce = new EventHandler<Event>() {
+			boolean failed;
+
+			@Override
+			public void onEvent(Event event, long sequence, boolean endOfBatch) {
+				if (sequence == 1 && !failed) {
+					failed = true;
+					throw new IllegalStateException();
+				}
+				seen.add(event.value);
+			}
+		};
+		try {
+			stage.processAvailable(failOnce);
+			fail();
+		} catch (IllegalStateException expected) {}
+		assertThat(stage.getSequence(), is(1L));
+		assertThat(stage.processAvailable(failOnce), is(2));
+		assertThat(seen, is(asList(1L, 2L, 3L)));
+	}
+	public void testArgumentChecks() {
+		EventRing<Event> ring = new EventRing<Event>(4, FACTORY);
+		EventRing<Event> other = new EventRing<Event>(4, FACTORY);
+		try {
+			ring.addStage(other.addStage());
+			fail();
+		} catch (IllegalArgumentException expected) {}
+		try {
+			ring.tryNext(5);
+			fail();
+		} catch (IllegalArgumentException expected) {}
+		ring.tryNext();
+		try {
+			ring.addStage();
+			fail();
+		} catch (IllegalStateException expected) {}
+		try {
+			new EventRing<Event>(4, new EventFactory<Event>() {
+				@Override
+				public Event newInstance() {
+					return null;
+				}
+			});
+			fail();
+		} catch (NullPointerException expected) {}
+	}
+	public void testPipelineWithManyProducers() throws Exception {
+		final int producers = 3;
+		final int perProducer = 50000;
+		final EventRing<Event> ring = new EventRing<Event>(64, FACTORY);
+		final Stage<Event> doubler = ring.addStage();
+		final Stage<Event> checker = ring.addStage(doubler);
+		ExecutorService executor = Executors.newFixedThreadPool(producers + 1);
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (int p = 0; p < producers; p++) {
+				final int producer = p;
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws InterruptedException {
+						for (int i = 0; i < perProducer; i += 2) {
+							long start = ring.next(2);
+							ring.get(start).value = i * producers + producer;
+							ring.get(start + 1).value = (i + 1) * producers + producer;
+							ring.publish(start, 2);
+						}
+						return null;
+					}
+				}));
+			}
+			final int total = producers * perProducer;
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws InterruptedException {
+					EventHandler<Event> handler = new EventHandler<Event>() {
+						@Override
+						public void onEvent(Event event, long sequence, boolean endOfBatch) {
+							event.doubled = event.value * 2;
+						}
+					};
+					while (doubler.getSequence() < total) {
+						doubler.process(handler);
+					}
+					return null;
+				}
+			}));
+			final int[] next = new int[producers];
+			EventHandler<Event> handler = new EventHandler<Event>() {
+				@Override
+				public void onEvent(Event event, long sequence, boolean endOfBatch) {
+					assertThat(event.doubled, is(event.value * 2));
+					int producer = (int) (event.value % producers);
+					assertThat(event.value / producers, is((long) next[producer]++));
+				}
+			};
+			while (checker.getSequence() < total) {
+				checker.process(handler);
+			}
+			for (Future<Void> future : futures) {
+				future.get(10, TimeUnit.SECONDS);
+			}
+			assertThat(next, is(new int[] { perProducer, perProducer, perProducer }));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void publish(EventRing<Event> ring, long... values) {
+		for (long value : values) {
+			long sequence = ring.tryNext();
+			ring.get(sequence).value = value;
+			ring.publish(sequence);
+		}
+	}
+}
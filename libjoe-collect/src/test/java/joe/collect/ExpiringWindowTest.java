@@ -0,0 +1,109 @@
+package joe.collect;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.powermock.reflect.Whitebox;
+
+/**
+ * Class under test: {@link ExpiringWindow}
+ *
+ * @author Joe Kearney
+ */
+public class ExpiringWindowTest extends TestCase {
+	private static ExpiringWindow<String> createWindow(long... timestamps) {
+		ExpiringWindow<String> window = new ExpiringWindow<String>();
+		for (long t : timestamps) {
+			window.addLast(t, "e" + t);
+		}
+		return window;
+	}
+
+	public void testExpireDropsPrefix() {
+		ExpiringWindow<String> window = createWindow(1, 2, 2, 3, 5, 8);
+		assertThat(window.expire(2), is(1));
+		assertThat(window.getFirstTimestamp(), is(2L));
+		assertThat(window.expire(4), is(3));
+		assertThat(asList(window.get(0), window.get(1)), is(asList("e5", "e8")));
+		assertThat(window.expire(4), is(0));
+		assertThat(window.expire(100), is(2));
+		assertTrue(window.isEmpty());
+	}
+	public void testExpireClearsCellsAndMovesHead() {
+		ExpiringWindow<String> window = createWindow(1, 2, 3, 4, 5);
+		CircularArrayList<?> elements = Whitebox.getInternalState(window, "elements");
+		window.expire(4);
+		assertThat((Integer) Whitebox.getInternalState(elements, "head"), is(3));
+		Object[] array = CircularArrayListTest.getArray(elements);
+		assertThat(asList(array[0], array[1], array[2], array[3]), is(asList((Object) null, null, null, "e4")));
+		assertThat(window.getTimestamp(0), is(4L));
+	}
+	public void testExpiringEverythingKeepsCapacity() {
+		ExpiringWindow<String> window = new ExpiringWindow<String>();
+		for (int i = 0; i < 100; i++) {
+			window.addLast(i, "e" + i);
+		}
+		CircularArrayList<?> elements = Whitebox.getInternalState(window, "elements");
+		Object[] array = CircularArrayListTest.getArray(elements);
+		assertThat(window.expire(100), is(100));
+		assertTrue(window.isEmpty());
+		assertThat(CircularArrayListTest.getArray(elements), is(array));
+		assertThat(asList(array), is(asList(new Object[array.length])));
+
+		window.addLast(100, "e100");
+		assertThat(window.getTimestamp(0), is(100L));
+	}
+	public void testRangeIsViewOfHalfOpenInterval() {
+		ExpiringWindow<String> window = new ExpiringWindow<String>();
+		for (int i = 0; i < 12; i++) { // wrap the ring
+			window.addLast(0, "x");
+		}
+		window.expire(1);
+		for (long t : new long[] { 10, 20, 20, 30, 40 }) {
+			window.addLast(t, "e" + t);
+		}
+		assertThat(window.range(20, 40), is(asList("e20", "e20", "e30")));
+		assertThat(window.range(15, 21), is(asList("e20", "e20")));
+		assertTrue(window.range(41, 50).isEmpty());
+		assertTrue(window.range(30, 10).isEmpty());
+		List<String> view = window.range(0, 100);
+		assertThat(view.size(), is(5));
+		try {
+			view.remove(0);
+			fail();
+		} catch (UnsupportedOperationException expected) {}
+		window.expire(15);
+		try {
+			view.get(0);
+			fail();
+		} catch (ConcurrentModificationException expected) {}
+	}
+	public void testTimestampsMustNotDecrease() {
+		ExpiringWindow<String> window = createWindow(5);
+		try {
+			window.addLast(4, "late");
+			fail();
+		} catch (IllegalArgumentException expected) {}
+		try {
+			window.addLast(6, null);
+			fail();
+		} catch (NullPointerException expected) {}
+		assertThat(window.size(), is(1));
+		assertThat(window.getLastTimestamp(), is(5L));
+	}
+	public void testPollAndPeek() {
+		ExpiringWindow<String> window = createWindow(1, 2);
+		assertThat(window.peekFirst(), is("e1"));
+		assertThat(window.peekLast(), is("e2"));
+		assertThat(window.pollFirst(), is("e1"));
+		assertThat(window.getFirstTimestamp(), is(2L));
+		assertThat(window.pollFirst(), is("e2"));
+		assertThat(window.pollFirst(), is((String) null));
+	}
+}
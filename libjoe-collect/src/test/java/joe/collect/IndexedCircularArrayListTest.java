@@ -0,0 +1,185 @@
+package joe.collect;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.testing.ListTestSuiteBuilder;
+import com.google.common.collect.testing.MinimalCollection;
+import com.google.common.collect.testing.TestStringListGenerator;
+import com.google.common.collect.testing.features.CollectionFeature;
+import com.google.common.collect.testing.features.CollectionSize;
+import com.google.common.collect.testing.features.ListFeature;
+import com.google.common.testing.SerializableTester;
+
+/**
+ * Class under test: {@link IndexedCircularArrayList}
+ *
+ * @author Joe Kearney
+ */
+public class IndexedCircularArrayListTest extends TestCase {
+	public static Test suite() {
+		TestSuite testSuite = new TestSuite("IndexedCircularArrayList tests");
+		testSuite.addTest(new TestSuite(CustomTests.class, "Custom tests"));
+		for (int offset : new int[] { 0, 1, 5 }) {
+			testSuite.addTest(createListTestSuite(offset));
+		}
+		return testSuite;
+	}
+
+	private static Test createListTestSuite(final int offset) {
+		return ListTestSuiteBuilder.using(new TestStringListGenerator() {
+			@Override
+			protected List<String> create(String[] elements) {
+				IndexedCircularArrayList<String> list = new IndexedCircularArrayList<String>();
+				for (int i = 0; i < offset; i++) {
+					list.addFirst("x");
+				}
+				list.addAll(MinimalCollection.of(elements));
+				for (int i = 0; i < offset; i++) {
+					list.removeFirst();
+				}
+				return list;
+			}
+		}).named("IndexedCircularArrayList offset[" + offset + "]").withFeatures(ListFeature.GENERAL_PURPOSE,
+				CollectionFeature.KNOWN_ORDER, CollectionSize.ANY).createTestSuite();
+	}
+
+	public static class CustomTests extends TestCase {
+		public void testIndexFollowsShiftsAgainstReference() {
+			Random random = new Random(0);
+			IndexedCircularArrayList<Integer> list = new IndexedCircularArrayList<Integer>();
+			List<Integer> ref = new ArrayList<Integer>();
+			for (int i = 0; i < 4000; i++) {
+				Integer value = random.nextInt(50); // plenty of duplicates
+				int size = ref.size();
+				switch (random.nextInt(8)) {
+				case 0:
+					list.addFirst(value);
+					ref.add(0, value);
+					break;
+				case 1:
+					list.addLast(value);
+					ref.add(value);
+					break;
+				case 2:
+					int index = random.nextInt(size + 1);
+					list.add(index, value);
+					ref.add(index, value);
+					break;
+				case 3:
+					if (size > 0) {
+						index = random.nextInt(size);
+						assertThat(list.remove(index), is(ref.remove(index)));
+					}
+					break;
+				case 4:
+					assertThat(list.remove(value), is(ref.remove(value)));
+					break;
+				case 5:
+					if (size > 0) {
+						assertThat(list.pollFirst(), is(ref.remove(0)));
+						assertThat(list.pollLast(), is(size > 1 ? ref.remove(size - 2) : null));
+					}
+					break;
+				case 6:
+					index = random.nextInt(size + 1);
+					List<Integer> added = asList(value, value + 1, value);
+					list.addAll(index, added);
+					ref.addAll(index, added);
+					break;
+				default:
+					if (size > 0) {
+						int from = random.nextInt(size);
+						int to = from + random.nextInt(Math.min(4, size - from) + 1);
+						list.subList(from, to).clear();
+						ref.subList(from, to).clear();
+					}
+				}
+				assertThat(list, is(ref));
+				assertIndexMatches(list, ref);
+			}
+		}
+		public void testRemoveMatchingRebuildsIndex() {
+			IndexedCircularArrayList<Integer> list = new IndexedCircularArrayList<Integer>();
+			for (int i = 0; i < 20; i++) {
+				list.addFirst(i % 7);
+			}
+			List<Integer> ref = new ArrayList<Integer>(list);
+			assertTrue(list.removeMatching(new Predicate<Integer>() {
+				@Override
+				public boolean apply(Integer input) {
+					return input % 2 == 0;
+				}
+			}));
+			for (int i = 0; i < 7; i += 2) {
+				while (ref.remove((Integer) i)) {}
+			}
+			assertThat(list, is(ref));
+			assertIndexMatches(list, ref);
+			assertTrue(list.retainAll(asList(1, 5)));
+			ref.retainAll(asList(1, 5));
+			assertIndexMatches(list, ref);
+		}
+		public void testRemoveAllPropagatesContainsExceptions() {
+			IndexedCircularArrayList<Integer> list = new IndexedCircularArrayList<Integer>(asList(1, 2, 3));
+			try {
+				list.removeAll(new TreeSet<String>(asList("a")));
+				fail();
+			} catch (ClassCastException expected) {}
+			assertThat(list, is(asList(1, 2, 3)));
+			assertThat(list.indexOf(2), is(1));
+		}
+		public void testSetReplacesIndexEntry() {
+			IndexedCircularArrayList<String> list = new IndexedCircularArrayList<String>(asList("a", "b", "a"));
+			assertThat(list.set(0, "c"), is("a"));
+			assertThat(list.indexOf("a"), is(2));
+			assertThat(list.indexOf("c"), is(0));
+			assertThat(list.set(1, "c"), is("b"));
+			assertFalse(list.contains("b"));
+			assertThat(list.lastIndexOf("c"), is(1));
+		}
+		public void testNullsRejected() {
+			IndexedCircularArrayList<String> list = new IndexedCircularArrayList<String>(asList("a", "b"));
+			try {
+				list.add(1, null);
+				fail();
+			} catch (NullPointerException expected) {}
+			try {
+				list.addAll(asList("c", null));
+				fail();
+			} catch (NullPointerException expected) {}
+			assertThat(list, is(asList("a", "b")));
+			assertFalse(list.contains(null));
+			assertThat(list.indexOf(null), is(-1));
+		}
+		public void testSerializationRebuildsIndex() {
+			IndexedCircularArrayList<String> list = new IndexedCircularArrayList<String>();
+			list.addFirst("b");
+			list.addFirst("a");
+			list.addLast("a");
+			IndexedCircularArrayList<String> copy = SerializableTester.reserializeAndAssert(list);
+			assertThat(copy.lastIndexOf("a"), is(2));
+			assertTrue(copy.removeFirstOccurrence("b"));
+			assertThat(copy, is(asList("a", "a")));
+		}
+
+		private static void assertIndexMatches(IndexedCircularArrayList<Integer> list, List<Integer> ref) {
+			for (int v = -1; v <= 51; v++) {
+				assertThat(list.indexOf(v), is(ref.indexOf(v)));
+				assertThat(list.lastIndexOf(v), is(ref.lastIndexOf(v)));
+				assertThat(list.contains(v), is(ref.contains(v)));
+			}
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package joe.collect;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+
+import joe.collect.MappedRingLog.ForcePolicy;
+import junit.framework.TestCase;
+
+/**
+ * Class under test: {@link MappedRingLog}
+ *
+ * @author Joe Kearney
+ */
+public class MappedRingLogTest extends TestCase {
+	private File file;
+
+	@Override
+	protected void setUp() throws IOException {
+		file = File.createTempFile("ringlog", ".dat");
+		file.delete();
+	}
+	@Override
+	protected void tearDown() {
+		file.delete();
+	}
+
+	public void testDequeOperations() throws IOException {
+		MappedRingLog log = MappedRingLog.open(file, 7, 16, ForcePolicy.NONE);
+		assertTrue(log.isEmpty());
+		assertThat(log.pollFirst(), nullValue());
+		assertThat(log.peekLast(), nullValue());
+
+		log.addLast(record("b"));
+		log.addLast(record("c"));
+		log.addFirst(record("a"));
+		assertThat(log.size(), is(3));
+		assertThat(string(log.peekFirst()), is("a"));
+		assertThat(string(log.peekLast()), is("c"));
+		assertThat(string(log.get(1)), is("b"));
+		assertThat(string(log.pollFirst()), is("a"));
+		assertThat(string(log.pollLast()), is("c"));
+		assertThat(string(log.pollLast()), is("b"));
+		assertTrue(log.isEmpty());
+		log.close();
+	}
+	public void testRecordPositionUnchanged() throws IOException {
+		MappedRingLog log = MappedRingLog.open(file, 7, 16, ForcePolicy.NONE);
+		ByteBuffer record = record("abc");
+		log.addLast(record);
+		assertThat(record.remaining(), is(3));
+		log.close();
+	}
+	public void testReadsAreReadOnlyViews() throws IOException {
+		MappedRingLog log = MappedRingLog.open(file, 7, 16, ForcePolicy.NONE);
+		log.addLast(record("abc"));
+		ByteBuffer read = log.peekFirst();
+		assertTrue(read.isReadOnly());
+		assertTrue(read.isDirect());
+		assertThat(read.remaining(), is(3));
+		log.close();
+	}
+	public void testFullLogDiscardsFromOtherEnd() throws IOException {
+		MappedRingLog log = MappedRingLog.open(file, 7, 16, ForcePolicy.NONE);
+		assertThat(log.getMaxSize(), is(7));
+		for (int i = 0; i < 10; i++) {
+			log.addLast(record(Integer.toString(i)));
+		}
+		assertThat(strings(log), is(strings("3", "4", "5", "6", "7", "8", "9")));
+		log.addFirst(record("x"));
+		assertThat(strings(log), is(strings("x", "3", "4", "5", "6", "7", "8")));
+		assertFalse(log.offerLast(record("y")));
+		assertFalse(log.offerFirst(record("y")));
+		assertThat(log.size(), is(7));
+		log.pollFirst();
+		assertTrue(log.offerLast(record("y")));
+		assertThat(string(log.peekLast()), is("y"));
+		log.close();
+	}
+	public void testReopenRestoresRecords() throws IOException {
+		MappedRingLog log = MappedRingLog.open(file, 7, 16, ForcePolicy.ON_CLOSE);
+		for (int i = 0; i < 12; i++) {
+			log.addLast(record(Integer.toString(i)));
+		}
+		log.pollFirst();
+		log.close();
+
+		MappedRingLog reopened = MappedRingLog.open(file, ForcePolicy.NONE);
+		assertThat(reopened.getMaxSize(), is(7));
+		assertThat(reopened.getMaxRecordLength(), is(28));
+		assertThat(strings(reopened), is(strings("6", "7", "8", "9", "10", "11")));
+		reopened.addLast(record("12"));
+		reopened.close();
+
+		MappedRingLog again = MappedRingLog.open(file, 7, 16, ForcePolicy.EVERY_WRITE);
+		assertThat(strings(again), is(strings("6", "7", "8", "9", "10", "11", "12")));
+		again.close();
+	}
+	public void testReopenWithOtherGeometryFails() throws IOException {
+		MappedRingLog.open(file, 7, 16, ForcePolicy.NONE).close();
+		try {
+			MappedRingLog.open(file, 15, 16, ForcePolicy.NONE);
+			fail();
+		} catch (IOException expected) {}
+		try {
+			MappedRingLog.open(file, 7, 100, ForcePolicy.NONE);
+			fail();
+		} catch (IOException expected) {}
+	}
+	public void testOpenNonLogFails() throws IOException {
+		try {
+			MappedRingLog.open(file, ForcePolicy.NONE);
+			fail();
+		} catch (IOException expected) {}
+		MappedRingLog log = MappedRingLog.open(file, 7, 16, ForcePolicy.NONE);
+		log.close();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.writeInt(0);
+		raf.close();
+		try {
+			MappedRingLog.open(file, ForcePolicy.NONE);
+			fail();
+		} catch (IOException expected) {}
+	}
+	public void testRecordTooLong() throws IOException {
+		MappedRingLog log = MappedRingLog.open(file, 7, 12, ForcePolicy.NONE);
+		assertThat(log.getMaxRecordLength(), is(12));
+		log.addLast(ByteBuffer.allocate(12));
+		try {
+			log.addLast(ByteBuffer.allocate(13));
+			fail();
+		} catch (IllegalArgumentException expected) {}
+		assertThat(log.size(), is(1));
+		log.close();
+	}
+	public void testMaxRecordsBeyondSlotLimitRejected() throws IOException {
+		try {
+			MappedRingLog.open(file, 1 << 30, 16, ForcePolicy.NONE);
+			fail();
+		} catch (IllegalArgumentException expected) {}
+		assertFalse(file.exists());
+	}
+	public void testRecordsSpanSegments() throws IOException {
+		// 32 slots of 16 bytes in segments of 64 bytes
+		MappedRingLog log = MappedRingLog.open(file, 31, 12, ForcePolicy.NONE, 64);
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 40; i++) {
+			log.addLast(record("r" + i));
+			expected.add("r" + i);
+		}
+		expected = expected.subList(9, 40);
+		assertThat(strings(log), is(expected));
+		for (int i = 0; i < expected.size(); i++) {
+			assertThat(string(log.get(i)), is(expected.get(i)));
+		}
+		log.close();
+		MappedRingLog reopened = MappedRingLog.open(file, ForcePolicy.NONE);
+		assertThat(strings(reopened), is(expected));
+		reopened.close();
+	}
+	public void testIteratorIsFailFast() throws IOException {
+		MappedRingLog log = MappedRingLog.open(file, 7, 16, ForcePolicy.NONE);
+		log.addLast(record("a"));
+		log.addLast(record("b"));
+		Iterator<ByteBuffer> it = log.iterator();
+		it.next();
+		log.addLast(record("c"));
+		try {
+			it.next();
+			fail();
+		} catch (ConcurrentModificationException expected) {}
+		log.close();
+	}
+	public void testClearAndClose() throws IOException {
+		MappedRingLog log = MappedRingLog.open(file, 7, 16, ForcePolicy.NONE);
+		log.addLast(record("a"));
+		log.clear();
+		assertTrue(log.isEmpty());
+		log.close();
+		log.close();
+		try {
+			log.addLast(record("b"));
+			fail();
+		} catch (IllegalStateException expected) {}
+	}
+
+	private static ByteBuffer record(String s) {
+		return ByteBuffer.wrap(s.getBytes());
+	}
+	private static String string(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.duplicate().get(bytes);
+		return new String(bytes);
+	}
+	private static List<String> strings(Iterable<ByteBuffer> log) {
+		List<String> list = new ArrayList<String>();
+		for (ByteBuffer buffer : log) {
+			list.add(string(buffer));
+		}
+		return list;
+	}
+	private static List<String> strings(String... strings) {
+		return Arrays.asList(strings);
+	}
+}
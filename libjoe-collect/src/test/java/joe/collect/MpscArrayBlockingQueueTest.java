@@ -0,0 +1,179 @@
+package joe.collect;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import joe.collect.MpscArrayBlockingQueue.BackPressure;
+import junit.framework.TestCase;
+
+import org.powermock.reflect.Whitebox;
+
+/**
+ * Class under test: {@link MpscArrayBlockingQueue}
+ *
+ * @author Joe Kearney
+ */
+public class MpscArrayBlockingQueueTest extends TestCase {
+	public void testFifoAcrossWrap() {
+		MpscArrayBlockingQueue<Integer> queue = new MpscArrayBlockingQueue<Integer>(4);
+		for (int i = 0; i < 4; i++) {
+			assertTrue(queue.offer(i));
+		}
+		assertFalse(queue.offer(4));
+		assertThat(queue.poll(), is(0));
+		assertThat(queue.poll(), is(1));
+		assertTrue(queue.offerAll(asList(4, 5)));
+		assertThat(new ArrayList<Integer>(queue), is(asList(2, 3, 4, 5)));
+		assertThat(queue.peek(), is(2));
+		for (int i = 2; i < 6; i++) {
+			assertThat(queue.poll(), is(i));
+		}
+		assertNull(queue.poll());
+	}
+	public void testBatchIsAllOrNothing() {
+		MpscArrayBlockingQueue<Integer> queue = new MpscArrayBlockingQueue<Integer>(4);
+		assertTrue(queue.offerAll(asList(0, 1, 2)));
+		assertFalse(queue.offerAll(asList(3, 4)));
+		assertThat(queue.size(), is(3));
+		assertThat(queue.remainingCapacity(), is(1));
+		try {
+			queue.offerAll(asList(1, null));
+			fail();
+		} catch (NullPointerException expected) {}
+		try {
+			queue.offerAll(Collections.nCopies(5, 1));
+			fail();
+		} catch (IllegalArgumentException expected) {}
+		assertThat(queue.size(), is(3));
+	}
+	public void testUnpublishedClaimDoesNotBlockLaterProducers() {
+		MpscArrayBlockingQueue<Integer> queue = new MpscArrayBlockingQueue<Integer>(4);
+		PaddedAtomicLong tail = Whitebox.getInternalState(queue, "tail");
+		tail.incrementAndGet(); // a producer claims slot 0 and is descheduled before filling it
+
+		assertTrue(queue.offer(1)); // would previously spin until slot 0 was published
+		assertTrue(queue.offerAll(asList(2, 3)));
+		assertFalse(queue.offer(4));
+		assertThat(queue.size(), is(4));
+		assertTrue(queue.isEmpty());
+		assertNull(queue.poll());
+		assertThat(queue.drainTo(new Integer[4], 0, 4), is(0));
+
+		Object[] elements = Whitebox.getInternalState(queue, "elements");
+		AtomicIntegerArray availability = Whitebox.getInternalState(queue, "availability");
+		elements[0] = 0; // the slow producer fills its slot and publishes it
+		availability.set(0, 0);
+		Integer[] drained = new Integer[4];
+		assertThat(queue.drainTo(drained, 0, 4), is(4));
+		assertThat(asList(drained), is(asList(0, 1, 2, 3)));
+		assertTrue(queue.isEmpty());
+	}
+	public void testDrainToArrayAcrossWrap() {
+		MpscArrayBlockingQueue<Integer> queue = new MpscArrayBlockingQueue<Integer>(8);
+		for (int i = 0; i < 6; i++) {
+			queue.add(i);
+		}
+		for (int i = 0; i < 6; i++) {
+			queue.poll();
+		}
+		assertTrue(queue.offerAll(asList(10, 11, 12, 13, 14)));
+		Integer[] target = new Integer[6];
+		assertThat(queue.drainTo(target, 1, 10), is(5));
+		assertThat(asList(target), is(asList(null, 10, 11, 12, 13, 14)));
+		assertTrue(queue.isEmpty());
+		assertThat(queue.remainingCapacity(), is(8));
+
+		queue.offerAll(asList(1, 2, 3));
+		List<Integer> drained = new ArrayList<Integer>();
+		assertThat(queue.drainTo(drained, 2), is(2));
+		assertThat(queue.drainTo(drained), is(1));
+		assertThat(drained, is(asList(1, 2, 3)));
+	}
+	public void testDropNewest() throws InterruptedException {
+		MpscArrayBlockingQueue<Integer> queue = new MpscArrayBlockingQueue<Integer>(2, BackPressure.DROP_NEWEST);
+		queue.put(0);
+		queue.put(1);
+		queue.put(2);
+		assertFalse(queue.putAll(asList(3, 4)));
+		assertThat(queue.droppedCount(), is(3L));
+		assertThat(new ArrayList<Integer>(queue), is(asList(0, 1)));
+	}
+	public void testBlockingOfferTimesOut() throws InterruptedException {
+		for (BackPressure backPressure : asList(BackPressure.BLOCK, BackPressure.SPIN_THEN_PARK)) {
+			MpscArrayBlockingQueue<Integer> queue = new MpscArrayBlockingQueue<Integer>(1, backPressure);
+			queue.put(0);
+			assertFalse(queue.offer(1, 2, TimeUnit.MILLISECONDS));
+			assertThat(queue.take(), is(0));
+			assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+		}
+	}
+	public void testFanInPreservesPerProducerOrder() throws Exception {
+		for (BackPressure backPressure : asList(BackPressure.BLOCK, BackPressure.SPIN_THEN_PARK)) {
+			runFanIn(new MpscArrayBlockingQueue<Integer>(64, backPressure));
+		}
+	}
+	private static void runFanIn(final MpscArrayBlockingQueue<Integer> queue) throws Exception {
+		final int producers = 4;
+		final int perProducer = 20000;
+		final int batchSize = 5;
+		ExecutorService executor = Executors.newFixedThreadPool(producers);
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (int p = 0; p < producers; p++) {
+				final int producer = p;
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws InterruptedException {
+						// encode the producer in the low bits so that the consumer can check per-producer ordering
+						List<Integer> batch = new ArrayList<Integer>();
+						for (int i = 0; i < perProducer;) {
+							if ((i / batchSize) % 2 == 0) {
+								queue.put(i++ * producers + producer);
+							} else {
+								batch.clear();
+								for (int k = 0; k < batchSize && i < perProducer; k++) {
+									batch.add(i++ * producers + producer);
+								}
+								queue.putAll(batch);
+							}
+						}
+						return null;
+					}
+				}));
+			}
+			int[] next = new int[producers];
+			Integer[] buffer = new Integer[32];
+			int received = 0;
+			while (received < producers * perProducer) {
+				int count = queue.drainTo(buffer, 0, buffer.length);
+				if (count == 0) {
+					buffer[0] = queue.take();
+					count = 1;
+				}
+				for (int k = 0; k < count; k++) {
+					int value = buffer[k];
+					int producer = value % producers;
+					assertThat(value / producers, is(next[producer]++));
+				}
+				received += count;
+			}
+			for (Future<Void> future : futures) {
+				future.get(10, TimeUnit.SECONDS);
+			}
+			assertTrue(queue.isEmpty());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package joe.collect;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Random;
+
+import joe.collect.OffHeapRecordRing.Cursor;
+import junit.framework.TestCase;
+
+/**
+ * Class under test: {@link OffHeapRecordRing}
+ *
+ * @author Joe Kearney
+ */
+public class OffHeapRecordRingTest extends TestCase {
+	/** Record layout: a long timestamp then a double price and an int quantity */
+	private static final int TIME = 0, PRICE = 8, QUANTITY = 16, RECORD_SIZE = 20;
+
+	public void testDequeOperations() {
+		OffHeapRecordRing ring = new OffHeapRecordRing(RECORD_SIZE, 0);
+		Cursor cursor = ring.newCursor();
+		ring.addLast(cursor).putLong(TIME, 2).putDouble(PRICE, 2.5).putInt(QUANTITY, 20);
+		ring.addLast(cursor).putLong(TIME, 3);
+		ring.addFirst(cursor).putLong(TIME, 1);
+		assertThat(ring.size(), is(3));
+
+		assertTrue(ring.peekFirst(cursor));
+		assertThat(cursor.getLong(TIME), is(1L));
+		assertTrue(ring.peekLast(cursor));
+		assertThat(cursor.getLong(TIME), is(3L));
+		ring.get(1, cursor);
+		assertThat(cursor.getDouble(PRICE), is(2.5));
+		assertThat(cursor.getInt(QUANTITY), is(20));
+
+		assertTrue(ring.pollFirst(cursor));
+		assertThat(cursor.getLong(TIME), is(1L));
+		assertTrue(ring.pollLast(cursor));
+		assertThat(cursor.getLong(TIME), is(3L));
+		assertTrue(ring.pollLast(cursor));
+		assertThat(cursor.getLong(TIME), is(2L));
+		assertFalse(ring.pollFirst(cursor));
+		assertFalse(ring.peekLast(cursor));
+		assertTrue(ring.isEmpty());
+	}
+	public void testAddedRecordsAreZeroed() {
+		OffHeapRecordRing ring = new OffHeapRecordRing(RECORD_SIZE, 0);
+		Cursor cursor = ring.newCursor();
+		ring.addLast(cursor).putLong(TIME, -1).putDouble(PRICE, -1).putInt(QUANTITY, -1);
+		ring.pollFirst(cursor);
+		for (int i = 0; i < 8; i++) { // reuse every slot
+			ring.addLast(cursor);
+			assertThat(cursor.getLong(TIME), is(0L));
+			assertThat(cursor.getInt(QUANTITY), is(0));
+			ring.pollFirst(cursor);
+		}
+	}
+	public void testGrowthAgainstReference() {
+		Random random = new Random(0);
+		OffHeapRecordRing ring = new OffHeapRecordRing(RECORD_SIZE, 0);
+		CircularArrayList<Long> reference = new CircularArrayList<Long>();
+		Cursor cursor = ring.newCursor();
+		for (int i = 0; i < 5000; i++) {
+			long value = random.nextLong();
+			switch (random.nextInt(5)) {
+			case 0:
+				ring.addFirst(cursor).putLong(TIME, value).putInt(QUANTITY, (int) value);
+				reference.addFirst(value);
+				break;
+			case 1:
+			case 2:
+				ring.addLast(cursor).putLong(TIME, value).putInt(QUANTITY, (int) value);
+				reference.addLast(value);
+				break;
+			case 3:
+				if (ring.pollFirst(cursor)) {
+					assertThat(cursor.getLong(TIME), is(reference.pollFirst()));
+				} else {
+					assertTrue(reference.isEmpty());
+				}
+				break;
+			default:
+				if (ring.pollLast(cursor)) {
+					assertThat(cursor.getLong(TIME), is(reference.pollLast()));
+				} else {
+					assertTrue(reference.isEmpty());
+				}
+			}
+			assertThat(ring.size(), is(reference.size()));
+		}
+		for (int i = 0; i < reference.size(); i++) {
+			ring.get(i, cursor);
+			assertThat(cursor.getLong(TIME), is(reference.get(i)));
+			assertThat(cursor.getInt(QUANTITY), is((int) reference.get(i).longValue()));
+		}
+	}
+	public void testBoundedDiscardsFromOtherEnd() {
+		OffHeapRecordRing ring = OffHeapRecordRing.bounded(8, 5);
+		assertTrue(ring.isBounded());
+		Cursor cursor = ring.newCursor();
+		for (long i = 0; i < 9; i++) {
+			ring.addLast(cursor).putLong(0, i);
+		}
+		assertThat(ring.size(), is(5));
+		assertThat(ring.get(0, cursor).getLong(0), is(4L));
+		ring.addFirst(cursor).putLong(0, -1);
+		assertThat(ring.size(), is(5));
+		assertThat(ring.get(0, cursor).getLong(0), is(-1L));
+		assertThat(ring.get(4, cursor).getLong(0), is(7L));
+	}
+	public void testFieldBoundsChecked() {
+		OffHeapRecordRing ring = new OffHeapRecordRing(RECORD_SIZE, 0);
+		Cursor cursor = ring.newCursor();
+		try {
+			cursor.getLong(TIME);
+			fail();
+		} catch (IllegalStateException expected) {}
+		ring.addLast(cursor);
+		cursor.putInt(RECORD_SIZE - 4, 1);
+		try {
+			cursor.putLong(RECORD_SIZE - 4, 1);
+			fail();
+		} catch (IndexOutOfBoundsException expected) {}
+		try {
+			cursor.getByte(-1);
+			fail();
+		} catch (IndexOutOfBoundsException expected) {}
+		try {
+			ring.get(1, cursor);
+			fail();
+		} catch (IndexOutOfBoundsException expected) {}
+	}
+	public void testCursorOfOtherRingRejected() {
+		OffHeapRecordRing ring = new OffHeapRecordRing(RECORD_SIZE, 0);
+		try {
+			ring.addLast(new OffHeapRecordRing(RECORD_SIZE, 0).newCursor());
+			fail();
+		} catch (IllegalArgumentException expected) {}
+		assertTrue(ring.isEmpty());
+	}
+}
@@ -0,0 +1,272 @@
+package joe.collect;
+
+import static com.google.common.collect.Maps.immutableEntry;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.powermock.reflect.Whitebox;
+
+import com.google.common.collect.testing.MapTestSuiteBuilder;
+import com.google.common.collect.testing.SampleElements;
+import com.google.common.collect.testing.TestMapGenerator;
+import com.google.common.collect.testing.features.CollectionFeature;
+import com.google.common.collect.testing.features.CollectionSize;
+import com.google.common.collect.testing.features.MapFeature;
+
+/**
+ * Classes under test: {@link IntSortedArrayMap} and {@link LongSortedArrayMap}
+ *
+ * @author Joe Kearney
+ */
+public class PrimitiveSortedArrayMapTest extends TestCase {
+	public static Test suite() {
+		TestSuite testSuite = new TestSuite("Primitive sorted array map tests");
+		testSuite.addTest(new TestSuite(IntTests.class, "IntSortedArrayMap custom tests"));
+		testSuite.addTest(new TestSuite(LongTests.class, "LongSortedArrayMap custom tests"));
+		testSuite.addTest(createIntMapTestSuite());
+		testSuite.addTest(createLongMapTestSuite());
+		return testSuite;
+	}
+
+	private static Test createIntMapTestSuite() {
+		return MapTestSuiteBuilder.using(new TestIntegerMapGenerator() {
+			@Override
+			public Map<Integer, String> create(Object... entries) {
+				IntSortedArrayMap<String> map = new IntSortedArrayMap<String>();
+				for (Object o : entries) {
+					@SuppressWarnings("unchecked")
+					Entry<Integer, String> entry = (Entry<Integer, String>) o;
+					map.put(entry.getKey(), entry.getValue());
+				}
+				return map;
+			}
+		}).named("IntSortedArrayMap").withFeatures(MapFeature.GENERAL_PURPOSE, CollectionFeature.KNOWN_ORDER,
+				CollectionSize.ANY).createTestSuite();
+	}
+	private static Test createLongMapTestSuite() {
+		return MapTestSuiteBuilder.using(new TestLongMapGenerator() {
+			@Override
+			public Map<Long, String> create(Object... entries) {
+				LongSortedArrayMap<String> map = new LongSortedArrayMap<String>();
+				for (Object o : entries) {
+					@SuppressWarnings("unchecked")
+					Entry<Long, String> entry = (Entry<Long, String>) o;
+					map.put(entry.getKey(), entry.getValue());
+				}
+				return map;
+			}
+		}).named("LongSortedArrayMap").withFeatures(MapFeature.GENERAL_PURPOSE, CollectionFeature.KNOWN_ORDER,
+				CollectionSize.ANY).createTestSuite();
+	}
+
+	public static class IntTests extends TestCase {
+		public void testPrimitiveAccessors() {
+			IntSortedArrayMap<String> map = new IntSortedArrayMap<String>();
+			assertThat(map.put(5, "five"), nullValue());
+			assertThat(map.put(-3, "minus three"), nullValue());
+			assertThat(map.put(Integer.MAX_VALUE, "max"), nullValue());
+			assertThat(map.put(5, "FIVE"), is("five"));
+			assertThat(map.size(), is(3));
+			assertThat(map.get(5), is("FIVE"));
+			assertThat(map.get(4), nullValue());
+			assertTrue(map.containsKey(-3));
+			assertFalse(map.containsKey(3));
+			assertThat(map.firstKey(), is(-3));
+			assertThat(map.lastKey(), is(Integer.MAX_VALUE));
+			assertThat(map.keyAt(1), is(5));
+			assertThat(map.valueAt(1), is("FIVE"));
+			assertThat(map.getIndexByKey(5), is(1));
+			assertThat(map.getIndexByKey(0), is(-2));
+			assertThat(map.remove(-3), is("minus three"));
+			assertThat(map.remove(-3), nullValue());
+			assertThat(map.firstKey(), is(5));
+		}
+		public void testMatchesTreeMap() {
+			IntSortedArrayMap<String> map = new IntSortedArrayMap<String>();
+			TreeMap<Integer, String> ref = new TreeMap<Integer, String>();
+			Random random = new Random(17);
+			for (int i = 0; i < 2000; i++) {
+				int key = random.nextInt(200) - 100;
+				if (random.nextInt(3) == 0) {
+					assertThat(map.remove(key), is(ref.remove(key)));
+				} else {
+					String value = String.valueOf(i);
+					assertThat(map.put(key, value), is(ref.put(key, value)));
+				}
+			}
+			assertThat(map, is((Map<Integer, String>) ref));
+			int i = 0;
+			for (Entry<Integer, String> entry : ref.entrySet()) {
+				assertThat(map.keyAt(i), is(entry.getKey().intValue()));
+				assertThat(map.valueAt(i), is(entry.getValue()));
+				i++;
+			}
+		}
+		public void testAscendingAppendGrowsAmortized() {
+			IntSortedArrayMap<String> map = new IntSortedArrayMap<String>();
+			for (int i = 0; i < 100; i++) {
+				map.put(i, "v");
+			}
+			assertThat(keys(map).length, is(128));
+			map.trimToSize();
+			assertThat(keys(map).length, is(100));
+			assertThat(map.lastKey(), is(99));
+			map.put(100, "v");
+			assertThat(keys(map).length, is(200));
+		}
+		public void testClearReleasesValues() {
+			IntSortedArrayMap<String> map = new IntSortedArrayMap<String>(4);
+			map.put(1, "a");
+			map.put(2, "b");
+			map.clear();
+			assertTrue(map.isEmpty());
+			assertThat(map.get(1), nullValue());
+			assertThat(values(map)[0], nullValue());
+			assertThat(values(map)[1], nullValue());
+		}
+		public void testEmptyAndBadArguments() {
+			IntSortedArrayMap<String> map = new IntSortedArrayMap<String>();
+			try {
+				map.firstKey();
+				fail();
+			} catch (NoSuchElementException expected) {}
+			try {
+				map.keyAt(0);
+				fail();
+			} catch (IndexOutOfBoundsException expected) {}
+			try {
+				map.put(1, null);
+				fail();
+			} catch (NullPointerException expected) {}
+			try {
+				new IntSortedArrayMap<String>(-1);
+				fail();
+			} catch (IllegalArgumentException expected) {}
+			assertThat(map.get("1"), nullValue());
+			assertThat(map.get(1L), nullValue());
+		}
+		private static int[] keys(IntSortedArrayMap<?> map) {
+			return Whitebox.getInternalState(map, "keys");
+		}
+		private static Object[] values(IntSortedArrayMap<?> map) {
+			return Whitebox.getInternalState(map, "values");
+		}
+	}
+
+	public static class LongTests extends TestCase {
+		public void testPrimitiveAccessors() {
+			LongSortedArrayMap<String> map = new LongSortedArrayMap<String>();
+			assertThat(map.put(1L << 40, "big"), nullValue());
+			assertThat(map.put(Long.MIN_VALUE, "min"), nullValue());
+			assertThat(map.put(7L, "seven"), nullValue());
+			assertThat(map.get(7L), is("seven"));
+			assertThat(map.get(8L), nullValue());
+			assertThat(map.firstKey(), is(Long.MIN_VALUE));
+			assertThat(map.lastKey(), is(1L << 40));
+			assertThat(map.keyAt(1), is(7L));
+			assertThat(map.getIndexByKey(1L << 40), is(2));
+			assertThat(map.remove(7L), is("seven"));
+			assertThat(map.keyAt(1), is(1L << 40));
+		}
+		public void testMatchesTreeMap() {
+			LongSortedArrayMap<String> map = new LongSortedArrayMap<String>();
+			TreeMap<Long, String> ref = new TreeMap<Long, String>();
+			Random random = new Random(17);
+			for (int i = 0; i < 2000; i++) {
+				long key = (random.nextInt(200) - 100) * 10000000000L;
+				if (random.nextInt(3) == 0) {
+					assertThat(map.remove(key), is(ref.remove(key)));
+				} else {
+					String value = String.valueOf(i);
+					assertThat(map.put(key, value), is(ref.put(key, value)));
+				}
+			}
+			assertThat(map, is((Map<Long, String>) ref));
+		}
+		public void testBoxedKeysOfOtherTypesAbsent() {
+			LongSortedArrayMap<String> map = new LongSortedArrayMap<String>();
+			map.put(1L, "one");
+			assertThat(map.get((Object) 1), nullValue());
+			assertFalse(map.containsKey((Object) 1));
+			assertThat(map.get((Object) 1L), is("one"));
+		}
+	}
+
+	static abstract class TestIntegerMapGenerator implements TestMapGenerator<Integer, String> {
+		@Override
+		public SampleElements<Entry<Integer, String>> samples() {
+			return new SampleElements<Entry<Integer, String>>(immutableEntry(-7, "a"), immutableEntry(0, "b"),
+					immutableEntry(3, "c"), immutableEntry(Integer.MIN_VALUE, "d"), immutableEntry(
+							Integer.MAX_VALUE, "e"));
+		}
+		@SuppressWarnings("unchecked")
+		// the array only ever holds the entries this generator creates, so the cast is safe
+		@Override
+		public Entry<Integer, String>[] createArray(int length) {
+			return (Entry<Integer, String>[]) new Entry<?, ?>[length];
+		}
+		@Override
+		public Integer[] createKeyArray(int length) {
+			return new Integer[length];
+		}
+		@Override
+		public String[] createValueArray(int length) {
+			return new String[length];
+		}
+		@Override
+		public Iterable<Entry<Integer, String>> order(List<Entry<Integer, String>> insertionOrder) {
+			return sortedByKey(insertionOrder);
+		}
+	}
+	static abstract class TestLongMapGenerator implements TestMapGenerator<Long, String> {
+		@Override
+		public SampleElements<Entry<Long, String>> samples() {
+			return new SampleElements<Entry<Long, String>>(immutableEntry(-7L, "a"), immutableEntry(0L, "b"),
+					immutableEntry(1L << 40, "c"), immutableEntry(Long.MIN_VALUE, "d"), immutableEntry(
+							Long.MAX_VALUE, "e"));
+		}
+		@SuppressWarnings("unchecked")
+		// the array only ever holds the entries this generator creates, so the cast is safe
+		@Override
+		public Entry<Long, String>[] createArray(int length) {
+			return (Entry<Long, String>[]) new Entry<?, ?>[length];
+		}
+		@Override
+		public Long[] createKeyArray(int length) {
+			return new Long[length];
+		}
+		@Override
+		public String[] createValueArray(int length) {
+			return new String[length];
+		}
+		@Override
+		public Iterable<Entry<Long, String>> order(List<Entry<Long, String>> insertionOrder) {
+			return sortedByKey(insertionOrder);
+		}
+	}
+	static <K extends Comparable<? super K>, V> List<Entry<K, V>> sortedByKey(List<Entry<K, V>> entries) {
+		List<Entry<K, V>> sorted = new ArrayList<Entry<K, V>>(entries);
+		Collections.sort(sorted, new Comparator<Entry<K, V>>() {
+			@Override
+			public int compare(Entry<K, V> o1, Entry<K, V> o2) {
+				return o1.getKey().compareTo(o2.getKey());
+			}
+		});
+		return sorted;
+	}
+}
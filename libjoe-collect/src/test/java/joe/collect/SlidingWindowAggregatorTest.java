@@ -0,0 +1,106 @@
+package joe.collect;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Class under test: {@link SlidingWindowAggregator}
+ *
+ * @author Joe Kearney
+ */
+public class SlidingWindowAggregatorTest extends TestCase {
+	public void testAggregatesMatchFullScan() {
+		Random random = new Random(0);
+		SlidingWindowAggregator window = new SlidingWindowAggregator(50);
+		List<Double> ref = new ArrayList<Double>();
+		for (int i = 0; i < 5000; i++) {
+			if (random.nextInt(4) == 0 && !ref.isEmpty()) {
+				assertThat(window.pollFirst(), is(ref.remove(0)));
+			} else {
+				double sample = random.nextInt(100) - 50 + random.nextDouble(); // with ties in the integer part
+				window.addLast(random.nextInt(10) == 0 ? Math.floor(sample) : sample);
+				ref.add(window.get(window.size() - 1));
+				if (ref.size() > 50) {
+					ref.remove(0);
+				}
+			}
+			assertThat(window.size(), is(ref.size()));
+			if (!ref.isEmpty()) {
+				double sum = 0;
+				for (double d : ref) {
+					sum += d;
+				}
+				assertThat(window.getSum(), closeTo(sum, 1e-9));
+				assertThat(window.getMean(), closeTo(sum / ref.size(), 1e-9));
+				assertThat(window.getMin(), is(Collections.min(ref)));
+				assertThat(window.getMax(), is(Collections.max(ref)));
+			}
+		}
+	}
+	public void testFullWindowEvictsFirst() {
+		SlidingWindowAggregator window = new SlidingWindowAggregator(3);
+		for (double d : new double[] { 5, 1, 3, 2 }) {
+			window.addLast(d);
+		}
+		assertThat(window.size(), is(3));
+		assertThat(window.get(0), is(1.0));
+		assertThat(window.getSum(), is(6.0));
+		assertThat(window.getMin(), is(1.0));
+		assertThat(window.getMax(), is(3.0));
+		window.addLast(2);
+		assertThat(window.getMin(), is(2.0));
+		assertThat(window.getMax(), is(3.0));
+	}
+	public void testEmptyWindow() {
+		SlidingWindowAggregator window = new SlidingWindowAggregator(3);
+		window.addLast(0.1);
+		window.addLast(0.2);
+		window.pollFirst();
+		window.pollFirst();
+		assertThat(window.getSum(), is(0.0)); // no residue of rounding
+		assertTrue(Double.isNaN(window.getMean()));
+		try {
+			window.getMin();
+			fail();
+		} catch (NoSuchElementException expected) {}
+		try {
+			window.pollFirst();
+			fail();
+		} catch (NoSuchElementException expected) {}
+		window.addLast(7);
+		window.clear();
+		assertTrue(window.isEmpty());
+		window.addLast(4);
+		assertThat(window.getMax(), is(4.0));
+	}
+	public void testNonFiniteSamplesRejected() {
+		SlidingWindowAggregator window = new SlidingWindowAggregator(3);
+		for (double d : new double[] { Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY }) {
+			try {
+				window.addLast(d);
+				fail();
+			} catch (IllegalArgumentException expected) {}
+		}
+		assertTrue(window.isEmpty());
+		try {
+			new SlidingWindowAggregator(0);
+			fail();
+		} catch (IllegalArgumentException expected) {}
+	}
+	public void testCompensatedSumDoesNotDrift() {
+		SlidingWindowAggregator window = new SlidingWindowAggregator(10);
+		for (int i = 0; i < 1000000; i++) {
+			window.addLast(i % 2 == 0 ? 1e8 : 0.1);
+		}
+		assertThat(window.getSum(), closeTo(5e8 + 0.5, 1e-6));
+	}
+}
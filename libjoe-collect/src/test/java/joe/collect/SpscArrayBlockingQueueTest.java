@@ -0,0 +1,114 @@
+package joe.collect;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Class under test: {@link SpscArrayBlockingQueue}
+ *
+ * @author Joe Kearney
+ */
+public class SpscArrayBlockingQueueTest extends TestCase {
+	public void testCapacityRoundedUpToPowerOfTwo() {
+		assertThat(new SpscArrayBlockingQueue<Integer>(1).capacity(), is(1));
+		assertThat(new SpscArrayBlockingQueue<Integer>(5).capacity(), is(8));
+		assertThat(new SpscArrayBlockingQueue<Integer>(8).capacity(), is(8));
+		try {
+			new SpscArrayBlockingQueue<Integer>(0);
+			fail();
+		} catch (IllegalArgumentException expected) {}
+	}
+	public void testFifoAcrossWrap() {
+		SpscArrayBlockingQueue<Integer> queue = new SpscArrayBlockingQueue<Integer>(4);
+		for (int i = 0; i < 4; i++) {
+			assertTrue(queue.offer(i));
+		}
+		assertFalse(queue.offer(4));
+		assertThat(queue.remainingCapacity(), is(0));
+		assertThat(queue.poll(), is(0));
+		assertThat(queue.poll(), is(1));
+		assertTrue(queue.offer(4));
+		assertTrue(queue.offer(5));
+		assertThat(queue.size(), is(4));
+		assertThat(new ArrayList<Integer>(queue), is(asList(2, 3, 4, 5)));
+		assertThat(queue.peek(), is(2));
+		for (int i = 2; i < 6; i++) {
+			assertThat(queue.poll(), is(i));
+		}
+		assertNull(queue.poll());
+		assertNull(queue.peek());
+		assertTrue(queue.isEmpty());
+	}
+	public void testNullsProhibited() {
+		SpscArrayBlockingQueue<Integer> queue = new SpscArrayBlockingQueue<Integer>(4);
+		try {
+			queue.offer(null);
+			fail();
+		} catch (NullPointerException expected) {}
+	}
+	public void testDrainToInBatches() {
+		SpscArrayBlockingQueue<Integer> queue = new SpscArrayBlockingQueue<Integer>(8);
+		for (int i = 0; i < 6; i++) {
+			queue.add(i);
+		}
+		List<Integer> drained = new ArrayList<Integer>();
+		assertThat(queue.drainTo(drained, 4), is(4));
+		assertThat(drained, is(asList(0, 1, 2, 3)));
+		assertThat(queue.drainTo(drained), is(2));
+		assertThat(drained, is(asList(0, 1, 2, 3, 4, 5)));
+		assertThat(queue.drainTo(drained), is(0));
+		try {
+			queue.drainTo(queue);
+			fail();
+		} catch (IllegalArgumentException expected) {}
+	}
+	public void testTimedOperationsTimeOut() throws InterruptedException {
+		SpscArrayBlockingQueue<Integer> queue = new SpscArrayBlockingQueue<Integer>(1);
+		assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+		queue.put(1);
+		assertFalse(queue.offer(2, 1, TimeUnit.MILLISECONDS));
+		assertThat(queue.take(), is(1));
+	}
+	public void testHandoffBetweenThreadsPreservesOrder() throws Exception {
+		final SpscArrayBlockingQueue<Integer> queue = new SpscArrayBlockingQueue<Integer>(64);
+		final int count = 200000;
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Void> producer = executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws InterruptedException {
+					for (int i = 0; i < count; i++) {
+						queue.put(i);
+					}
+					return null;
+				}
+			});
+			List<Integer> batch = new ArrayList<Integer>();
+			int expected = 0;
+			while (expected < count) {
+				batch.clear();
+				if (queue.drainTo(batch, 17) == 0) {
+					batch.add(queue.take());
+				}
+				for (Integer i : batch) {
+					assertThat(i, is(expected++));
+				}
+			}
+			producer.get(10, TimeUnit.SECONDS);
+			assertTrue(queue.isEmpty());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package joe.collect;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import junit.framework.TestCase;
+
+import org.powermock.reflect.Whitebox;
+
+/**
+ * Class under test: {@link WorkStealingDeque}
+ *
+ * @author Joe Kearney
+ */
+public class WorkStealingDequeTest extends TestCase {
+	public void testOwnerLifoThiefFifo() {
+		WorkStealingDeque<Integer> deque = new WorkStealingDeque<Integer>();
+		for (int i = 0; i < 5; i++) {
+			deque.push(i);
+		}
+		assertThat(deque.size(), is(5));
+		assertThat(deque.toString(), is("[0, 1, 2, 3, 4]"));
+		assertThat(deque.pop(), is(4));
+		assertThat(deque.steal(), is(0));
+		assertThat(deque.pop(), is(3));
+		assertThat(deque.steal(), is(1));
+		assertThat(deque.pop(), is(2));
+		assertNull(deque.pop());
+		assertNull(deque.steal());
+		assertTrue(deque.isEmpty());
+		deque.push(5);
+		assertThat(deque.steal(), is(5));
+		assertNull(deque.pop());
+	}
+	public void testGrowsAcrossWrap() {
+		WorkStealingDeque<Integer> deque = new WorkStealingDeque<Integer>(4);
+		assertThat(deque.capacity(), is(8));
+		for (int i = 0; i < 6; i++) {
+			deque.push(i);
+		}
+		for (int i = 0; i < 5; i++) {
+			assertThat(deque.steal(), is(i));
+		}
+		for (int i = 6; i < 20; i++) {
+			deque.push(i); // wraps, then grows while wrapped
+		}
+		assertThat(deque.capacity(), is(16));
+		assertThat(deque.size(), is(15));
+		List<Integer> stolen = new ArrayList<Integer>();
+		for (Integer e; (e = deque.steal()) != null;) {
+			stolen.add(e);
+		}
+		assertThat(stolen, is(asList(5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19)));
+	}
+	public void testPopClearsSlot() {
+		WorkStealingDeque<Object> deque = new WorkStealingDeque<Object>();
+		deque.push("a");
+		deque.push("b");
+		deque.pop();
+		deque.pop();
+		Object[] elements = Whitebox.getInternalState(deque, "elements");
+		assertThat(asList(elements), is(asList(new Object[elements.length])));
+	}
+	public void testNullsRejected() {
+		WorkStealingDeque<Integer> deque = new WorkStealingDeque<Integer>();
+		try {
+			deque.push(null);
+			fail();
+		} catch (NullPointerException expected) {}
+		assertTrue(deque.isEmpty());
+	}
+	public void testEachElementTakenOnceUnderStealing() throws Exception {
+		final int thieves = 3;
+		final int count = 200000;
+		final WorkStealingDeque<Integer> deque = new WorkStealingDeque<Integer>(8); // grows while being stolen from
+		final AtomicIntegerArray taken = new AtomicIntegerArray(count);
+		final AtomicBoolean done = new AtomicBoolean();
+		ExecutorService executor = Executors.newFixedThreadPool(thieves);
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (int p = 0; p < thieves; p++) {
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() {
+						while (true) {
+							Integer e = deque.steal();
+							if (e != null) {
+								taken.incrementAndGet(e);
+							} else if (done.get()) {
+								return null;
+							}
+						}
+					}
+				}));
+			}
+			// the owner pushes in bursts and pops some back, so that pops often race steals for the last element
+			for (int i = 0; i < count;) {
+				for (int k = 0; k < 3 && i < count; k++) {
+					deque.push(i++);
+				}
+				Integer e = deque.pop();
+				if (e != null) {
+					taken.incrementAndGet(e);
+				}
+			}
+			for (Integer e; (e = deque.pop()) != null;) {
+				taken.incrementAndGet(e);
+			}
+			done.set(true);
+			for (Future<Void> future : futures) {
+				future.get(10, TimeUnit.SECONDS);
+			}
+			for (int i = 0; i < count; i++) {
+				assertThat("element " + i, taken.get(i), is(1));
+			}
+			assertTrue(deque.isEmpty());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
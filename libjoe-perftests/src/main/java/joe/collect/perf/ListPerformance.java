@@ -11,7 +11,10 @@ import java.util.ListIterator;
 import java.util.Random;
 
 import joe.collect.CircularArrayList;
+import joe.collect.CircularIntArrayList;
+import joe.collect.CircularLongArrayList;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Ranges;
 
 /**
@@ -47,6 +50,41 @@ public class ListPerformance {
 		qTests.add(new QueueRemoveLastTester("rmLast"));
 	}
 
+	/*
+	 * Boxed and primitive deques, run against the same operations. Values are kept out of the range cached by
+	 * Integer.valueOf and Long.valueOf so that the boxed versions pay for their allocation.
+	 */
+	static final int VALUE_OFFSET = 1 << 16;
+	static final List<AbstractTest<CircularArrayList<Integer>, Integer>> boxedIntTests = newArrayList();
+	static final List<AbstractTest<CircularIntArrayList, Integer>> intTests = newArrayList();
+	static final List<AbstractTest<CircularArrayList<Long>, Long>> boxedLongTests = newArrayList();
+	static final List<AbstractTest<CircularLongArrayList, Long>> longTests = newArrayList();
+	static {
+		boxedIntTests.add(new BoxedAddLastTester<Integer>("addLast") {
+			@Override
+			Integer box(int value) {
+				return value;
+			}
+		});
+		boxedIntTests.add(new BoxedPollFirstTester<Integer>("pollFirst"));
+		boxedIntTests.add(new BoxedGetTester<Integer>("get"));
+		intTests.add(new IntAddLastTester("addLastInt"));
+		intTests.add(new IntPollFirstTester("pollFirstInt"));
+		intTests.add(new IntGetTester("getInt"));
+
+		boxedLongTests.add(new BoxedAddLastTester<Long>("addLast") {
+			@Override
+			Long box(int value) {
+				return (long) value;
+			}
+		});
+		boxedLongTests.add(new BoxedPollFirstTester<Long>("pollFirst"));
+		boxedLongTests.add(new BoxedGetTester<Long>("get"));
+		longTests.add(new LongAddLastTester("addLastLong"));
+		longTests.add(new LongPollFirstTester("pollFirstLong"));
+		longTests.add(new LongGetTester("getLong"));
+	}
+
 	private static abstract class AbstractIntegerContainerTest<C extends Collection<Integer>>
 			extends AbstractTest<C, Integer> {
 
@@ -336,6 +374,172 @@ public class ListPerformance {
 		}
 	}
 
+	private static abstract class BoxedAddLastTester<E extends Number> extends AbstractTest<CircularArrayList<E>, E> {
+		BoxedAddLastTester(String name) {
+			super(name);
+		}
+
+		abstract E box(int value);
+
+		@Override
+		int test(CircularArrayList<E> list, TestParam tp) {
+			int loops = tp.loops;
+			int size = tp.size;
+			for (int i = 0; i < loops; i++) {
+				list.clear();
+				for (int j = 0; j < size; j++) {
+					list.addLast(box(VALUE_OFFSET + j));
+				}
+			}
+			return loops * size;
+		}
+	}
+	private static final class BoxedPollFirstTester<E extends Number> extends AbstractTest<CircularArrayList<E>, E> {
+		BoxedPollFirstTester(String name) {
+			super(name);
+		}
+
+		@Override
+		int test(CircularArrayList<E> list, TestParam tp) {
+			int loops = tp.loops;
+			int size = tp.size;
+			long sum = 0;
+			for (int i = 0; i < loops; i++) {
+				// cycle each element to the back so that the list is refilled for the next loop
+				for (int j = 0; j < size; j++) {
+					E e = list.pollFirst();
+					sum += e.longValue();
+					list.addLast(e);
+				}
+			}
+			return sum == 0 ? 1 : loops * size;
+		}
+	}
+	private static final class BoxedGetTester<E extends Number> extends AbstractTest<CircularArrayList<E>, E> {
+		BoxedGetTester(String name) {
+			super(name);
+		}
+
+		@Override
+		int test(CircularArrayList<E> list, TestParam tp) {
+			int loops = tp.loops * tp.size;
+			int listSize = list.size();
+			long sum = 0;
+			for (int i = 0; i < loops; i++) {
+				sum += list.get(rand.nextInt(listSize)).longValue();
+			}
+			return sum == 0 ? 1 : loops;
+		}
+	}
+	private static final class IntAddLastTester extends AbstractTest<CircularIntArrayList, Integer> {
+		IntAddLastTester(String name) {
+			super(name);
+		}
+
+		@Override
+		int test(CircularIntArrayList list, TestParam tp) {
+			int loops = tp.loops;
+			int size = tp.size;
+			for (int i = 0; i < loops; i++) {
+				list.clear();
+				for (int j = 0; j < size; j++) {
+					list.addLastInt(VALUE_OFFSET + j);
+				}
+			}
+			return loops * size;
+		}
+	}
+	private static final class IntPollFirstTester extends AbstractTest<CircularIntArrayList, Integer> {
+		IntPollFirstTester(String name) {
+			super(name);
+		}
+
+		@Override
+		int test(CircularIntArrayList list, TestParam tp) {
+			int loops = tp.loops;
+			int size = tp.size;
+			long sum = 0;
+			for (int i = 0; i < loops; i++) {
+				for (int j = 0; j < size; j++) {
+					int e = list.pollFirstInt();
+					sum += e;
+					list.addLastInt(e);
+				}
+			}
+			return sum == 0 ? 1 : loops * size;
+		}
+	}
+	private static final class IntGetTester extends AbstractTest<CircularIntArrayList, Integer> {
+		IntGetTester(String name) {
+			super(name);
+		}
+
+		@Override
+		int test(CircularIntArrayList list, TestParam tp) {
+			int loops = tp.loops * tp.size;
+			int listSize = list.size();
+			long sum = 0;
+			for (int i = 0; i < loops; i++) {
+				sum += list.getInt(rand.nextInt(listSize));
+			}
+			return sum == 0 ? 1 : loops;
+		}
+	}
+	private static final class LongAddLastTester extends AbstractTest<CircularLongArrayList, Long> {
+		LongAddLastTester(String name) {
+			super(name);
+		}
+
+		@Override
+		int test(CircularLongArrayList list, TestParam tp) {
+			int loops = tp.loops;
+			int size = tp.size;
+			for (int i = 0; i < loops; i++) {
+				list.clear();
+				for (int j = 0; j < size; j++) {
+					list.addLastLong(VALUE_OFFSET + j);
+				}
+			}
+			return loops * size;
+		}
+	}
+	private static final class LongPollFirstTester extends AbstractTest<CircularLongArrayList, Long> {
+		LongPollFirstTester(String name) {
+			super(name);
+		}
+
+		@Override
+		int test(CircularLongArrayList list, TestParam tp) {
+			int loops = tp.loops;
+			int size = tp.size;
+			long sum = 0;
+			for (int i = 0; i < loops; i++) {
+				for (int j = 0; j < size; j++) {
+					long e = list.pollFirstLong();
+					sum += e;
+					list.addLastLong(e);
+				}
+			}
+			return sum == 0 ? 1 : loops * size;
+		}
+	}
+	private static final class LongGetTester extends AbstractTest<CircularLongArrayList, Long> {
+		LongGetTester(String name) {
+			super(name);
+		}
+
+		@Override
+		int test(CircularLongArrayList list, TestParam tp) {
+			int loops = tp.loops * tp.size;
+			int listSize = list.size();
+			long sum = 0;
+			for (int i = 0; i < loops; i++) {
+				sum += list.getLong(rand.nextInt(listSize));
+			}
+			return sum == 0 ? 1 : loops;
+		}
+	}
+
 	static class ListTester extends PerformanceTester<List<Integer>, Integer> {
 		public ListTester(List<Integer> container,
 				List<? extends AbstractTest<List<Integer>, Integer>> tests) {
@@ -358,8 +562,65 @@ public class ListPerformance {
 		}
 	}
 
+	static final ImmutableList<TestParam> DEQUE_PARAMS = TestParam.from(10, 50000, 100, 5000, 1000, 500, 10000, 50);
+
+	/**
+	 * Runs the boxed and primitive deque tests side by side, reporting {@code nanos/bytes} allocated per rep.
+	 */
+	static void runPrimitiveComparison() {
+		PerformanceTester<CircularArrayList<Integer>, Integer> boxedInts = new PerformanceTester<CircularArrayList<Integer>, Integer>(
+				new CircularArrayList<Integer>(), boxedIntTests, DEQUE_PARAMS) {
+			@Override
+			protected CircularArrayList<Integer> initialize(int size) {
+				container.clear();
+				for (int i = 0; i < size; i++) {
+					container.addLast(VALUE_OFFSET + i);
+				}
+				return container;
+			}
+		};
+		PerformanceTester<CircularIntArrayList, Integer> ints = new PerformanceTester<CircularIntArrayList, Integer>(
+				new CircularIntArrayList(), intTests, DEQUE_PARAMS) {
+			@Override
+			protected CircularIntArrayList initialize(int size) {
+				container.clear();
+				for (int i = 0; i < size; i++) {
+					container.addLastInt(VALUE_OFFSET + i);
+				}
+				return container;
+			}
+		};
+		PerformanceTester<CircularArrayList<Long>, Long> boxedLongs = new PerformanceTester<CircularArrayList<Long>, Long>(
+				new CircularArrayList<Long>(), boxedLongTests, DEQUE_PARAMS) {
+			@Override
+			protected CircularArrayList<Long> initialize(int size) {
+				container.clear();
+				for (int i = 0; i < size; i++) {
+					container.addLast((long) VALUE_OFFSET + i);
+				}
+				return container;
+			}
+		};
+		PerformanceTester<CircularLongArrayList, Long> longs = new PerformanceTester<CircularLongArrayList, Long>(
+				new CircularLongArrayList(), longTests, DEQUE_PARAMS) {
+			@Override
+			protected CircularLongArrayList initialize(int size) {
+				container.clear();
+				for (int i = 0; i < size; i++) {
+					container.addLastLong(VALUE_OFFSET + i);
+				}
+				return container;
+			}
+		};
+		for (PerformanceTester<?, ?> tester : ImmutableList.of(boxedInts, ints, boxedLongs, longs)) {
+			tester.setMeasureAllocation(true);
+			tester.timedTest();
+		}
+	}
+
 	public static void main(String[] args) {
 		ListTester.run(new CircularArrayList<Integer>(), tests);
 		ListTester.run(new ArrayList<Integer>(), tests);
+		runPrimitiveComparison();
 	}
 }
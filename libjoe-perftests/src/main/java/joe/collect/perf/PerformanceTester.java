@@ -1,5 +1,6 @@
 package joe.collect.perf;
 
+import java.lang.management.ManagementFactory;
 import java.util.Collections;
 import java.util.List;
 import com.google.common.collect.ImmutableList;
@@ -23,6 +24,7 @@ public class PerformanceTester<C, E> {
 	private static int sizeWidth = 6;
 	private static String sizeField = "%" + sizeWidth + "s";
 	private List<TestParam> paramList;
+	private boolean measureAllocation = false;
 	
 	public PerformanceTester(C container, List<? extends AbstractTest<C, E>> tests) {
 		this(container, tests, defaultParams);
@@ -38,6 +40,20 @@ public class PerformanceTester<C, E> {
 	public void setHeadline(String newHeadline) {
 		headline = newHeadline;
 	}
+	/**
+	 * Also report the heap allocated per rep, as {@code nanos/bytes} in each cell. Needs a JVM whose
+	 * {@code ThreadMXBean} supports allocation accounting; otherwise bytes are reported as {@code -1}.
+	 */
+	public void setMeasureAllocation(boolean measureAllocation) {
+		this.measureAllocation = measureAllocation;
+	}
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
 	public static <C, E> void run(C cntnr, List<? extends AbstractTest<C, E>> tests) {
 		new PerformanceTester<C, E>(cntnr, tests).timedTest();
 	}
@@ -75,12 +91,19 @@ public class PerformanceTester<C, E> {
 				}
 				
 				C kontainer = initialize(param.size);
+				long startBytes = measureAllocation ? allocatedBytes() : 0;
 				long start = System.nanoTime();
 				// Call the template method:
 				int reps = test.test(kontainer, param);
 				long duration = System.nanoTime() - start;
 				long timePerRep = duration / reps; // Nanoseconds
-				System.out.format(numberField(), timePerRep);
+				if (measureAllocation) {
+					long endBytes = allocatedBytes();
+					long bytesPerRep = startBytes < 0 ? -1 : (endBytes - startBytes) / reps;
+					System.out.format(stringField(), timePerRep + "/" + bytesPerRep);
+				} else {
+					System.out.format(numberField(), timePerRep);
+				}
 			}
 			System.out.println();
 		}
@@ -0,0 +1,106 @@
+package joe.collect.perf;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import joe.collect.CircularArrayList;
+import joe.collect.MpscArrayBlockingQueue;
+import joe.collect.SpscArrayBlockingQueue;
+
+import org.junit.Test;
+
+import com.google.common.base.Stopwatch;
+
+/**
+ * Throughput of handing elements from one thread to another through various queues. The producer and consumer both
+ * busy-spin on {@code offer} and {@code poll}, so that only the cost of the queue is measured.
+ */
+public class QueueHandoffPerfTest {
+	private static final int HANDOFFS = 20000000;
+	private static final int CAPACITY = 1024;
+	private static final int RUNS = 5;
+
+	@Test
+	public void testSynchronizedCircularArrayList() throws Exception {
+		final CircularArrayList<Integer> list = new CircularArrayList<Integer>(CAPACITY);
+		runHandoffTest("synchronized CircularArrayList", new SpinQueue() {
+			@Override
+			public boolean offer(Integer e) {
+				synchronized (list) {
+					if (list.size() >= CAPACITY) {
+						return false;
+					}
+					return list.offer(e);
+				}
+			}
+			@Override
+			public Integer poll() {
+				synchronized (list) {
+					return list.poll();
+				}
+			}
+		});
+	}
+	@Test
+	public void testArrayBlockingQueue() throws Exception {
+		runHandoffTest("ArrayBlockingQueue", forQueue(new ArrayBlockingQueue<Integer>(CAPACITY)));
+	}
+	@Test
+	public void testSpscArrayBlockingQueue() throws Exception {
+		runHandoffTest("SpscArrayBlockingQueue", forQueue(new SpscArrayBlockingQueue<Integer>(CAPACITY)));
+	}
+	@Test
+	public void testMpscArrayBlockingQueue() throws Exception {
+		runHandoffTest("MpscArrayBlockingQueue", forQueue(new MpscArrayBlockingQueue<Integer>(CAPACITY)));
+	}
+
+	/**
+	 * The two operations used by the test.
+	 */
+	interface SpinQueue {
+		boolean offer(Integer e);
+		Integer poll();
+	}
+	static SpinQueue forQueue(final Queue<Integer> queue) {
+		return new SpinQueue() {
+			@Override
+			public boolean offer(Integer e) {
+				return queue.offer(e);
+			}
+			@Override
+			public Integer poll() {
+				return queue.poll();
+			}
+		};
+	}
+
+	static void runHandoffTest(String name, final SpinQueue queue) throws InterruptedException {
+		System.out.println("Handoff test: " + name);
+		final Integer element = 47;
+		for (int run = 0; run < RUNS; run++) {
+			Thread producer = new Thread(name + " producer") {
+				@Override
+				public void run() {
+					for (int i = 0; i < HANDOFFS; i++) {
+						while (!queue.offer(element)) {
+							// spin
+						}
+					}
+				}
+			};
+			Stopwatch sw = new Stopwatch();
+			sw.start();
+			producer.start();
+			for (int i = 0; i < HANDOFFS; i++) {
+				while (queue.poll() == null) {
+					// spin
+				}
+			}
+			sw.stop();
+			producer.join();
+			long millis = Math.max(1, sw.elapsedTime(TimeUnit.MILLISECONDS));
+			System.out.println("  run " + run + ": " + millis + "ms, " + (HANDOFFS / millis / 1000) + "M handoffs/s");
+		}
+	}
+}